@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Times tune() and detect() of every anomaly detection model against the
+// noise free signal as the expected series.
+
+package com.yahoo.egads.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.egads.data.Anomaly;
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.models.adm.AnomalyDetectionModel;
+import com.yahoo.egads.utilities.ModelRegistry;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnomalyDetectionModelBenchmark {
+
+    @Param({"AdaptiveKernelDensityChangePointDetector", "DBScanModel",
+            "ExtremeLowDensityModel", "KSigmaModel", "NaiveModel",
+            "SimpleThresholdModel"})
+    public String model;
+
+    // Number of points in the series.
+    @Param({"1000", "10000"})
+    public int length;
+
+    // Seconds between two points.
+    @Param({"60", "3600"})
+    public long period;
+
+    private Properties config;
+    private TimeSeries.DataSequence observed;
+    private TimeSeries.DataSequence expected;
+    private AnomalyDetectionModel tuned;
+
+    @Setup
+    public void setup() throws Exception {
+        config = BenchmarkData.config(model, length, period);
+        observed = BenchmarkData.series(length, period).data;
+        expected = BenchmarkData.expected(observed);
+        tuned = create();
+        tuned.tune(observed, expected, null);
+    }
+
+    @Benchmark
+    public AnomalyDetectionModel tune() throws Exception {
+        AnomalyDetectionModel m = create();
+        m.tune(observed, expected, null);
+        return m;
+    }
+
+    @Benchmark
+    public Anomaly.IntervalSequence detect() throws Exception {
+        return tuned.detect(observed, expected);
+    }
+
+    private AnomalyDetectionModel create() throws Exception {
+        return ModelRegistry.newModel(ModelRegistry.AD_MODELS, model, AnomalyDetectionModel.class, config);
+    }
+}
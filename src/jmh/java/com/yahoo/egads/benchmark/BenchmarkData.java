@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Synthetic series and configurations shared by the benchmarks.
+
+package com.yahoo.egads.benchmark;
+
+import java.util.Properties;
+import java.util.Random;
+
+import com.yahoo.egads.data.ColumnarDataSequence;
+import com.yahoo.egads.data.TimeSeries;
+
+public class BenchmarkData {
+
+    // First timestamp of every generated series.
+    public static final long START = 1420070400;
+
+    // A series of 'length' points spaced 'period' seconds apart with a daily
+    // and a weekly cycle, gaussian noise and a spike every 500 points.
+    public static TimeSeries series(int length, long period) throws Exception {
+        TimeSeries ts = new TimeSeries();
+        ts.data = new ColumnarDataSequence();
+        ts.meta.name = "benchmark";
+        ts.meta.fileName = "benchmark";
+        Random random = new Random(1);
+        for (int i = 0; i < length; i++) {
+            long time = START + i * period;
+            float value = (float) (expected(time) + random.nextGaussian() * 5);
+            if (i % 500 == 499) {
+                value *= 3;
+            }
+            ts.append(time, value);
+        }
+        return ts;
+    }
+
+    // The noise free signal behind series().
+    public static TimeSeries.DataSequence expected(TimeSeries.DataSequence observed) throws Exception {
+        ColumnarDataSequence ds = new ColumnarDataSequence();
+        for (int i = 0; i < observed.size(); i++) {
+            ds.append(observed.time(i), (float) expected(observed.time(i)));
+        }
+        return ds;
+    }
+
+    // A copy of the sequence, e.g. for predict() to overwrite.
+    public static TimeSeries.DataSequence copy(TimeSeries.DataSequence data) throws Exception {
+        ColumnarDataSequence ds = new ColumnarDataSequence();
+        for (int i = 0; i < data.size(); i++) {
+            ds.append(data.time(i), data.value(i));
+        }
+        return ds;
+    }
+
+    // The sample_config.ini defaults, with auto-detected thresholds except for
+    // NaiveModel which requires them, plus the settings OlympicModel2 needs to
+    // model the last quarter of the series from the three quarters before it.
+    public static Properties config(String model, int length, long period) {
+        Properties p = new Properties();
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("AGGREGATION", "1");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("TIME_SHIFTS", "0,1");
+        p.setProperty("BASE_WINDOWS", "24,168");
+        p.setProperty("PERIOD", "-1");
+        p.setProperty("NUM_WEEKS", "8");
+        p.setProperty("NUM_TO_DROP", "0");
+        p.setProperty("DYNAMIC_PARAMETERS", "0");
+        p.setProperty("AUTO_SENSITIVITY_ANOMALY_PCNT", "0.01");
+        p.setProperty("AUTO_SENSITIVITY_SD", "3.0");
+        p.setProperty("PRE_WINDOW_SIZE", "48");
+        p.setProperty("POST_WINDOW_SIZE", "48");
+        p.setProperty("CONFIDENCE", "0.8");
+        p.setProperty("WINDOW_SIZE", "192");
+        p.setProperty("FILTERING_METHOD", "GAP_RATIO");
+        p.setProperty("FILTERING_PARAM", "0.01");
+        p.setProperty("SIMPLE_THRESHOLD_TYPE", "AdaptiveMaxMinSigmaSensitivity");
+        if (model.equals("NaiveModel")) {
+            p.setProperty("THRESHOLD", "mape#10,mase#15");
+        }
+        if (model.equals("OlympicModel2")) {
+            long quarter = length / 4 * period;
+            p.setProperty("INTERVAL", Long.toString(period));
+            p.setProperty("INTERVAL_UNITS", "SECONDS");
+            p.setProperty("WINDOW_SIZE", Long.toString(quarter));
+            p.setProperty("WINDOW_SIZE_UNITS", "SECONDS");
+            p.setProperty("WINDOW_DISTANCE", Long.toString(quarter));
+            p.setProperty("WINDOW_DISTANCE_UNITS", "SECONDS");
+            p.setProperty("HISTORICAL_WINDOWS", "3");
+            p.setProperty("MODEL_START", Long.toString(START + 3 * quarter));
+        }
+        return p;
+    }
+
+    private static double expected(long time) {
+        return 100 + 30 * Math.sin(2 * Math.PI * time / 86400.0)
+                   + 10 * Math.sin(2 * Math.PI * time / 604800.0);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Times parsing of the csv file and STDIN input formats.
+
+package com.yahoo.egads.benchmark;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.utilities.FileUtils;
+import com.yahoo.egads.utilities.StdinProcessor;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InputBenchmark {
+
+    // Number of points in the series.
+    @Param({"1000", "10000", "100000"})
+    public int length;
+
+    // Seconds between two points.
+    @Param({"60", "3600"})
+    public long period;
+
+    private File csv;
+    private String line;
+    private Properties config = new Properties();
+
+    @Setup
+    public void setup() throws Exception {
+        TimeSeries ts = BenchmarkData.series(length, period);
+        csv = File.createTempFile("egads-benchmark", ".csv");
+        PrintWriter out = new PrintWriter(csv);
+        StringBuilder sb = new StringBuilder("benchmark\t{");
+        out.println("timestamp,value");
+        for (int i = 0; i < ts.size(); i++) {
+            out.println(ts.time(i) + "," + ts.value(i));
+            sb.append(i == 0 ? "(" : ",(").append(ts.time(i)).append(',').append(ts.value(i)).append(')');
+        }
+        out.close();
+        line = sb.append('}').toString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        csv.delete();
+    }
+
+    @Benchmark
+    public ArrayList<TimeSeries> csvFile() throws Exception {
+        return FileUtils.createTimeSeries(csv.getPath(), config);
+    }
+
+    @Benchmark
+    public ArrayList<TimeSeries> stdinLine() throws Exception {
+        return StdinProcessor.createTimeSeries(line, 1);
+    }
+}
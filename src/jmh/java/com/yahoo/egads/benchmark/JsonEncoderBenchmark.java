@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Times the JSON encoding and decoding of a time series and of an anomaly
+// with one interval per 100 points.
+
+package com.yahoo.egads.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.egads.data.Anomaly;
+import com.yahoo.egads.data.JsonEncoder;
+import com.yahoo.egads.data.MetricMeta;
+import com.yahoo.egads.data.TimeSeries;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonEncoderBenchmark {
+
+    // Number of points in the series.
+    @Param({"1000", "10000"})
+    public int length;
+
+    // Seconds between two points.
+    @Param({"60", "3600"})
+    public long period;
+
+    private TimeSeries series;
+    private String seriesJson;
+    private Anomaly anomaly;
+
+    @Setup
+    public void setup() throws Exception {
+        TimeSeries generated = BenchmarkData.series(length, period);
+        series = new TimeSeries();
+        series.meta = new MetricMeta("benchmark");
+        anomaly = new Anomaly("benchmark", series.meta);
+        for (int i = 0; i < generated.size(); i++) {
+            series.append(generated.time(i), generated.value(i));
+            if (i % 100 == 0) {
+                anomaly.addInterval(generated.time(i), generated.value(i));
+            }
+        }
+        seriesJson = JsonEncoder.toJson(series);
+    }
+
+    @Benchmark
+    public String encodeTimeSeries() throws Exception {
+        return JsonEncoder.toJson(series);
+    }
+
+    @Benchmark
+    public TimeSeries decodeTimeSeries() throws Exception {
+        TimeSeries ts = new TimeSeries();
+        JsonEncoder.fromJson(ts, seriesJson);
+        return ts;
+    }
+
+    @Benchmark
+    public String encodeAnomaly() throws Exception {
+        return JsonEncoder.toJson(anomaly);
+    }
+}
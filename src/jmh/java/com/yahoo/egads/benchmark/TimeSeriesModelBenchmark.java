@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Times train() and predict() of every time series model.
+
+package com.yahoo.egads.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.models.tsmm.TimeSeriesModel;
+import com.yahoo.egads.utilities.ModelRegistry;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeSeriesModelBenchmark {
+
+    @Param({"AutoForecastModel", "DoubleExponentialSmoothingModel",
+            "LongTripleExponentialSmoothingModel", "MeanModel",
+            "MovingAverageModel", "MultipleLinearRegressionModel",
+            "NaiveForecastingModel", "NullModel", "OlympicModel",
+            "OlympicModel2", "PolynomialRegressionModel", "RegressionModel",
+            "SeasonalMedianModel", "SimpleExponentialSmoothingModel",
+            "SpectralSmoother", "TripleExponentialSmoothingModel",
+            "WeightedMovingAverageModel"})
+    public String model;
+
+    // Number of points in the series.
+    @Param({"1000", "10000"})
+    public int length;
+
+    // Seconds between two points.
+    @Param({"60", "3600"})
+    public long period;
+
+    private Properties config;
+    private TimeSeries.DataSequence data;
+    private TimeSeriesModel trained;
+
+    @Setup
+    public void setup() throws Exception {
+        config = BenchmarkData.config(model, length, period);
+        data = BenchmarkData.series(length, period).data;
+        trained = create();
+        trained.train(data);
+    }
+
+    @Benchmark
+    public TimeSeriesModel train() throws Exception {
+        TimeSeriesModel m = create();
+        m.train(data);
+        return m;
+    }
+
+    // Includes copying the series, which predict() overwrites.
+    @Benchmark
+    public TimeSeries.DataSequence predict() throws Exception {
+        TimeSeries.DataSequence sequence = BenchmarkData.copy(data);
+        trained.predict(sequence);
+        return sequence;
+    }
+
+    private TimeSeriesModel create() throws Exception {
+        return ModelRegistry.newModel(ModelRegistry.TS_MODELS, model, TimeSeriesModel.class, config);
+    }
+}
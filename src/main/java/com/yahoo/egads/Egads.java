@@ -27,7 +27,7 @@ public class Egads {
     public static void main(String[] args) throws Exception {
 
         if (args.length == 0) {
-            System.err.println("Usage: java Egads config.ini (input [STDIN,CSV])");
+            System.err.println("Usage: java Egads config.ini (input [STDIN,CSV,BINARY,STREAM])");
             System.exit(1);
         }
 
@@ -49,6 +49,10 @@ public class Egads {
         InputProcessor ip = null;
         if (p.getProperty("INPUT") == null || p.getProperty("INPUT").equals("CSV")) {
             ip = new FileInputProcessor(args[1]);
+        } else if (p.getProperty("INPUT").equals("BINARY")) {
+            ip = new BinaryFileInputProcessor(args[1]);
+        } else if (p.getProperty("INPUT").equals("STREAM")) {
+            ip = new StreamingProcessor();
         } else {
             ip = new StdinProcessor();
         }
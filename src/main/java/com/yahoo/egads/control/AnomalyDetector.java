@@ -25,6 +25,9 @@
  *      1. Resetting all the added anomaly detection models via reset()
  *      2. Tuning all the added anomaly detection models on the 'metric' via tune()
  *      3. Performing anomaly detection on the metric according to all the added anomaly detection models via detect()
+ *      4. Tuning and detecting with the AD_MODEL of a config on many metrics at once via 
+ *         detect(metrics, expected, config, threads). Each thread builds a single AnomalyDetector and moves it from 
+ *         metric to metric, so the models are built once per thread.
  *      
  * Details:
  *      1. The time units for interfacing with an AnomalyDetector object is the standard UNIX timestamp; however, AnomalyDetector 
@@ -38,6 +41,8 @@
 package com.yahoo.egads.control;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import com.yahoo.egads.data.Anomaly;
 import com.yahoo.egads.data.Anomaly.IntervalSequence;
@@ -189,4 +194,36 @@ public class AnomalyDetector {
 
         return result;
     }
+
+    // Batch Methods ////////////////////////////////////////////////////////////////////////
+
+    // Tunes the AD_MODEL of 'config' on each of 'metrics' against its expected
+    // values and detects its anomalies, as DetectAnomalyProcessable would one
+    // metric at a time. Returns the anomalies of each metric, in order.
+    public static List<ArrayList<Anomaly>> detect(final List<TimeSeries> metrics,
+                                                  final List<TimeSeries.DataSequence> expected,
+                                                  final Properties config,
+                                                  int threads) throws Exception {
+        if (metrics.size() != expected.size()) {
+            throw new IllegalArgumentException("Expected values are needed for each metric.");
+        }
+
+        return new Batch<AnomalyDetector, ArrayList<Anomaly>>() {
+            @Override
+            AnomalyDetector newWorker() throws Exception {
+                TimeSeries ts = metrics.get(0);
+                AnomalyDetector ad = new AnomalyDetector(ts, ProcessableObjectFactory.period(ts, config));
+                ad.addModel(ProcessableObjectFactory.newAnomalyModel(config));
+                return ad;
+            }
+
+            @Override
+            ArrayList<Anomaly> process(AnomalyDetector ad, int i) throws Exception {
+                TimeSeries ts = metrics.get(i);
+                ad.setMetric(ts, ProcessableObjectFactory.period(ts, config));
+                ad.tune(expected.get(i), null);
+                return ad.detect(ts, expected.get(i));
+            }
+        }.run(metrics.size(), threads);
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Runs the same task over a list of metrics on several threads.
+
+package com.yahoo.egads.control;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Each thread makes one worker (e.g. a ModelAdapter with its models) with newWorker() and then keeps taking the
+ * next metric not yet taken, so the workers are built once per thread rather than once per metric, and a few slow
+ * metrics do not hold up the rest.
+ *
+ * The results come back in the order of the metrics. The first task to fail, in the order they fail, stops the
+ * others, which are interrupted, and its exception is rethrown.
+ */
+abstract class Batch<W, R> {
+
+    // A worker for one thread.
+    abstract W newWorker() throws Exception;
+
+    // The result for metric 'i', using the thread's worker.
+    abstract R process(W worker, int i) throws Exception;
+
+    List<R> run(final int count, int threads) throws Exception {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        }
+        final Object[] results = new Object[count];
+        final AtomicInteger next = new AtomicInteger();
+        threads = Math.min(threads, count);
+
+        Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                W worker = null;
+                int i;
+                while ((i = next.getAndIncrement()) < count) {
+                    if (worker == null) {
+                        worker = newWorker();
+                    }
+                    results[i] = process(worker, i);
+                }
+                return null;
+            }
+        };
+
+        if (threads <= 1) {
+            task.call();
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                // Tasks are awaited as they finish, so a failure is seen as
+                // soon as it happens rather than after the tasks before it.
+                CompletionService<Void> done = new ExecutorCompletionService<Void>(pool);
+                for (int t = 0; t < threads; t++) {
+                    done.submit(task);
+                }
+                for (int t = 0; t < threads; t++) {
+                    try {
+                        done.take().get();
+                    } catch (ExecutionException e) {
+                        next.set(count);
+                        if (e.getCause() instanceof Exception) {
+                            throw (Exception) e.getCause();
+                        }
+                        throw e;
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<R> list = (List<R>) Arrays.asList(results);
+        return new ArrayList<R>(list);
+    }
+}
@@ -13,13 +13,17 @@ import java.util.ArrayList;
 import com.yahoo.egads.data.Anomaly;
 import com.yahoo.egads.data.TimeSeries;
 import com.yahoo.egads.utilities.GUIUtils;
+
+import java.io.PrintStream;
 import java.util.Properties;
 
 public class DetectAnomalyProcessable implements ProcessableObject {
     private ModelAdapter ma;
     private AnomalyDetector ad;
     private Properties config;
+    private PrintStream out;
     private ArrayList<Anomaly> anomalyList;
+    private ModelCache cache;
 
     public ArrayList<Anomaly> getAnomalyList() {
         return anomalyList;
@@ -27,9 +31,15 @@ public class DetectAnomalyProcessable implements ProcessableObject {
 
 
     DetectAnomalyProcessable(ModelAdapter ma, AnomalyDetector ad, Properties config) {
+        this(ma, ad, config, System.out);
+    }
+
+    DetectAnomalyProcessable(ModelAdapter ma, AnomalyDetector ad, Properties config, PrintStream out) {
         this.ma = ma;
         this.ad = ad;
         this.config = config;
+        this.out = out;
+        this.cache = ProcessableObjectFactory.modelCache(config);
         anomalyList = new ArrayList<>();
     }
 
@@ -38,20 +48,36 @@ public class DetectAnomalyProcessable implements ProcessableObject {
         // Resetting the models
         ma.reset();
 
+        // Reusing the models trained on this data by earlier runs
+        if (cache != null) {
+            cache.restore(ma);
+        }
+
         // Training the model with the whole metric
         ma.train();
+        if (cache != null) {
+            cache.save(ma);
+        }
 
         // Finding the expected values
         ArrayList<TimeSeries.DataSequence> list = ma.forecast(
             ma.metric.startTime(), ma.metric.lastTime());
 
         // For each model's prediction in the ModelAdapter
-        for (TimeSeries.DataSequence ds : list) {
+        for (int i = 0; i < list.size(); i++) {
+            TimeSeries.DataSequence ds = list.get(i);
+
             // Reseting the anomaly detectors
             ad.reset();
+            if (cache != null) {
+                cache.restore(ad, ma.models.get(i));
+            }
 
             // Unsupervised tuning of the anomaly detectors
             ad.tune(ds, null);
+            if (cache != null) {
+                cache.save(ad, ma.models.get(i));
+            }
 
             // Detecting anomalies for each anomaly detection model in anomaly detector
             anomalyList = ad.detect(ad.metric, ds);
@@ -65,11 +91,11 @@ public class DetectAnomalyProcessable implements ProcessableObject {
                 GUIUtils.plotResults(ma.metric.data, ds, anomalyList, config);
             } else if (config.getProperty("OUTPUT") != null && config.getProperty("OUTPUT").equals("PLOT")) {
                 for (Anomaly anomaly : anomalyList) {
-                    System.out.print(anomaly.toPlotString());
+                    out.print(anomaly.toPlotString());
                 }
             } else {
                 for (Anomaly anomaly : anomalyList) {
-                    System.out.print(anomaly.toPerlString());
+                    out.print(anomaly.toPerlString());
                 }
             }
         }
@@ -26,11 +26,16 @@
  * can conveniently work with the logical index instead of UNIX timestamps. The conversion is:
  * 
  * logical_index = (UNIX_timestamp - firstTimeStamp) div period UNIX_timestamp = logical_index * period + firstTimeStamp
+ * 
+ * 2. forecast(metrics, config, threads) trains and forecasts the TS_MODEL of the config on many metrics at once. Each
+ * thread builds a single ModelAdapter and moves it from metric to metric, so the models are built once per thread.
  */
 
 package com.yahoo.egads.control;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import com.yahoo.egads.data.TimeSeries;
 import com.yahoo.egads.models.tsmm.TimeSeriesModel;
@@ -203,4 +208,31 @@ public class ModelAdapter { // Encapsulates a metric and the models operating on
         }
         return result;
     }
+
+    // Batch Methods ////////////////////////////////////////////////////////////////////////
+
+    // Trains the TS_MODEL of 'config' on each of 'metrics' and forecasts it over
+    // the metric, as the adapters of ProcessableObjectFactory would one metric
+    // at a time. Returns the forecasts of each metric, in order.
+    public static List<ArrayList<TimeSeries.DataSequence>> forecast(final List<TimeSeries> metrics,
+                                                                    final Properties config,
+                                                                    int threads) throws Exception {
+        return new Batch<ModelAdapter, ArrayList<TimeSeries.DataSequence>>() {
+            @Override
+            ModelAdapter newWorker() throws Exception {
+                TimeSeries ts = metrics.get(0);
+                ModelAdapter ma = new ModelAdapter(ts, ProcessableObjectFactory.period(ts, config));
+                ma.addModel(ProcessableObjectFactory.newTSModel(config));
+                return ma;
+            }
+
+            @Override
+            ArrayList<TimeSeries.DataSequence> process(ModelAdapter ma, int i) throws Exception {
+                TimeSeries ts = metrics.get(i);
+                ma.setMetric(ts, ProcessableObjectFactory.period(ts, config));
+                ma.train();
+                return ma.forecast(ts.startTime(), ts.lastTime());
+            }
+        }.run(metrics.size(), threads);
+    }
 }
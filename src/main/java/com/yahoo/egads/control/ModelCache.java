@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Keeps trained time-series models and tuned anomaly detection models so that
+// later runs over the same metric can skip train() and tune().
+//
+// Models are keyed by the metric name, the model class and a SHA-256 digest of
+// the config, and held in an LRU of at most MODEL_CACHE_SIZE models. When
+// MODEL_STORE is set, every model is also written to a FileModelStore in that
+// directory, from which models evicted from the LRU or kept by an earlier
+// process are read back.
+//
+// Each model is stored with a fingerprint of the data it was trained on. It is
+// reused for a series that starts with exactly that data and whose last point
+// is at most MODEL_STALENESS seconds after the last trained point; the newer
+// points are passed to the time-series model's update(). Otherwise the model
+// is trained again and replaces the stored one. Anomaly detection models are
+// only reused for exactly the data they were tuned on: their thresholds depend
+// on the errors of every forecast point, so once the time-series model has
+// been updated with newer points they are tuned again and replace the stored
+// ones. Models that cannot be serialized are not kept and are trained on every
+// run.
+//
+// Models that are BinaryModels are copied and stored as their fitted state by
+// ModelCodec, and read back into new models built from the config, which is
+// much faster to load than their Java serialization.
+
+package com.yahoo.egads.control;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.json.JSONObject;
+import org.json.JSONStringer;
+
+import com.yahoo.egads.data.BinaryModel;
+import com.yahoo.egads.data.FileModelStore;
+import com.yahoo.egads.data.Model;
+import com.yahoo.egads.data.ModelCodec;
+import com.yahoo.egads.data.ModelStore;
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.models.adm.AnomalyDetectionModel;
+import com.yahoo.egads.models.tsmm.TimeSeriesModel;
+
+public class ModelCache {
+    private int capacity = 100;
+    private long staleness = 0;
+    private String configHash;
+    private Properties config;
+    private ModelStore store = null;
+    private LinkedHashMap<String, Entry> models;
+
+    public ModelCache(Properties config) {
+        if (config.getProperty("MODEL_CACHE_SIZE") != null) {
+            capacity = new Integer(config.getProperty("MODEL_CACHE_SIZE"));
+        }
+        if (config.getProperty("MODEL_STALENESS") != null) {
+            staleness = new Long(config.getProperty("MODEL_STALENESS"));
+        }
+        if (capacity < 1 || staleness < 0) {
+            throw new IllegalArgumentException("MODEL_CACHE_SIZE must be positive and MODEL_STALENESS not negative");
+        }
+        if (config.getProperty("MODEL_STORE") != null) {
+            store = new FileModelStore(config.getProperty("MODEL_STORE"), config);
+        }
+        this.config = config;
+        configHash = hash(config);
+        models = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Replaces the models of 'ma' trained on the data of its metric by their
+    // stored copies, and marks them as trained.
+    public void restore(ModelAdapter ma) throws Exception {
+        for (int i = 0; i < ma.models.size(); i++) {
+            if (ma.isTrained.get(i)) {
+                continue;
+            }
+            Entry entry = retrieve(tag(ma.metric, ma.models.get(i), null), ma.metric.data, false);
+            if (entry != null) {
+                TimeSeriesModel model = (TimeSeriesModel) copy(entry.model);
+                ma.models.set(i, model);
+                ma.isTrained.set(i, true);
+                if (entry.size < ma.metric.size()) {
+                    TimeSeries.DataSequence newData = new TimeSeries.DataSequence();
+                    for (int j = entry.size; j < ma.metric.size(); j++) {
+                        newData.add(ma.metric.data.get(j));
+                    }
+                    newData.setLogicalIndices(ma.firstTimeStamp, ma.period);
+                    model.update(newData);
+                }
+            }
+        }
+    }
+
+    // Same as above for the anomaly detection models of 'ad', tuned on the
+    // forecast of 'tsModel' over all of the data of its metric.
+    public void restore(AnomalyDetector ad, TimeSeriesModel tsModel) throws Exception {
+        for (int i = 0; i < ad.models.size(); i++) {
+            if (ad.isTuned.get(i)) {
+                continue;
+            }
+            Entry entry = retrieve(tag(ad.metric, ad.models.get(i), tsModel), ad.metric.data, true);
+            if (entry != null) {
+                ad.models.set(i, (AnomalyDetectionModel) copy(entry.model));
+                ad.isTuned.set(i, true);
+            }
+        }
+    }
+
+    // Stores the models of 'ma' that were trained rather than restored.
+    public void save(ModelAdapter ma) throws Exception {
+        for (TimeSeriesModel model : ma.models) {
+            save(tag(ma.metric, model, null), model, ma.metric.data, false);
+        }
+    }
+
+    // Stores the models of 'ad' that were tuned rather than restored,
+    // replacing those tuned on fewer points.
+    public void save(AnomalyDetector ad, TimeSeriesModel tsModel) throws Exception {
+        for (AnomalyDetectionModel model : ad.models) {
+            save(tag(ad.metric, model, tsModel), model, ad.metric.data, true);
+        }
+    }
+
+    private void save(String tag, Model model, TimeSeries.DataSequence data, boolean whole) throws Exception {
+        if (retrieve(tag, data, whole) != null) {
+            return;
+        }
+        Entry entry;
+        try {
+            entry = new Entry(copy(model), data);
+        } catch (NotSerializableException e) {
+            return;
+        }
+        synchronized (this) {
+            models.put(tag, entry);
+        }
+        if (store != null) {
+            store.storeModel(tag, entry);
+        }
+    }
+
+    // The entry for 'tag' if it may be used for 'data', and if 'whole', only
+    // if it was made from all of it.
+    private Entry retrieve(String tag, TimeSeries.DataSequence data, boolean whole) {
+        Entry entry;
+        synchronized (this) {
+            entry = models.get(tag);
+        }
+        if (entry == null && store != null) {
+            entry = (Entry) store.retrieveModel(tag);
+            if (entry != null) {
+                synchronized (this) {
+                    models.put(tag, entry);
+                }
+            }
+        }
+        if (entry == null || entry.size > data.size() || entry.size == 0 || (whole && entry.size < data.size())
+            || data.time(0) != entry.firstTime || data.time(entry.size - 1) != entry.lastTime
+            || data.time(data.size() - 1) - entry.lastTime > staleness
+            || checksum(data, entry.size) != entry.checksum) {
+            return null;
+        }
+        return entry;
+    }
+
+    private String tag(TimeSeries metric, Model model, TimeSeriesModel tsModel) {
+        String tag = metric.meta.name + "-" + model.getClass().getSimpleName();
+        if (tsModel != null) {
+            tag += "-" + tsModel.getClass().getSimpleName();
+        }
+        return tag + "-" + configHash;
+    }
+
+    // A SHA-256 digest of the sorted settings of the config, except for those
+    // of the cache itself, so that models built from different configs do not
+    // share a tag by a collision.
+    private static String hash(Properties config) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String key : new TreeSet<String>(config.stringPropertyNames())) {
+            if (!key.startsWith("MODEL_STORE") && !key.startsWith("MODEL_CACHE") && !key.equals("MODEL_STALENESS")) {
+                // Prefixed by their lengths, so that no two configs read the same.
+                String value = config.getProperty(key);
+                digest.update((key.length() + ":" + key + value.length() + ":" + value).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // A hash of the first 'size' points of the sequence.
+    private static long checksum(TimeSeries.DataSequence data, int size) {
+        long checksum = 17;
+        for (int i = 0; i < size; i++) {
+            checksum = 31 * (31 * checksum + data.time(i)) + Float.floatToIntBits(data.value(i));
+        }
+        return checksum;
+    }
+
+    // A deep copy, so that the cached model is never changed by its users.
+    private Model copy(Model model) throws Exception {
+        return ModelCodec.copy(model, config);
+    }
+
+    // A stored model with the fingerprint of its training data. Public, with
+    // a constructor taking the config, so that ModelCodec can read it back.
+    public static class Entry implements BinaryModel {
+        private static final long serialVersionUID = 1L;
+        Model model;
+        int size;
+        long firstTime;
+        long lastTime;
+        long checksum;
+        // The config from which the model is built when it is read.
+        private transient Properties config;
+
+        public Entry(Properties config) {
+            this.config = config;
+        }
+
+        Entry(Model model, TimeSeries.DataSequence data) {
+            this.model = model;
+            this.size = data.size();
+            if (size > 0) {
+                this.firstTime = data.time(0);
+                this.lastTime = data.time(size - 1);
+            }
+            this.checksum = checksum(data, size);
+        }
+
+        public void reset() {
+            model.reset();
+        }
+
+        public void writeState(DataOutput out) throws IOException {
+            out.writeInt(size);
+            out.writeLong(firstTime);
+            out.writeLong(lastTime);
+            out.writeLong(checksum);
+            ModelCodec.writeModel(out, model);
+        }
+
+        public void readState(DataInput in) throws IOException {
+            size = in.readInt();
+            firstTime = in.readLong();
+            lastTime = in.readLong();
+            checksum = in.readLong();
+            model = ModelCodec.readModel(in, config);
+        }
+
+        public String getModelName() {
+            return model.getModelName();
+        }
+
+        public String getModelType() {
+            return model.getModelType();
+        }
+
+        public void toJson(JSONStringer json_out) throws Exception {
+            model.toJson(json_out);
+        }
+
+        public void fromJson(JSONObject json_obj) throws Exception {
+            model.fromJson(json_obj);
+        }
+    }
+}
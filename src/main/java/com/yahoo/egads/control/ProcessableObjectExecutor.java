@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Runs the ProcessableObjects of several metrics concurrently.
+
+package com.yahoo.egads.control;
+
+import com.yahoo.egads.data.TimeSeries;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes one ProcessableObject per metric on a fixed pool of threads.
+ *
+ * The input processors hand metrics over through submit() as they are parsed.
+ * At most 'QUEUE_SIZE' metrics are in flight at any time; once that many are
+ * queued or running, submit() blocks until the oldest one is done, which
+ * throttles the parser to the speed of the detection.
+ *
+ * Whatever a ProcessableObject prints is buffered and written to the output
+ * in submission order, so the output is identical to a serial run no matter
+ * how the threads are scheduled.
+ *
+ * Properties:
+ *      1. 'THREADS' - the number of worker threads. 1 (the default) processes every
+ *         metric on the calling thread, exactly as before.
+ *      2. 'QUEUE_SIZE' - the maximum number of metrics in flight. Defaults to 2 * THREADS.
+ */
+public class ProcessableObjectExecutor {
+
+    private final Properties config;
+    private final PrintStream out;
+    private final int threads;
+    private final int queueSize;
+    private final ExecutorService pool;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+    public ProcessableObjectExecutor(Properties config) {
+        this(config, System.out);
+    }
+
+    public ProcessableObjectExecutor(Properties config, PrintStream out) {
+        this.config = config;
+        this.out = out;
+
+        int n = 1;
+        if (config.getProperty("THREADS") != null) {
+            n = new Integer(config.getProperty("THREADS"));
+        }
+        if (n < 1) {
+            throw new IllegalArgumentException("THREADS must be at least 1");
+        }
+        this.threads = n;
+
+        int q = 2 * n;
+        if (config.getProperty("QUEUE_SIZE") != null) {
+            q = new Integer(config.getProperty("QUEUE_SIZE"));
+        }
+        if (q < 1) {
+            throw new IllegalArgumentException("QUEUE_SIZE must be at least 1");
+        }
+        this.queueSize = q;
+
+        this.pool = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Processes the metric, possibly asynchronously. Blocks while the queue is full.
+    public void submit(final TimeSeries ts) throws Exception {
+        if (pool == null) {
+            ProcessableObjectFactory.create(ts, config, out).process();
+            return;
+        }
+
+        while (pending.size() >= queueSize) {
+            flushNext();
+        }
+
+        pending.add(pool.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                PrintStream ps = new PrintStream(buffer);
+                ProcessableObjectFactory.create(ts, config, ps).process();
+                ps.flush();
+                return buffer.toByteArray();
+            }
+        }));
+
+        // Write out whatever is already done without waiting.
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            flushNext();
+        }
+    }
+
+    // Waits for all submitted metrics, writes their output and stops the threads.
+    public void finish() throws Exception {
+        try {
+            while (!pending.isEmpty()) {
+                flushNext();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    // Stops the threads, dropping anything that has not been written yet.
+    public void shutdown() {
+        for (Future<byte[]> f : pending) {
+            f.cancel(true);
+        }
+        pending.clear();
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private void flushNext() throws Exception {
+        Future<byte[]> head = pending.peek();
+        byte[] result;
+        try {
+            result = head.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        pending.poll();
+        out.write(result);
+        out.flush();
+    }
+}
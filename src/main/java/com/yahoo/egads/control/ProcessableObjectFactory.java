@@ -9,86 +9,106 @@
 package com.yahoo.egads.control;
 
 import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.utilities.ModelRegistry;
 
-import java.lang.reflect.Constructor;
+import java.io.PrintStream;
 import java.util.Properties;
 
 import com.yahoo.egads.models.adm.*;
 import com.yahoo.egads.models.tsmm.*;
 
 public class ProcessableObjectFactory {
+    private static ModelCache modelCache = null;
+    private static Properties modelCacheConfig = null;
 
     public static ProcessableObject create(TimeSeries ts, Properties config) {
+        return create(ts, config, System.out);
+    }
+
+    // Same as above, but any results the object prints go to 'out'.
+    public static ProcessableObject create(TimeSeries ts, Properties config, PrintStream out) {
         if (config.getProperty("OP_TYPE") == null) {
             throw new IllegalArgumentException("OP_TYPE is NULL");
         }
         if (config.getProperty("OP_TYPE").equals("DETECT_ANOMALY")) {
             ModelAdapter ma = ProcessableObjectFactory.buildTSModel(ts, config);
             AnomalyDetector ad = ProcessableObjectFactory.buildAnomalyModel(ts, config);
-            return (new DetectAnomalyProcessable(ma, ad, config));
+            return (new DetectAnomalyProcessable(ma, ad, config, out));
         } else if (config.getProperty("OP_TYPE").equals("UPDATE_MODEL")) {
             ModelAdapter ma = ProcessableObjectFactory.buildTSModel(ts, config);
-            return (new UpdateModelProcessable(ma, ts.data, config));
+            return (new UpdateModelProcessable(ma, config));
         } else if (config.getProperty("OP_TYPE").equals("TRANSFORM_INPUT")) {
             ModelAdapter ma = ProcessableObjectFactory.buildTSModel(ts, config);
-            return (new TransformInputProcessable(ma, config));
+            return (new TransformInputProcessable(ma, config, out));
         }
         // Should not be here.
         System.err.println("Unknown OP_TYPE, returning UPDATE_MODEL ProcessableObject");
         ModelAdapter ma = ProcessableObjectFactory.buildTSModel(ts, config);
-        return (new UpdateModelProcessable(ma, ts.data, config));
+        return (new UpdateModelProcessable(ma, config));
+    }
+
+    // The cache of trained models for the config, or null if neither
+    // MODEL_STORE nor MODEL_CACHE_SIZE is set. Objects created with equal
+    // configs share the same cache.
+    static synchronized ModelCache modelCache(Properties config) {
+        if (config.getProperty("MODEL_STORE") == null && config.getProperty("MODEL_CACHE_SIZE") == null) {
+            return null;
+        }
+        if (modelCache == null || !config.equals(modelCacheConfig)) {
+            modelCache = new ModelCache(config);
+            modelCacheConfig = (Properties) config.clone();
+        }
+        return modelCache;
     }
 
-    private static ModelAdapter buildTSModel(TimeSeries ts, Properties config) {
+    static ModelAdapter buildTSModel(TimeSeries ts, Properties config) {
         ModelAdapter ma = null;
         try {
-            Long period = (long) -1;
-            if (config.getProperty("PERIOD") != null) {
-              period = new Long(config.getProperty("PERIOD"));
-            }
-            if (period == 0) {
-              if (ts.size() > 1) {
-                period = ts.data.get(1).time - ts.data.get(0).time;
-              } else {
-                period = (long) 1;
-              }
-            }
-            ma = new ModelAdapter(ts, period);
-            String modelType = config.getProperty("TS_MODEL");
-
-            Class<?> tsModelClass = Class.forName("com.yahoo.egads.models.tsmm." + modelType);
-            Constructor<?> constructor = tsModelClass.getConstructor(Properties.class);
-            TimeSeriesAbstractModel m = (TimeSeriesAbstractModel) constructor.newInstance(config);
-            ma.addModel(m);
+            ma = new ModelAdapter(ts, period(ts, config));
+            ma.addModel(newTSModel(config));
         } catch (Exception e) {
             e.printStackTrace();
         }
         return ma;
     }
 
-    private static AnomalyDetector buildAnomalyModel(TimeSeries ts, Properties config) {
+    static AnomalyDetector buildAnomalyModel(TimeSeries ts, Properties config) {
         AnomalyDetector ad = null;
         try {
-            Long period = (long) -1;
-            if (config.getProperty("PERIOD") != null) {
-              period = new Long(config.getProperty("PERIOD"));
-            }
-            if (period == 0) {
-              if (ts.size() > 1) {
-                period = ts.data.get(1).time - ts.data.get(0).time;
-              } else {
-                period = (long) 1;
-              }
-            }
-            ad = new AnomalyDetector(ts, period);
-            String modelType = config.getProperty("AD_MODEL");
-
-            Class<?> tsModelClass = Class.forName("com.yahoo.egads.models.adm." + modelType);
-            Constructor<?> constructor = tsModelClass.getConstructor(Properties.class);
-            ad.addModel((AnomalyDetectionAbstractModel) constructor.newInstance(config));
+            ad = new AnomalyDetector(ts, period(ts, config));
+            ad.addModel(newAnomalyModel(config));
         } catch (Exception e) {
             e.printStackTrace();
         }
         return ad;
     }
+
+    // The PERIOD of the config, or the spacing of the first two points of
+    // 'ts' if it is 0.
+    static long period(TimeSeries ts, Properties config) {
+        Long period = (long) -1;
+        if (config.getProperty("PERIOD") != null) {
+          period = new Long(config.getProperty("PERIOD"));
+        }
+        if (period == 0) {
+          if (ts.size() > 1) {
+            period = ts.data.time(1) - ts.data.time(0);
+          } else {
+            period = (long) 1;
+          }
+        }
+        return period;
+    }
+
+    // A new instance of the TS_MODEL of the config.
+    static TimeSeriesAbstractModel newTSModel(Properties config) throws Exception {
+        return ModelRegistry.newModel(ModelRegistry.TS_MODELS, config.getProperty("TS_MODEL"),
+                                      TimeSeriesAbstractModel.class, config);
+    }
+
+    // A new instance of the AD_MODEL of the config.
+    static AnomalyDetectionAbstractModel newAnomalyModel(Properties config) throws Exception {
+        return ModelRegistry.newModel(ModelRegistry.AD_MODELS, config.getProperty("AD_MODEL"),
+                                      AnomalyDetectionAbstractModel.class, config);
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Keeps the models of one metric in memory and detects anomalies on its
+// points as they arrive.
+//
+// The first STREAM_TRAIN_SIZE points train the time-series model and tune the
+// anomaly detection model, as DetectAnomalyProcessable does for a whole series.
+// Every later point is forecast one step ahead from the state of the model,
+// handed to detect() as a one point series against that forecast and then
+// passed to the time-series model's update(). The anomaly detection model is
+// tuned again every STREAM_RETUNE points on the last STREAM_WINDOW points and
+// their forecasts. Once the time-series model holds twice STREAM_WINDOW
+// points, it is trained again on the last STREAM_WINDOW, so that its history
+// does not grow with the stream. Only models that can forecast the point
+// after their history are accepted.
+
+package com.yahoo.egads.control;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import com.yahoo.egads.data.Anomaly;
+import com.yahoo.egads.data.ColumnarDataSequence;
+import com.yahoo.egads.data.TimeSeries;
+
+public class StreamingDetector {
+    // The last points of the metric.
+    private TimeSeries metric;
+    // The points the time-series model forecast once trained, and their
+    // forecasts, index for index, on which the anomaly detection model is tuned.
+    private TimeSeries observed;
+    private TimeSeries.DataSequence forecasts;
+    private Properties config;
+    private ModelAdapter ma = null;
+    private AnomalyDetector ad = null;
+    // The points the time-series model was trained and updated on.
+    private int modelSize = 0;
+    private int trainSize = 100;
+    private int windowSize = 10000;
+    private int retune;
+    // The points forecast since the anomaly detection model was last tuned.
+    private int sinceTuned = 0;
+    private long lastTime = Long.MIN_VALUE;
+
+    public StreamingDetector(String name, Properties config) throws Exception {
+        this.config = config;
+        this.metric = new TimeSeries();
+        this.metric.meta.name = name;
+        this.metric.meta.fileName = name;
+        if (config.getProperty("STREAM_TRAIN_SIZE") != null) {
+            trainSize = new Integer(config.getProperty("STREAM_TRAIN_SIZE"));
+        }
+        if (config.getProperty("STREAM_WINDOW") != null) {
+            windowSize = new Integer(config.getProperty("STREAM_WINDOW"));
+        }
+        retune = trainSize;
+        if (config.getProperty("STREAM_RETUNE") != null) {
+            retune = new Integer(config.getProperty("STREAM_RETUNE"));
+        }
+        if (trainSize < 2 || windowSize < trainSize) {
+            throw new IllegalArgumentException("STREAM_TRAIN_SIZE must be at least 2 and at most STREAM_WINDOW");
+        }
+        if (retune < 1) {
+            throw new IllegalArgumentException("STREAM_RETUNE must be at least 1");
+        }
+        if (!ProcessableObjectFactory.newTSModel(config).canForecastNext()) {
+            throw new IllegalArgumentException(config.getProperty("TS_MODEL")
+                + " cannot forecast the next point of a stream");
+        }
+    }
+
+    // Adds the next point of the metric and writes any anomaly found on it to 'out'.
+    public ArrayList<Anomaly> add(long time, float value, PrintStream out) throws Exception {
+        if (time <= lastTime) {
+            throw new IllegalArgumentException("Point at " + time + " is not after the last point of "
+                + metric.meta.name + " at " + lastTime);
+        }
+        lastTime = time;
+
+        ArrayList<Anomaly> anomalyList = new ArrayList<Anomaly>();
+        if (ma == null) {
+            metric.append(time, value);
+            if (metric.size() > 2 * windowSize) {
+                metric.data.subList(0, metric.size() - windowSize).clear();
+            }
+            if (metric.size() >= trainSize) {
+                train();
+            }
+            return anomalyList;
+        }
+
+        TimeSeries point = new TimeSeries();
+        point.meta = metric.meta;
+        point.append(time, value);
+
+        // Forecast the point before the model sees it.
+        float expected = ma.models.get(0).forecastNext(time);
+        ma.update(point.data);
+        metric.append(time, value);
+        if (metric.size() > 2 * windowSize) {
+            metric.data.subList(0, metric.size() - windowSize).clear();
+        }
+        if (++modelSize >= 2 * windowSize) {
+            retrain();
+        }
+        if (Float.isNaN(expected)) {
+            // The model has no forecast there, so the point is not checked.
+            return anomalyList;
+        }
+
+        observed.append(time, value);
+        forecasts.add(new TimeSeries.Entry(time, expected));
+        if (observed.size() > 2 * windowSize) {
+            trim();
+        }
+
+        anomalyList = ad.detect(point, new TimeSeries.DataSequence(time, expected));
+        for (Anomaly anomaly : anomalyList) {
+            if (config.getProperty("OUTPUT") != null && config.getProperty("OUTPUT").equals("PLOT")) {
+                out.print(anomaly.toPlotString());
+            } else {
+                out.print(anomaly.toPerlString());
+            }
+        }
+        out.flush();
+
+        if (++sinceTuned >= retune) {
+            trim();
+            ad.reset();
+            ad.tune(forecasts, null);
+            sinceTuned = 0;
+        }
+        return anomalyList;
+    }
+
+    // Trains the time-series model on the buffered points and tunes the
+    // anomaly detection model on them and their expected values. The models
+    // are only kept once both succeed, so that a model which needs more
+    // points than STREAM_TRAIN_SIZE is trained again with the next point.
+    private void train() {
+        try {
+            ModelAdapter newMa = trainModel(0);
+
+            // The forecasts at the points themselves, rather than on the
+            // PERIOD grid of ModelAdapter.forecast(), which need not match them.
+            ColumnarDataSequence expected = new ColumnarDataSequence();
+            for (int i = 0; i < metric.size(); i++) {
+                expected.append(metric.time(i), Float.NaN);
+            }
+            expected.setLogicalIndices(newMa.firstTimeStamp, newMa.period);
+            newMa.models.get(0).predict(expected);
+            TimeSeries newObserved = new TimeSeries();
+            newObserved.meta = metric.meta;
+            TimeSeries.DataSequence newForecasts = new TimeSeries.DataSequence();
+            for (int i = 0; i < expected.size(); i++) {
+                if (!Float.isNaN(expected.value(i))) {
+                    newObserved.append(metric.time(i), metric.value(i));
+                    newForecasts.add(new TimeSeries.Entry(metric.time(i), expected.value(i)));
+                }
+            }
+
+            AnomalyDetector newAd = ProcessableObjectFactory.buildAnomalyModel(newObserved, config);
+            newAd.tune(newForecasts, null);
+            ma = newMa;
+            modelSize = metric.size();
+            ad = newAd;
+            observed = newObserved;
+            forecasts = newForecasts;
+        } catch (Exception e) {
+            // Keep buffering.
+        }
+    }
+
+    // Trains the time-series model on the last STREAM_WINDOW points alone.
+    // The anomaly detection model is kept.
+    private void retrain() {
+        try {
+            int from = Math.max(0, metric.size() - windowSize);
+            ModelAdapter newMa = trainModel(from);
+            ma = newMa;
+            modelSize = metric.size() - from;
+        } catch (Exception e) {
+            // Keep updating the current model until it can be trained.
+        }
+    }
+
+    // A time-series model trained on the buffered points from 'from' on. The
+    // model keeps the sequence it is trained on, which must not follow the
+    // buffer.
+    private ModelAdapter trainModel(int from) throws Exception {
+        TimeSeries history = new TimeSeries();
+        history.meta = metric.meta;
+        ColumnarDataSequence data = new ColumnarDataSequence(metric.size() - from);
+        for (int i = from; i < metric.size(); i++) {
+            data.append(metric.time(i), metric.value(i));
+        }
+        history.data = data;
+        ModelAdapter newMa = ProcessableObjectFactory.buildTSModel(history, config);
+        newMa.train();
+        return newMa;
+    }
+
+    // Keeps the last STREAM_WINDOW checked points and their forecasts.
+    private void trim() {
+        int drop = observed.size() - windowSize;
+        if (drop > 0) {
+            observed.data.subList(0, drop).clear();
+            forecasts.subList(0, drop).clear();
+        }
+    }
+}
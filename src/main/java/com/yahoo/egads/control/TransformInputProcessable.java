@@ -10,12 +10,15 @@ import java.util.ArrayList;
 
 import com.yahoo.egads.data.TimeSeries;
 
+import java.io.PrintStream;
 import java.util.List;
 import java.util.Properties;
 
 public class TransformInputProcessable implements ProcessableObject {
     private ModelAdapter ma;
     private Properties config;
+    private PrintStream out;
+    private ModelCache cache;
     private List<TimeSeries.DataSequence> forecastDatapointList;
 
     public List<TimeSeries.DataSequence> getForecastDatapointList() {
@@ -23,8 +26,14 @@ public class TransformInputProcessable implements ProcessableObject {
     }
 
     TransformInputProcessable(ModelAdapter ma, Properties config) {
+        this(ma, config, System.out);
+    }
+
+    TransformInputProcessable(ModelAdapter ma, Properties config, PrintStream out) {
         this.ma = ma;
         this.config = config;
+        this.out = out;
+        this.cache = ProcessableObjectFactory.modelCache(config);
     }
 
     public void process() throws Exception {
@@ -32,8 +41,16 @@ public class TransformInputProcessable implements ProcessableObject {
         // Reseting the models
         ma.reset();
 
+        // Reusing the models trained on this data by earlier runs
+        if (cache != null) {
+            cache.restore(ma);
+        }
+
         // Training the model with the whole metric
         ma.train();
+        if (cache != null) {
+            cache.save(ma);
+        }
 
         // Finding the expected values
         forecastDatapointList = ma.forecast(ma.metric.startTime(), ma.metric.lastTime());
@@ -43,11 +60,9 @@ public class TransformInputProcessable implements ProcessableObject {
         int i = 0;
         // For each model's prediction in the ModelAdapter
         for (TimeSeries.DataSequence ds : forecastDatapointList) {
-            int j = 0;
-            for (TimeSeries.Entry e : ds) {
-                System.out.println(e.time + "," + ma.metric.meta.name + "," + ma.metric.meta.fileName + ","
-                                   + modelNames[i] + "," + e.value + "," + ma.metric.data.get(j).value + ",0");
-                j++;
+            for (int j = 0; j < ds.size(); j++) {
+                out.println(ds.time(j) + "," + ma.metric.meta.name + "," + ma.metric.meta.fileName + ","
+                                   + modelNames[i] + "," + ds.value(j) + "," + ma.metric.data.value(j) + ",0");
             }
             i++;
         }
@@ -5,27 +5,36 @@
  */
 
 // A template for updateing the model given the data and the model config.
+//
+// Models kept by the model cache for an older part of the series are updated
+// with its newer points; the others are trained on the whole series. The
+// models then hold every point of the series, which is not passed to update()
+// again.
 
 package com.yahoo.egads.control;
 
-import com.yahoo.egads.data.TimeSeries;
 import java.util.Properties;
 
 public class UpdateModelProcessable implements ProcessableObject {
 
     private ModelAdapter ma;
-    private TimeSeries.DataSequence newData;
     private Properties config;
+    private ModelCache cache;
 
-    UpdateModelProcessable(ModelAdapter ma, TimeSeries.DataSequence newData, Properties config) {
+    UpdateModelProcessable(ModelAdapter ma, Properties config) {
         this.ma = ma;
-        this.newData = newData;
         this.config = config;
+        this.cache = ProcessableObjectFactory.modelCache(config);
     }
 
     public void process() throws Exception {
+        if (cache != null) {
+            cache.restore(this.ma);
+        }
         this.ma.train();
-        this.ma.update(this.newData);
+        if (cache != null) {
+            cache.save(this.ma);
+        }
     }
 
     public Object result() throws Exception {
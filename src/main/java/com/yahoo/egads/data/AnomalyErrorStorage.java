@@ -7,11 +7,17 @@
 package com.yahoo.egads.data;
 
 import com.yahoo.egads.data.TimeSeries.DataSequence;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
 import java.util.Map;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 
-public class AnomalyErrorStorage {
+public class AnomalyErrorStorage implements Serializable {
 
     // Denominator used in the MASE error metric.
     protected float maseDenom;
@@ -29,52 +35,99 @@ public class AnomalyErrorStorage {
         return indexToError;
     }
     
+    // The error metrics computed for every point, in the order of their rows
+    // in an error matrix and of the errors returned by computeErrorMetrics.
+    public enum ErrorMetric {
+        MAPEE, MAE, SMAPE, MAPE, MASE;
+
+        // The name of the metric in THRESHOLD.
+        public String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    // Number of error metrics.
+    public static final int NUM_METRICS = ErrorMetric.values().length;
+
+    // The error indices, the same for every storage.
+    private static final Map<String, Integer> ERROR_TO_INDEX;
+    private static final Map<Integer, String> INDEX_TO_ERROR;
+    static {
+        Map<String, Integer> errorToIndex = new HashMap<String, Integer>();
+        Map<Integer, String> indexToError = new HashMap<Integer, String>();
+        for (ErrorMetric metric : ErrorMetric.values()) {
+            errorToIndex.put(metric.key(), metric.ordinal());
+            indexToError.put(metric.ordinal(), metric.key());
+        }
+        ERROR_TO_INDEX = Collections.unmodifiableMap(errorToIndex);
+        INDEX_TO_ERROR = Collections.unmodifiableMap(indexToError);
+    }
+
     // Force the user to define this constructor that acts as a
     // factory method.
     public AnomalyErrorStorage() {
         // Init error indicies that are filled in computeErrorMetrics method.
-        errorToIndex = new HashMap<String, Integer>();
-        errorToIndex.put("mapee", 0);
-        errorToIndex.put("mae", 1);
-        errorToIndex.put("smape", 2);
-        errorToIndex.put("mape", 3);
-        errorToIndex.put("mase", 4);
-        indexToError = new HashMap<Integer, String>();
-        indexToError.put(0, "mapee");
-        indexToError.put(1, "mae");
-        indexToError.put(2, "smape");
-        indexToError.put(3, "mape");
-        indexToError.put(4, "mase");
+        errorToIndex = ERROR_TO_INDEX;
+        indexToError = INDEX_TO_ERROR;
     }
     
-    // Initializes all anomaly errors.
-    public HashMap<String, ArrayList<Float>> initAnomalyErrors(DataSequence observedSeries, DataSequence expectedSeries) {        
+    // Forgets the MASE denominator accumulated by initErrorMatrix().
+    public void reset() {
+        maseDenom = 0;
+        isInit = false;
+    }
+
+    // Writes the MASE denominator, for the models that are BinaryModels.
+    public void writeState(DataOutput out) throws IOException {
+        out.writeBoolean(isInit);
+        out.writeFloat(maseDenom);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        isInit = in.readBoolean();
+        maseDenom = in.readFloat();
+    }
+
+    // Initializes all anomaly errors, with one row per ErrorMetric and one
+    // column per point.
+    public float[][] initErrorMatrix(DataSequence observedSeries, DataSequence expectedSeries) {
         int n = observedSeries.size();
         
         // init MASE.
         for (int i = 1; i < n; i++) {
-            maseDenom += Math.abs(observedSeries.get(i).value - observedSeries.get(i - 1).value);
+            maseDenom += Math.abs(observedSeries.value(i) - observedSeries.value(i - 1));
         }
         maseDenom = maseDenom / (n - 1);
-        HashMap<String, ArrayList<Float>> allErrors = new HashMap<String, ArrayList<Float>>();
+        float[][] allErrors = new float[NUM_METRICS][n];
+        float[] errors = new float[NUM_METRICS];
         
         for (int i = 0; i < n; i++) {
-            Float[] errors = computeErrorMetrics(expectedSeries.get(i).value, observedSeries.get(i).value);
-            for (int j = 0; j < errors.length; j++) {
-                if (!allErrors.containsKey(indexToError.get(j))) {
-                    allErrors.put(indexToError.get(j), new ArrayList<Float>());
-                }
-                ArrayList<Float> tmp = allErrors.get(indexToError.get(j));
-                tmp.add(errors[j]);
-                allErrors.put(indexToError.get(j), tmp);
-            }            
+            computeErrorMetrics(expectedSeries.value(i), observedSeries.value(i), errors);
+            for (int j = 0; j < NUM_METRICS; j++) {
+                allErrors[j][i] = errors[j];
+            }
         }
         isInit = true;
         return allErrors;
     }
+
+    // Same as above, as a list of errors per metric name.
+    public HashMap<String, ArrayList<Float>> initAnomalyErrors(DataSequence observedSeries, DataSequence expectedSeries) {
+        float[][] matrix = initErrorMatrix(observedSeries, expectedSeries);
+        HashMap<String, ArrayList<Float>> allErrors = new HashMap<String, ArrayList<Float>>();
+        for (int j = 0; j < NUM_METRICS; j++) {
+            ArrayList<Float> tmp = new ArrayList<Float>(matrix[j].length);
+            for (float error : matrix[j]) {
+                tmp.add(error);
+            }
+            allErrors.put(indexToError.get(j), tmp);
+        }
+        return allErrors;
+    }
     
-    // Computes the standard error metrics including MAE, sMAPE, MAPE, MASE.
-    public Float[] computeErrorMetrics(float expected, float actual) {
+    // Computes the standard error metrics including MAE, sMAPE, MAPE, MASE
+    // into 'errors', indexed by ErrorMetric.
+    public void computeErrorMetrics(float expected, float actual, float[] errors) {
         float div = expected;
         if (expected == (float) 0.0) {
           div = (float) 0.0000000001;
@@ -92,13 +145,49 @@ public class AnomalyErrorStorage {
         float mapee = (expected == actual) ? (float) 0.0 : Math.abs((100 * ((actual / div) - 1)));
         
         // Store all errors.
-        Float[] errors = new Float[5];
-        errors[0] = mapee;
-        errors[1] = mae;
-        errors[2] = smape;
-        errors[3] = mape;
-        errors[4] = mase;
-        
-        return errors;
+        errors[ErrorMetric.MAPEE.ordinal()] = mapee;
+        errors[ErrorMetric.MAE.ordinal()] = mae;
+        errors[ErrorMetric.SMAPE.ordinal()] = smape;
+        errors[ErrorMetric.MAPE.ordinal()] = mape;
+        errors[ErrorMetric.MASE.ordinal()] = mase;
+    }
+
+    // Same as above, in a new array.
+    public Float[] computeErrorMetrics(float expected, float actual) {
+        float[] errors = new float[NUM_METRICS];
+        computeErrorMetrics(expected, actual, errors);
+        return box(errors);
+    }
+
+    // The absolute values of the thresholds, indexed by ErrorMetric, with
+    // NaN for the metrics without one.
+    public static float[] thresholds(Map<String, Float> threshold) {
+        float[] thresholds = new float[NUM_METRICS];
+        Arrays.fill(thresholds, Float.NaN);
+        for (ErrorMetric metric : ErrorMetric.values()) {
+            Float value = threshold.get(metric.key());
+            if (value != null) {
+                thresholds[metric.ordinal()] = Math.abs(value);
+            }
+        }
+        return thresholds;
+    }
+
+    // Returns true if any of the errors reaches the threshold of its metric.
+    public static boolean exceeds(float[] errors, float[] thresholds) {
+        for (int j = 0; j < NUM_METRICS; j++) {
+            if (Math.abs(errors[j]) >= thresholds[j]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static Float[] box(float[] errors) {
+        Float[] boxed = new Float[errors.length];
+        for (int j = 0; j < errors.length; j++) {
+            boxed[j] = errors[j];
+        }
+        return boxed;
     }
 }
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// interface
+// A model that ModelCodec can store as the state left by train() or tune()
+// rather than by Java serialization. The settings that come from the config
+// are not stored: a model is read back into a new instance built from the
+// same config.
+
+package com.yahoo.egads.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public interface BinaryModel extends Model {
+
+    // Writes the fitted state of the model.
+    public void writeState(DataOutput out) throws IOException;
+
+    // Reads the state written by writeState() into this model.
+    public void readState(DataInput in) throws IOException;
+}
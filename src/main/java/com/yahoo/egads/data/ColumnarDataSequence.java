@@ -0,0 +1,630 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// data structure for time series data stored column-wise
+
+package com.yahoo.egads.data;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import com.yahoo.egads.data.TimeSeries.Entry;
+
+/**
+ * A {@link TimeSeries.DataSequence} that keeps its points in parallel
+ * primitive arrays instead of one {@link Entry} object per point.
+ * <p>
+ * Logical indices are not stored; they are computed on demand from the
+ * first timestamp and period passed to {@link #setLogicalIndices(long, long)}.
+ * Only when an entry is added with a logical index that does not follow from
+ * those values is an explicit index column allocated.
+ * <p>
+ * {@link #get(int)} and the iterators hand out detached {@link Entry} views,
+ * so existing {@code get(i).time} / {@code get(i).value} reads keep working.
+ * Writing to the fields of such a view does <b>not</b> change the sequence;
+ * use {@link #set(int, Entry)} or {@link #setValue(int, float)} instead.
+ */
+public class ColumnarDataSequence extends TimeSeries.DataSequence {
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] times;
+    private float[] values;
+    private int count = 0;
+
+    // Basis for the logical indices, see setLogicalIndices().
+    private long firstTimeStamp = 0;
+    private long period = 0;
+    private boolean indexed = false;
+
+    // Only allocated when logical indices cannot be derived from the timestamps.
+    private long[] logicalIndices = null;
+
+    // construction ////////////////////////////////////////////////
+
+    public ColumnarDataSequence() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ColumnarDataSequence(int initialCapacity) {
+        super(0);
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+        }
+        times = new long[initialCapacity];
+        values = new float[initialCapacity];
+    }
+
+    public ColumnarDataSequence(long from, long to, long period) throws Exception {
+        this(0);
+        if (to < from) {
+            throw new Exception("The start time should be before the end time.");
+        }
+        ensureCapacity((int) ((to - from) / period) + 1);
+        for (long i = from; i <= to; i += period) {
+            append(i, 0);
+        }
+    }
+
+    // Wraps the given arrays without copying them. The sequence owns the
+    // arrays afterwards.
+    public ColumnarDataSequence(long[] times, float[] values) throws Exception {
+        super(0);
+        if (times.length != values.length) {
+            throw new Exception("Length mismatch!");
+        }
+        for (int i = 1; i < times.length; ++i) {
+            if (times[i] < times[i - 1]) {
+                throw new Exception("time=" + times[i] + " at index=" + i + " out of order");
+            }
+        }
+        this.times = times;
+        this.values = values;
+        this.count = times.length;
+    }
+
+    public ColumnarDataSequence(TimeSeries.DataSequence other) {
+        this(other.size());
+        for (int i = 0; i < other.size(); ++i) {
+            add(other.get(i));
+        }
+    }
+
+    // methods: primitive access ////////////////////////////////////////////////
+
+    public void append(long time, float value) {
+        ensureCapacity(count + 1);
+        times[count] = time;
+        values[count] = value;
+        if (logicalIndices != null) {
+            logicalIndices[count] = computeLogicalIndex(time);
+        }
+        count++;
+    }
+
+    @Override
+    public long time(int index) {
+        rangeCheck(index);
+        return times[index];
+    }
+
+    @Override
+    public float value(int index) {
+        rangeCheck(index);
+        return values[index];
+    }
+
+    @Override
+    public void setValue(int index, float value) {
+        rangeCheck(index);
+        values[index] = value;
+    }
+
+    public long logicalIndex(int index) {
+        rangeCheck(index);
+        if (logicalIndices != null) {
+            return logicalIndices[index];
+        }
+        return computeLogicalIndex(times[index]);
+    }
+
+    // Returns a copy of the time column.
+    public long[] timeArray() {
+        return Arrays.copyOf(times, count);
+    }
+
+    // Returns a copy of the value column.
+    public float[] valueArray() {
+        return Arrays.copyOf(values, count);
+    }
+
+    @Override
+    public void setLogicalIndices(long firstTimeStamp, long period) {
+        this.firstTimeStamp = firstTimeStamp;
+        this.period = period;
+        this.indexed = true;
+        this.logicalIndices = null;
+    }
+
+    @Override
+    public void setTimeStamps(long firstTimeStamp, long period) {
+        // Freeze the current indices since the times are about to change.
+        if (logicalIndices == null) {
+            logicalIndices = new long[times.length];
+            for (int i = 0; i < count; ++i) {
+                logicalIndices[i] = computeLogicalIndex(times[i]);
+            }
+        }
+        boolean derivable = true;
+        for (int i = 0; i < count; ++i) {
+            times[i] = logicalIndices[i] * period + firstTimeStamp;
+            derivable &= (logicalIndices[i] == computeLogicalIndex(times[i]));
+        }
+        // Usually the times were snapped onto the same grid the indices
+        // came from, in which case the index column can go again.
+        if (derivable) {
+            logicalIndices = null;
+        }
+    }
+
+    @Override
+    public Float[] getValues() {
+        Float[] fArray = new Float[count];
+        for (int i = 0; i < count; i++) {
+            fArray[i] = values[i];
+        }
+        return fArray;
+    }
+
+    @Override
+    public Long[] getTimes() {
+        Long[] lArray = new Long[count];
+        for (int i = 0; i < count; i++) {
+            lArray[i] = times[i];
+        }
+        return lArray;
+    }
+
+    // methods: List ////////////////////////////////////////////////
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // A detached copy of the entry, allocated on every call: writing to its
+    // fields does not change the sequence. Callers that only read should use
+    // time(i) and value(i).
+    @Override
+    public Entry get(int index) {
+        rangeCheck(index);
+        Entry e = new Entry(times[index], values[index]);
+        e.logicalIndex = logicalIndex(index);
+        return e;
+    }
+
+    @Override
+    public Entry set(int index, Entry element) {
+        Entry previous = get(index);
+        times[index] = element.time;
+        values[index] = element.value;
+        storeLogicalIndex(index, element.logicalIndex);
+        return previous;
+    }
+
+    @Override
+    public boolean add(Entry element) {
+        append(element.time, element.value);
+        storeLogicalIndex(count - 1, element.logicalIndex);
+        return true;
+    }
+
+    @Override
+    public void add(int index, Entry element) {
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        ensureCapacity(count + 1);
+        System.arraycopy(times, index, times, index + 1, count - index);
+        System.arraycopy(values, index, values, index + 1, count - index);
+        if (logicalIndices != null) {
+            System.arraycopy(logicalIndices, index, logicalIndices, index + 1, count - index);
+        }
+        count++;
+        times[index] = element.time;
+        values[index] = element.value;
+        if (logicalIndices != null) {
+            logicalIndices[index] = computeLogicalIndex(element.time);
+        }
+        storeLogicalIndex(index, element.logicalIndex);
+    }
+
+    @Override
+    public Entry remove(int index) {
+        Entry previous = get(index);
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > count || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + count);
+        }
+        int moved = count - toIndex;
+        System.arraycopy(times, toIndex, times, fromIndex, moved);
+        System.arraycopy(values, toIndex, values, fromIndex, moved);
+        if (logicalIndices != null) {
+            System.arraycopy(logicalIndices, toIndex, logicalIndices, fromIndex, moved);
+        }
+        count -= (toIndex - fromIndex);
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        logicalIndices = null;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Entry> c) {
+        ensureCapacity(count + c.size());
+        for (Entry e : c) {
+            add(e);
+        }
+        return !c.isEmpty();
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Entry> c) {
+        int i = index;
+        for (Entry e : c) {
+            add(i++, e);
+        }
+        return !c.isEmpty();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeIf(e -> c.contains(e));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return removeIf(e -> !c.contains(e));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Entry> filter) {
+        int kept = 0;
+        for (int i = 0; i < count; ++i) {
+            if (!filter.test(get(i))) {
+                times[kept] = times[i];
+                values[kept] = values[i];
+                if (logicalIndices != null) {
+                    logicalIndices[kept] = logicalIndices[i];
+                }
+                kept++;
+            }
+        }
+        boolean removed = kept != count;
+        count = kept;
+        return removed;
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Entry> operator) {
+        for (int i = 0; i < count; ++i) {
+            set(i, operator.apply(get(i)));
+        }
+    }
+
+    @Override
+    public void sort(Comparator<? super Entry> c) {
+        Entry[] entries = toArray(new Entry[count]);
+        Arrays.sort(entries, c);
+        for (int i = 0; i < entries.length; ++i) {
+            set(i, entries[i]);
+        }
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        for (int i = 0; i < count; ++i) {
+            if (get(i).equals(o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        for (int i = count - 1; i >= 0; --i) {
+            if (get(i).equals(o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[count];
+        for (int i = 0; i < count; ++i) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < count) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), count);
+        }
+        for (int i = 0; i < count; ++i) {
+            a[i] = (T) get(i);
+        }
+        if (a.length > count) {
+            a[count] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<Entry> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<Entry> listIterator(int index) {
+        if (index < 0 || index > count) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return new Cursor(index);
+    }
+
+    @Override
+    public List<Entry> subList(int fromIndex, int toIndex) {
+        return view().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Entry> action) {
+        for (int i = 0; i < count; ++i) {
+            action.accept(get(i));
+        }
+    }
+
+    @Override
+    public Spliterator<Entry> spliterator() {
+        return Spliterators.spliterator(this, Spliterator.ORDERED);
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > times.length) {
+            int capacity = Math.max(minCapacity, times.length + (times.length >> 1) + 1);
+            times = Arrays.copyOf(times, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (logicalIndices != null) {
+                logicalIndices = Arrays.copyOf(logicalIndices, capacity);
+            }
+        }
+    }
+
+    @Override
+    public void trimToSize() {
+        times = Arrays.copyOf(times, count);
+        values = Arrays.copyOf(values, count);
+        if (logicalIndices != null) {
+            logicalIndices = Arrays.copyOf(logicalIndices, count);
+        }
+    }
+
+    @Override
+    public Object clone() {
+        ColumnarDataSequence copy = (ColumnarDataSequence) super.clone();
+        copy.times = Arrays.copyOf(times, count);
+        copy.values = Arrays.copyOf(values, count);
+        if (logicalIndices != null) {
+            copy.logicalIndices = Arrays.copyOf(logicalIndices, count);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object other_obj) {
+        if (!(other_obj instanceof TimeSeries.DataSequence)) {
+            return false;
+        }
+        TimeSeries.DataSequence other = (TimeSeries.DataSequence) other_obj;
+        if (other.size() != count) {
+            return false;
+        }
+        for (int i = 0; i < count; ++i) {
+            if (!get(i).equals(other.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < count; ++i) {
+            hash = 31 * hash + Long.hashCode(times[i]);
+            hash = 31 * hash + Float.floatToIntBits(values[i]);
+        }
+        return hash;
+    }
+
+    // helpers ////////////////////////////////////////////////
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    private long computeLogicalIndex(long time) {
+        if (!indexed || period == 0) {
+            return 0;
+        }
+        return (time - firstTimeStamp) / period;
+    }
+
+    // Records a logical index for the given position, allocating the explicit
+    // index column only when the value cannot be derived from the timestamp.
+    private void storeLogicalIndex(int index, long logicalIndex) {
+        if (logicalIndices != null) {
+            logicalIndices[index] = logicalIndex;
+            return;
+        }
+        if (logicalIndex == computeLogicalIndex(times[index])) {
+            return;
+        }
+        logicalIndices = new long[times.length];
+        for (int i = 0; i < count; ++i) {
+            logicalIndices[i] = computeLogicalIndex(times[i]);
+        }
+        logicalIndices[index] = logicalIndex;
+    }
+
+    private List<Entry> view() {
+        return new AbstractList<Entry>() {
+            @Override
+            public Entry get(int index) {
+                return ColumnarDataSequence.this.get(index);
+            }
+
+            @Override
+            public Entry set(int index, Entry element) {
+                return ColumnarDataSequence.this.set(index, element);
+            }
+
+            @Override
+            public void add(int index, Entry element) {
+                ColumnarDataSequence.this.add(index, element);
+            }
+
+            @Override
+            public Entry remove(int index) {
+                return ColumnarDataSequence.this.remove(index);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    private class Cursor implements ListIterator<Entry> {
+        private int cursor;
+        private int lastReturned = -1;
+
+        Cursor(int index) {
+            cursor = index;
+        }
+
+        public boolean hasNext() {
+            return cursor < count;
+        }
+
+        public Entry next() {
+            if (cursor >= count) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor++;
+            return get(lastReturned);
+        }
+
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        public Entry previous() {
+            if (cursor <= 0) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = --cursor;
+            return get(lastReturned);
+        }
+
+        public int nextIndex() {
+            return cursor;
+        }
+
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (lastReturned >= count) {
+                throw new ConcurrentModificationException();
+            }
+            ColumnarDataSequence.this.remove(lastReturned);
+            cursor = lastReturned;
+            lastReturned = -1;
+        }
+
+        public void set(Entry e) {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            ColumnarDataSequence.this.set(lastReturned, e);
+        }
+
+        public void add(Entry e) {
+            ColumnarDataSequence.this.add(cursor++, e);
+            lastReturned = -1;
+        }
+    }
+}
@@ -1,45 +1,107 @@
 package com.yahoo.egads.data;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Properties;
 
+// Stores models in files named after their tags, in the format of ModelCodec.
+// A model is written to a temporary file in the same directory and then
+// renamed over the old one, so that a reader never sees a partly written
+// model. Models that cannot be stored or read are logged and left out, and
+// files written by Java serialization alone are still read.
+//
+// Given the config the models were built from, BinaryModels are stored as
+// their fitted state and read back into new models built from that config.
+// Otherwise every model is stored by Java serialization.
 public class FileModelStore implements ModelStore {
+	static org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager.getLogger(FileModelStore.class.getName());
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
 	String path;
+	Properties config;
+
 	public FileModelStore (String path) {
+		this(path, null);
+	}
+
+	public FileModelStore (String path, Properties config) {
 		File dir = new File (path);
 		dir.mkdirs();
 		this.path = path;
+		this.config = config;
 	}
 
 	@Override
 	public void storeModel(String tag, Model m) {
-		String filename = tag.replaceAll("[^\\w_-]", "_");
-		String fqn = path + "/" + filename;
+		Path file = file(tag);
+		Path tmp = null;
 		try {
-			ObjectOutputStream o = new ObjectOutputStream(new FileOutputStream (fqn));
-			o.writeObject(m);
-			o.close();
+			// Not Files.createTempFile, which would leave the model readable
+			// by its owner alone rather than with the default permissions.
+			tmp = file.resolveSibling(file.getFileName() + "." + Long.toHexString(RANDOM.nextLong()) + ".tmp");
+			DataOutputStream o = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+			try {
+				ModelCodec.write(o, m, config != null);
+			} finally {
+				o.close();
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.warn("Cannot store model " + tag + ": " + e);
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException ignored) {
+				}
+			}
 		}
 	}
 
 	@Override
 	public Model retrieveModel(String tag) {
-		String filename = tag.replaceAll("[^\\w_-]", "_");
-		String fqn = path + "/" + filename;
-		Model m = null;
+		Path file = file(tag);
+		if (!Files.exists(file)) {
+			return null;
+		}
 		try {
-			ObjectInputStream o = new ObjectInputStream(new FileInputStream(fqn));
-			m =  (Model) o.readObject();
-			o.close();
+			// Models are small enough to read at once.
+			byte[] bytes = Files.readAllBytes(file);
+			if (bytes.length >= 4 && new DataInputStream(new ByteArrayInputStream(bytes)).readInt() == ModelCodec.MAGIC) {
+				return ModelCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)), config);
+			}
+			ObjectInputStream o = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			try {
+				return (Model) o.readObject();
+			} finally {
+				o.close();
+			}
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.warn("Cannot read model " + tag + ": " + e);
+			return null;
 		}
-		return m;
+	}
+
+	private Path file(String tag) {
+		String filename = tag.replaceAll("[^\\w_-]", "_");
+		return Paths.get(path, filename);
 	}
 
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Reads and writes models in a compact, versioned binary format.
+//
+// A stored model starts with MAGIC and VERSION, then holds the model itself:
+// for a BinaryModel, its class name and the state from writeState(); for any
+// other model, its Java serialization. A BinaryModel is read back into a new
+// instance built from the config by ModelRegistry, so the same config must be
+// given to read it. VERSION changes whenever the state of a model is written
+// differently, and models of another version are not read.
+//
+// Also provides the encodings of the values models keep, for use by
+// writeState() and readState(). Arrays are moved through a ByteBuffer as a
+// whole rather than a value at a time, which is what makes reading a model
+// faster than its Java serialization.
+
+package com.yahoo.egads.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.egads.utilities.ModelRegistry;
+
+public class ModelCodec {
+    // "EGAD"
+    public static final int MAGIC = 0x45474144;
+    public static final int VERSION = 2;
+
+    // How the model follows its header.
+    private static final byte STATE = 1;
+    private static final byte SERIALIZED = 2;
+
+    // Writes the header and the model, by its state if 'state' is true and it
+    // is a BinaryModel, and by Java serialization otherwise.
+    public static void write(DataOutput out, Model model, boolean state) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeModel(out, model, state);
+    }
+
+    // Reads a model written by write().
+    public static Model read(DataInput in, Properties config) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a stored model");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported model version " + version);
+        }
+        return readModel(in, config);
+    }
+
+    // Writes a model held by another one, without a header.
+    public static void writeModel(DataOutput out, Model model) throws IOException {
+        writeModel(out, model, true);
+    }
+
+    private static void writeModel(DataOutput out, Model model, boolean state) throws IOException {
+        if (state && model instanceof BinaryModel) {
+            out.writeByte(STATE);
+            out.writeUTF(model.getClass().getName());
+            ((BinaryModel) model).writeState(out);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream o = new ObjectOutputStream(bytes);
+            o.writeObject(model);
+            o.close();
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    // Reads a model written by writeModel().
+    public static Model readModel(DataInput in, Properties config) throws IOException {
+        byte format = in.readByte();
+        if (format == STATE) {
+            String className = in.readUTF();
+            if (config == null) {
+                throw new IOException("A config is needed to read " + className);
+            }
+            BinaryModel model;
+            try {
+                model = ModelRegistry.newModel(className, BinaryModel.class, config);
+            } catch (Exception e) {
+                throw new IOException("Cannot create " + className, e);
+            }
+            model.readState(in);
+            return model;
+        }
+        if (format == SERIALIZED) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            ObjectInputStream o = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return (Model) o.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            } finally {
+                o.close();
+            }
+        }
+        throw new IOException("Unknown model format " + format);
+    }
+
+    // A deep copy of the model, through its state when it has one.
+    public static Model copy(Model model, Properties config) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeModel(out, model);
+        out.close();
+        return readModel(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), config);
+    }
+
+    // A sequence as its length, its times and its values. Evenly spaced times
+    // are written as the first time and the step. Null is written as -1.
+    public static void writeSequence(DataOutput out, TimeSeries.DataSequence data) throws IOException {
+        if (data == null) {
+            out.writeInt(-1);
+            return;
+        }
+        int n = data.size();
+        out.writeInt(n);
+        long step = n > 1 ? data.time(1) - data.time(0) : 0;
+        boolean even = true;
+        for (int i = 1; i < n && even; i++) {
+            even = data.time(i) - data.time(i - 1) == step;
+        }
+        out.writeBoolean(even);
+        if (even) {
+            out.writeLong(n > 0 ? data.time(0) : 0);
+            out.writeLong(step);
+        } else {
+            ByteBuffer times = ByteBuffer.allocate(n * 8);
+            for (int i = 0; i < n; i++) {
+                times.putLong(data.time(i));
+            }
+            out.write(times.array());
+        }
+        ByteBuffer values = ByteBuffer.allocate(n * 4);
+        for (int i = 0; i < n; i++) {
+            values.putFloat(data.value(i));
+        }
+        out.write(values.array());
+    }
+
+    public static TimeSeries.DataSequence readSequence(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        long[] times = new long[n];
+        if (in.readBoolean()) {
+            long first = in.readLong();
+            long step = in.readLong();
+            for (int i = 0; i < n; i++) {
+                times[i] = first + i * step;
+            }
+        } else {
+            read(in, n * 8).asLongBuffer().get(times);
+        }
+        float[] values = readFloats(in, n);
+        try {
+            return new ColumnarDataSequence(times, values);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Arrays and lists as their length, -1 for null, and their values.
+    public static void writeFloats(DataOutput out, float[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null) {
+            ByteBuffer bytes = ByteBuffer.allocate(values.length * 4);
+            bytes.asFloatBuffer().put(values);
+            out.write(bytes.array());
+        }
+    }
+
+    public static float[] readFloats(DataInput in) throws IOException {
+        return readFloats(in, in.readInt());
+    }
+
+    private static float[] readFloats(DataInput in, int n) throws IOException {
+        if (n < 0) {
+            return null;
+        }
+        float[] values = new float[n];
+        read(in, n * 4).asFloatBuffer().get(values);
+        return values;
+    }
+
+    public static void writeFloats(DataOutput out, List<Float> values) throws IOException {
+        out.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            ByteBuffer bytes = ByteBuffer.allocate(values.size() * 4);
+            for (float value : values) {
+                bytes.putFloat(value);
+            }
+            out.write(bytes.array());
+        }
+    }
+
+    public static void writeDoubles(DataOutput out, double[] values) throws IOException {
+        out.writeInt(values == null ? -1 : values.length);
+        if (values != null) {
+            ByteBuffer bytes = ByteBuffer.allocate(values.length * 8);
+            bytes.asDoubleBuffer().put(values);
+            out.write(bytes.array());
+        }
+    }
+
+    public static double[] readDoubles(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        double[] values = new double[n];
+        read(in, n * 8).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    // The next 'length' bytes, in the big-endian order of DataInput.
+    private static ByteBuffer read(DataInput in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    // A map of thresholds as its size, -1 for null, and its entries, some of
+    // which may have no value.
+    public static void writeMap(DataOutput out, Map<String, Float> map) throws IOException {
+        out.writeInt(map == null ? -1 : map.size());
+        if (map != null) {
+            for (Map.Entry<String, Float> entry : map.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeBoolean(entry.getValue() != null);
+                if (entry.getValue() != null) {
+                    out.writeFloat(entry.getValue());
+                }
+            }
+        }
+    }
+
+    public static Map<String, Float> readMap(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        Map<String, Float> map = new HashMap<String, Float>();
+        for (int i = 0; i < n; i++) {
+            String key = in.readUTF();
+            map.put(key, in.readBoolean() ? in.readFloat() : null);
+        }
+        return map;
+    }
+}
@@ -115,6 +115,20 @@ public class TimeSeries implements JsonAble, Serializable {
             this.add(new Entry(time, value));
         }
 
+        public long time(int index) {
+            return get(index).time;
+        }
+
+        public float value(int index) {
+            return get(index).value;
+        }
+
+        // Sets the value in place; entries handed out by columnar sequences are
+        // detached copies, so writing to them directly has no effect.
+        public void setValue(int index, float value) {
+            get(index).value = value;
+        }
+
         public void setLogicalIndices(long firstTimeStamp, long period) {
             for (TimeSeries.Entry entry : this) {
                 entry.logicalIndex = (entry.time - firstTimeStamp) / period;
@@ -191,14 +205,15 @@ public class TimeSeries implements JsonAble, Serializable {
     
     // Aggregates time-series based on the specified frequency.
     public DataSequence aggregate(int frequency) {
-        DataSequence ldata = new DataSequence();
+        DataSequence ldata = (data instanceof ColumnarDataSequence)
+                ? new ColumnarDataSequence(data.size() / frequency + 1) : new DataSequence();
         
         for (int i = 0; i < data.size(); i += frequency) {
-            Float aggr = (float) 0.0;
-            Long time = data.get(i).time;
+            float aggr = (float) 0.0;
+            long time = data.time(i);
             int count = 0;
             for (int j = i; j < Math.min(data.size(), (i + frequency)); j++) {
-                aggr += (float) data.get(j).value;
+                aggr += data.value(j);
                 count++;
             }
             aggr = aggr / (float) count;
@@ -217,7 +232,11 @@ public class TimeSeries implements JsonAble, Serializable {
         if (size() > 0 && time < lastTime()) {
             throw new Exception("time=" + time + " at index=" + size() + " out of order");
         }
-        data.add(new Entry(time, value));
+        if (data instanceof ColumnarDataSequence) {
+            ((ColumnarDataSequence) data).append(time, value);
+        } else {
+            data.add(new Entry(time, value));
+        }
     }
 
     public int size() {
@@ -225,19 +244,19 @@ public class TimeSeries implements JsonAble, Serializable {
     }
 
     public long startTime() {
-        return data.get(0).time;
+        return data.time(0);
     }
 
     public long lastTime() {
-        return data.get(data.size() - 1).time;
+        return data.time(data.size() - 1);
     }
 
     public long time(int index) {
-        return data.get(index).time;
+        return data.time(index);
     }
 
     public float value(int index) {
-        return data.get(index).value;
+        return data.value(index);
     }
 
     public long // may return 0 if size < 2
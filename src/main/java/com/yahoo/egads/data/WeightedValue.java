@@ -8,7 +8,7 @@ package com.yahoo.egads.data;
 import java.util.Collections;
 import java.util.List;
 
-import com.google.common.collect.Lists;
+import com.yahoo.egads.utilities.QuickSelect;
 
 /**
  * Class for holding a weighted value that can then be aggregated when stored
@@ -64,6 +64,38 @@ public class WeightedValue implements Comparable<WeightedValue> {
         return weight;
     }
 
+    /**
+     * Drops as many of the highest or lowest values as possible, leaving
+     * at least one value, from values stored in parallel arrays. Behaves 
+     * like {@link #drop(List, int, boolean)} without allocating.
+     * @param values The values, the first 'size' entries are valid.
+     * @param weights The weights matching the values.
+     * @param size The number of valid entries.
+     * @param count A count of 1 or more.
+     * @param highest Drop higher values == true or drop lower values == false.
+     * @return The number of valid entries left.
+     */
+    public static int drop(final double[] values, final int[] weights,
+            int size, final int count, final boolean highest) {
+        for (int x = 0; x < count; x++) {
+            if (size <= 1) {
+                break;
+            }
+            // the first of the highest or lowest values, as Collections does.
+            int idx = 0;
+            for (int i = 1; i < size; i++) {
+                final int cmp = Double.compare(values[i], values[idx]);
+                if (highest ? cmp > 0 : cmp < 0) {
+                    idx = i;
+                }
+            }
+            System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+            System.arraycopy(weights, idx + 1, weights, idx, size - idx - 1);
+            size--;
+        }
+        return size;
+    }
+
     /**
      * Aggregates the values in the list using the given agg function.
      * For all functions, NaNs are skipped so if an entire list is NaN'd or the
@@ -82,7 +114,34 @@ public class WeightedValue implements Comparable<WeightedValue> {
         if (values == null) {
             throw new IllegalArgumentException("Values cannot be null");
         }
-        if (values.isEmpty()) {
+        final double[] v = new double[values.size()];
+        final int[] w = new int[values.size()];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = values.get(i).value;
+            w[i] = values.get(i).weight;
+        }
+        return aggregate(v, w, v.length, agg);
+    }
+
+    /**
+     * Aggregates values stored in parallel arrays using the given agg 
+     * function, with the same semantics as {@link #aggregate(List, String)}.
+     * The arrays are used as scratch space and their order is undefined 
+     * afterwards.
+     * @param values The values, the first 'size' entries are valid.
+     * @param weights The weights matching the values.
+     * @param size The number of valid entries.
+     * @param agg A non-null or empty aggregator function to use.
+     * @return An aggregated value or NaN.
+     * @throws IllegalArgumentException if agg was null or empty or we had an
+     * unimplemented agg function.
+     */
+    public static double aggregate(final double[] values, final int[] weights,
+            final int size, final String agg) {
+        if (agg == null || agg.isEmpty()) {
+            throw new IllegalArgumentException("Aggregator cannot be null or empty");
+        }
+        if (size < 1) {
             if (agg.equals("COUNT")) {
                 return 0;
             }
@@ -95,10 +154,10 @@ public class WeightedValue implements Comparable<WeightedValue> {
         
         if (agg.equals("MAX")) {
             accumulator = Double.MIN_VALUE;
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
-                    if (v.value > accumulator) {
-                        accumulator = v.value;
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
+                    if (values[i] > accumulator) {
+                        accumulator = values[i];
                     }
                     ++validCount;
                 }
@@ -109,10 +168,10 @@ public class WeightedValue implements Comparable<WeightedValue> {
             return accumulator;
         } else if (agg.equals("MIN")) {
             accumulator = Double.MAX_VALUE;
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
-                    if (v.value < accumulator) {
-                        accumulator = v.value;
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
+                    if (values[i] < accumulator) {
+                        accumulator = values[i];
                     }
                     ++validCount;
                 }
@@ -123,29 +182,27 @@ public class WeightedValue implements Comparable<WeightedValue> {
             return accumulator;
         } else if (agg.equals("COUNT")) {
             int ctr = 0;
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
                     ++ctr;
                 }
             }
             return ctr;
         } else if (agg.equals("MEDIAN")) {
-            final List<Double> sorted = Lists.newArrayList();
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
-                    sorted.add(v.value);
-                    ++validCount;
+            // move the finite values to the front and select in place.
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
+                    values[validCount++] = values[i];
                 }
             }
             if (validCount < 1) {
                 return Double.NaN;
             }
-            Collections.sort(sorted);
-            return sorted.get(sorted.size() / 2);
+            return QuickSelect.select(values, 0, validCount, validCount / 2);
         } else if (agg.equals("SUM")) {
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
-                    accumulator += v.value;
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
+                    accumulator += values[i];
                     ++validCount;
                 }
             }
@@ -154,9 +211,9 @@ public class WeightedValue implements Comparable<WeightedValue> {
             }
             return accumulator;
         } else if (agg.equals("AVG")) {
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
-                    accumulator += v.value;
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
+                    accumulator += values[i];
                     ++validCount;
                 }
             }
@@ -165,10 +222,10 @@ public class WeightedValue implements Comparable<WeightedValue> {
             }
             return accumulator / validCount;
         } else if (agg.equals("WAVG")) {
-            for (final WeightedValue v : values) {
-                if (Double.isFinite(v.value)) {
-                    accumulator += v.weight * v.value;
-                    validCount += v.weight;
+            for (int i = 0; i < size; i++) {
+                if (Double.isFinite(values[i])) {
+                    accumulator += weights[i] * values[i];
+                    validCount += weights[i];
                 }
             }
             if (validCount < 1) {
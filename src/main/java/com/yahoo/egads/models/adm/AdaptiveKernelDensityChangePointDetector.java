@@ -7,7 +7,6 @@
 package com.yahoo.egads.models.adm;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.Properties;
 
 import org.json.JSONObject;
@@ -16,7 +15,7 @@ import org.json.JSONStringer;
 import com.yahoo.egads.data.Anomaly.Interval;
 import com.yahoo.egads.data.Anomaly.IntervalSequence;
 import com.yahoo.egads.data.TimeSeries.DataSequence;
-import com.yahoo.egads.utilities.ListUtils;
+import com.yahoo.egads.utilities.QuickSelect;
 /**
  * AdaptiveKernelDensityChangePointDetector implements density-based algorithm for change point detection.
  * 
@@ -42,15 +41,23 @@ import com.yahoo.egads.utilities.ListUtils;
 
 public class AdaptiveKernelDensityChangePointDetector extends AnomalyDetectionAbstractModel {
 
+    // The last PRE_WINDOW_SIZE + POST_WINDOW_SIZE points are kept in ring
+    // buffers starting at 'head' and holding 'len' points.
+    private int head = 0;
+    private int len = 0;
     // buffering the residuals
-    private LinkedList<Float> buffer = new LinkedList<Float>();
+    private float[] buffer = null;
     // buffering the standard deviations
-    private LinkedList<Float> sdBuffer = new LinkedList<Float>();
+    private float[] sdBuffer = null;
+    // buffering the logs of the standard deviations
+    private double[] logSdBuffer = null;
 
     // buffering pre-window kernel sums
-    private LinkedList<Float> preKernelSum = new LinkedList<Float>();
+    private float[] preKernelSum = null;
     // buffering post-window kernel sums
-    private LinkedList<Float> postKernelSum = new LinkedList<Float>();
+    private float[] postKernelSum = null;
+    // scratch space for the level set quantile
+    private float[] levels = null;
 
     // sum of residuals in the buffer
     private float sumBuffer = 0;
@@ -117,11 +124,8 @@ public class AdaptiveKernelDensityChangePointDetector extends AnomalyDetectionAb
 
     @Override
     public void reset() {
-        this.buffer.clear();
-        this.sdBuffer.clear();
-
-        this.preKernelSum.clear();
-        this.postKernelSum.clear();
+        this.head = 0;
+        this.len = 0;
 
         this.sumBuffer = 0;
         this.sqrSumBuffer = 0;
@@ -150,7 +154,7 @@ public class AdaptiveKernelDensityChangePointDetector extends AnomalyDetectionAb
 
         // Computing the residuals
         for (int i = 0; i < n; ++i) {
-            residuals[i] = observedSeries.get(i).value - expectedSeries.get(i).value;
+            residuals[i] = observedSeries.value(i) - expectedSeries.value(i);
         }
 
         // Detecting change points
@@ -170,22 +174,22 @@ public class AdaptiveKernelDensityChangePointDetector extends AnomalyDetectionAb
                 if (isCP && j < (changePoints.size() - 1)) {
                     j++;
                 }
-                logger.debug("TS:" + observedSeries.get(i).time + ",SC:" + String.join(":", arrayF2S(new Float[] {score[i]})) + ",LV:" + arrayF2S(new Float[] {level[i]}) + ",OV:" + observedSeries.get(i).value + ",EV:" + expectedSeries.get(i).value);
+                logger.debug("TS:" + observedSeries.time(i) + ",SC:" + String.join(":", arrayF2S(new Float[] {score[i]})) + ",LV:" + arrayF2S(new Float[] {level[i]}) + ",OV:" + observedSeries.value(i) + ",EV:" + expectedSeries.value(i));
 
-                result.add(new Interval(observedSeries.get(i).time, 
+                result.add(new Interval(observedSeries.time(i), 
                 		                i,
                                         new Float[] {score[i]},
                                         new Float[] {level[i]},
-                                        observedSeries.get(i).value,
-                                        expectedSeries.get(i).value,
+                                        observedSeries.value(i),
+                                        expectedSeries.value(i),
                                         (isCP)));
             }
         } else {
             for (int index : changePoints) {
-                if (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.get(index).time, observedSeries.get(0).time)) {
-                    result.add(new Interval(observedSeries.get(index).time, index, new Float[] {score[index]},
-                                    new Float[] {level[index]}, observedSeries.get(index).value,
-                                    expectedSeries.get(index).value));
+                if (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.time(index), observedSeries.time(0))) {
+                    result.add(new Interval(observedSeries.time(index), index, new Float[] {score[index]},
+                                    new Float[] {level[index]}, observedSeries.value(index),
+                                    expectedSeries.value(index)));
                 }
             }
         }
@@ -236,113 +240,177 @@ public class AdaptiveKernelDensityChangePointDetector extends AnomalyDetectionAb
     protected float[] computeKLScore(float residual, int preWindowSize, int postWindowSize, float confidence) {
         float dKL = 0;
         float levelThreshold = 0;
-        int len = buffer.size();
+        int size = preWindowSize + postWindowSize;
+
+        if (buffer == null || buffer.length != size) {
+            buffer = new float[size];
+            sdBuffer = new float[size];
+            logSdBuffer = new double[size];
+            preKernelSum = new float[size];
+            postKernelSum = new float[size];
+            levels = new float[preWindowSize];
+            head = 0;
+            len = 0;
+        }
 
         // Filling the pre-window
         if (len < preWindowSize) {
-            buffer.addLast(residual);
-            postKernelSum.addLast(0F);
+            buffer[len] = residual;
+            postKernelSum[len] = 0F;
+            len++;
 
-            if (len == (preWindowSize - 1)) {
+            if (len == preWindowSize) {
                 int n = preWindowSize;
-                sumBuffer = ListUtils.sumQ(buffer);
-                sqrSumBuffer = ListUtils.sum2Q(buffer);
+                sumBuffer = 0;
+                sqrSumBuffer = 0;
+                for (int i = 0; i < n; ++i) {
+                    sumBuffer += buffer[i];
+                    sqrSumBuffer += (buffer[i] * buffer[i]);
+                }
                 float temp =
                                 (float) Math.max(
                                                 1e-5,
                                                 Math.sqrt(2 * (n * sqrSumBuffer - sumBuffer * sumBuffer)
                                                                 / (n * (n - 1))));
-                ListUtils.repQ(sdBuffer, temp, n);
+                for (int i = 0; i < n; ++i) {
+                    sdBuffer[i] = temp;
+                    logSdBuffer[i] = Math.log(temp);
+                }
 
-                for (float x : buffer) {
-                    preKernelSum.addLast(ListUtils.kernelSum(x, buffer, sdBuffer));
+                for (int i = 0; i < n; ++i) {
+                    preKernelSum[i] = kernelSubSum(buffer[i], 0, n - 1);
                 }
             }
-        } else if (len < (preWindowSize + postWindowSize)) { // Filling the post-window
+        } else if (len < size) { // Filling the post-window
             sumBuffer = sumBuffer + residual;
             sqrSumBuffer = sqrSumBuffer + residual * residual;
             int n = len + 1;
             float temp =
                             (float) Math.max(1e-5,
                                             Math.sqrt(2 * (n * sqrSumBuffer - sumBuffer * sumBuffer) / (n * (n - 1))));
-            sdBuffer.addLast(temp);
 
-            LinkedList<Float> tempQ1 = new LinkedList<Float>();
-            tempQ1.add(residual);
-
-            LinkedList<Float> tempQ2 = new LinkedList<Float>();
-            tempQ2.add(temp);
-
-            ListUtils.addQ(postKernelSum, ListUtils.kernelQ(buffer, tempQ1, tempQ2));
-            buffer.addLast(residual);
-            preKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, 0, preWindowSize - 1));
-            postKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, preWindowSize, buffer.size() - 1));
+            for (int i = 0; i < len; ++i) {
+                postKernelSum[i] += kernel(buffer[i], residual, temp);
+            }
+            buffer[len] = residual;
+            sdBuffer[len] = temp;
+            logSdBuffer[len] = Math.log(temp);
+            len++;
+            preKernelSum[len - 1] = kernelSubSum(residual, 0, preWindowSize - 1);
+            postKernelSum[len - 1] = kernelSubSum(residual, preWindowSize, len - 1);
         } else {
-            // updating the pre-stats
-            LinkedList<Float> preRemovedValues =
-                            ListUtils.kernelQ(buffer, buffer.subList(0, 1), sdBuffer.subList(0, 1));
-            ListUtils.subtractQ(preKernelSum, preRemovedValues);
-            LinkedList<Float> midExchangedValues =
-                            ListUtils.kernelQ(buffer, buffer.subList(preWindowSize, preWindowSize + 1),
-                                            sdBuffer.subList(preWindowSize, preWindowSize + 1));
-            ListUtils.addQ(preKernelSum, midExchangedValues);
+            // updating the pre-stats: the first point leaves the pre-window and
+            // the first point of the post-window moves into it.
+            int mid = slot(preWindowSize);
+            float first = buffer[head];
+            float firstSd = sdBuffer[head];
+            float midValue = buffer[mid];
+            float midSd = sdBuffer[mid];
+            for (int i = 0; i < size; ++i) {
+                float exchanged = kernel(buffer[i], midValue, midSd);
+                preKernelSum[i] = preKernelSum[i] - kernel(buffer[i], first, firstSd);
+                preKernelSum[i] = preKernelSum[i] + exchanged;
+                postKernelSum[i] = postKernelSum[i] - exchanged;
+            }
 
             // Computing the new sd
             int n = len;
-            sumBuffer += (residual - buffer.getFirst());
-            sqrSumBuffer += (residual * residual - Math.pow(buffer.getFirst(), 2));
+            sumBuffer += (residual - first);
+            sqrSumBuffer += (residual * residual - Math.pow(first, 2));
             float temp =
                             (float) Math.max(1e-5,
                                             Math.sqrt(2 * (n * sqrSumBuffer - sumBuffer * sumBuffer) / (n * (n - 1))));
 
             // updating the post-stats
-            LinkedList<Float> tempQ1 = new LinkedList<Float>();
-            tempQ1.add(residual);
-            LinkedList<Float> tempQ2 = new LinkedList<Float>();
-            tempQ2.add(temp);
-            ListUtils.subtractQ(postKernelSum, midExchangedValues);
-            LinkedList<Float> postAddedValues = ListUtils.kernelQ(buffer, tempQ1, tempQ2);
-            ListUtils.addQ(postKernelSum, postAddedValues);
-
-            // updating the window
-            buffer.addLast(residual);
-            buffer.removeFirst();
-
-            sdBuffer.addLast(temp);
-            sdBuffer.removeFirst();
-
-            preKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, 0, preWindowSize - 1));
-            postKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, preWindowSize, preWindowSize
-                            + postWindowSize - 1));
+            for (int i = 0; i < size; ++i) {
+                postKernelSum[i] = postKernelSum[i] + kernel(buffer[i], residual, temp);
+            }
 
-            preKernelSum.removeFirst();
-            postKernelSum.removeFirst();
+            // updating the window, the new point takes the place of the first one
+            int last = head;
+            head = slot(1);
+            buffer[last] = residual;
+            sdBuffer[last] = temp;
+            logSdBuffer[last] = Math.log(temp);
+            preKernelSum[last] = kernelSubSum(residual, 0, preWindowSize - 1);
+            postKernelSum[last] = kernelSubSum(residual, preWindowSize, size - 1);
 
             float eps = 1e-10F;
-            LinkedList<Float> preDensity =
-                            ListUtils.maxQ(preKernelSum.subList(preWindowSize, preWindowSize + postWindowSize), eps);
-            LinkedList<Float> postDensity =
-                            ListUtils.maxQ(postKernelSum.subList(preWindowSize, preWindowSize + postWindowSize), eps);
-
-            tempQ1.clear();
-            tempQ1.addAll(preKernelSum.subList(0, preWindowSize));
-            tempQ2.clear();
-            tempQ2.add(1.0F / preWindowSize);
-            ListUtils.multiplyQ(tempQ1, tempQ2);
-            float levelSet = ListUtils.quantile(tempQ1, 1 - confidence);
+            float sumLogPre = 0;
+            float sumLogPost = 0;
+            float sumLogSd = 0;
+            for (int i = preWindowSize; i < size; ++i) {
+                int j = slot(i);
+                sumLogPost += Math.log(Math.max(postKernelSum[j], eps));
+                sumLogPre += Math.log(Math.max(preKernelSum[j], eps));
+                sumLogSd += logSdBuffer[j];
+            }
+
+            for (int i = 0; i < preWindowSize; ++i) {
+                levels[i] = preKernelSum[slot(i)];
+            }
+            float levelSet = quantile(levels, 1 - confidence, 1.0F / preWindowSize);
             levelThreshold =
-                            (float) (-Math.log(levelSet) - Math.log(2 * Math.PI) / 2 - ListUtils.sumLog(sdBuffer
-                                            .subList(preWindowSize, preWindowSize + postWindowSize)) / postWindowSize);
+                            (float) (-Math.log(levelSet) - Math.log(2 * Math.PI) / 2 - sumLogSd / postWindowSize);
 
             // computing the KL-divergence
             dKL =
-                            (float) ((ListUtils.sumLog(postDensity) - ListUtils.sumLog(preDensity) + Math
+                            (float) ((sumLogPost - sumLogPre + Math
                                             .log(preWindowSize / postWindowSize))
                                             / postWindowSize
-                                            + Math.log(levelSet * Math.sqrt(2 * Math.PI)) + ListUtils.sumLog(sdBuffer
-                                            .subList(preWindowSize, preWindowSize + postWindowSize)) / postWindowSize);
+                                            + Math.log(levelSet * Math.sqrt(2 * Math.PI)) + sumLogSd / postWindowSize);
         }
 
         return new float[] {dKL, levelThreshold};
     }
+
+    // Position of the i-th buffered point in the ring buffers.
+    private int slot(int i) {
+        int j = head + i;
+        return j < buffer.length ? j : j - buffer.length;
+    }
+
+    // Gaussian kernel centered at 'mean' evaluated at 'x'.
+    private static double kernelTerm(float x, float mean, float sd) {
+        return Math.exp(-Math.pow(x - mean, 2) / (2 * Math.pow(sd, 2))) / (sd * Math.sqrt(2 * Math.PI));
+    }
+
+    private static float kernel(float x, float mean, float sd) {
+        return (float) kernelTerm(x, mean, sd);
+    }
+
+    // Sum of the kernels of the buffered points 'from' to 'to' evaluated at 'x'.
+    private float kernelSubSum(float x, int from, int to) {
+        float res = 0;
+        for (int i = from; i <= to; ++i) {
+            int j = slot(i);
+            res += kernelTerm(x, buffer[j], sdBuffer[j]);
+        }
+        return res;
+    }
+
+    // Interpolated quantile of the values multiplied by 'scale', found by
+    // selection rather than sorting. Scaling preserves the order, so the
+    // order statistics are selected before scaling. Reorders 'values'.
+    private static float quantile(float[] values, float probability, float scale) {
+        int n = values.length;
+        float index = (n - 1) * probability;
+        int lo = (int) Math.floor(index);
+        int hi = (int) Math.ceil(index);
+        float h = index - lo;
+        QuickSelect.select(values, 0, n, lo);
+        float loValue = values[lo] * scale;
+        float hiValue = loValue;
+        if (hi > lo) {
+            // the next order statistic is the smallest value above 'lo'.
+            float next = values[hi];
+            for (int i = hi + 1; i < n; ++i) {
+                if (Float.compare(values[i], next) < 0) {
+                    next = values[i];
+                }
+            }
+            hiValue = next * scale;
+        }
+        return (1 - h) * loValue + h * hiValue;
+    }
 }
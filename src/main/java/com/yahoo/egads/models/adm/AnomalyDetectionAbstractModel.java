@@ -13,11 +13,20 @@ import org.json.JSONStringer;
 import java.util.Map;
 import java.util.HashMap;
 
+import com.yahoo.egads.data.AnomalyErrorStorage;
 import com.yahoo.egads.data.JsonEncoder;
 
 public abstract class AnomalyDetectionAbstractModel implements AnomalyDetectionModel {
 
-    protected org.apache.logging.log4j.Logger logger;
+    protected transient org.apache.logging.log4j.Logger logger;
+    // The logger of each model class, looked up once rather than per model.
+    private static final ClassValue<org.apache.logging.log4j.Logger> LOGGERS =
+        new ClassValue<org.apache.logging.log4j.Logger>() {
+            @Override
+            protected org.apache.logging.log4j.Logger computeValue(Class<?> type) {
+                return org.apache.logging.log4j.LogManager.getLogger(type.getName());
+            }
+        };
     protected float sDAutoSensitivity = 3;
     protected float amntAutoSensitivity = (float) 0.05;
     protected String outputDest = "";
@@ -61,6 +70,10 @@ public abstract class AnomalyDetectionAbstractModel implements AnomalyDetectionM
     	return ret;
     }
     
+    protected String arrayF2S (float[] input) {
+    	return arrayF2S(AnomalyErrorStorage.box(input));
+    }
+    
     // Parses the THRESHOLD config into a map.
     protected Map<String, Float> parseMap(String s) {
         if (s == null) {
@@ -79,7 +92,7 @@ public abstract class AnomalyDetectionAbstractModel implements AnomalyDetectionM
     // Force the user to define this constructor that acts as a
     // factory method.
     public AnomalyDetectionAbstractModel(Properties config) {
-    	logger = org.apache.logging.log4j.LogManager.getLogger(this.getClass().getName());
+    	logger = LOGGERS.get(this.getClass());
         // Set the assumed amount of anomaly in your data.
         if (config.getProperty("AUTO_SENSITIVITY_ANOMALY_PCNT") != null) {
             this.amntAutoSensitivity = new Float(config.getProperty("AUTO_SENSITIVITY_ANOMALY_PCNT"));
@@ -91,6 +104,12 @@ public abstract class AnomalyDetectionAbstractModel implements AnomalyDetectionM
       	this.outputDest = config.getProperty("OUTPUT");
     }
 
+    // The logger is not serialized, e.g. by a ModelStore.
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        logger = LOGGERS.get(this.getClass());
+    }
+
     @Override
     public boolean isDetectionWindowPoint(int maxHrsAgo, long windowStart, long anomalyTime, long startTime) {
         long unixTime = System.currentTimeMillis() / 1000L;
@@ -8,12 +8,17 @@
 
 package com.yahoo.egads.models.adm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Random;
 
+import com.yahoo.egads.data.BinaryModel;
+import com.yahoo.egads.data.ModelCodec;
 import com.yahoo.egads.data.Anomaly.IntervalSequence;
 import com.yahoo.egads.data.Anomaly.Interval;
 import com.yahoo.egads.data.AnomalyErrorStorage;
@@ -28,7 +33,7 @@ import org.apache.commons.math3.ml.distance.EuclideanDistance;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
-public class DBScanModel extends AnomalyDetectionAbstractModel {
+public class DBScanModel extends AnomalyDetectionAbstractModel implements BinaryModel {
 
     // The constructor takes a set of properties
     // needed for the simple model. This includes the sensitivity.
@@ -38,9 +43,11 @@ public class DBScanModel extends AnomalyDetectionAbstractModel {
     // modelName.
     public String modelName = "DBScanModel";
     public AnomalyErrorStorage aes = new AnomalyErrorStorage();
-    private DBSCANClusterer<IdentifiedDoublePoint> dbscan = null;
+    private transient DBSCANClusterer<IdentifiedDoublePoint> dbscan = null;
     private int minPoints = 2;
     private double eps = 500;
+    // Number of point pairs over which the mean distance is computed by tune().
+    private static final long MAX_DISTANCE_PAIRS = 1 << 20;
     
     public DBScanModel(Properties config) {
         super(config);
@@ -78,41 +85,78 @@ public class DBScanModel extends AnomalyDetectionAbstractModel {
 
     @Override
     public void reset() {
-        // At this point, reset does nothing.
+        aes.reset();
+    }
+
+    // The clustering settings found by tune(); detect() builds the clusterer.
+    public void writeState(DataOutput out) throws IOException {
+        out.writeDouble(eps);
+        out.writeInt(minPoints);
+        aes.writeState(out);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        eps = in.readDouble();
+        minPoints = in.readInt();
+        dbscan = null;
+        aes.readState(in);
     }
 
     @Override
     public void tune(DataSequence observedSeries,
                      DataSequence expectedSeries,
                      IntervalSequence anomalySequence) throws Exception {
-        // Compute the time-series of errors.
-        HashMap<String, ArrayList<Float>> allErrors = aes.initAnomalyErrors(observedSeries, expectedSeries);
-        List<IdentifiedDoublePoint> points = new ArrayList<IdentifiedDoublePoint>();
-        EuclideanDistance ed = new EuclideanDistance();
         int n = observedSeries.size();
+        List<IdentifiedDoublePoint> points = errorPoints(aes.initErrorMatrix(observedSeries, expectedSeries), n);
         
+        eps = ((double) this.sDAutoSensitivity) * meanDistance(points);
+        minPoints = ((int) Math.ceil(((double) this.amntAutoSensitivity) * ((double) n)));     
+        dbscan = new DBSCANClusterer<IdentifiedDoublePoint>(eps, minPoints);
+    }
+  
+    // The errors of the 'n' points of the matrix, as points to cluster.
+    private static List<IdentifiedDoublePoint> errorPoints(float[][] allErrors, int n) {
+        List<IdentifiedDoublePoint> points = new ArrayList<IdentifiedDoublePoint>(n);
         for (int i = 0; i < n; i++) {
-            double[] d = new double[(aes.getIndexToError().keySet()).size()];
-           
-            for (int e = 0; e < (aes.getIndexToError().keySet()).size(); e++) {
-                 d[e] = allErrors.get(aes.getIndexToError().get(e)).get(i);
+            double[] d = new double[AnomalyErrorStorage.NUM_METRICS];
+            for (int e = 0; e < d.length; e++) {
+                d[e] = allErrors[e][i];
             }
             points.add(new IdentifiedDoublePoint(d, i));
         }
-        
+        return points;
+    }
+
+    // The mean euclidean distance between two points, over all ordered pairs
+    // including a point with itself. Above MAX_DISTANCE_PAIRS pairs it is
+    // estimated from the same number of random pairs instead, each point
+    // paired with as many others, which leaves a relative standard error of
+    // about the coefficient of variation of the distances / 1000.
+    protected static double meanDistance(List<IdentifiedDoublePoint> points) {
+        EuclideanDistance ed = new EuclideanDistance();
+        int n = points.size();
+        if (n == 0) {
+            return 0;
+        }
         double sum = 0.0;
-        double count = 0.0;
+        if ((long) n * n <= MAX_DISTANCE_PAIRS) {
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    sum += ed.compute(points.get(i).getPoint(), points.get(j).getPoint());
+                }
+            }
+            return 2 * sum / ((double) n * n);
+        }
+        int pairsPerPoint = (int) Math.max(1, MAX_DISTANCE_PAIRS / n);
+        Random random = new Random(n);
         for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                sum += ed.compute(points.get(i).getPoint(), points.get(j).getPoint());
-                count++;
+            for (int k = 0; k < pairsPerPoint; k++) {
+                sum += ed.compute(points.get(i).getPoint(), points.get(random.nextInt(n)).getPoint());
             }
         }
-        eps = ((double) this.sDAutoSensitivity) * (sum / count);   
-        minPoints = ((int) Math.ceil(((double) this.amntAutoSensitivity) * ((double) n)));     
-        dbscan = new DBSCANClusterer<IdentifiedDoublePoint>(eps, minPoints);
+        return sum / ((double) n * pairsPerPoint);
     }
-  
+
     @Override
     public IntervalSequence detect(DataSequence observedSeries,
                                    DataSequence expectedSeries) throws Exception {
@@ -125,34 +169,33 @@ public class DBScanModel extends AnomalyDetectionAbstractModel {
             thresholdErrors[aes.getErrorToIndex().get(entry.getKey())] = Math.abs(entry.getValue());
         }
         
-        // Compute the time-series of errors.
-        HashMap<String, ArrayList<Float>> allErrors = aes.initAnomalyErrors(observedSeries, expectedSeries);
-        List<IdentifiedDoublePoint> points = new ArrayList<IdentifiedDoublePoint>();
+        float[][] allErrors = aes.initErrorMatrix(observedSeries, expectedSeries);
+        List<IdentifiedDoublePoint> points = errorPoints(allErrors, n);
         
-        for (int i = 0; i < n; i++) {
-            double[] d = new double[(aes.getIndexToError().keySet()).size()];
-           
-            for (int e = 0; e < (aes.getIndexToError().keySet()).size(); e++) {
-                 d[e] = allErrors.get(aes.getIndexToError().get(e)).get(i);
-            }
-            points.add(new IdentifiedDoublePoint(d, i));
+        // The clusterer is not serialized with the tuned model.
+        if (dbscan == null) {
+            dbscan = new DBSCANClusterer<IdentifiedDoublePoint>(eps, minPoints);
         }
-        
         List<Cluster<IdentifiedDoublePoint>> cluster = dbscan.cluster(points);
+        float[] errors = new float[AnomalyErrorStorage.NUM_METRICS];
         for(Cluster<IdentifiedDoublePoint> c: cluster) {
             for (IdentifiedDoublePoint p : c.getPoints()) {
             	int i = p.getId();
-                Float[] errors = aes.computeErrorMetrics(expectedSeries.get(p.getId()).value, observedSeries.get(p.getId()).value);
-                logger.debug("TS:" + observedSeries.get(i).time + ",E:" + arrayF2S(errors) + ",TE:" + arrayF2S(thresholdErrors) + ",OV:" + observedSeries.get(i).value + ",EV:" + expectedSeries.get(i).value);
-                if (observedSeries.get(p.getId()).value != expectedSeries.get(p.getId()).value &&
-                    (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.get(p.getId()).time, observedSeries.get(0).time) ||
-                    (maxHrsAgo == 0 && p.getId() == (n - 1)))) {
-                    output.add(new Interval(observedSeries.get(p.getId()).time,
-                    		                p.getId(), 
-                                            errors,
+                for (int e = 0; e < errors.length; e++) {
+                    errors[e] = allErrors[e][i];
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("TS:" + observedSeries.time(i) + ",E:" + arrayF2S(errors) + ",TE:" + arrayF2S(thresholdErrors) + ",OV:" + observedSeries.value(i) + ",EV:" + expectedSeries.value(i));
+                }
+                if (observedSeries.value(i) != expectedSeries.value(i) &&
+                    (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.time(i), observedSeries.time(0)) ||
+                    (maxHrsAgo == 0 && i == (n - 1)))) {
+                    output.add(new Interval(observedSeries.time(i),
+                    		                i, 
+                                            AnomalyErrorStorage.box(errors),
                                             thresholdErrors,
-                                            observedSeries.get(p.getId()).value,
-                                            expectedSeries.get(p.getId()).value));
+                                            observedSeries.value(i),
+                                            expectedSeries.value(i)));
                 }
             }
         }
@@ -8,25 +8,32 @@
 
 package com.yahoo.egads.models.adm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
-import java.util.Map;
 import java.util.HashMap;
-import java.util.ArrayList;
+import java.util.Map;
 
+import com.yahoo.egads.data.BinaryModel;
+import com.yahoo.egads.data.ModelCodec;
 import com.yahoo.egads.data.Anomaly.IntervalSequence;
 import com.yahoo.egads.data.Anomaly.Interval;
 import com.yahoo.egads.data.TimeSeries.DataSequence;
 import com.yahoo.egads.utilities.AutoSensitivity;
 import com.yahoo.egads.data.AnomalyErrorStorage;
+import com.yahoo.egads.data.AnomalyErrorStorage.ErrorMetric;
 
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
-public class KSigmaModel extends AnomalyDetectionAbstractModel {
+public class KSigmaModel extends AnomalyDetectionAbstractModel implements BinaryModel {
 
     // The constructor takes a set of properties
     // needed for the simple model. This includes the sensitivity.
     private Map<String, Float> threshold;
+    // The thresholds given in the config, which tune() does not replace.
+    private Map<String, Float> configuredThreshold;
     private int maxHrsAgo;
     private long windowStart;
     // modelName.
@@ -48,6 +55,7 @@ public class KSigmaModel extends AnomalyDetectionAbstractModel {
         if (config.getProperty("THRESHOLD") != null && this.threshold.isEmpty() == true) {
             throw new IllegalArgumentException("THRESHOLD PARSE ERROR");
         } 
+        this.configuredThreshold = new HashMap<String, Float>(this.threshold);
     }
 
     public void toJson(JSONStringer json_out) {
@@ -69,24 +77,36 @@ public class KSigmaModel extends AnomalyDetectionAbstractModel {
 
     @Override
     public void reset() {
-        // At this point, reset does nothing.
+        // Forgets the thresholds found by tune().
+        threshold = new HashMap<String, Float>(configuredThreshold);
+        aes.reset();
+    }
+
+    // The thresholds, including those found by tune().
+    public void writeState(DataOutput out) throws IOException {
+        ModelCodec.writeMap(out, threshold);
+        aes.writeState(out);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        threshold = ModelCodec.readMap(in);
+        aes.readState(in);
     }
 
     @Override
     public void tune(DataSequence observedSeries, DataSequence expectedSeries,
             IntervalSequence anomalySequence) throws Exception {
-        HashMap<String, ArrayList<Float>> allErrors = aes.initAnomalyErrors(observedSeries, expectedSeries);
+        float[][] allErrors = aes.initErrorMatrix(observedSeries, expectedSeries);
 
-        for (int i = 0; i < (aes.getIndexToError().keySet()).size(); i++) {
+        for (ErrorMetric metric : ErrorMetric.values()) {
             // Add a new error metric if the error metric has not been
             // defined by the user.
-            if (!threshold.containsKey(aes.getIndexToError().get(i))) {
-                Float[] fArray = (allErrors.get(aes.getIndexToError().get(i))).toArray(new Float[(allErrors.get(aes.getIndexToError().get(i))).size()]);
-                threshold.put(aes.getIndexToError().get(i), AutoSensitivity.getKSigmaSensitivity(fArray, sDAutoSensitivity));
+            if (!threshold.containsKey(metric.key())) {
+                threshold.put(metric.key(), AutoSensitivity.getKSigmaSensitivity(allErrors[metric.ordinal()], sDAutoSensitivity));
             }
         }
     }
-
+    
     // Returns true this point is identified as a potential anomaly.
     public boolean isAnomaly(Float[] errors, Map<String, Float> threshold) {
         // Cycle through all available thresholds and return
@@ -120,20 +140,25 @@ public class KSigmaModel extends AnomalyDetectionAbstractModel {
         IntervalSequence output = new IntervalSequence();
         int n = observedSeries.size();
         
+        float[] thresholds = AnomalyErrorStorage.thresholds(threshold);
+        float[] errors = new float[AnomalyErrorStorage.NUM_METRICS];
+        
         for (int i = 0; i < n; i++) {
-            Float[] errors = aes.computeErrorMetrics(expectedSeries.get(i).value, observedSeries.get(i).value);
-            logger.debug("TS:" + observedSeries.get(i).time + ",E:" + arrayF2S(errors) + ",TE:" + arrayF2S(thresholdErrors) + ",OV:" + observedSeries.get(i).value + ",EV:" + expectedSeries.get(i).value);
-            if (observedSeries.get(i).value != expectedSeries.get(i).value &&
+            aes.computeErrorMetrics(expectedSeries.value(i), observedSeries.value(i), errors);
+            if (logger.isDebugEnabled()) {
+                logger.debug("TS:" + observedSeries.time(i) + ",E:" + arrayF2S(errors) + ",TE:" + arrayF2S(thresholdErrors) + ",OV:" + observedSeries.value(i) + ",EV:" + expectedSeries.value(i));
+            }
+            if (observedSeries.value(i) != expectedSeries.value(i) &&
                 threshSum > (float) 0.0 &&
-                isAnomaly(errors, threshold) == true &&
-                (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.get(i).time, observedSeries.get(0).time) ||
+                AnomalyErrorStorage.exceeds(errors, thresholds) &&
+                (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.time(i), observedSeries.time(0)) ||
                 (maxHrsAgo == 0 && i == (n - 1)))) {
-                output.add(new Interval(observedSeries.get(i).time,
+                output.add(new Interval(observedSeries.time(i),
                 		                i,
-                                        errors,
+                                        AnomalyErrorStorage.box(errors),
                                         thresholdErrors,
-                                        observedSeries.get(i).value,
-                                        expectedSeries.get(i).value));
+                                        observedSeries.value(i),
+                                        expectedSeries.value(i)));
             }
         }
         return output;
@@ -10,8 +10,13 @@
 
 package com.yahoo.egads.models.adm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 
+import com.yahoo.egads.data.BinaryModel;
+import com.yahoo.egads.data.ModelCodec;
 import com.yahoo.egads.data.Anomaly.IntervalSequence;
 import com.yahoo.egads.data.Anomaly.Interval;
 import com.yahoo.egads.data.TimeSeries.DataSequence;
@@ -24,7 +29,7 @@ import com.yahoo.egads.utilities.AutoSensitivity;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
-public class NaiveModel extends AnomalyDetectionAbstractModel {
+public class NaiveModel extends AnomalyDetectionAbstractModel implements BinaryModel {
 
     // The constructor takes a set of properties
     // needed for the simple model. This includes the sensitivity.
@@ -76,7 +81,16 @@ public class NaiveModel extends AnomalyDetectionAbstractModel {
 
     @Override
     public void reset() {
-        // At this point, reset does nothing.
+        aes.reset();
+    }
+
+    // The thresholds come from the config, so only the errors are kept.
+    public void writeState(DataOutput out) throws IOException {
+        aes.writeState(out);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        aes.readState(in);
     }
 
     @Override
@@ -124,8 +138,10 @@ public class NaiveModel extends AnomalyDetectionAbstractModel {
             return output;
         }
 
-        Float[] observed = new Float[] {observedSeries.get(0).value, observedSeries.get(0).value};
-        Float[] expected = new Float[] {expectedSeries.get(0).value, expectedSeries.get(0).value};
+        float[] observed = new float[] {observedSeries.value(0), observedSeries.value(0)};
+        float[] expected = new float[] {expectedSeries.value(0), expectedSeries.value(0)};
+        float[] thresholds = AnomalyErrorStorage.thresholds(threshold);
+        float[] errors = new float[AnomalyErrorStorage.NUM_METRICS];
         
         int maxIndex = 0;
         int minIndex = 0;
@@ -134,14 +150,14 @@ public class NaiveModel extends AnomalyDetectionAbstractModel {
         
         for (int k = 0; k < n; k++) {
         	
-        	if (observed[0] < observedSeries.get(k).value) {
-        		observed[0] = observedSeries.get(k).value;
+        	if (observed[0] < observedSeries.value(k)) {
+        		observed[0] = observedSeries.value(k);
         		maxIndex = k;
         		anomaly = 1;
         	}
         	
-        	if (observed[1] > observedSeries.get(k).value) {
-        		observed[1] = observedSeries.get(k).value;
+        	if (observed[1] > observedSeries.value(k)) {
+        		observed[1] = observedSeries.value(k);
         		minIndex = k;
         		anomaly = 1;
         	}
@@ -150,13 +166,13 @@ public class NaiveModel extends AnomalyDetectionAbstractModel {
         		continue;
         	}
         	
-        	expected[0] = Math.max(expected[0], observedSeries.get(k - cutIndex).value);
-        	expected[1] = Math.min(expected[1], observedSeries.get(k - cutIndex).value);        	
+        	expected[0] = Math.max(expected[0], observedSeries.value(k - cutIndex));
+        	expected[1] = Math.min(expected[1], observedSeries.value(k - cutIndex));        	
         	        	
             // Check for anomalies for min/max.
         	int anomalyIndex = 0;
             for (int i = 0; i < 2; i++) {
-                Float[] errors = aes.computeErrorMetrics(expected[i], observed[i]);
+                aes.computeErrorMetrics(expected[i], observed[i], errors);
                 boolean actualAnomaly = false;
                 if (i == 0 && observed[i] > expected[i]) {
                     actualAnomaly = true;
@@ -167,18 +183,18 @@ public class NaiveModel extends AnomalyDetectionAbstractModel {
                     anomalyIndex = minIndex;
                 }
                 
-                if (isAnomaly(errors, threshold) == true && actualAnomaly == true && anomaly == 1 &&
-                    (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.get(anomalyIndex).time, observedSeries.get(0).time) ||
+                if (AnomalyErrorStorage.exceeds(errors, thresholds) && actualAnomaly == true && anomaly == 1 &&
+                    (isDetectionWindowPoint(maxHrsAgo, windowStart, observedSeries.time(anomalyIndex), observedSeries.time(0)) ||
         						(maxHrsAgo == 0 && i == (n - 1)))) {
                 	anomaly = 0;
-                    logger.debug("TS:" + observedSeries.get(anomalyIndex).time + ",E:" + arrayF2S(errors) + ",TH:" + arrayF2S(thresholdErrors) + ",OV:" + observedSeries.get(anomalyIndex).value + ",EV:" + expected[i]);
-                    output.add(new Interval(observedSeries.get(anomalyIndex).time,
+                    logger.debug("TS:" + observedSeries.time(anomalyIndex) + ",E:" + arrayF2S(errors) + ",TH:" + arrayF2S(thresholdErrors) + ",OV:" + observedSeries.value(anomalyIndex) + ",EV:" + expected[i]);
+                    output.add(new Interval(observedSeries.time(anomalyIndex),
                     		   anomalyIndex,
-                               errors,
+                               AnomalyErrorStorage.box(errors),
                                thresholdErrors,
                                observed[i],
                                expected[i],
-                               isAnomaly(errors, threshold)));
+                               true));
                 }
             }  
         }
@@ -8,8 +8,13 @@
 
 package com.yahoo.egads.models.adm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
 
+import com.yahoo.egads.data.BinaryModel;
+import com.yahoo.egads.data.ModelCodec;
 import com.yahoo.egads.data.Anomaly.IntervalSequence;
 import com.yahoo.egads.data.Anomaly.Interval;
 import com.yahoo.egads.data.TimeSeries;
@@ -21,11 +26,13 @@ import java.util.HashMap;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
-public class SimpleThresholdModel extends AnomalyDetectionAbstractModel {
+public class SimpleThresholdModel extends AnomalyDetectionAbstractModel implements BinaryModel {
 
     // The constructor takes a set of properties
     // needed for the simple model. This includes the sensitivity.
     private Map<String, Float> threshold;
+    // The thresholds given in the config, which tune() does not replace.
+    private Map<String, Float> configuredThreshold;
     private int maxHrsAgo;
     private long windowStart;
     // Model name.
@@ -41,6 +48,7 @@ public class SimpleThresholdModel extends AnomalyDetectionAbstractModel {
         if (config.getProperty("THRESHOLD") != null && this.threshold.isEmpty() == true) {
             throw new IllegalArgumentException("THRESHOLD PARSE ERROR");
         } 
+        this.configuredThreshold = new HashMap<String, Float>(this.threshold);
         if (config.getProperty("SIMPLE_THRESHOLD_TYPE") != null) {
             simpleThrType = config.getProperty("SIMPLE_THRESHOLD_TYPE");
         }
@@ -65,16 +73,31 @@ public class SimpleThresholdModel extends AnomalyDetectionAbstractModel {
 
     @Override
     public void reset() {
+        // Forgets the thresholds found by tune().
+        threshold = new HashMap<String, Float>(configuredThreshold);
+    }
+
+    // The thresholds, including those found by tune().
+    public void writeState(DataOutput out) throws IOException {
+        ModelCodec.writeMap(out, threshold);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        threshold = ModelCodec.readMap(in);
     }
 
     @Override
     public void tune(DataSequence observedSeries, DataSequence expectedSeries,
             IntervalSequence anomalySequence) throws Exception {  
         Float thr[] = null;
+        float[] values = new float[observedSeries.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = observedSeries.value(i);
+        }
         if (simpleThrType.equals("AdaptiveKSigmaSensitivity")) {
-            thr = AutoSensitivity.getAdaptiveKSigmaSensitivity(observedSeries.getValues(), amntAutoSensitivity); 
+            thr = AutoSensitivity.getAdaptiveKSigmaSensitivity(values, amntAutoSensitivity); 
         } else {
-    	    thr = AutoSensitivity.getAdaptiveMaxMinSigmaSensitivity(observedSeries.getValues(), amntAutoSensitivity, sDAutoSensitivity); 
+    	    thr = AutoSensitivity.getAdaptiveMaxMinSigmaSensitivity(values, amntAutoSensitivity, sDAutoSensitivity); 
         }
         if (!threshold.containsKey("max")) {
             threshold.put("max", thr[0]);
@@ -94,7 +117,7 @@ public class SimpleThresholdModel extends AnomalyDetectionAbstractModel {
             TimeSeries.Entry entry = observedSeries.get(i);
             
             if (((thr[0] != null && entry.value >= thr[0]) || (thr[1] != null && entry.value <= thr[1])) &&
-                (isDetectionWindowPoint(maxHrsAgo, windowStart, entry.time, observedSeries.get(0).time) || (maxHrsAgo == 0 && i == (n - 1)))) {
+                (isDetectionWindowPoint(maxHrsAgo, windowStart, entry.time, observedSeries.time(0)) || (maxHrsAgo == 0 && i == (n - 1)))) {
                 if (thr[0] != null && entry.value >= thr[0]) {
                     output.add(new Interval(entry.time, i, null, thr, entry.value, thr[0]));
                 } else {
@@ -23,142 +23,224 @@
 package com.yahoo.egads.models.tsmm;
 
 import com.yahoo.egads.data.*;
+import com.yahoo.egads.utilities.ModelRegistry;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 // Picks the best model from the available EGADS models.
+//
+// The candidates, AUTO_FORECAST_MODELS, are trained concurrently on a pool
+// shared by all instances, so that picking a model takes about as long as
+// training the slowest one. The best is picked in the order of the list, as
+// if they had been trained one after the other.
+//
+// With AUTO_FORECAST_SAMPLE set, the candidates are first trained on that many
+// of the most recent points, and those whose MSE is more than
+// AUTO_FORECAST_PRUNE times the best are not trained on the full series.
 public class AutoForecastModel extends TimeSeriesAbstractModel {
+    // The candidates unless AUTO_FORECAST_MODELS is set.
+    private static final String DEFAULT_MODELS =
+        "NaiveForecastingModel,RegressionModel,SimpleExponentialSmoothingModel,TripleExponentialSmoothingModel";
+
+    // Trains the candidates. Its threads are daemons so that they never keep
+    // the JVM alive.
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AutoForecastModel");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
     // Stores the properties file to init other models.
     private Properties p;
     
     // Stores the model.
     private TimeSeriesAbstractModel myModel = null;
 
+    // Stores the historical values, from which UPDATE_REFIT picks the model
+    // again.
+    private TimeSeries.DataSequence data;
+
+    // The names of the candidate models.
+    private String[] candidates;
+
+    // The number of points of the pre-screen, 0 for none.
+    private int sample = 0;
+
+    // The pre-screen drops candidates with an MSE over this many times the best.
+    private double prune = 4;
+
     public AutoForecastModel(Properties config) {
         super(config);
         modelName = "AutoForecastModel";
         this.p = config;
+
+        List<String> names = new ArrayList<String>();
+        for (String name : config.getProperty("AUTO_FORECAST_MODELS", DEFAULT_MODELS).split(",")) {
+            if (name.trim().equals(modelName)) {
+                throw new IllegalArgumentException("AUTO_FORECAST_MODELS can't include AutoForecastModel");
+            }
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("AUTO_FORECAST_MODELS must name at least one model");
+        }
+        candidates = names.toArray(new String[names.size()]);
+
+        if (config.getProperty("AUTO_FORECAST_SAMPLE") != null) {
+            sample = new Integer(config.getProperty("AUTO_FORECAST_SAMPLE"));
+        }
+        if (config.getProperty("AUTO_FORECAST_PRUNE") != null) {
+            prune = new Double(config.getProperty("AUTO_FORECAST_PRUNE"));
+        }
+        if (sample < 0 || !(prune >= 1)) {
+            throw new IllegalArgumentException("AUTO_FORECAST_SAMPLE must not be negative and AUTO_FORECAST_PRUNE at least 1");
+        }
     }
 
     public void reset() {
         // At this point, reset does nothing.
     }
     
-    public void train(TimeSeries.DataSequence data) throws IllegalArgumentException  {
-
-
-        // Init all.
-//        OlympicModel olympModel = new OlympicModel(p);
-//        MovingAverageModel movingAvg = new MovingAverageModel(p);
-//        MultipleLinearRegressionModel mlReg = new MultipleLinearRegressionModel(p);
-        NaiveForecastingModel naive = new NaiveForecastingModel(p);
-//        PolynomialRegressionModel poly = new PolynomialRegressionModel(p);
-        RegressionModel regr = new RegressionModel(p);
-        SimpleExponentialSmoothingModel simpleExp = new SimpleExponentialSmoothingModel(p);
-        TripleExponentialSmoothingModel tripleExp = new TripleExponentialSmoothingModel(p);
-//        WeightedMovingAverageModel weightAvg = new WeightedMovingAverageModel(p);
-//        DoubleExponentialSmoothingModel doubleExp = new DoubleExponentialSmoothingModel(p);
-        
-        // Train all.
-//        olympModel.train(data);
-
-//        try {
-//            movingAvg.train(data);
-//        }catch (IllegalArgumentException e) {
-//            movingAvg = null;
-//        }
-//
-//        try {
-//            mlReg.train(data);
-//        }catch (IllegalArgumentException e) {
-//            mlReg = null;
-//        }
-
-        try {
-            naive.train(data);
-        }catch (IllegalArgumentException e) {
-            naive = null;
+    public void train(TimeSeries.DataSequence data) throws Exception {
+        String[] names = candidates;
+        if (sample > 0 && sample < data.size() && names.length > 1) {
+            names = prescreen(data);
         }
+        TimeSeriesAbstractModel[] models = train(names, data);
+        this.data = data;
 
-//        try {
-//            poly.train(data);
-//        }catch (IllegalArgumentException e) {
-//            poly = null;
-//        }
+        // Pick best.
+        myModel = null;
+        for (TimeSeriesAbstractModel model : models) {
+            if (model != null && betterThan(model, myModel)) {
+                myModel = model;
+            }
+        }
+        if (myModel == null) {
+            throw new IllegalArgumentException("None of the AUTO_FORECAST_MODELS can be trained on the data");
+        }
+        
+        initForecastErrors(myModel, data);
+       
+        logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+    }
 
-        try {
-            regr.train(data);
-        }catch (IllegalArgumentException e) {
-            regr = null;
+    // The candidates that are not clearly worse than the best on the most
+    // recent points. Those that can't be trained on so few points are kept.
+    private String[] prescreen(TimeSeries.DataSequence data) throws Exception {
+        TimeSeries.DataSequence recent = new TimeSeries.DataSequence();
+        for (int i = data.size() - sample; i < data.size(); i++) {
+            recent.add(new TimeSeries.Entry(data.time(i), data.value(i)));
+        }
+        TimeSeriesAbstractModel[] models = train(candidates, recent);
+        double best = Double.POSITIVE_INFINITY;
+        for (TimeSeriesAbstractModel model : models) {
+            if (model != null && model.getMSE() < best) {
+                best = model.getMSE();
+            }
         }
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < models.length; i++) {
+            if (models[i] == null || !(models[i].getMSE() > prune * best)) {
+                names.add(candidates[i]);
+            } else {
+                logger.debug("AutoForecastModel: dropping " + candidates[i] + " with MSE " + models[i].getMSE());
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
 
+    // Trains a new instance of each of the named models, all but the first on
+    // the pool. The models that can't be trained on the data are null.
+    private TimeSeriesAbstractModel[] train(String[] names, final TimeSeries.DataSequence data) throws Exception {
+        List<Future<TimeSeriesAbstractModel>> futures = new ArrayList<Future<TimeSeriesAbstractModel>>();
+        for (int i = 1; i < names.length; i++) {
+            final String name = names[i];
+            futures.add(pool.submit(new Callable<TimeSeriesAbstractModel>() {
+                @Override
+                public TimeSeriesAbstractModel call() throws Exception {
+                    return train(name, data);
+                }
+            }));
+        }
+        TimeSeriesAbstractModel[] models = new TimeSeriesAbstractModel[names.length];
         try {
-            simpleExp.train(data);
-        }catch (IllegalArgumentException e) {
-            simpleExp = null;
+            models[0] = train(names[0], data);
+            for (int i = 1; i < names.length; i++) {
+                try {
+                    models[i] = futures.get(i - 1).get();
+                } catch (ExecutionException e) {
+                    throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            for (Future<TimeSeriesAbstractModel> future : futures) {
+                future.cancel(true);
+            }
         }
+        return models;
+    }
 
+    private TimeSeriesAbstractModel train(String name, TimeSeries.DataSequence data) throws Exception {
+        TimeSeriesAbstractModel model = ModelRegistry.newModel(ModelRegistry.TS_MODELS, name, TimeSeriesAbstractModel.class, p);
         try {
-            tripleExp.train(data);
-        }catch (IllegalArgumentException e) {
-            tripleExp = null;
+            model.train(data);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
+        return model;
+    }
 
-//        try {
-//            weightAvg.train(data);
-//        }catch (IllegalArgumentException e) {
-//            weightAvg = null;
-//        }
-
-//        try {
-//            doubleExp.train(data);
-//        }catch (IllegalArgumentException e) {
-//            doubleExp = null;
-//        }
-
-
-        // Pick best.
-//        if (betterThan(olympModel, myModel)) {
-//            myModel = olympModel;
-//        }
-//        if (movingAvg != null && betterThan(movingAvg, myModel)) {
-//            myModel = movingAvg;
-//        }
-//        if (mlReg != null && betterThan(mlReg, myModel)) {
-//            myModel = mlReg;
-//        }
-        if (naive != null && betterThan(naive, myModel)) {
-            myModel = naive;
-        }
-//        if (poly != null && betterThan(poly, myModel)) {
-//            myModel = poly;
-//        }
-        if (regr != null && betterThan(regr, myModel)) {
-            myModel = regr;
-        }
-        if (simpleExp != null && betterThan(simpleExp, myModel)) {
-            myModel = simpleExp;
-        }
-        if (tripleExp != null && betterThan(tripleExp, myModel)) {
-            myModel = tripleExp;
-        }
-//        if (weightAvg != null && betterThan(weightAvg, myModel)) {
-//            myModel = weightAvg;
-//        }
-//        if (doubleExp != null && betterThan(doubleExp, myModel)) {
-//            myModel = doubleExp;
-//        }
-        
+    // Updates the picked model, whose errors it then takes. The candidates
+    // are only trained again, and the best picked again, by UPDATE_REFIT.
+    public void update(TimeSeries.DataSequence newData) throws Exception {
+        if (myModel == null) {
+            throw new IllegalStateException("AutoForecastModel must be trained before update()");
+        }
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size())) {
+            // A copy, as the picked model must not share the history the
+            // next update() appends to.
+            train(new ColumnarDataSequence(data));
+            return;
+        }
+        myModel.update(newData);
         initForecastErrors(myModel, data);
-       
-        logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Any candidate may be picked, so all of them must forecast the next point.
+    public boolean canForecastNext() {
+        for (String name : candidates) {
+            try {
+                if (!ModelRegistry.newModel(ModelRegistry.TS_MODELS, name, TimeSeriesAbstractModel.class, p).canForecastNext()) {
+                    return false;
+                }
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    public float forecastNext(long time) throws Exception {
+        return myModel.forecastNext(time);
     }
 
     public String getModelName() {
@@ -45,6 +45,18 @@ public class DoubleExponentialSmoothingModel extends TimeSeriesAbstractModel {
     // Stores the historical values.
     private TimeSeries.DataSequence data;
 
+    // The number of historical values the forecaster was fitted to, and the
+    // smoothed values of those update() added after them, which it cannot
+    // forecast. 'updated' has room for more: it holds data.size() - trained
+    // of them.
+    private int trained;
+    private double[] updated;
+
+    // The smoothed value and the slope at the last historical value, from
+    // which update() goes on. Set by its first call.
+    private double level;
+    private double slope;
+
     public DoubleExponentialSmoothingModel(Properties config) {
         super(config);
         modelName = "DoubleExponentialSmoothingModel";
@@ -60,7 +72,7 @@ public class DoubleExponentialSmoothingModel extends TimeSeriesAbstractModel {
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
@@ -71,12 +83,84 @@ public class DoubleExponentialSmoothingModel extends TimeSeriesAbstractModel {
 //        forecaster = new net.sourceforge.openforecast.models.DoubleExponentialSmoothingModel(0.75, 0.1);
         forecaster.init(observedData);
         initForecastErrors(forecaster, data);
+        trained = n;
+        updated = null;
         
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
    
-    public void update(TimeSeries.DataSequence data) {
+    // Goes on smoothing the newer values from the smoothed value and slope of
+    // the last one, with the smoothing constants of the forecaster, which
+    // gives the values it would have with these constants over the whole
+    // history. The constants are fitted again by UPDATE_REFIT.
+    public void update(TimeSeries.DataSequence newData) {
+        if (forecaster == null) {
+            throw new IllegalStateException("DoubleExponentialSmoothingModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size()) || from < 2) {
+            train(data);
+            return;
+        }
+        smoothHistory();
+        updated = ensureCapacity(updated, data.size() - trained);
+        double[] forecast = smooth(from, data.size());
+        // As OpenForecast, the first two values have no errors.
+        addForecastErrors(forecast, data, from, from - 2);
+    }
 
+    public boolean canForecastNext() {
+        return true;
+    }
+
+    // The smoothed level and slope after the last historical value, as
+    // update() forecasts the next value.
+    public float forecastNext(long time) {
+        int n = data.size();
+        if (n < 2) {
+            return data.value(n - 1);
+        }
+        smoothHistory();
+        return (float) (level + slope);
+    }
+
+    // The forecaster does not expose its slopes, so the trained history is
+    // smoothed again once.
+    private void smoothHistory() {
+        if (updated == null) {
+            updated = new double[0];
+            smooth(0, trained);
+        }
+    }
+
+    // Smooths the historical values 'from' to 'to' from 'level' and 'slope',
+    // as OpenForecast does: the first two values are their own smoothed values
+    // and their difference the first slope. Returns the one step ahead
+    // forecasts of the values, from which OpenForecast computes the errors,
+    // and keeps the smoothed values after 'trained' in 'updated'.
+    private double[] smooth(int from, int to) {
+        double alpha = ((net.sourceforge.openforecast.models.DoubleExponentialSmoothingModel) forecaster).getAlpha();
+        double gamma = ((net.sourceforge.openforecast.models.DoubleExponentialSmoothingModel) forecaster).getGamma();
+        double[] forecast = new double[to - from];
+        for (int i = from; i < to; i++) {
+            double value = data.value(i);
+            if (i < 2) {
+                if (i == 1) {
+                    slope = value - level;
+                }
+                level = value;
+                continue;
+            }
+            forecast[i - from] = level + slope;
+            double next = alpha * value + (1.0D - alpha) * (level + slope);
+            slope = gamma * (next - level) + (1.0D - gamma) * slope;
+            level = next;
+            if (i >= trained) {
+                updated[i - trained] = level;
+            }
+        }
+        return forecast;
     }
 
     public String getModelName() {
@@ -84,7 +168,7 @@ public class DoubleExponentialSmoothingModel extends TimeSeriesAbstractModel {
     }
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
-          int n = data.size();
+          int n = trained;
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -100,10 +184,13 @@ public class DoubleExponentialSmoothingModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
+          for (; i < data.size(); i++) {
+              setForecast(sequence, i, data.time(i), (float) updated[i - n]);
+          }
     }
 
     public Map<String, Object> getModelParams(){
@@ -131,16 +218,16 @@ public class DoubleExponentialSmoothingModel extends TimeSeriesAbstractModel {
 //        for( int i = 0 ; i < inputSize ; i++ ){
 //
 //            if( i == 0 ){
-//                preObservedValue = preExpectedValue = observed.get(i).value;
+//                preObservedValue = preExpectedValue = observed.value(i);
 //            }
 //
 ////            slope = this.gamma * (this.forecast(time) - this.forecast(previousTime1)) + (1.0D - this.gamma) * this.getSlope(previousTime1);
 ////            double forecast = this.alpha * this.getObservedValue(t) + (1.0D - this.alpha) * (this.getForecastValue(previousTime) + iaex);
 //
 //            expected_value = alpha * preObservedValue + (1.0D - alpha) * preExpectedValue;
-//            expected.set(i, (new Entry(observed.get(i).time, (float) expected_value )));
+//            expected.set(i, (new Entry(observed.time(i), (float) expected_value )));
 //
-//            preObservedValue = observed.get(i).value;
+//            preObservedValue = observed.value(i);
 //            preExpectedValue = expected_value;
 //        }
     }
@@ -1,10 +1,6 @@
 package com.yahoo.egads.models.tsmm;
 
 import com.yahoo.egads.data.TimeSeries;
-import net.sourceforge.openforecast.DataPoint;
-import net.sourceforge.openforecast.DataSet;
-import net.sourceforge.openforecast.Observation;
-import net.sourceforge.openforecast.ForecastingModel;
 
 import java.util.Properties;
 
@@ -18,26 +14,13 @@ public class LongTripleExponentialSmoothingModel extends TripleExponentialSmooth
   }
 
   public void train(TimeSeries.DataSequence data) {
-    setData(data);
     int n = data.size();
-    DataPoint dp = null;
-    DataSet observedData = new DataSet();
-    for (int i = 0; i < n; i++) {
-      dp = new Observation(data.get(i).value);
-      dp.setIndependentValue("x", i);
-      observedData.add(dp);
-    }
-    observedData.setTimeVariable("x");
-
-
-
     int period = 12;
-    observedData.setPeriodsPerYear(period);
 
     // TODO: Make weights configurable.
 
     if( n > 2 ) {
-      long granularity = data.get(1).time - data.get(0).time;
+      long granularity = data.time(1) - data.time(0);
 
       // second
       if( granularity == 1 ) {
@@ -58,22 +41,12 @@ public class LongTripleExponentialSmoothingModel extends TripleExponentialSmooth
       else{
         throw new IllegalArgumentException("LongTripleExponentialSmoothing models don't work other granularity.");
       }
-      setPeriod(period);
-      observedData.setPeriodsPerYear(period);
-
     }
     else {
       throw new IllegalArgumentException("LongTripleExponentialSmoothing models don't work 1 period.");
     }
 
-    ForecastingModel forecaster = net.sourceforge.openforecast.models.TripleExponentialSmoothingModel.getBestFitModel(observedData);
-    setForecaster(forecaster);
-    forecaster.init(observedData);
-    initForecastErrors(forecaster, data);
-
-
-    System.out.println(forecaster.toString());
-    logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+    fit(data, period);
   }
 
 
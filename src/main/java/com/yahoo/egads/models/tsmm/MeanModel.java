@@ -25,6 +25,7 @@ package com.yahoo.egads.models.tsmm;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.egads.data.TimeSeries;
 import com.yahoo.egads.data.TimeSeries.Entry;
+import com.yahoo.egads.utilities.QuickSelect;
 import net.sourceforge.openforecast.DataPoint;
 import net.sourceforge.openforecast.DataSet;
 import net.sourceforge.openforecast.ForecastingModel;
@@ -42,6 +43,13 @@ public class MeanModel extends TimeSeriesAbstractModel {
     // Stores the historical values.
     private TimeSeries.DataSequence data;
 
+    // The lower and the upper half of the historical values, with the sums
+    // the forecast errors are computed from. Built by the first update(),
+    // which then adds each value in logarithmic time and reads the median
+    // from the tops of the halves.
+    private transient Half lower;
+    private transient Half upper;
+
     public MeanModel(Properties config) {
         super(config);
         modelName = "MeanModel";
@@ -54,6 +62,8 @@ public class MeanModel extends TimeSeriesAbstractModel {
     public void train(TimeSeries.DataSequence data) {
 
         this.data = data;
+        lower = null;
+        upper = null;
         int n = data.size();
 
         if( n == 0 )
@@ -62,20 +72,14 @@ public class MeanModel extends TimeSeriesAbstractModel {
         float[] listValue = new float[n];
 
         for (int i = 0; i < n; i++) {
-            listValue[i] = data.get(i).value;
+            listValue[i] = data.value(i);
         }
 
-        Arrays.sort(listValue);
-
-        MeanValue = getMedian(listValue);
-
-        ArrayList<Float> expected = new ArrayList<>();
+        MeanValue = QuickSelect.median(listValue, 0, n);
 
-        for (int i = 0; i < n; i++) {
-            expected.add(MeanValue);
-        }
+        Arrays.fill(listValue, MeanValue);
 
-        initForecastErrors(expected, data);
+        initForecastErrors(listValue, data);
 
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
 
@@ -92,8 +96,167 @@ public class MeanModel extends TimeSeriesAbstractModel {
         }
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Adds newer values to the halves and reads their median from them. The
+    // forecast errors of every point change with the median, and are found
+    // from the sums of the halves rather than by going over the history.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("MeanModel must be trained before update()");
+        }
+        if (lower == null) {
+            int n = data.size();
+            float[] sorted = new float[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = data.value(i);
+            }
+            Arrays.sort(sorted);
+            lower = new Half(1);
+            upper = new Half(-1);
+            // Ascending values make a heap with the smallest on top, and
+            // descending ones a heap with the largest.
+            for (int i = (n + 1) / 2 - 1; i >= 0; i--) {
+                lower.append(sorted[i]);
+            }
+            for (int i = (n + 1) / 2; i < n; i++) {
+                upper.append(sorted[i]);
+            }
+        }
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size())) {
+            train(data);
+            return;
+        }
+        for (int i = 0; i < newData.size(); i++) {
+            insert(newData.value(i));
+        }
+        int n = lower.size + upper.size;
+        if (n == 0 || newData.size() == 0) {
+            return;
+        }
+        MeanValue = n % 2 == 1 ? lower.top() : (float) ((lower.top() + upper.top()) / 2.0);
+
+        // The values of the lower half are at most the median and those of
+        // the upper half at least, which gives the signs of their errors.
+        double m = MeanValue;
+        double sum = lower.sum + upper.sum;
+        double sumAbsErr = m * lower.size - lower.sum + upper.sum - m * upper.size;
+        double sumAbsPercentErr = m * (lower.sumInverse - upper.sumInverse) - lower.sumSign + upper.sumSign;
+        if (lower.zeros + upper.zeros > 0) {
+            sumAbsPercentErr += m == 0 ? Double.NaN : Double.POSITIVE_INFINITY;
+        }
+        double sumErrSquared = n * m * m - 2 * m * sum + lower.sumSq + upper.sumSq;
+        this.bias = (n * m - sum) / n;
+        this.mad = Math.max(sumAbsErr, 0) / n;
+        this.mape = sumAbsPercentErr / n;
+        this.mse = Math.max(sumErrSquared, 0) / n;
+        this.sae = Math.max(sumAbsErr, 0);
+        errorsInit = true;
+    }
+
+    // Adds the value to its half and moves the top of one half to the other
+    // when the lower one no longer holds half of the values, rounded up.
+    private void insert(float value) {
+        if (lower.size == 0 || Float.compare(value, lower.top()) <= 0) {
+            lower.push(value);
+        } else {
+            upper.push(value);
+        }
+        if (lower.size > upper.size + 1) {
+            upper.push(lower.pop());
+        } else if (upper.size > lower.size) {
+            lower.push(upper.pop());
+        }
+    }
+
+    // Half of the values in a binary heap, with the largest on top for the
+    // lower half and the smallest for the upper one, and the sums of the
+    // values, of their squares, and of the inverses of their absolute values
+    // and their signs, without the zeros, which are counted.
+    private static final class Half {
+        // 1 to keep the largest value on top, -1 the smallest.
+        private final int order;
+        private float[] heap = new float[16];
+        int size;
+        double sum;
+        double sumSq;
+        double sumInverse;
+        double sumSign;
+        int zeros;
+
+        Half(int order) {
+            this.order = order;
+        }
+
+        float top() {
+            return heap[0];
+        }
+
+        // Adds a value that belongs at the end of the heap.
+        void append(float value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size + (size >> 1) + 1);
+            }
+            heap[size++] = value;
+            count(value, 1);
+        }
+
+        void push(float value) {
+            append(value);
+            int i = size - 1;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!above(value, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        float pop() {
+            float top = heap[0];
+            float value = heap[--size];
+            int i = 0;
+            int child;
+            while ((child = 2 * i + 1) < size) {
+                if (child + 1 < size && above(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!above(heap[child], value)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+            count(top, -1);
+            return top;
+        }
+
+        private boolean above(float a, float b) {
+            return order * Float.compare(a, b) > 0;
+        }
+
+        private void count(float value, int sign) {
+            sum += sign * (double) value;
+            sumSq += sign * (double) value * value;
+            if (value == 0) {
+                zeros += sign;
+            } else {
+                sumInverse += sign / Math.abs((double) value);
+                sumSign += sign * Math.signum(value);
+            }
+        }
+    }
+
+    public boolean canForecastNext() {
+        return true;
+    }
 
+    // The median of the historical values, as for every other point.
+    public float forecastNext(long time) {
+        return MeanValue;
     }
 
     public String getModelName() {
@@ -104,8 +267,7 @@ public class MeanModel extends TimeSeriesAbstractModel {
 
         int n = data.size();
         for (int i = 0; i < n; i++) {
-            sequence.set(i, (new Entry(data.get(i).time, MeanValue)));
-            logger.info(data.get(i).time + "," + data.get(i).value + "," + MeanValue);
+            setForecast(sequence, i, data.time(i), MeanValue);
         }
     }
 
@@ -127,7 +289,7 @@ public class MeanModel extends TimeSeriesAbstractModel {
         int inputSize = observed.size();
 
         for( int i = 0 ; i < inputSize ; i++ ){
-            expected.set(i, (new Entry(observed.get(i).time, (float) mean )));
+            expected.set(i, (new Entry(observed.time(i), (float) mean )));
         }
 
     }
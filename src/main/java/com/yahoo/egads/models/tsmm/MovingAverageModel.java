@@ -25,7 +25,14 @@ import java.util.*;
 public class MovingAverageModel extends TimeSeriesAbstractModel {
     // methods ////////////////////////////////////////////////
 
-    // The model that will be used for forecasting.
+    // Whether the model is computed by OpenForecast, see OPENFORECAST_MODELS.
+    private boolean openForecast;
+
+    // The number of values averaged by a forecast.
+    // TODO: Make window configurable.
+    private static final int WINDOW = 2;
+
+    // The model that will be used for forecasting by OpenForecast.
     private ForecastingModel forecaster;
     
     // Stores the historical values.
@@ -34,34 +41,88 @@ public class MovingAverageModel extends TimeSeriesAbstractModel {
     public MovingAverageModel(Properties config) {
         super(config);
         modelName = "MovingAverageModel";
+        openForecast = useOpenForecast(config, modelName);
     }
 
     public void reset() {
         // At this point, reset does nothing.
     }
     
+    // The forecast of each historical value from the 'from'-th on: the mean
+    // of the WINDOW values before it, kept as a running sum. The first WINDOW
+    // values have none and are their own forecasts, as OpenForecast has it.
+    private double[] forecasts(int from) {
+        int n = data.size();
+        double[] expected = new double[n - from];
+        double sum = 0;
+        int start = Math.max(0, from - WINDOW);
+        for (int i = start; i < n; i++) {
+            if (i >= from) {
+                expected[i - from] = i < WINDOW ? data.value(i) : sum / WINDOW;
+            }
+            if (i - WINDOW >= start) {
+                sum -= data.value(i - WINDOW);
+            }
+            sum += data.value(i);
+        }
+        return expected;
+    }
+
     public void train(TimeSeries.DataSequence data) {
         this.data = data;
         int n = data.size();
+        if (!openForecast) {
+            if (n < WINDOW) {
+                throw new IllegalArgumentException("Data set too small. Need " + WINDOW + " data points, but only " + n + " passed to train.");
+            }
+            initForecastErrors(forecasts(0), data, WINDOW);
+
+            logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+            return;
+        }
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
         observedData.setTimeVariable("x"); 
         
-        // TODO: Make window configurable.
-        forecaster = new net.sourceforge.openforecast.models.MovingAverageModel(2);
+        forecaster = new net.sourceforge.openforecast.models.MovingAverageModel(WINDOW);
         forecaster.init(observedData);
         initForecastErrors(forecaster, data);
         
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
   
-    public void update(TimeSeries.DataSequence data) {
+    // Adds newer values to the history. Their forecasts only depend on the
+    // values before them, so the forecast errors are only added for them.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("MovingAverageModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size()) || openForecast) {
+            train(data);
+            return;
+        }
+        addForecastErrors(forecasts(from), data, from, from - WINDOW);
+    }
 
+    public boolean canForecastNext() {
+        return !openForecast;
+    }
+
+    // The mean of the last WINDOW historical values.
+    public float forecastNext(long time) {
+        int n = data.size();
+        double sum = 0;
+        for (int i = n - WINDOW; i < n; i++) {
+            sum += data.value(i);
+        }
+        return (float) (sum / WINDOW);
     }
 
     public String getModelName() {
@@ -70,6 +131,13 @@ public class MovingAverageModel extends TimeSeriesAbstractModel {
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
           int n = data.size();
+          if (!openForecast) {
+              double[] expected = forecasts(0);
+              for (int i = 0; i < n; i++) {
+                  setForecast(sequence, i, data.time(i), (float) expected[i]);
+              }
+              return;
+          }
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -85,8 +153,8 @@ public class MovingAverageModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
     }
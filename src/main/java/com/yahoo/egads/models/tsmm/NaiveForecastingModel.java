@@ -25,7 +25,10 @@ import java.util.*;
 public class NaiveForecastingModel extends TimeSeriesAbstractModel {
     // methods ////////////////////////////////////////////////
 
-    // The model that will be used for forecasting.
+    // Whether the model is computed by OpenForecast, see OPENFORECAST_MODELS.
+    private boolean openForecast;
+
+    // The model that will be used for forecasting by OpenForecast.
     private ForecastingModel forecaster;
     
     // Stores the historical values.
@@ -34,19 +37,41 @@ public class NaiveForecastingModel extends TimeSeriesAbstractModel {
     public NaiveForecastingModel(Properties config) {
         super(config);
         modelName = "NaiveForecastingModel";
+        openForecast = useOpenForecast(config, modelName);
     }
 
     public void reset() {
         // At this point, reset does nothing.
     }
       
+    // The forecast of each historical value from the 'from'-th on: the value
+    // before it, and the value itself for the first one, as OpenForecast has
+    // it.
+    private double[] forecasts(int from) {
+        int n = data.size();
+        double[] expected = new double[n - from];
+        for (int i = from; i < n; i++) {
+            expected[i - from] = data.value(i == 0 ? 0 : i - 1);
+        }
+        return expected;
+    }
+
     public void train(TimeSeries.DataSequence data) {
         this.data = data;
         int n = data.size();
+        if (!openForecast) {
+            if (n < 1) {
+                throw new IllegalArgumentException("Data set too small. Need " + 1 + " data points, but only " + n + " passed to train.");
+            }
+            initForecastErrors(forecasts(0), data, 1);
+
+            logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+            return;
+        }
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
@@ -59,8 +84,28 @@ public class NaiveForecastingModel extends TimeSeriesAbstractModel {
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Adds newer values to the history. Their forecasts only depend on the
+    // values before them, so the forecast errors are only added for them.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("NaiveForecastingModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size()) || openForecast) {
+            train(data);
+            return;
+        }
+        addForecastErrors(forecasts(from), data, from, from - 1);
+    }
 
+    public boolean canForecastNext() {
+        return !openForecast;
+    }
+
+    // The last historical value.
+    public float forecastNext(long time) {
+        return data.value(data.size() - 1);
     }
 
     public String getModelName() {
@@ -69,6 +114,13 @@ public class NaiveForecastingModel extends TimeSeriesAbstractModel {
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
           int n = data.size();
+          if (!openForecast) {
+              double[] expected = forecasts(0);
+              for (int i = 0; i < n; i++) {
+                  setForecast(sequence, i, data.time(i), (float) expected[i]);
+              }
+              return;
+          }
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -84,8 +136,8 @@ public class NaiveForecastingModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
     }
@@ -109,13 +161,13 @@ public class NaiveForecastingModel extends TimeSeriesAbstractModel {
         double preObservedValue = 0;
         for( int i = 0 ; i < inputSize ; i++ ){
             if( i == 0 ){
-                preObservedValue = observed.get(i).value;
+                preObservedValue = observed.value(i);
             }
 
             double expected_value = preObservedValue;
-            expected.set(i, (new Entry(observed.get(i).time, (float) expected_value )));
+            expected.set(i, (new Entry(observed.time(i), (float) expected_value )));
 
-            preObservedValue = observed.get(i).value;
+            preObservedValue = observed.value(i);
         }
     }
 
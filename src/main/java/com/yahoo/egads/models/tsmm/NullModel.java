@@ -39,6 +39,14 @@ public class NullModel extends TimeSeriesAbstractModel {
     public void update(TimeSeries.DataSequence data) {
     }
 
+    public boolean canForecastNext() {
+        return true;
+    }
+
+    public float forecastNext(long time) {
+        return 0;
+    }
+
     public String getModelName() {
         return "NullModel";
     }
@@ -46,8 +54,8 @@ public class NullModel extends TimeSeriesAbstractModel {
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
         int n = data.size();
         for (int i = 0; i < n; i++) {
-            sequence.set(i, (new Entry(data.get(i).time, (long) 0.0)));
-            logger.info(data.get(i).time + "," + data.get(i).value + "," + data.get(i).value);
+            sequence.set(i, (new Entry(data.time(i), (long) 0.0)));
+            logger.info(data.time(i) + "," + data.value(i) + "," + data.value(i));
         }
     }
 
@@ -12,14 +12,16 @@ package com.yahoo.egads.models.tsmm;
 import com.yahoo.egads.data.*;
 import com.yahoo.egads.data.TimeSeries.Entry;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ArrayList;
-import java.util.Collections;
 
 import com.yahoo.egads.utilities.FileUtils;
 
-public class OlympicModel extends TimeSeriesAbstractModel {
+public class OlympicModel extends TimeSeriesAbstractModel implements BinaryModel {
     // methods ////////////////////////////////////////////////
 
 	private static final long serialVersionUID = 1L;
@@ -63,6 +65,10 @@ public class OlympicModel extends TimeSeriesAbstractModel {
     
     // The actual model that stores the expectations.
     protected ArrayList<Float> model;
+    // The time between the historical values, or 0 if they are not evenly
+    // spaced. The expectation at a time is then found from its offset to the
+    // first value, otherwise by its position in the historical values.
+    protected long interval;
     
     public OlympicModel(Properties config) {
         super(config);
@@ -88,80 +94,205 @@ public class OlympicModel extends TimeSeriesAbstractModel {
     }
 
     public void reset() {
-        // At this point, reset does nothing.
+        model.clear();
+    }
+
+    // The expectations and the historical values, whose times predict() uses.
+    public void writeState(DataOutput out) throws IOException {
+        writeErrors(out);
+        ModelCodec.writeSequence(out, data);
+        ModelCodec.writeFloats(out, model);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        readErrors(in);
+        data = ModelCodec.readSequence(in);
+        interval = interval(data);
+        float[] values = ModelCodec.readFloats(in);
+        model = new ArrayList<Float>(values.length);
+        for (float value : values) {
+            model.add(value);
+        }
     }
 
     public void train(TimeSeries.DataSequence data) {
         this.data = data;
+        this.interval = interval(data);
         
         int n = data.size();
         
         java.util.Arrays.sort(baseWindows);
         java.util.Arrays.sort(timeShifts);
-        float precision = (float) 0.000001;
+
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = data.value(i);
+        }
+        // The expected value of every point for each base window, which the
+        // time-shifts below look up rather than compute again.
+        float[][] expected = new float[baseWindows.length][];
+        for (int w = 0; w < baseWindows.length; w++) {
+            expected[w] = computeExpected(values, baseWindows[w]);
+        }
         
         for (int i = 0; i < n; i++) {
-            float baseVal = Float.POSITIVE_INFINITY;
-            float tmpbase = (float) 0.0;
-            
-            // Cannot compute the expected value if the time-series
-            // is too short preventing us form getting the reference
-            // window.
-            if ((i - baseWindows[0]) < 0) {
-                model.add(data.get(i).value);
-                continue;
-            }
-            
-            // Attempt to shift the time-series.
-            for (int w = 0; w < baseWindows.length; w++) {
-                for (int j = 0; j < timeShifts.length; j++) {
-                    if (timeShifts[j] == 0) {
-                        tmpbase = computeExpected(i, baseWindows[w]);
-                        if ((Math.abs(tmpbase - data.get(i).value) - Math.abs(baseVal - data.get(i).value)) < precision) {
+            model.add(expectation(values, i, expected, 0));
+        }
+        
+        initForecastErrors(model, data);
+        
+        logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+    }
+
+    // The expectation of point i: of the expected values of the base windows
+    // at the time-shifts around it, the one closest to its value. expected[w]
+    // holds those of base window w from the 'offset'-th point on.
+    private float expectation(float[] values, int i, float[][] expected, int offset) {
+        int n = offset + expected[0].length;
+        float baseVal = Float.POSITIVE_INFINITY;
+        float tmpbase = (float) 0.0;
+        float precision = (float) 0.000001;
+        
+        // Cannot compute the expected value if the time-series
+        // is too short preventing us form getting the reference
+        // window.
+        if ((i - baseWindows[0]) < 0) {
+            return values[i];
+        }
+        
+        // Attempt to shift the time-series.
+        for (int w = 0; w < baseWindows.length; w++) {
+            for (int j = 0; j < timeShifts.length; j++) {
+                if (timeShifts[j] == 0) {
+                    tmpbase = expected[w][i - offset];
+                    if ((Math.abs(tmpbase - values[i]) - Math.abs(baseVal - values[i])) < precision) {
+                        baseVal = tmpbase;
+                    }
+                } else {
+                    if (i + timeShifts[j] < n) {
+                        tmpbase = expected[w][i + timeShifts[j] - offset];
+                        if ((Math.abs(tmpbase - values[i]) - Math.abs(baseVal - values[i])) < precision) {
                             baseVal = tmpbase;
                         }
-                    } else {
-                        if (i + timeShifts[j] < n) {
-                            tmpbase = computeExpected(i + timeShifts[j], baseWindows[w]);
-                            if ((Math.abs(tmpbase - data.get(i).value) - Math.abs(baseVal - data.get(i).value)) < precision) {
-                                baseVal = tmpbase;
-                            }
-                        }
-                        if (i - timeShifts[j] >= 0) {
-                            tmpbase = computeExpected(i - timeShifts[j], baseWindows[w]);
-                            if ((Math.abs(tmpbase - data.get(i).value) - Math.abs(baseVal - data.get(i).value)) < precision) {
-                                baseVal = tmpbase;
-                            }
+                    }
+                    if (i - timeShifts[j] >= 0) {
+                        tmpbase = expected[w][i - timeShifts[j] - offset];
+                        if ((Math.abs(tmpbase - values[i]) - Math.abs(baseVal - values[i])) < precision) {
+                            baseVal = tmpbase;
                         }
                     }
                 }
             }
-            model.add(baseVal);
         }
-        
-        initForecastErrors(model, data);
-        
-        logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+        return baseVal;
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Adds newer values to the history and computes their expectations, and
+    // again those of the values up to the largest time-shift before them,
+    // which look ahead at the newer ones. This gives the expectations train()
+    // would over the whole history, from the values of the last NUM_WEEKS
+    // base windows before each point rather than from all of them.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("OlympicModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size())) {
+            reset();
+            train(data);
+            return;
+        }
+        int n = data.size();
+        if (from < 2) {
+            interval = interval(data);
+        } else if (interval != 0) {
+            for (int i = from; i < n; i++) {
+                if (data.time(i) - data.time(i - 1) != interval) {
+                    interval = 0;
+                    break;
+                }
+            }
+        }
+        java.util.Arrays.sort(baseWindows);
+        java.util.Arrays.sort(timeShifts);
+        int shift = timeShifts.length > 0 ? timeShifts[timeShifts.length - 1] : 0;
+        int start = Math.max(0, from - shift);
+        int offset = Math.max(0, start - shift);
 
+        // The values from the earliest one a recomputed expectation reads on,
+        // indexed from it.
+        int first = offset;
+        for (int pl : baseWindows) {
+            first = Math.min(first, Math.max(0, offset - pl * Math.max(numWeeks, 1)));
+        }
+        float[] values = new float[n - first];
+        for (int i = first; i < n; i++) {
+            values[i - first] = data.value(i);
+        }
+        float[][] expected = new float[baseWindows.length][n - offset];
+        SortedWindow window = new SortedWindow(Math.max(numWeeks, 0) + 1);
+        for (int w = 0; w < baseWindows.length; w++) {
+            for (int i = offset; i < n; i++) {
+                expected[w][i - offset] = computeExpected(values, i - first, baseWindows[w], window);
+            }
+        }
+
+        double[] old = new double[from - start];
+        for (int i = start; i < from; i++) {
+            old[i - start] = model.get(i);
+        }
+        removeForecastErrors(old, data, start, from);
+        model.subList(start, from).clear();
+        double[] forecast = new double[n - start];
+        for (int i = start; i < n; i++) {
+            float value = expectation(values, i - first, expected, offset - first);
+            model.add(value);
+            forecast[i - start] = value;
+        }
+        addForecastErrors(forecast, data, start, start);
     }
 
     public String getModelName() {
         return "OlympicModel";
     }
 
-    private Float sum(ArrayList<Float> list) {
-        float sum = 0;
-        for (float i : list) {
-            sum = sum + i;
+    // The expected value of every point from the points 'pl' apart before
+    // it. Each point of a residue class modulo 'pl' has the window of the one
+    // before it, with one value added and one dropped, so the window is kept
+    // sorted as it slides rather than sorted again for every point.
+    private float[] computeExpected(float[] values, int pl) {
+        int n = values.length;
+        float[] expected = new float[n];
+        SortedWindow window = new SortedWindow(Math.max(numWeeks, 0) + 1);
+
+        // With dynamic parameters the window depends on the point itself.
+        if (dynamicParameters == 1 || pl < 1 || numWeeks < 1) {
+            for (int i = 0; i < n; i++) {
+                expected[i] = computeExpected(values, i, pl, window);
+            }
+            return expected;
+        }
+        for (int r = 0; r < pl && r < n; r++) {
+            window.clear();
+            for (int i = r; i < n; i += pl) {
+                if (i - pl < 0) {
+                    expected[i] = Float.POSITIVE_INFINITY;
+                    continue;
+                }
+                window.add(values[i - pl]);
+                long dropped = i - (long) pl * (numWeeks + 1);
+                if (dropped >= 0) {
+                    window.remove(values[(int) dropped]);
+                }
+                expected[i] = window.trimmedMean(numToDrop);
+            }
         }
-        return sum;
+        return expected;
     }
-    
-    private float computeExpected(int i, int pl) {
-        ArrayList<Float> vals = new ArrayList<Float>();
+
+    // The expected value of point i alone, using 'window' for its values.
+    private float computeExpected(float[] values, int i, int pl, SortedWindow window) {
         float precision = (float) 0.000001;
         
         int j = 1;
@@ -169,43 +300,152 @@ public class OlympicModel extends TimeSeriesAbstractModel {
         if ((i - pl * j) < 0) {
             return Float.POSITIVE_INFINITY;
         }
+        window.clear();
+        float sum = 0;
         while (j <= this.numWeeks && (i - pl * j) >= 0) {
-            float lastWeeksVal = data.get(i - pl * j).value;
+            float lastWeeksVal = values[i - pl * j];
             // If dynamic parameters are turned on,
             // then we check if our error improved from last time,
             // if not, then we stop and use the old result.
-            if (dynamicParameters == 1 && vals.size() > 0) {
-                float withNewVal = (sum(vals) + lastWeeksVal) / (vals.size() + 1);
-                float withoutNewVal = (sum(vals)) / (vals.size());
-                if ((Math.abs(withNewVal - data.get(i).value) - Math.abs(withoutNewVal - data.get(i).value)) > precision) {
+            if (dynamicParameters == 1 && window.size() > 0) {
+                float withNewVal = (sum + lastWeeksVal) / (window.size() + 1);
+                float withoutNewVal = sum / window.size();
+                if ((Math.abs(withNewVal - values[i]) - Math.abs(withoutNewVal - values[i])) > precision) {
                     break;
                 }
             }
-            vals.add(lastWeeksVal);
+            window.add(lastWeeksVal);
+            sum = sum + lastWeeksVal;
             j++;
         }
+        return window.trimmedMean(numToDrop);
+    }
 
-        Collections.sort(vals);
-        j = 0;
+    // The values of a window in ascending order, in which a value is added or
+    // removed with a binary search and a shift of the larger values.
+    private static final class SortedWindow {
+        private final float[] sorted;
+        private int size = 0;
 
-        if (vals.size() > (2 * this.numToDrop)) {
-            while (j < this.numToDrop) {
-                vals.remove(vals.size() - 1);
-                vals.remove(0);
-                j++;
+        SortedWindow(int capacity) {
+            sorted = new float[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(float value) {
+            int at = java.util.Arrays.binarySearch(sorted, 0, size, value);
+            if (at < 0) {
+                at = -at - 1;
             }
+            System.arraycopy(sorted, at, sorted, at + 1, size - at);
+            sorted[at] = value;
+            size++;
+        }
+
+        // Removes a value that was added.
+        void remove(float value) {
+            int at = java.util.Arrays.binarySearch(sorted, 0, size, value);
+            System.arraycopy(sorted, at + 1, sorted, at, size - at - 1);
+            size--;
+        }
+
+        // The mean of the values without the 'drop' lowest and highest ones,
+        // if more than 2 * drop are left. The values are summed in ascending
+        // order so that the mean is rounded as that of the sorted list was.
+        float trimmedMean(int drop) {
+            int from = 0;
+            int to = size;
+            if (drop > 0 && size > 2 * drop) {
+                from = drop;
+                to = size - drop;
+            }
+            float sum = 0;
+            for (int k = from; k < to; k++) {
+                sum = sum + sorted[k];
+            }
+            return sum / (to - from);
         }
-                
-        float baseVal = sum(vals) / vals.size();
-        return baseVal;
     }
     
+    // Writes the expectation at the time of each point of 'sequence' into
+    // it, leaving the points without one as they are. Without an interval,
+    // the points take the times and expectations of the historical values in
+    // order instead.
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
+        if (interval == 0) {
+            int n = data.size();
+            for (int i = 0; i < n; i++) {
+                sequence.set(i, (new Entry(data.time(i), model.get(i))));
+            }
+            return;
+        }
+        int m = sequence.size();
+        for (int i = 0; i < m; i++) {
+            int slot = slot(sequence.time(i));
+            if (slot >= 0) {
+                sequence.setValue(i, model.get(slot));
+            }
+        }
+    }
+
+    // Same as above for callers that only need the values: sets values[i] to
+    // the expectation at times[i] where there is one.
+    public void predict(long[] times, float[] values) {
+        for (int i = 0; i < times.length; i++) {
+            int slot = slot(times[i]);
+            if (slot >= 0) {
+                values[i] = model.get(slot);
+            }
+        }
+    }
+
+    // The index of the expectation at 'time', or -1 if there is none.
+    private int slot(long time) {
         int n = data.size();
-        for (int i = 0; i < n; i++) {
-            sequence.set(i, (new Entry(data.get(i).time, model.get(i))));
-            logger.info(data.get(i).time + "," + data.get(i).value + "," + model.get(i));
+        if (interval == 0) {
+            // By a binary search of the historical values.
+            int lo = 0;
+            int hi = n - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long t = data.time(mid);
+                if (t < time) {
+                    lo = mid + 1;
+                } else if (t > time) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+        long offset = time - data.time(0);
+        if (offset < 0 || offset % interval != 0 || offset / interval >= n) {
+            return -1;
+        }
+        return (int) (offset / interval);
+    }
+
+    // The time between evenly spaced points, or 0.
+    private static long interval(TimeSeries.DataSequence data) {
+        int n = data.size();
+        if (n < 2) {
+            return 0;
+        }
+        long step = data.time(1) - data.time(0);
+        for (int i = 2; i < n && step > 0; i++) {
+            if (data.time(i) - data.time(i - 1) != step) {
+                return 0;
+            }
         }
+        return Math.max(step, 0);
     }
 
     public Map<String, Object> getModelParams(){
@@ -5,24 +5,24 @@
  */
 package com.yahoo.egads.models.tsmm;
 
+import java.io.Serializable;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Properties;
 
+import com.yahoo.egads.data.ColumnarDataSequence;
 import com.yahoo.egads.data.TimeSeries;
-import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.math3.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.yahoo.egads.data.TimeSeries.Entry;
 import com.yahoo.egads.data.WeightedValue;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.yahoo.egads.data.TimeSeries.DataSequence;
 
 /**
@@ -140,13 +140,28 @@ public class OlympicModel2 extends TimeSeriesAbstractModel {
     protected final int drop_lowest;
 
     /** Contains the model data points generated after train() has been called. */
-    protected final List<Pair<Long, Double>> model;
+    protected final Points model;
     
     /** An array of timestamps for each period of training data. */
     protected final ZonedDateTime[] windowTimes;
     
     /** An array of indices into the DataSequence object when training. */
     protected final int[] indices;
+    
+    /** The data the model was trained and updated with. */
+    protected ColumnarDataSequence history;
+    
+    /** The first timestamp of the current model in Unix epoch seconds, 
+     * rolled forward by update(). */
+    protected long modelStart;
+    
+    /** Whether the zone has no DST so days and weeks are fixed durations. */
+    protected final boolean fixedOffset;
+    
+    /** Scratch space for the window ends and per window aggregates. */
+    private final long[] windowEnds;
+    private final double[] windowValues;
+    private final int[] windowWeights;
 
     /**
      * Default Ctor
@@ -234,98 +249,204 @@ public class OlympicModel2 extends TimeSeriesAbstractModel {
 
         zone = ZoneId.of(config.getProperty("TIMEZONE", "UTC"));
         
+        fixedOffset = zone.getRules().isFixedOffset();
+        
         windowTimes = new ZonedDateTime[pastWindows];
         indices = new int[pastWindows];
-        model = Lists.newArrayList();
+        windowEnds = new long[pastWindows];
+        windowValues = new double[pastWindows];
+        windowWeights = new int[pastWindows];
+        model = new Points();
     }
     
     @Override
     public void train(final DataSequence data) throws Exception {
-        initializeIndices(data, modelStartEpoch);
+        train(data, modelStartEpoch);
         
-        final long size = data.size();
-        ZonedDateTime model_ts = Instant.ofEpochSecond(modelStartEpoch)
-                .atZone(zone);
-        ZonedDateTime end_ts = model_ts.plus(windowSize, windowUnits);
+        // keep our own copy of the baseline for update().
+        history = new ColumnarDataSequence(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            history.append(data.time(i), data.value(i));
+        }
+        modelStart = modelStartEpoch;
+    }
+    
+    /**
+     * Generates the model for the windows starting at the given time.
+     * @param data A non-null and non-empty data sequence object to read from.
+     * @param start The first timestamp of the model in Unix epoch seconds.
+     */
+    private void train(final DataSequence data, final long start) {
+        initializeIndices(data, start);
+        
+        final int size = data.size();
+        long model_ts = start;
+        long end_ts = plus(model_ts, windowSize, windowUnits);
         int prediction_index = 0;
-        final List<WeightedValue> accumulator = Lists.newArrayList();
         
         // start the loop and break once we've filled the model.
         while (true) {
-            accumulator.clear();
-            for (int i = 0; i < windowTimes.length; i++) {
-                if (indices[i] < 0 || indices[i] >= size) {
-                    continue;
-                }
-                
-                // advance
-                windowTimes[i] = windowTimes[i].plus(interval,
-                        intervalUnits);
-                long interval_end = windowTimes[i].toEpochSecond();
-                final List<Double> doubles = Lists.newArrayList();
-                long first_ts = -1;
-                while (indices[i] < size
-                        && data.get(indices[i]).time < interval_end) {
-                    if (Double.isFinite(data.get(indices[i]).value)) {
-                        doubles.add((double) data.get(indices[i]).value);
-                    }
-                    if (first_ts < 0) {
-                        first_ts = data.get(indices[i]).time;
-                    }
-                    indices[i]++;
-                }
-
-                if (!doubles.isEmpty()) {
-                    // TODO - for DST if we jumped back then we may have a
-                    // period
-                    // with more than we expect. In that case, depending on the
-                    // aggregator, we may need to use only part of the data.
-                    // TODO - potentially other aggregations.
-                    double sum = 0;
-                    for (final Double v : doubles) {
-                        sum += v;
-                    }
-                    accumulator.add(
-                            new WeightedValue((sum / doubles.size()), i + 1));
-                }
-            }
+            model.add(model_ts, aggregateWindows(data, size));
 
-            if (drop_lowest > 0 || drop_highest > 0) {
-                if (drop_highest > drop_lowest) {
-                    WeightedValue.drop(accumulator, drop_highest, true);
-                    WeightedValue.drop(accumulator, drop_lowest, false);
-                } else {
-                    WeightedValue.drop(accumulator, drop_lowest, false);
-                    WeightedValue.drop(accumulator, drop_highest, true);
-                }
-            }
-            
-            model.add(new Pair<Long, Double>(model_ts.toEpochSecond(),
-                    WeightedValue.aggregate(accumulator, windowAggregator)));
-
-            model_ts = model_ts.plus(interval, intervalUnits);
-            if (model_ts.toEpochSecond() > end_ts.toEpochSecond()) {
+            model_ts = plus(model_ts, interval, intervalUnits);
+            if (model_ts > end_ts) {
                 prediction_index++;
                 if (prediction_index >= futureWindows) {
                     break;
                 }
-                model_ts = Instant.ofEpochSecond(modelStartEpoch).atZone(zone);
-                model_ts = model_ts.plus(
+                model_ts = plus(start,
                         (windowDistanceInterval * prediction_index), 
                         windowDistanceIntervalUnits);
-                end_ts = model_ts.plus(windowSize, windowUnits);
+                end_ts = plus(model_ts, windowSize, windowUnits);
                 for (int i = 0; i < windowTimes.length; i++) {
                     windowTimes[i] = null;
                     indices[i] = 0;
                 }
-                initializeIndices(data, model_ts.toEpochSecond());
+                initializeIndices(data, model_ts);
+            }
+        }
+    }
+    
+    /**
+     * Advances each window by one interval and aggregates the values read
+     * from the windows into the next model value.
+     * @param data The data sequence the indices point into.
+     * @param size The number of points to read from the data.
+     * @return The aggregated value.
+     */
+    private double aggregateWindows(final DataSequence data, final int size) {
+        int count = 0;
+        for (int i = 0; i < windowEnds.length; i++) {
+            if (indices[i] < 0 || indices[i] >= size) {
+                continue;
+            }
+            
+            // advance
+            windowEnds[i] = plus(windowEnds[i], interval, intervalUnits);
+            final long interval_end = windowEnds[i];
+            double sum = 0;
+            int n = 0;
+            while (indices[i] < size
+                    && data.time(indices[i]) < interval_end) {
+                final float value = data.value(indices[i]);
+                if (Double.isFinite(value)) {
+                    sum += value;
+                    n++;
+                }
+                indices[i]++;
+            }
+
+            if (n > 0) {
+                // TODO - for DST if we jumped back then we may have a
+                // period
+                // with more than we expect. In that case, depending on the
+                // aggregator, we may need to use only part of the data.
+                // TODO - potentially other aggregations.
+                windowValues[count] = sum / n;
+                windowWeights[count] = i + 1;
+                count++;
+            }
+        }
+
+        if (drop_lowest > 0 || drop_highest > 0) {
+            if (drop_highest > drop_lowest) {
+                count = WeightedValue.drop(windowValues, windowWeights, count, 
+                        drop_highest, true);
+                count = WeightedValue.drop(windowValues, windowWeights, count, 
+                        drop_lowest, false);
+            } else {
+                count = WeightedValue.drop(windowValues, windowWeights, count, 
+                        drop_lowest, false);
+                count = WeightedValue.drop(windowValues, windowWeights, count, 
+                        drop_highest, true);
             }
         }
+        return WeightedValue.aggregate(windowValues, windowWeights, count, 
+                windowAggregator);
     }
 
+    /**
+     * Appends the new data points to the baseline and rolls the model 
+     * forward so that it starts at the first interval after the newest point.
+     * Only the model points at the end of the rolled window, along with any
+     * existing points whose baseline windows contain the new data, are 
+     * computed. The windows are positioned with a binary search so the cost 
+     * depends on the number of new points and not on the size of the history.
+     * <p>
+     * With FUTURE_WINDOWS greater than 1 the model is regenerated from the 
+     * stored baseline instead.
+     * @param data New data points, all at or after the last point seen so far.
+     * @throws IllegalStateException if train() has not been called.
+     * @throws IllegalArgumentException if the data is out of order.
+     */
     @Override
     public void update(final DataSequence data) throws Exception {
-        throw new NotImplementedException();
+        if (history == null) {
+            throw new IllegalStateException("Model was empty. 'train()' may "
+                    + "not have been called.");
+        }
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        long last = history.isEmpty() ? Long.MIN_VALUE 
+                : history.time(history.size() - 1);
+        for (int i = 0; i < data.size(); i++) {
+            if (data.time(i) < last) {
+                throw new IllegalArgumentException("time=" + data.time(i) 
+                    + " at index=" + i + " out of order");
+            }
+            last = data.time(i);
+        }
+        final long first_new = data.time(0);
+        for (int i = 0; i < data.size(); i++) {
+            history.append(data.time(i), data.value(i));
+        }
+        
+        // roll the window forward.
+        while (modelStart <= last) {
+            modelStart = plus(modelStart, interval, intervalUnits);
+        }
+        trimHistory();
+        
+        if (futureWindows > 1) {
+            model.clear();
+            train(history, modelStart);
+            return;
+        }
+        
+        // drop the points that rolled out of the window.
+        int drop = 0;
+        while (drop < model.size() && model.time(drop) < modelStart) {
+            drop++;
+        }
+        model.removeRange(0, drop);
+        
+        // the earliest model point with a baseline window overlapping the 
+        // new data.
+        final long affected = plus(plus(first_new, windowDistanceInterval, 
+                windowDistanceIntervalUnits), -interval, intervalUnits);
+        long model_ts = modelStart;
+        if (!model.isEmpty()) {
+            int keep = model.size();
+            while (keep > 0 && model.time(keep - 1) >= affected) {
+                keep--;
+            }
+            if (keep < model.size()) {
+                model_ts = model.time(keep);
+                model.removeRange(keep, model.size());
+            } else {
+                model_ts = plus(model.time(model.size() - 1), interval, 
+                        intervalUnits);
+            }
+        }
+        
+        seekIndices(history, model_ts);
+        final int size = history.size();
+        final long end = plus(modelStart, windowSize, windowUnits);
+        while (model_ts <= end) {
+            model.add(model_ts, aggregateWindows(history, size));
+            model_ts = plus(model_ts, interval, intervalUnits);
+        }
     }
 
     @Override
@@ -334,27 +455,63 @@ public class OlympicModel2 extends TimeSeriesAbstractModel {
             throw new IllegalStateException("Model was empty. 'train()' may "
                     + "not have been called.");
         }
-        // TODO - proper... setting... uggg!!
-        int x = 0;
+        // the values are written in place, leaving the points the model 
+        // has no forecast for as they are.
         for (int i = 0; i < sequence.size(); i++) {
-            while (x < model.size() && 
-                  sequence.get(i).time > model.get(x).getKey()) {
-                ++x;
+            final int x = model.indexOfTime(sequence.time(i));
+            if (x >= 0) {
+                sequence.setValue(i, (float) model.value(x));
             }
-            if (x >= model.size()) {
-                break;
-            }
-            if (sequence.get(i).time == model.get(x).getKey()) {
-                final Pair<Long, Double> dp = model.get(x++);
-                sequence.set(i,
-                        new Entry(dp.getKey(), (float) (double) dp.getValue()));
+        }
+    }
+    
+    /**
+     * Same as {@link #predict(DataSequence)} for callers that only need the
+     * values: sets values[i] to the forecast at times[i] where there is one.
+     * @param times The timestamps to forecast in Unix epoch seconds.
+     * @param values The forecasts, of the same length as the times.
+     * @throws IllegalStateException if train() has not been called.
+     */
+    public void predict(final long[] times, final float[] values) {
+        if (model == null || model.isEmpty()) {
+            throw new IllegalStateException("Model was empty. 'train()' may "
+                    + "not have been called.");
+        }
+        for (int i = 0; i < times.length; i++) {
+            final int x = model.indexOfTime(times[i]);
+            if (x >= 0) {
+                values[i] = (float) model.value(x);
             }
         }
     }
 
+    @Override
+    public boolean canForecastNext() {
+        return true;
+    }
+
+    /**
+     * The model value at the given time, which update() rolls forward
+     * with the data.
+     * @param time The timestamp to forecast in Unix epoch seconds.
+     * @return The forecast, or NaN where the model has none.
+     * @throws IllegalStateException if train() has not been called.
+     */
+    @Override
+    public float forecastNext(final long time) {
+        if (model == null || model.isEmpty()) {
+            throw new IllegalStateException("Model was empty. 'train()' may "
+                    + "not have been called.");
+        }
+        final int x = model.indexOfTime(time);
+        return x >= 0 ? (float) model.value(x) : Float.NaN;
+    }
+
     @Override
     public void reset() {
         model.clear();
+        history = null;
+        modelStart = 0;
         for (int i = 0; i < windowTimes.length; i++) {
             windowTimes[i] = null;
             indices[i] = 0;
@@ -394,14 +551,14 @@ public class OlympicModel2 extends TimeSeriesAbstractModel {
                 idx = data.size() - 1;
             }
 
-            if (data.get(idx).time == seek_time) {
+            if (data.time(idx) == seek_time) {
                 // woot, found it!
-            } else if (data.get(idx).time < seek_time) {
-                while (idx < data.size() && data.get(idx).time < seek_time) {
+            } else if (data.time(idx) < seek_time) {
+                while (idx < data.size() && data.time(idx) < seek_time) {
                     idx++;
                 }
             } else {
-                while (idx > 0 && data.get(idx - 1).time >= seek_time) {
+                while (idx > 0 && data.time(idx - 1) >= seek_time) {
                     idx--;
                 }
             }
@@ -411,6 +568,7 @@ public class OlympicModel2 extends TimeSeriesAbstractModel {
                 idx = -1;
             }
             windowTimes[i] = seek;
+            windowEnds[i] = seek_time;
             indices[i] = idx;
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Initializing index: " + i + " to " + idx + " at " 
@@ -419,6 +577,186 @@ public class OlympicModel2 extends TimeSeriesAbstractModel {
         }
     }
 
+    /**
+     * Points each window at the first data point at or after its seek time
+     * for a model point at the given time, using a binary search.
+     * @param data A non-null data sequence object to read from.
+     * @param model_ts The timestamp of the next model point.
+     */
+    private void seekIndices(final DataSequence data, final long model_ts) {
+        for (int i = 0; i < pastWindows; i++) {
+            final long seek = plus(model_ts,
+                    -(windowDistanceInterval * (pastWindows - i)),
+                    windowDistanceIntervalUnits);
+            windowTimes[i] = Instant.ofEpochSecond(seek).atZone(zone);
+            windowEnds[i] = seek;
+            indices[i] = lowerBound(data, seek);
+        }
+    }
+    
+    /**
+     * Adds an amount of time to a timestamp in the model's zone, matching 
+     * ZonedDateTime.plus(). Time based units always, and days and weeks in
+     * zones without DST, are fixed durations and skip the calendar math.
+     * @param epoch A timestamp in Unix epoch seconds.
+     * @param amount The amount of units to add, may be negative.
+     * @param units The units of the amount.
+     * @return The resulting timestamp in Unix epoch seconds.
+     */
+    private long plus(final long epoch, final long amount, 
+            final ChronoUnit units) {
+        if ((units.isTimeBased() || (fixedOffset 
+                && (units == ChronoUnit.DAYS || units == ChronoUnit.WEEKS))) 
+                && units.getDuration().getNano() == 0) {
+            return epoch + amount * units.getDuration().getSeconds();
+        }
+        return Instant.ofEpochSecond(epoch).atZone(zone).plus(amount, units)
+                .toEpochSecond();
+    }
+    
+    /**
+     * @return The index of the first point at or after the given time, or
+     * the size of the data if there is none.
+     */
+    private static int lowerBound(final DataSequence data, final long time) {
+        int lo = 0;
+        int hi = data.size();
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (data.time(mid) < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+    
+    /**
+     * Drops the baseline points that are too old to be part of any window 
+     * once more than half of the stored history is stale.
+     */
+    private void trimHistory() {
+        final long oldest = plus(modelStart,
+                -(windowDistanceInterval * pastWindows),
+                windowDistanceIntervalUnits);
+        final int stale = lowerBound(history, oldest);
+        if (stale > history.size() / 2) {
+            final ColumnarDataSequence trimmed = 
+                    new ColumnarDataSequence(history.size() - stale);
+            for (int i = stale; i < history.size(); i++) {
+                trimmed.append(history.time(i), history.value(i));
+            }
+            history = trimmed;
+        }
+    }
+
+    /**
+     * The model data points kept in primitive arrays. Reads through the List 
+     * interface return detached pairs; use time() and value() to avoid 
+     * allocating.
+     * <p>
+     * While the points are evenly spaced, as they are unless the intervals
+     * vary with the time zone, the point at a time is found from its offset
+     * to the first point rather than by a search.
+     */
+    protected static class Points extends AbstractList<Pair<Long, Double>> 
+            implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private long[] times = new long[16];
+        private double[] values = new double[16];
+        private int size;
+        private boolean even = true;
+        private long step;
+        
+        public void add(final long time, final double value) {
+            if (size == 1) {
+                step = time - times[0];
+                even = step > 0;
+            } else if (size > 1 && time - times[size - 1] != step) {
+                even = false;
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+        
+        public long time(final int index) {
+            rangeCheck(index);
+            return times[index];
+        }
+        
+        public double value(final int index) {
+            rangeCheck(index);
+            return values[index];
+        }
+        
+        /**
+         * @return The index of the point at the given time, or -1 if there 
+         * is none.
+         */
+        public int indexOfTime(final long time) {
+            if (even && size > 1) {
+                final long offset = time - times[0];
+                if (offset < 0 || offset % step != 0 || offset / step >= size) {
+                    return -1;
+                }
+                return (int) (offset / step);
+            }
+            final int index = Arrays.binarySearch(times, 0, size, time);
+            return index < 0 ? -1 : index;
+        }
+        
+        @Override
+        public boolean add(final Pair<Long, Double> point) {
+            add(point.getKey(), point.getValue());
+            return true;
+        }
+        
+        @Override
+        public Pair<Long, Double> get(final int index) {
+            rangeCheck(index);
+            return new Pair<Long, Double>(times[index], values[index]);
+        }
+        
+        @Override
+        public int size() {
+            return size;
+        }
+        
+        @Override
+        public void clear() {
+            size = 0;
+            even = true;
+        }
+        
+        @Override
+        public void removeRange(final int from, final int to) {
+            // removing points from either end keeps the rest evenly spaced.
+            if (from > 0 && to < size) {
+                even = false;
+            }
+            System.arraycopy(times, to, times, from, size - to);
+            System.arraycopy(values, to, values, from, size - to);
+            size -= to - from;
+            if (size <= 1) {
+                even = true;
+            }
+        }
+        
+        private void rangeCheck(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index 
+                        + ", Size: " + size);
+            }
+        }
+    }
+
     public Map<String, Object> getModelParams(){
         return null;
     }
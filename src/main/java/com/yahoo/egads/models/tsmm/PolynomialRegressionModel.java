@@ -24,6 +24,7 @@ package com.yahoo.egads.models.tsmm;
 
 import com.yahoo.egads.data.*;
 import com.yahoo.egads.data.TimeSeries.Entry;
+import com.yahoo.egads.utilities.PolynomialFit;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 import java.util.Properties;
@@ -37,8 +38,16 @@ import java.util.*;
 public class PolynomialRegressionModel extends TimeSeriesAbstractModel {
     // methods ////////////////////////////////////////////////
 
-    // The model that will be used for forecasting.
+    // Whether the model is computed by OpenForecast, see OPENFORECAST_MODELS.
+    private boolean openForecast;
+
+    // The model that will be used for forecasting by OpenForecast.
     private ForecastingModel forecaster;
+
+    // The sums of the normal equations, and the coefficients of the fitted
+    // quadratic in the index of the historical values.
+    private PolynomialFit fit;
+    private double[] coefficients;
     
     // Stores the historical values.
     private TimeSeries.DataSequence data;
@@ -46,6 +55,7 @@ public class PolynomialRegressionModel extends TimeSeriesAbstractModel {
     public PolynomialRegressionModel(Properties config) {
         super(config);
         modelName = "PolynomialRegressionModel";
+        openForecast = useOpenForecast(config, modelName);
     }
 
     public void reset() {
@@ -55,10 +65,21 @@ public class PolynomialRegressionModel extends TimeSeriesAbstractModel {
     public void train(TimeSeries.DataSequence data) {
         this.data = data;
         int n = data.size();
+        if (!openForecast) {
+            fit = new PolynomialFit(3);
+            for (int i = 0; i < n; i++) {
+                fit.add(i, data.value(i));
+            }
+            coefficients = fit.solve();
+            initPolynomialForecastErrors(coefficients, data);
+
+            logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+            return;
+        }
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
@@ -72,8 +93,35 @@ public class PolynomialRegressionModel extends TimeSeriesAbstractModel {
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Adds newer values to the sums of the normal equations and solves them
+    // again, which costs nothing that depends on the length of the history. The
+    // forecast errors of every point change with the fit, and the sums of
+    // their absolute values cannot be kept as the points are added, so they
+    // are computed again in a pass over the history.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("PolynomialRegressionModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size()) || openForecast) {
+            train(data);
+            return;
+        }
+        for (int i = from; i < data.size(); i++) {
+            fit.add(i, data.value(i));
+        }
+        coefficients = fit.solve();
+        initPolynomialForecastErrors(coefficients, data);
+    }
+
+    public boolean canForecastNext() {
+        return !openForecast;
+    }
 
+    // The fitted quadratic after the last historical value.
+    public float forecastNext(long time) {
+        return (float) PolynomialFit.value(coefficients, data.size());
     }
 
     public String getModelName() {
@@ -82,6 +130,12 @@ public class PolynomialRegressionModel extends TimeSeriesAbstractModel {
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
           int n = data.size();
+          if (!openForecast) {
+              for (int i = 0; i < n; i++) {
+                  setForecast(sequence, i, data.time(i), (float) PolynomialFit.value(coefficients, i));
+              }
+              return;
+          }
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -97,8 +151,8 @@ public class PolynomialRegressionModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
     }
@@ -25,6 +25,7 @@ package com.yahoo.egads.models.tsmm;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.egads.data.*;
 import com.yahoo.egads.data.TimeSeries.Entry;
+import com.yahoo.egads.utilities.PolynomialFit;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 import java.util.Properties;
@@ -38,8 +39,18 @@ import java.util.*;
 public class RegressionModel extends TimeSeriesAbstractModel {
     // methods ////////////////////////////////////////////////
 
-    // The model that will be used for forecasting.
+    // Whether the model is computed by OpenForecast, see OPENFORECAST_MODELS.
+    private boolean openForecast;
+
+    // The model that will be used for forecasting by OpenForecast.
     private ForecastingModel forecaster;
+
+    // The fitted line: intercept + slope * i at the i-th historical value.
+    private double intercept;
+    private double slope;
+
+    // The sums of the normal equations of the line.
+    private PolynomialFit fit;
     
     // Stores the historical values.
     private TimeSeries.DataSequence data;
@@ -47,6 +58,7 @@ public class RegressionModel extends TimeSeriesAbstractModel {
     public RegressionModel(Properties config) {
         super(config);
         modelName = "RegressionModel";
+        openForecast = useOpenForecast(config, modelName);
     }
 
     public void reset() {
@@ -56,10 +68,21 @@ public class RegressionModel extends TimeSeriesAbstractModel {
     public void train(TimeSeries.DataSequence data) {
         this.data = data;
         int n = data.size();
+        if (!openForecast) {
+            fit = new PolynomialFit(2);
+            for (int i = 0; i < n; i++) {
+                fit.add(i, data.value(i));
+            }
+            fitLine();
+            initPolynomialForecastErrors(new double[] {intercept, slope}, data);
+
+            logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+            return;
+        }
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
@@ -68,12 +91,52 @@ public class RegressionModel extends TimeSeriesAbstractModel {
         forecaster = new net.sourceforge.openforecast.models.RegressionModel("x");
         forecaster.init(observedData);
         initForecastErrors(forecaster, data);
+
+//      "Single variable regression model with a slope of " + this.slope + " and an intercept of " + this.intercept + ". That is, y=" + this.intercept + (this.slope > 0.0D?"+":"") + this.slope + "*" + this.independentVariable + ".";
+        String[] words = forecaster.toString().split(" ");
+        slope = Double.parseDouble(words[8]);
+        intercept = Double.parseDouble(words[13].substring(0, words[13].length()-1));
         
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // The least squares line through the sums, as OpenForecast computes it.
+    private void fitLine() {
+        double n = fit.count();
+        double sumX = fit.sumX(1);
+        double sumY = fit.sumXY(0);
+        slope = (n * fit.sumXY(1) - sumX * sumY) / (n * fit.sumX(2) - sumX * sumX);
+        intercept = sumY / n - slope * (sumX / n);
+    }
 
+    // Adds newer values to the sums of the line and fits it again, which costs nothing that depends on the length of the history. The
+    // forecast errors of every point change with the fit, and the sums of
+    // their absolute values cannot be kept as the points are added, so they
+    // are computed again in a pass over the history.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("RegressionModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size()) || openForecast) {
+            train(data);
+            return;
+        }
+        for (int i = from; i < data.size(); i++) {
+            fit.add(i, data.value(i));
+        }
+        fitLine();
+        initPolynomialForecastErrors(new double[] {intercept, slope}, data);
+    }
+
+    public boolean canForecastNext() {
+        return !openForecast;
+    }
+
+    // The fitted line after the last historical value.
+    public float forecastNext(long time) {
+        return (float) (intercept + slope * data.size());
     }
 
     public String getModelName() {
@@ -82,6 +145,12 @@ public class RegressionModel extends TimeSeriesAbstractModel {
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
           int n = data.size();
+          if (!openForecast) {
+              for (int i = 0; i < n; i++) {
+                  setForecast(sequence, i, data.time(i), (float) (intercept + slope * i));
+              }
+              return;
+          }
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -97,19 +166,14 @@ public class RegressionModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
     }
 
     public Map<String, Object> getModelParams(){
 
-//      "Single variable regression model with a slope of " + this.slope + " and an intercept of " + this.intercept + ". That is, y=" + this.intercept + (this.slope > 0.0D?"+":"") + this.slope + "*" + this.independentVariable + ".";
-        String[] words = forecaster.toString().split(" ");
-
-        double slope = Double.parseDouble(words[8]);
-        double intercept = Double.parseDouble(words[13].substring(0, words[13].length()-1));
         double range = getValueRange( data );
 
 
@@ -117,8 +181,8 @@ public class RegressionModel extends TimeSeriesAbstractModel {
                 "range", range,
                 "slope", slope,
                 "intercept", intercept,
-                "startTime", data.get(0).time,
-                "period", data.get(1).time - data.get(0).time);
+                "startTime", data.time(0),
+                "period", data.time(1) - data.time(0));
 
         return parameters;
     }
@@ -131,13 +195,13 @@ public class RegressionModel extends TimeSeriesAbstractModel {
         long period = Long.parseLong(params.get("period").toString());
 
 
-        int startLogicalIndex = (int)(( observed.get(0).time - startTime ) / period);
+        int startLogicalIndex = (int)(( observed.time(0) - startTime ) / period);
 
         int inputSize = observed.size();
 
         for( int i = 0 ; i < inputSize ; i++ ){
             double expected_value = (startLogicalIndex + i) * slope + intercept;
-            expected.set(i, (new Entry(observed.get(i).time, (float) expected_value )));
+            expected.set(i, (new Entry(observed.time(i), (float) expected_value )));
         }
 
     }
@@ -23,17 +23,23 @@
 package com.yahoo.egads.models.tsmm;
 
 import com.google.common.collect.ImmutableMap;
+import com.yahoo.egads.data.BinaryModel;
+import com.yahoo.egads.data.ModelCodec;
 import com.yahoo.egads.data.TimeSeries;
 import com.yahoo.egads.data.TimeSeries.Entry;
+import com.yahoo.egads.utilities.QuickSelect;
 import org.json.JSONObject;
 import org.json.JSONStringer;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Properties;
 
-public class SeasonalMedianModel extends TimeSeriesAbstractModel {
+public class SeasonalMedianModel extends TimeSeriesAbstractModel implements BinaryModel {
     // methods ////////////////////////////////////////////////
 
     float[] listSeasonalMedianValue;
@@ -42,6 +48,18 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
     // Stores the historical values.
     private TimeSeries.DataSequence data;
 
+    // The historical values of each slot of the period in ascending order,
+    // and how many each holds. Built by the first update() and kept sorted
+    // as it adds values, so that a median is read rather than recomputed.
+    private transient float[][] buckets;
+    private transient int[] bucketSizes;
+
+    // The sums of the forecast errors of the values of each slot, of their
+    // absolute values, of their absolute values relative to the values and
+    // of their squares, so that update() only recomputes those of the slots
+    // it changes.
+    private transient double[][] slotErrors;
+
     public SeasonalMedianModel(Properties config) {
         super(config);
         modelName = "SeasonalMedianModel";
@@ -50,61 +68,36 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
     public void reset() {
         // At this point, reset does nothing.
     }
+
+    // The seasonal medians and the historical values, whose times predict()
+    // uses.
+    public void writeState(DataOutput out) throws IOException {
+        writeErrors(out);
+        out.writeInt(period);
+        ModelCodec.writeFloats(out, listSeasonalMedianValue);
+        ModelCodec.writeSequence(out, data);
+    }
+
+    public void readState(DataInput in) throws IOException {
+        readErrors(in);
+        period = in.readInt();
+        listSeasonalMedianValue = ModelCodec.readFloats(in);
+        data = ModelCodec.readSequence(in);
+        buckets = null;
+    }
     
     public void train(TimeSeries.DataSequence data) {
 
         this.data = data;
+        buckets = null;
         int n = data.size();
 
         if( n == 0 )
             return;
 
 
-        period = 1;
-
         if( n > 2 ) {
-            long granularity = data.get(1).time - data.get(0).time;
-
-            // second -> minute -> hour
-            if( granularity == 1 ){
-                period = 60*60;     // hour
-                if( n < period * 2 ){
-                    period = 60;    // minute
-                }
-            }
-            // minute -> hour -> day
-            else if( granularity == 60 ){
-                period = 60*24;     // day
-                if( n < period * 2 ){
-                    period = 60;    // hour
-                }
-            }
-            // hour -> day -> week
-            else if( granularity == 3600 ){
-                period = 24*7;      // week
-                if( n < period * 2 ){
-                    period = 24;    // day
-                }
-            }
-            // day -> week -> year
-            else if( granularity == 86400 ){
-                period = 365;       // year
-                if( n < period * 2 ){
-                    period = 7;    // week
-                }
-            }
-            // week -> year
-            else if( granularity == 604800 ){
-                period = 52;
-            }
-            // month -> year
-            else if( granularity >= 2505600 && granularity <= 2678400 ){
-                period = 12;
-            }
-            else{
-                throw new IllegalArgumentException("SeasonalMedianModel models don't work other granularity.");
-            }
-
+            period = period(data.time(1) - data.time(0), n);
         }
         else {
             throw new IllegalArgumentException("SeasonalMedianModel models don't work 1 period.");
@@ -118,10 +111,10 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
 
             int count = 0;
             for( int j = i ; j < n ; j = j+period ){
-                listValue[count++] = data.get(j).value;
+                listValue[count++] = data.value(j);
             }
 
-            listSeasonalMedianValue[i] = getMedian(listValue, count);
+            listSeasonalMedianValue[i] = QuickSelect.median(listValue, 0, count);
         }
 
 
@@ -138,24 +131,186 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
 
     }
 
+    // The period of 'n' points 'granularity' seconds apart: the longer of
+    // two when there are at least two of it, else the shorter.
+    private static int period(long granularity, int n) {
+        int period;
+        // second -> minute -> hour
+        if( granularity == 1 ){
+            period = 60*60;     // hour
+            if( n < period * 2 ){
+                period = 60;    // minute
+            }
+        }
+        // minute -> hour -> day
+        else if( granularity == 60 ){
+            period = 60*24;     // day
+            if( n < period * 2 ){
+                period = 60;    // hour
+            }
+        }
+        // hour -> day -> week
+        else if( granularity == 3600 ){
+            period = 24*7;      // week
+            if( n < period * 2 ){
+                period = 24;    // day
+            }
+        }
+        // day -> week -> year
+        else if( granularity == 86400 ){
+            period = 365;       // year
+            if( n < period * 2 ){
+                period = 7;    // week
+            }
+        }
+        // week -> year
+        else if( granularity == 604800 ){
+            period = 52;
+        }
+        // month -> year
+        else if( granularity >= 2505600 && granularity <= 2678400 ){
+            period = 12;
+        }
+        else{
+            throw new IllegalArgumentException("SeasonalMedianModel models don't work other granularity.");
+        }
+        return period;
+    }
+
 
 
     public static float getMedian(float[] targetArray, int length) {
 
-        float[] array =  Arrays.copyOfRange(targetArray, 0, length);
-        Arrays.sort(array);
+        return QuickSelect.median(Arrays.copyOfRange(targetArray, 0, length), 0, length);
+    }
 
-        int center = array.length / 2;
+    // Adds newer values to the history and refreshes the medians of their
+    // slots and the forecast errors, giving the model train() would over the
+    // whole history. When the history grows long enough for train() to pick
+    // a longer period, the values are bucketed again by that period.
+    public void update(TimeSeries.DataSequence newData) {
+        if (listSeasonalMedianValue == null) {
+            throw new IllegalStateException("SeasonalMedianModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        int n = data.size();
+        if (n == from) {
+            return;
+        }
+        int newPeriod = period(data.time(1) - data.time(0), n);
+        if (buckets == null || newPeriod != period) {
+            period = newPeriod;
+            listSeasonalMedianValue = new float[period + 1];
+            buildBuckets();
+        } else {
+            for (int i = from; i < n; i++) {
+                int slot = i % period;
+                listSeasonalMedianValue[slot] = insert(slot, data.value(i));
+                slotErrors(slot);
+            }
+        }
+        sumErrors();
+        if (refitDue(newData.size())) {
+            train(data);
+        }
+    }
 
-        if (array.length % 2 == 1) {
-            return array[center];
+    // Sorts the values of each slot and finds their medians and errors.
+    private void buildBuckets() {
+        int n = data.size();
+        buckets = new float[period][];
+        bucketSizes = new int[period];
+        slotErrors = new double[period][4];
+        for (int i = 0; i < period; i++) {
+            int count = 0;
+            float[] bucket = new float[n / period + 2];
+            for (int j = i; j < n; j = j + period) {
+                bucket[count++] = data.value(j);
+            }
+            Arrays.sort(bucket, 0, count);
+            buckets[i] = bucket;
+            bucketSizes[i] = count;
+            listSeasonalMedianValue[i] = median(bucket, count);
+            slotErrors(i);
+        }
+    }
+
+    // Recomputes the error sums of the slot from its values and median, with
+    // the errors in float as train() computes them.
+    private void slotErrors(int slot) {
+        float[] bucket = buckets[slot];
+        float median = listSeasonalMedianValue[slot];
+        double sumErr = 0.0;
+        double sumAbsErr = 0.0;
+        double sumAbsPercentErr = 0.0;
+        double sumErrSquared = 0.0;
+        for (int i = 0; i < bucketSizes[slot]; i++) {
+            double error = median - bucket[i];
+            sumErr += error;
+            sumAbsErr += Math.abs(error);
+            sumAbsPercentErr += Math.abs(error / bucket[i]);
+            sumErrSquared += error * error;
+        }
+        double[] errors = slotErrors[slot];
+        errors[0] = sumErr;
+        errors[1] = sumAbsErr;
+        errors[2] = sumAbsPercentErr;
+        errors[3] = sumErrSquared;
+    }
+
+    // Sets the accuracy stats from the error sums of the slots.
+    private void sumErrors() {
+        double[] sums = new double[4];
+        for (double[] errors : slotErrors) {
+            for (int k = 0; k < 4; k++) {
+                sums[k] += errors[k];
+            }
+        }
+        int n = data.size();
+        bias = sums[0] / n;
+        mad = sums[1] / n;
+        mape = sums[2] / n;
+        mse = sums[3] / n;
+        sae = sums[1];
+        errorsInit = true;
+    }
+
+    // Inserts the value into the sorted values of the slot and returns their
+    // median.
+    private float insert(int slot, float value) {
+        float[] bucket = buckets[slot];
+        int size = bucketSizes[slot];
+        if (size == bucket.length) {
+            bucket = buckets[slot] = Arrays.copyOf(bucket, size * 2);
+        }
+        int at = Arrays.binarySearch(bucket, 0, size, value);
+        if (at < 0) {
+            at = -at - 1;
+        }
+        System.arraycopy(bucket, at, bucket, at + 1, size - at);
+        bucket[at] = value;
+        bucketSizes[slot] = size + 1;
+        return median(bucket, size + 1);
+    }
+
+    // The median of the first 'size' values of the sorted bucket.
+    private static float median(float[] bucket, int size) {
+        int center = size / 2;
+        if (size % 2 == 1) {
+            return bucket[center];
         } else {
-            return (float)((array[center - 1] + array[center]) / 2.0);
+            return (float)((bucket[center - 1] + bucket[center]) / 2.0);
         }
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    public boolean canForecastNext() {
+        return true;
+    }
 
+    // The median of the slot of the next position in the period.
+    public float forecastNext(long time) {
+        return listSeasonalMedianValue[data.size() % period];
     }
 
     public String getModelName() {
@@ -166,8 +321,7 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
 
         int n = data.size();
         for (int i = 0; i < n; i++) {
-            sequence.set(i, (new Entry(data.get(i).time, listSeasonalMedianValue[i%period])));
-            logger.info(data.get(i).time + "," + data.get(i).value + "," + listSeasonalMedianValue[i%period]);
+            sequence.set(i, (new Entry(data.time(i), listSeasonalMedianValue[i%period])));
         }
     }
 
@@ -178,7 +332,7 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
         Map<String, Object> parameters = ImmutableMap.of(
                 "range", range,
                 "period", period,
-                "startTime", data.get(0).time,
+                "startTime", data.time(0),
                 "seasonal", listSeasonalMedianValue);
 
         return parameters;
@@ -218,15 +372,15 @@ public class SeasonalMedianModel extends TimeSeriesAbstractModel {
             throw new IllegalArgumentException("SeasonalMedianModel models need more than 2 data");
         }
 
-        long granularity = observed.get(1).time - observed.get(0).time;
-        int seasonalPointOffset = ((int)(( observed.get(0).time - startTime )/ granularity )) % period;
+        long granularity = observed.time(1) - observed.time(0);
+        int seasonalPointOffset = ((int)(( observed.time(0) - startTime )/ granularity )) % period;
         if( seasonalPointOffset < 0 ){
             seasonalPointOffset = seasonalPointOffset + period;
         }
 
 
         for( int i = 0 ; i < inputSize ; i++ ){
-            expected.set(i, (new Entry(observed.get(i).time, (float)listSeasonal[(i+seasonalPointOffset)%period] )));
+            expected.set(i, (new Entry(observed.time(i), (float)listSeasonal[(i+seasonalPointOffset)%period] )));
         }
 
     }
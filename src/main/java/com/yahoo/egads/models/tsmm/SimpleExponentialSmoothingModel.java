@@ -31,6 +31,12 @@ public class SimpleExponentialSmoothingModel extends TimeSeriesAbstractModel {
     // Stores the historical values.
     private TimeSeries.DataSequence data;
 
+    // The number of historical values the forecaster was fitted to, and the
+    // forecasts of those update() added after them, which it cannot forecast.
+    // 'updated' has room for more: it holds data.size() - trained of them.
+    private int trained;
+    private double[] updated;
+
     public SimpleExponentialSmoothingModel(Properties config) {
         super(config);
         modelName = "SimpleExponentialSmoothingModel";
@@ -46,7 +52,7 @@ public class SimpleExponentialSmoothingModel extends TimeSeriesAbstractModel {
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
@@ -57,12 +63,63 @@ public class SimpleExponentialSmoothingModel extends TimeSeriesAbstractModel {
 //        forecaster = new net.sourceforge.openforecast.models.SimpleExponentialSmoothingModel(0.75);
         forecaster.init(observedData);
         initForecastErrors(forecaster, data);
+        trained = n;
+        updated = new double[0];
         
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Goes on smoothing the newer values from the forecast of the last one,
+    // with the smoothing constant of the forecaster, which gives the forecasts
+    // it would have with this constant over the whole history. The constant
+    // is fitted again by UPDATE_REFIT.
+    public void update(TimeSeries.DataSequence newData) {
+        if (forecaster == null) {
+            throw new IllegalStateException("SimpleExponentialSmoothingModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size())) {
+            train(data);
+            return;
+        }
+        double alpha = ((net.sourceforge.openforecast.models.SimpleExponentialSmoothingModel) forecaster).getAlpha();
+        double previous = forecastBefore(from);
+        double[] forecast = new double[data.size() - from];
+        for (int i = 0; i < forecast.length; i++) {
+            forecast[i] = alpha * data.value(from + i - 1) + (1.0D - alpha) * previous;
+            previous = forecast[i];
+        }
+        updated = ensureCapacity(updated, data.size() - trained);
+        System.arraycopy(forecast, 0, updated, from - trained, forecast.length);
+        // As OpenForecast, the first value has no error.
+        addForecastErrors(forecast, data, from, from - 1);
+    }
 
+    public boolean canForecastNext() {
+        return true;
+    }
+
+    // Smooths the last historical value into its forecast, as update() does.
+    public float forecastNext(long time) {
+        int n = data.size();
+        double alpha = ((net.sourceforge.openforecast.models.SimpleExponentialSmoothingModel) forecaster).getAlpha();
+        return (float) (alpha * data.value(n - 1) + (1.0D - alpha) * forecastBefore(n));
+    }
+
+    // The forecast of the historical value before the i-th.
+    private double forecastBefore(int i) {
+        return i > trained ? updated[i - trained - 1] : forecast(i - 1);
+    }
+
+    // The forecaster's forecast of the i-th historical value.
+    private double forecast(int i) {
+        DataSet point = new DataSet();
+        DataPoint dp = new Observation(0.0);
+        dp.setIndependentValue("x", i);
+        point.add(dp);
+        forecaster.forecast(point);
+        return point.iterator().next().getDependentValue();
     }
 
     public String getModelName() {
@@ -70,7 +127,7 @@ public class SimpleExponentialSmoothingModel extends TimeSeriesAbstractModel {
     }
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
-          int n = data.size();
+          int n = trained;
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -86,10 +143,13 @@ public class SimpleExponentialSmoothingModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
+          for (; i < data.size(); i++) {
+              setForecast(sequence, i, data.time(i), (float) updated[i - n]);
+          }
     }
 
 
@@ -119,13 +179,13 @@ public class SimpleExponentialSmoothingModel extends TimeSeriesAbstractModel {
         for( int i = 0 ; i < inputSize ; i++ ){
 
             if( i == 0 ){
-                preObservedValue = preExpectedValue = observed.get(i).value;
+                preObservedValue = preExpectedValue = observed.value(i);
             }
 
             expected_value = alpha * preObservedValue + (1.0D - alpha) * preExpectedValue;
-            expected.set(i, (new Entry(observed.get(i).time, (float) expected_value )));
+            expected.set(i, (new Entry(observed.time(i), (float) expected_value )));
 
-            preObservedValue = observed.get(i).value;
+            preObservedValue = observed.value(i);
             preExpectedValue = expected_value;
         }
     }
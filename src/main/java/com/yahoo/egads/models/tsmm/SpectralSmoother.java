@@ -115,9 +115,9 @@ public class SpectralSmoother extends TimeSeriesAbstractModel {
     @Override
     public void predict(DataSequence sequence) throws Exception {
 
-        for (Entry e : sequence) {
-            Float val = map.get(e.logicalIndex);
-            e.value = (val == null) ? 0 : val;
+        for (int i = 0; i < sequence.size(); i++) {
+            Float val = map.get(sequence.get(i).logicalIndex);
+            sequence.setValue(i, (val == null) ? 0 : val);
         }
     }
 
@@ -6,6 +6,10 @@
 
 package com.yahoo.egads.models.tsmm;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Properties;
 
 import org.json.JSONObject;
@@ -18,6 +22,7 @@ import java.util.ArrayList;
 import net.sourceforge.openforecast.ForecastingModel;
 
 import com.yahoo.egads.data.JsonEncoder;
+import com.yahoo.egads.utilities.PolynomialFit;
 
 public abstract class TimeSeriesAbstractModel implements TimeSeriesModel {
 
@@ -36,6 +41,15 @@ public abstract class TimeSeriesAbstractModel implements TimeSeriesModel {
     protected boolean errorsInit = false;
     protected int dynamicParameters = 0;
 
+    // Number of points added by update() after which a model is trained
+    // again on its whole history, see UPDATE_REFIT. 0 never retrains it.
+    private int updateRefit = 0;
+    private transient int updatedPoints = 0;
+
+    // The history update() appends to, a copy of the sequence the model was
+    // trained on so that the caller's sequence is left alone.
+    private transient ColumnarDataSequence history = null;
+
     public String getModelName() {
 		return modelName;
 	}
@@ -59,7 +73,105 @@ public abstract class TimeSeriesAbstractModel implements TimeSeriesModel {
         if (config.getProperty("DYNAMIC_PARAMETERS") != null) {
             this.dynamicParameters = new Integer(config.getProperty("DYNAMIC_PARAMETERS"));
         }
+        if (config.getProperty("UPDATE_REFIT") != null) {
+            this.updateRefit = new Integer(config.getProperty("UPDATE_REFIT"));
+        }
+    }
+
+    // Whether OPENFORECAST_MODELS names the model, which is then computed by
+    // OpenForecast rather than natively.
+    protected static boolean useOpenForecast(Properties config, String modelName) {
+        String models = config.getProperty("OPENFORECAST_MODELS");
+        if (models == null) {
+            return false;
+        }
+        for (String model : models.split(",")) {
+            if (model.trim().equals(modelName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Sets the i-th point of 'sequence' to the forecast at 'time', writing the
+    // value in place when the point already has that time.
+    protected static void setForecast(TimeSeries.DataSequence sequence, int i, long time, float value) {
+        if (sequence.time(i) == time) {
+            sequence.setValue(i, value);
+        } else {
+            sequence.set(i, new TimeSeries.Entry(time, value));
+        }
+    }
+
+    // Returns 'data', the history of the model, with the points of 'newData'
+    // appended, copying it the first time. The new points must not be older
+    // than the last point of the history, or nothing is appended.
+    protected ColumnarDataSequence appendHistory(TimeSeries.DataSequence data, TimeSeries.DataSequence newData) {
+        long last = data.size() > 0 ? data.time(data.size() - 1) : Long.MIN_VALUE;
+        for (int i = 0; i < newData.size(); i++) {
+            if (newData.time(i) < last) {
+                throw new IllegalArgumentException(getModelName() + " cannot update with " + newData.time(i)
+                        + ", before its last time " + last);
+            }
+            last = newData.time(i);
+        }
+        if (data != history) {
+            history = new ColumnarDataSequence(data);
+        }
+        for (int i = 0; i < newData.size(); i++) {
+            history.append(newData.time(i), newData.value(i));
+        }
+        return history;
+    }
+
+    // Returns 'values' if it has room for 'size' values, else a copy with room
+    // for half as many again, as ColumnarDataSequence grows, so that update()
+    // appending a few forecasts at a time copies each a bounded number of
+    // times. The caller keeps the number of values it holds.
+    protected static double[] ensureCapacity(double[] values, int size) {
+        if (size <= values.length) {
+            return values;
+        }
+        return Arrays.copyOf(values, Math.max(size, values.length + (values.length >> 1) + 1));
+    }
+
+    protected static float[] ensureCapacity(float[] values, int size) {
+        if (size <= values.length) {
+            return values;
+        }
+        return Arrays.copyOf(values, Math.max(size, values.length + (values.length >> 1) + 1));
+    }
+
+    // Counts the points added by update() and tells whether UPDATE_REFIT of
+    // them have been added since the model was last retrained, in which case
+    // update() trains it again on its whole history.
+    protected boolean refitDue(int added) {
+        updatedPoints += added;
+        if (updateRefit <= 0 || updatedPoints < updateRefit) {
+            return false;
+        }
+        updatedPoints = 0;
+        return true;
+    }
+
+    // Writes the accuracy stats, for the writeState() of models that are
+    // BinaryModels.
+    protected void writeErrors(DataOutput out) throws IOException {
+        out.writeBoolean(errorsInit);
+        out.writeDouble(bias);
+        out.writeDouble(mad);
+        out.writeDouble(mape);
+        out.writeDouble(mse);
+        out.writeDouble(sae);
+    }
 
+    protected void readErrors(DataInput in) throws IOException {
+        errorsInit = in.readBoolean();
+        bias = in.readDouble();
+        mad = in.readDouble();
+        mape = in.readDouble();
+        mse = in.readDouble();
+        sae = in.readDouble();
     }
 
     public double getValueRange(TimeSeries.DataSequence observed){
@@ -68,8 +180,8 @@ public abstract class TimeSeriesAbstractModel implements TimeSeriesModel {
             return 0.0;
         }
 
-        float min = observed.get(0).value;
-        float max = observed.get(0).value;
+        float min = observed.value(0);
+        float max = observed.value(0);
         for( TimeSeries.Entry entry : observed ){
 
             if( entry.value > max )
@@ -165,10 +277,10 @@ public abstract class TimeSeriesAbstractModel implements TimeSeriesModel {
 
         for (int i = 0; i < n; i++) {
             // Calculate error in forecast, and update sums appropriately
-            double error = model.get(i) - data.get(i).value;
+            double error = model.get(i) - data.value(i);
             sumErr += error;
             sumAbsErr += Math.abs(error);
-            sumAbsPercentErr += Math.abs(error / data.get(i).value);
+            sumAbsPercentErr += Math.abs(error / data.value(i));
             sumErrSquared += error * error;
             processedPoints++;
         }
@@ -180,6 +292,136 @@ public abstract class TimeSeriesAbstractModel implements TimeSeriesModel {
         errorsInit = true;
     }
 
+    /**
+     * Same as above, for forecasts held in a primitive array.
+     */
+    protected void initForecastErrors(float[] model, TimeSeries.DataSequence data) {
+        double sumErr = 0.0;
+        double sumAbsErr = 0.0;
+        double sumAbsPercentErr = 0.0;
+        double sumErrSquared = 0.0;
+        int n = data.size();
+
+        for (int i = 0; i < n; i++) {
+            double error = model[i] - data.value(i);
+            sumErr += error;
+            sumAbsErr += Math.abs(error);
+            sumAbsPercentErr += Math.abs(error / data.value(i));
+            sumErrSquared += error * error;
+        }
+        this.bias = sumErr / n;
+        this.mad = sumAbsErr / n;
+        this.mape = sumAbsPercentErr / n;
+        this.mse = sumErrSquared / n;
+        this.sae = sumAbsErr;
+        errorsInit = true;
+    }
+
+    /**
+     * Same as above, for forecasts in double precision from the 'from'-th
+     * point on, as OpenForecast computes the errors of its models.
+     */
+    protected void initForecastErrors(double[] model, TimeSeries.DataSequence data, int from) {
+        double sumErr = 0.0;
+        double sumAbsErr = 0.0;
+        double sumAbsPercentErr = 0.0;
+        double sumErrSquared = 0.0;
+        int n = data.size();
+
+        for (int i = from; i < n; i++) {
+            double error = model[i] - data.value(i);
+            sumErr += error;
+            sumAbsErr += Math.abs(error);
+            sumAbsPercentErr += Math.abs(error / data.value(i));
+            sumErrSquared += error * error;
+        }
+        this.bias = sumErr / (n - from);
+        this.mad = sumAbsErr / (n - from);
+        this.mape = sumAbsPercentErr / (n - from);
+        this.mse = sumErrSquared / (n - from);
+        this.sae = sumAbsErr;
+        errorsInit = true;
+    }
+
+    /**
+     * Same as above, for the forecasts of the polynomial with the given
+     * coefficients in the index of the points, computed as they are needed.
+     */
+    protected void initPolynomialForecastErrors(double[] coefficients, TimeSeries.DataSequence data) {
+        double sumErr = 0.0;
+        double sumAbsErr = 0.0;
+        double sumAbsPercentErr = 0.0;
+        double sumErrSquared = 0.0;
+        int n = data.size();
+
+        for (int i = 0; i < n; i++) {
+            double error = PolynomialFit.value(coefficients, i) - data.value(i);
+            sumErr += error;
+            sumAbsErr += Math.abs(error);
+            sumAbsPercentErr += Math.abs(error / data.value(i));
+            sumErrSquared += error * error;
+        }
+        this.bias = sumErr / n;
+        this.mad = sumAbsErr / n;
+        this.mape = sumAbsPercentErr / n;
+        this.mse = sumErrSquared / n;
+        this.sae = sumAbsErr;
+        errorsInit = true;
+    }
+
+    /**
+     * Adds the errors of 'model', the forecasts of the points of 'data' from
+     * the 'from'-th on, to the accuracy stats, which were computed over the
+     * 'counted' points before them. Lets update() keep the stats without going
+     * over the older points.
+     */
+    protected void addForecastErrors(double[] model, TimeSeries.DataSequence data, int from, int counted) {
+        accumulateForecastErrors(model, data, from, counted, 1);
+    }
+
+    /**
+     * Takes the errors of 'model', earlier forecasts of the points of 'data'
+     * from the 'from'-th on, out of the accuracy stats, which were computed
+     * over 'counted' points including them, for update() to add those of
+     * their new forecasts.
+     */
+    protected void removeForecastErrors(double[] model, TimeSeries.DataSequence data, int from, int counted) {
+        accumulateForecastErrors(model, data, from, counted, -1);
+    }
+
+    private void accumulateForecastErrors(double[] model, TimeSeries.DataSequence data, int from, int counted, int sign) {
+        double sumErr = counted == 0 ? 0 : bias * counted;
+        double sumAbsErr = counted == 0 ? 0 : sae;
+        double sumAbsPercentErr = counted == 0 ? 0 : mape * counted;
+        double sumErrSquared = counted == 0 ? 0 : mse * counted;
+
+        for (int i = 0; i < model.length; i++) {
+            double error = model[i] - data.value(from + i);
+            sumErr += sign * error;
+            sumAbsErr += sign * Math.abs(error);
+            sumAbsPercentErr += sign * Math.abs(error / data.value(from + i));
+            sumErrSquared += sign * error * error;
+        }
+        int n = counted + sign * model.length;
+        if (n == 0) {
+            // No point is counted, e.g. after an empty update() of a model
+            // whose errors leave out its first points.
+            this.bias = 0;
+            this.mad = 0;
+            this.mape = 0;
+            this.mse = 0;
+            this.sae = 0;
+            errorsInit = true;
+            return;
+        }
+        this.bias = sumErr / n;
+        this.mad = sumAbsErr / n;
+        this.mape = sumAbsPercentErr / n;
+        this.mse = sumErrSquared / n;
+        this.sae = sumAbsErr;
+        errorsInit = true;
+    }
+
     /**
      * Returns the bias - the arithmetic mean of the errors - obtained from applying the current forecasting model to
      * the initial data set to try and predict each data point. The result is an indication of the accuracy of the model
@@ -23,6 +23,16 @@ public interface TimeSeriesModel extends Model {
     // predicts the values of the time series specified by the 'time' fields of the sequence and sets the 'value' fields of the sequence
     public abstract void predict(TimeSeries.DataSequence sequence) throws Exception;
 
+    // whether forecastNext() can forecast the point after the history, so that the model can follow a stream of points with update()
+    public default boolean canForecastNext() {
+        return false;
+    }
+
+    // forecasts the value at 'time', the point right after the data the model was trained and updated on, from the state of the model alone
+    public default float forecastNext(long time) throws Exception {
+        throw new UnsupportedOperationException(getModelName() + " cannot forecast past its history");
+    }
+
 
     public abstract Map<String, Object> getModelParams() throws Exception;
 
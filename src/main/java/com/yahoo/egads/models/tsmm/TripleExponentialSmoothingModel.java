@@ -22,27 +22,47 @@
 
 package com.yahoo.egads.models.tsmm;
 
-import com.google.common.collect.ImmutableMap;
 import com.yahoo.egads.data.*;
 import com.yahoo.egads.data.TimeSeries.Entry;
-import org.apache.commons.lang.ArrayUtils;
 import org.json.JSONObject;
 import org.json.JSONStringer;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Properties;
-import net.sourceforge.openforecast.DataSet;
-import net.sourceforge.openforecast.ForecastingModel;
-import net.sourceforge.openforecast.DataPoint;
-import net.sourceforge.openforecast.Observation;
 import java.util.*;
 
 // Triple exponential smoothing - also known as the Winters method - is a refinement of the popular double exponential
 // smoothing model but adds another component which takes into account any seasonality - or periodicity - in the data.
-public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
+//
+// The base, trend and seasonal indices start from the first periods of the data, as returned by getModelParams().
+// Alpha, beta and gamma are the ones with the least squared one step ahead error: the best point of a coarse grid,
+// refined by a Nelder-Mead search.
+public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel implements BinaryModel {
     // methods ////////////////////////////////////////////////
 
-    // The model that will be used for forecasting.
-    private ForecastingModel forecaster;
-    
+    // The smoothing constants tried before the Nelder-Mead search.
+    private static final double[] GRID = {0.1, 0.3, 0.5, 0.7, 0.9};
+    // The search stops once the errors at the corners of the simplex are this close.
+    private static final double TOLERANCE = 1e-10;
+    private static final int MAX_ITERATIONS = 300;
+
+    // The smoothing constants and starting values found by train().
+    private double alpha;
+    private double beta;
+    private double gamma;
+    private double startBase;
+    private double startTrend;
+    private double[] startSeasonal;
+
+    // The one step ahead forecasts of the historical values. Has room for
+    // more as update() appends to it, and holds data.size() of them.
+    private float[] fitted;
+
+    // The base, the trend and the seasonal indices after the last historical
+    // value, by their position in the period, from which update() goes on.
+    private double[] state;
+
     // Stores the historical values.
     private TimeSeries.DataSequence data;
 
@@ -58,20 +78,42 @@ public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
         // At this point, reset does nothing.
     }
 
-    public int getPeriod() {
-        return period;
+    // The smoothing constants, the starting values, the one step ahead
+    // forecasts and the historical values, whose times predict() uses.
+    public void writeState(DataOutput out) throws IOException {
+        writeErrors(out);
+        out.writeInt(period);
+        out.writeDouble(alpha);
+        out.writeDouble(beta);
+        out.writeDouble(gamma);
+        out.writeDouble(startBase);
+        out.writeDouble(startTrend);
+        ModelCodec.writeDoubles(out, startSeasonal);
+        ModelCodec.writeFloats(out, fitted.length == data.size() ? fitted : Arrays.copyOf(fitted, data.size()));
+        ModelCodec.writeDoubles(out, state);
+        ModelCodec.writeSequence(out, data);
     }
 
-    public void setPeriod(int period) {
-        this.period = period;
+    public void readState(DataInput in) throws IOException {
+        readErrors(in);
+        period = in.readInt();
+        alpha = in.readDouble();
+        beta = in.readDouble();
+        gamma = in.readDouble();
+        startBase = in.readDouble();
+        startTrend = in.readDouble();
+        startSeasonal = ModelCodec.readDoubles(in);
+        fitted = ModelCodec.readFloats(in);
+        state = ModelCodec.readDoubles(in);
+        data = ModelCodec.readSequence(in);
     }
 
-    public ForecastingModel getForecaster() {
-        return forecaster;
+    public int getPeriod() {
+        return period;
     }
 
-    public void setForecaster(ForecastingModel forecaster) {
-        this.forecaster = forecaster;
+    public void setPeriod(int period) {
+        this.period = period;
     }
 
     public TimeSeries.DataSequence getData() {
@@ -83,24 +125,13 @@ public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
     }
 
     public void train(TimeSeries.DataSequence data) {
-        this.data = data;
         int n = data.size();
-        DataPoint dp = null;
-        DataSet observedData = new DataSet();
-        for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
-            dp.setIndependentValue("x", i);
-            observedData.add(dp);
-        }
-        observedData.setTimeVariable("x");
-
-        period = 12;
-        observedData.setPeriodsPerYear(period);
+        int period = 12;
 
         // TODO: Make weights configurable.
 
         if( n > 2 ) {
-            long granularity = data.get(1).time - data.get(0).time;
+            long granularity = data.time(1) - data.time(0);
 
 
             // second
@@ -110,71 +141,269 @@ public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
             // minute -> hour
             else if( granularity == 60 ){
                 period = 60;
-                observedData.setPeriodsPerYear(period);
             }
             // hour -> day
             else if( granularity == 3600 ){
                 period = 24;
-                observedData.setPeriodsPerYear(period);
             }
             // day -> week
             else if( granularity == 86400 ){
                 period = 7;
-                observedData.setPeriodsPerYear(period);
             }
             // week -> year
             else if( granularity == 604800 ){
                 period = 52;
-                observedData.setPeriodsPerYear(period);
             }
             // month -> year
             else if( granularity >= 2505600 && granularity <= 2678400 ){
                 period = 12;
-                observedData.setPeriodsPerYear(period);
             }
         }
 
-        forecaster = net.sourceforge.openforecast.models.TripleExponentialSmoothingModel.getBestFitModel(observedData);
-//        forecaster = new net.sourceforge.openforecast.models.TripleExponentialSmoothingModel(0.75, 0.001, 0.001);
-        forecaster.init(observedData);
-        initForecastErrors(forecaster, data);
+        fit(data, period);
+    }
 
+    // Fits the model to 'data' with seasons of 'period' points.
+    protected void fit(TimeSeries.DataSequence data, int period) {
+        int n = data.size();
+        if (n < 2 * period) {
+            throw new IllegalArgumentException("TripleExponentialSmoothing models require a minimum of two full periods of data.");
+        }
+        this.data = data;
+        this.period = period;
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = data.value(i);
+        }
+        initStartValues(values);
 
-        System.out.println(forecaster.toString());
-        logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
-    }
+        double[] best = optimize(values);
+        alpha = best[0];
+        beta = best[1];
+        gamma = best[2];
 
-    public void update(TimeSeries.DataSequence data) {
+        double[] forecast = new double[n];
+        state = new double[2 + period];
+        smooth(values, alpha, beta, gamma, startBase, startTrend, startSeasonal, period, 0, forecast, state, Double.POSITIVE_INFINITY);
+        fitted = new float[n];
+        for (int i = 0; i < n; i++) {
+            fitted[i] = (float) forecast[i];
+        }
+        initForecastErrors(fitted, data);
+
+        logger.debug(alpha + "\t" + beta + "\t" + gamma + "\t" + getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE());
+    }
 
+    // Goes on smoothing the newer values from the state after the history,
+    // with the smoothing constants and starting values of train(), which
+    // gives the forecasts of smoothing the whole history with them. The
+    // constants are fitted again by UPDATE_REFIT.
+    public void update(TimeSeries.DataSequence newData) {
+        if (fitted == null) {
+            throw new IllegalStateException("TripleExponentialSmoothingModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size())) {
+            fit(data, period);
+            return;
+        }
+        int m = data.size() - from;
+        double[] values = new double[m];
+        for (int i = 0; i < m; i++) {
+            values[i] = data.value(from + i);
+        }
+        double[] forecast = new double[m];
+        double[] seasonal = Arrays.copyOfRange(state, 2, 2 + period);
+        smooth(values, alpha, beta, gamma, state[0], state[1], seasonal, period, from % period, forecast, state, Double.POSITIVE_INFINITY);
+        fitted = ensureCapacity(fitted, from + m);
+        for (int i = 0; i < m; i++) {
+            fitted[from + i] = (float) forecast[i];
+            forecast[i] = fitted[from + i];
+        }
+        addForecastErrors(forecast, data, from, from);
     }
     
+    public boolean canForecastNext() {
+        return true;
+    }
+
+    // The base and trend after the last historical value with the seasonal
+    // index of the next position in the period, as update() would forecast
+    // the next value.
+    public float forecastNext(long time) {
+        return (float) ((state[0] + state[1]) * state[2 + data.size() % period]);
+    }
+
     public String getModelName() {
         return modelName;
     }
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
-          int n = data.size();
-          DataSet requiredDataPoints = new DataSet();
-          DataPoint dp;
-
-          for (int count = 0; count < n; count++) {
-              dp = new Observation(0.0);
-              dp.setIndependentValue("x", count);
-              requiredDataPoints.add(dp);
-          }
-          forecaster.forecast(requiredDataPoints);
-
-          // Output the results
-          Iterator<DataPoint> it = requiredDataPoints.iterator();
-          int i = 0;
-          while (it.hasNext()) {
-              DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
-              i++;
+          for (int i = 0; i < data.size(); i++) {
+              sequence.set(i, (new Entry(data.time(i), fitted[i])));
           }
     }
 
+    // The base is the mean of the first period, and the trend the mean change
+    // from the first period to the second.
+    private void initStartValues(double[] values) {
+        double firstPeriodSum  = 0;
+        double secondPeriodSum = 0;
+        for (int i = 0; i < period; i++) {
+            firstPeriodSum += values[i];
+            secondPeriodSum += values[i + period] - values[i];
+        }
+        startBase = firstPeriodSum / period;
+        startTrend = secondPeriodSum / (period * period);
+        startSeasonal = initFirstSeason(values, new double[period], period);
+    }
+
+    // The smoothing constants in [0, 1] with the least squared error.
+    private double[] optimize(double[] values) {
+        double[] best = null;
+        double bestError = Double.POSITIVE_INFINITY;
+        for (double a : GRID) {
+            for (double b : GRID) {
+                for (double g : GRID) {
+                    double[] point = {a, b, g};
+                    double error = error(values, point, bestError);
+                    if (best == null || error < bestError) {
+                        best = point;
+                        bestError = error;
+                    }
+                }
+            }
+        }
+
+        // Nelder-Mead from the best grid point, with the corners kept in [0, 1].
+        double[][] simplex = new double[4][];
+        double[] errors = new double[4];
+        simplex[0] = best;
+        errors[0] = bestError;
+        for (int k = 0; k < 3; k++) {
+            simplex[k + 1] = best.clone();
+            simplex[k + 1][k] += best[k] <= 0.9 ? 0.1 : -0.1;
+            errors[k + 1] = error(values, simplex[k + 1], Double.POSITIVE_INFINITY);
+        }
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            sort(simplex, errors);
+            if (errors[0] == Double.POSITIVE_INFINITY || errors[3] - errors[0] <= TOLERANCE * errors[0]) {
+                break;
+            }
+            double[] centroid = new double[3];
+            for (int k = 0; k < 3; k++) {
+                centroid[k] = (simplex[0][k] + simplex[1][k] + simplex[2][k]) / 3;
+            }
+            double[] reflected = towards(centroid, simplex[3], -1);
+            double reflectedError = error(values, reflected, errors[3]);
+            if (reflectedError < errors[0]) {
+                double[] expanded = towards(centroid, simplex[3], -2);
+                double expandedError = error(values, expanded, reflectedError);
+                if (expandedError < reflectedError) {
+                    simplex[3] = expanded;
+                    errors[3] = expandedError;
+                } else {
+                    simplex[3] = reflected;
+                    errors[3] = reflectedError;
+                }
+            } else if (reflectedError < errors[2]) {
+                simplex[3] = reflected;
+                errors[3] = reflectedError;
+            } else {
+                double[] contracted = towards(centroid, simplex[3], 0.5);
+                double contractedError = error(values, contracted, errors[3]);
+                if (contractedError < errors[3]) {
+                    simplex[3] = contracted;
+                    errors[3] = contractedError;
+                } else {
+                    for (int v = 1; v < 4; v++) {
+                        simplex[v] = towards(simplex[0], simplex[v], 0.5);
+                        errors[v] = error(values, simplex[v], Double.POSITIVE_INFINITY);
+                    }
+                }
+            }
+        }
+        sort(simplex, errors);
+        return simplex[0];
+    }
+
+    // The squared error of the constants in 'point', or any value above
+    // 'bound' once the error is known to exceed it.
+    private double error(double[] values, double[] point, double bound) {
+        double error = smooth(values, point[0], point[1], point[2], startBase, startTrend, startSeasonal, period, 0, null, null, bound);
+        return Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+    }
+
+    // The point at 'from' + t * ('to' - 'from'), moved into [0, 1].
+    private static double[] towards(double[] from, double[] to, double t) {
+        double[] point = new double[from.length];
+        for (int k = 0; k < point.length; k++) {
+            point[k] = Math.min(1, Math.max(0, from[k] + t * (to[k] - from[k])));
+        }
+        return point;
+    }
+
+    // Orders the corners of the simplex by their error.
+    private static void sort(double[][] simplex, double[] errors) {
+        for (int i = 1; i < errors.length; i++) {
+            for (int j = i; j > 0 && errors[j] < errors[j - 1]; j--) {
+                double e = errors[j];
+                errors[j] = errors[j - 1];
+                errors[j - 1] = e;
+                double[] p = simplex[j];
+                simplex[j] = simplex[j - 1];
+                simplex[j - 1] = p;
+            }
+        }
+    }
+
+    // Smooths 'values' from the given starting values, with the seasonal
+    // indices starting at 'offset' into the first period. Stores the one step
+    // ahead forecasts in 'forecast' and the base, trend and seasonal indices
+    // after the last value in 'state', those that are not null, and returns
+    // the sum of squared errors, or stops once it exceeds 'bound'.
+    private static double smooth(double[] values, double alpha, double beta, double gamma,
+                                 double startBase, double startTrend, double[] startSeasonal,
+                                 int period, int offset, double[] forecast, double[] state, double bound) {
+        double[] seasonal = new double[period];
+        for (int i = 0; i < period; i++) {
+            seasonal[i] = startSeasonal[(i + offset) % period];
+        }
+        double preBaseValue = startBase;
+        double preTrendValue = startTrend;
+        double sse = 0;
+        for (int i = 0; i < values.length; i++) {
+            int j = i % period;
+            double prePeriodSeasonalIndex = seasonal[j];
+            double expected_value = ( preBaseValue + preTrendValue ) * prePeriodSeasonalIndex;
+            if (forecast != null) {
+                forecast[i] = expected_value;
+            }
+            double error = expected_value - values[i];
+            sse += error * error;
+            if (sse > bound) {
+                return sse;
+            }
+
+            double curObservedValue = values[i];
+            double curBaseValue = alpha * (curObservedValue / prePeriodSeasonalIndex) + (1.0D - alpha) * (preBaseValue + preTrendValue);
+            double curTrendValue = beta * (curBaseValue - preBaseValue) + (1.0D - beta) * preTrendValue;
+            seasonal[j] = gamma * (curObservedValue / curBaseValue ) + (1.0D - gamma) * prePeriodSeasonalIndex;
+
+            preBaseValue = curBaseValue;
+            preTrendValue = curTrendValue;
+        }
+        if (state != null) {
+            state[0] = preBaseValue;
+            state[1] = preTrendValue;
+            for (int i = 0; i < period; i++) {
+                state[2 + (i + offset) % period] = seasonal[i];
+            }
+        }
+        return sse;
+    }
+
 
     private double[] initFirstSeason(double[] values, double[] seasonal, int period)
     {
@@ -207,28 +436,6 @@ public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
 
     public Map<String, Object> getModelParams(){
 
-        double alpha = ((net.sourceforge.openforecast.models.TripleExponentialSmoothingModel)forecaster).getAlpha();
-        double beta = ((net.sourceforge.openforecast.models.TripleExponentialSmoothingModel)forecaster).getBeta();
-        double gamma = ((net.sourceforge.openforecast.models.TripleExponentialSmoothingModel)forecaster).getGamma();
-        int period = this.period;
-
-        double[] values = new double[data.size()];
-        for(int i = 0 ; i < data.size() ; i++ ){
-            values[i] = data.get(i).value;
-        }
-
-        double firstPeriodSum  = 0;
-        double secondPeriodSum = 0;
-        for (int i = 0; i < period; i++) {
-            firstPeriodSum += values[i];
-            secondPeriodSum += values[i + period] - values[i];
-        }
-        double startbase = firstPeriodSum / period;
-        double starttrend = secondPeriodSum / (period * period);
-
-
-        double[] startseasonal = initFirstSeason(values, new double[period], period);
-
         double range = getValueRange( data );
 
         Map<String, Object> parameters = new HashMap<>();
@@ -236,11 +443,11 @@ public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
         parameters.put( "alpha", alpha );
         parameters.put( "beta", beta );
         parameters.put( "gamma", gamma );
-        parameters.put( "startTime", data.get(0).time );
+        parameters.put( "startTime", data.time(0) );
         parameters.put( "period", period );
-        parameters.put( "startbase", startbase );
-        parameters.put( "starttrend", starttrend );
-        parameters.put( "startseasonal", startseasonal );
+        parameters.put( "startbase", startBase );
+        parameters.put( "starttrend", startTrend );
+        parameters.put( "startseasonal", startSeasonal.clone() );
 
 
         return parameters;
@@ -258,76 +465,40 @@ public class TripleExponentialSmoothingModel extends TimeSeriesAbstractModel {
         double startbase = Double.parseDouble(params.get("startbase").toString());
         double starttrend = Double.parseDouble(params.get("starttrend").toString());
 
-        ArrayList<Double> listSeasonal = ((ArrayList<Double>)params.get("startseasonal"));
-        double[] startseasonal = new double[listSeasonal.size()];
-        for ( int i = 0 ; i < listSeasonal.size() ; i++ ){
-            startseasonal[i] = listSeasonal.get(i).doubleValue();
+        // A double[] from getModelParams(), or a list once read back from JSON.
+        double[] startseasonal;
+        Object seasonal = params.get("startseasonal");
+        if (seasonal instanceof double[]) {
+            startseasonal = (double[]) seasonal;
+        } else {
+            List<?> listSeasonal = (List<?>) seasonal;
+            startseasonal = new double[listSeasonal.size()];
+            for ( int i = 0 ; i < listSeasonal.size() ; i++ ){
+                startseasonal[i] = ((Number) listSeasonal.get(i)).doubleValue();
+            }
         }
 
-//        double[] startseasonal = (double[])params.get("startseasonal");
-
         int inputSize = observed.size();
 
         if( inputSize < 2 ) {
             throw new IllegalArgumentException("TripleExponentialSmoothing models need more than 2 data");
         }
 
-        long granularity = observed.get(1).time - observed.get(0).time;
-        int seasonalPointOffset = ((int)(( observed.get(0).time - startTime )/ granularity )) % period;
+        long granularity = observed.time(1) - observed.time(0);
+        int seasonalPointOffset = ((int)(( observed.time(0) - startTime )/ granularity )) % period;
 
         if( seasonalPointOffset < 0  ){
             throw new IllegalArgumentException("TripleExponentialSmoothing models can't predict before training time");
         }
 
-
-        double preObservedValue = 0;
-        double preExpectedValue = 0;
-        double expected_value;
-
-        double[] newSeasonal = new double[inputSize+period];
-
-        double prePeriodSeasonalIndex;
-        double preBaseValue = 0;
-        double preTrendValue = 0;
-
-        for( int i = 0 ; i < inputSize ; i++ ){
-
-            if( i == 0 ){
-                preBaseValue = startbase;
-                preTrendValue = starttrend;
-            }
-
-            if( i < period ){
-                prePeriodSeasonalIndex = startseasonal[(i + seasonalPointOffset)%period];
-            }
-            else {
-                prePeriodSeasonalIndex = newSeasonal[i-period];
-            }
-
-            expected_value = ( preBaseValue + preTrendValue ) * prePeriodSeasonalIndex;
-
-            expected.set(i, (new Entry(observed.get(i).time, (float) expected_value )));
-
-
-            double curObservedValue = observed.get(i).value;
-            double curBaseValue = alpha * (curObservedValue / prePeriodSeasonalIndex) + (1.0D - alpha) * (preBaseValue + preTrendValue);
-            double curTrendValue = beta * (curBaseValue - preBaseValue) + (1.0D - beta) * preTrendValue;
-            newSeasonal[i] = gamma * (curObservedValue / curBaseValue ) + (1.0D - gamma) * prePeriodSeasonalIndex;
-
-            preBaseValue = curBaseValue;
-            preTrendValue = curTrendValue;
-
-
-//            double curBaseValue = alpha * (preObservedValue / prePeriodSeasonalIndex ) + (1.0D - alpha) * ( preBaseValue + preTrendValue );
-//            double curTrendValue = beta * (curBaseValue - preBaseValue) + (1.0D - beta) * preTrendValue;
-//            double curSeasonIndex = gamma * (preObservedValue / curBaseValue) + (1.0D - gamma) * prePeriodSeasonalIndex;
-//
-//            expected_value = (curBaseValue + curTrendValue) * curSeasonIndex;
-//
-//            expected.set(i, (new Entry(observed.get(i).time, (float) expected_value )));
-//
-//            preObservedValue = observed.get(i).value;
-//            preExpectedValue = expected_value;
+        double[] values = new double[inputSize];
+        for (int i = 0; i < inputSize; i++) {
+            values[i] = observed.value(i);
+        }
+        double[] forecast = new double[inputSize];
+        smooth(values, alpha, beta, gamma, startbase, starttrend, startseasonal, period, seasonalPointOffset, forecast, null, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < inputSize; i++) {
+            expected.set(i, (new Entry(observed.time(i), (float) forecast[i] )));
         }
     }
 
@@ -38,7 +38,14 @@ import java.util.*;
 public class WeightedMovingAverageModel extends TimeSeriesAbstractModel {
     // methods ////////////////////////////////////////////////
 
-    // The model that will be used for forecasting.
+    // Whether the model is computed by OpenForecast, see OPENFORECAST_MODELS.
+    private boolean openForecast;
+
+    // The weights of the values before a forecast, the oldest first.
+    // TODO: Make weights configurable.
+    private static final double[] WEIGHTS = {0.75, 0.25};
+
+    // The model that will be used for forecasting by OpenForecast.
     private ForecastingModel forecaster;
     
     // Stores the historical values.
@@ -47,26 +54,56 @@ public class WeightedMovingAverageModel extends TimeSeriesAbstractModel {
     public WeightedMovingAverageModel(Properties config) {
         super(config);
         modelName = "WeightedMovingAverageModel";
+        openForecast = useOpenForecast(config, modelName);
     }
 
     public void reset() {
         // At this point, reset does nothing.
     }
     
+    // The forecast of each historical value from the 'from'-th on: the
+    // weighted sum of the values before it, added up newest first. The first
+    // values have too few and are their own forecasts, as OpenForecast has it.
+    private double[] forecasts(int from) {
+        int n = data.size();
+        int p = WEIGHTS.length;
+        double[] expected = new double[n - from];
+        for (int i = from; i < n; i++) {
+            if (i < p) {
+                expected[i - from] = data.value(i);
+                continue;
+            }
+            double sum = 0;
+            for (int j = p - 1; j >= 0; j--) {
+                sum += WEIGHTS[j] * data.value(i - p + j);
+            }
+            expected[i - from] = sum;
+        }
+        return expected;
+    }
+
     public void train(TimeSeries.DataSequence data) {
         this.data = data;
         int n = data.size();
+        if (!openForecast) {
+            if (n < WEIGHTS.length) {
+                throw new IllegalArgumentException("Data set too small. Need " + WEIGHTS.length + " data points, but only " + n + " passed to train.");
+            }
+            initForecastErrors(forecasts(0), data, WEIGHTS.length);
+
+            logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
+            return;
+        }
         DataPoint dp = null;
         DataSet observedData = new DataSet();
         for (int i = 0; i < n; i++) {
-            dp = new Observation(data.get(i).value);
+            dp = new Observation(data.value(i));
             dp.setIndependentValue("x", i);
             observedData.add(dp);
         }
         observedData.setTimeVariable("x"); 
         
-        // TODO: Make weights configurable.
-        forecaster = new net.sourceforge.openforecast.models.WeightedMovingAverageModel(new double[]{0.75, 0.25});
+        forecaster = new net.sourceforge.openforecast.models.WeightedMovingAverageModel(WEIGHTS);
         forecaster.init(observedData);
 
         initForecastErrors(forecaster, data);
@@ -74,8 +111,34 @@ public class WeightedMovingAverageModel extends TimeSeriesAbstractModel {
         logger.debug(getBias() + "\t" + getMAD() + "\t" + getMAPE() + "\t" + getMSE() + "\t" + getSAE() + "\t" + 0 + "\t" + 0);
     }
 
-    public void update(TimeSeries.DataSequence data) {
+    // Adds newer values to the history. Their forecasts only depend on the
+    // values before them, so the forecast errors are only added for them.
+    public void update(TimeSeries.DataSequence newData) {
+        if (data == null) {
+            throw new IllegalStateException("WeightedMovingAverageModel must be trained before update()");
+        }
+        int from = data.size();
+        data = appendHistory(data, newData);
+        if (refitDue(newData.size()) || openForecast) {
+            train(data);
+            return;
+        }
+        addForecastErrors(forecasts(from), data, from, from - WEIGHTS.length);
+    }
 
+    public boolean canForecastNext() {
+        return !openForecast;
+    }
+
+    // The weighted sum of the last historical values.
+    public float forecastNext(long time) {
+        int n = data.size();
+        int p = WEIGHTS.length;
+        double sum = 0;
+        for (int j = p - 1; j >= 0; j--) {
+            sum += WEIGHTS[j] * data.value(n - p + j);
+        }
+        return (float) sum;
     }
 
     public String getModelName() {
@@ -84,6 +147,13 @@ public class WeightedMovingAverageModel extends TimeSeriesAbstractModel {
 
     public void predict(TimeSeries.DataSequence sequence) throws Exception {
           int n = data.size();
+          if (!openForecast) {
+              double[] expected = forecasts(0);
+              for (int i = 0; i < n; i++) {
+                  setForecast(sequence, i, data.time(i), (float) expected[i]);
+              }
+              return;
+          }
           DataSet requiredDataPoints = new DataSet();
           DataPoint dp;
 
@@ -99,8 +169,8 @@ public class WeightedMovingAverageModel extends TimeSeriesAbstractModel {
           int i = 0;
           while (it.hasNext()) {
               DataPoint pnt = ((DataPoint) it.next());
-              logger.info(data.get(i).time + "," + data.get(i).value + "," + pnt.getDependentValue());
-              sequence.set(i, (new Entry(data.get(i).time, (float) pnt.getDependentValue())));
+              logger.info(data.time(i) + "," + data.value(i) + "," + pnt.getDependentValue());
+              sequence.set(i, (new Entry(data.time(i), (float) pnt.getDependentValue())));
               i++;
           }
     }
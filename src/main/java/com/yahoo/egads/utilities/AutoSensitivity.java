@@ -6,65 +6,94 @@
 
 // Provides the auto-sensitivity solution for EGADS
 // using the bootstrapping framework.
+//
+// Each search sorts the data once and then counts the points beyond a
+// threshold by binary search, so that a search over n points costs
+// O(n log n) rather than O(n) per candidate threshold.
 
 package com.yahoo.egads.utilities;
-import java.util.ArrayList;
-import org.apache.commons.lang.ArrayUtils;
 import java.util.Arrays;
-import java.util.Collections;
 
 public class AutoSensitivity {
 	static org.apache.logging.log4j.Logger logger = org.apache.logging.log4j.LogManager.getLogger(AutoSensitivity.class.getName());
     // Computes sensitivity based on the density distribution.
     // Assumes that anomalies constitute at most 5% of the data.
     public static Float getLowDensitySensitivity(Float[] data, float sDAutoSensitivy, float amntAutoSensitivity) {
-        Float toReturn = Float.POSITIVE_INFINITY;
-        Arrays.sort(data, Collections.reverseOrder());
-        while (data.length > 0) {     
-        	
-            ArrayList<Float> fData = new ArrayList<Float>();
-            fData.add(data[0]);
-            data = ((Float[]) ArrayUtils.remove(data, 0));
-            
-            Float centroid = (float) fData.get(0);
-            Float maxDelta = (float) sDAutoSensitivy * StatsUtils.getSD(data, StatsUtils.getMean(data));
-            
-            logger.debug("AutoSensitivity: Adding: " + fData.get(0) + " SD: " + maxDelta);
-            
-            // Add points while it's in the same cluster or not part of the other cluster.
-            String localDebug = null;
-            while (data.length > 0 &&
-                   (centroid - data[0]) <= ((float) (maxDelta))) {
-            	float maxDeltaInit = maxDelta;
-                fData.add(data[0]);
-                data = ((Float[]) ArrayUtils.remove(data, 0));
-                Float[] tmp = new Float[fData.size()];
-                tmp = fData.toArray(tmp);
-                centroid = StatsUtils.getMean(tmp);
-                
-                if (data.length > 0) {
-                    Float sdOtherCluster = (float) StatsUtils.getSD(data, StatsUtils.getMean(data));
-                    maxDelta = sDAutoSensitivy * sdOtherCluster;
-                    logger.debug("AutoSensitivity: Adding: " + data[0] + " SD: " + maxDeltaInit + " SD': " + maxDelta);
-                }
-            }
-            if (data.length > 0) {
-                logger.debug("AutoSensitivity: Next Point I would have added is " + data[0]);
+        return getLowDensitySensitivity(unbox(data), sDAutoSensitivy, amntAutoSensitivity);
+    }
+
+    // Same as above without boxing. Walking down from the largest point, the
+    // centroid of the points taken so far is kept as a running sum and the SD
+    // of the points left comes from suffix sums, so each step is O(1).
+    public static Float getLowDensitySensitivity(float[] data, float sDAutoSensitivy, float amntAutoSensitivity) {
+        int n = data.length;
+        if (n == 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float[] sorted = sort(data);
+        for (int i = 0, j = n - 1; i < j; i++, j--) {
+            float tmp = sorted[i];
+            sorted[i] = sorted[j];
+            sorted[j] = tmp;
+        }
+
+        // Sums of (x - shift) and (x - shift)^2 over sorted[i..n-1]. Shifting
+        // by the mean keeps the variance from cancelling out.
+        double shift = 0;
+        for (float f : sorted) {
+            shift += f;
+        }
+        shift /= n;
+        if (Double.isNaN(shift) || Double.isInfinite(shift)) {
+            shift = 0;
+        }
+        double[] sum = new double[n + 1];
+        double[] sumSq = new double[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            double d = sorted[i] - shift;
+            sum[i] = sum[i + 1] + d;
+            sumSq[i] = sumSq[i + 1] + d * d;
+        }
+
+        int taken = 1;
+        float total = sorted[0];
+        float centroid = sorted[0];
+        float maxDelta = sDAutoSensitivy * restSD(sum, sumSq, taken, n);
+
+        // Add points while it's in the same cluster or not part of the other cluster.
+        while (taken < n && (centroid - sorted[taken]) <= maxDelta) {
+            total += sorted[taken];
+            taken++;
+            centroid = total / taken;
+            if (taken < n) {
+                maxDelta = sDAutoSensitivy * restSD(sum, sumSq, taken, n);
             }
-                        
-            if (((double) fData.size() / (double) data.length) > amntAutoSensitivity) {
-                // Cannot do anomaly detection.
-                logger.debug("AutoSensitivity: Returning " + toReturn + " data size: " + data.length + " fData.size: " + fData.size());
-                return toReturn;
+        }
+
+        if (((double) taken / (double) (n - taken)) > amntAutoSensitivity) {
+            // Cannot do anomaly detection.
+            if (logger.isDebugEnabled()) {
+                logger.debug("AutoSensitivity: Returning Infinity data size: " + (n - taken) + " fData.size: " + taken);
             }
+            return Float.POSITIVE_INFINITY;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("AutoSensitivity: Updating toReturn:  " + sorted[taken - 1] + " SD: " + maxDelta);
+        }
+        return sorted[taken - 1];
+    }
 
-            toReturn = fData.get(fData.size() - 1);
-            logger.debug("AutoSensitivity: Updating toReturn:  " + toReturn + " SD: " + maxDelta);
-            return toReturn;
+    // The SD of sorted[from..n-1] from the suffix sums above.
+    private static float restSD(double[] sum, double[] sumSq, int from, int n) {
+        int m = n - from;
+        if (m == 0) {
+            return Float.NaN;
         }
-        return toReturn;
+        double mean = sum[from] / m;
+        double var = sumSq[from] / m - mean * mean;
+        return (float) Math.sqrt(Math.max(var, 0));
     }
-    
+
     // Uses the simple KSigma rule to get the anoamly sensitivity.
     // Assumes that we have a normal distribution.
     public static Float getKSigmaSensitivity(Float[] data, float sDAutoSensitivity) {
@@ -73,98 +102,156 @@ public class AutoSensitivity {
          return (mean + (sd * sDAutoSensitivity));
     }
 
+    // Same as above, without boxing.
+    public static float getKSigmaSensitivity(float[] data, float sDAutoSensitivity) {
+         float mean = StatsUtils.getMean(data);
+         float sd = StatsUtils.getSD(data, mean);
+         return (mean + (sd * sDAutoSensitivity));
+    }
+
     // Uses the mean as the base to find the static threshold.
     public static Float[] getAdaptiveKSigmaSensitivity(Float[] data, float amntAutoSens) {
-         Float mean = StatsUtils.getMean(data);
-         Float sd = StatsUtils.getSD(data, mean);
+        return getAdaptiveKSigmaSensitivity(unbox(data), amntAutoSens);
+    }
+
+    // Same as above, without boxing. k still goes up one SD at a time, but a
+    // point is at most sqrt(n) SDs away from the mean, so each side takes at
+    // most that many steps, and each step counts the points beyond the
+    // threshold with a binary search of the sorted data.
+    public static Float[] getAdaptiveKSigmaSensitivity(float[] data, float amntAutoSens) {
+         float mean = StatsUtils.getMean(data);
+         float sd = StatsUtils.getSD(data, mean);
          if (sd == (float) 0.0) {
              sd = (float) 1.0;
          }
-         Float[] ret = null;
+         float[] sorted = sort(data);
+         int valid = numbers(sorted);
          float k = (float) 1;
          float incr = (float) 1;
-         
+
          Float max = null;
          Float min = null;
          float thresh = mean + Math.abs(sd * k);
-         int howMany = howManyGreater(data, thresh);
+         int howMany = howManyGreater(sorted, valid, thresh);
 
          while (((float) howMany / (float) data.length) > amntAutoSens) {
              k += incr;
              thresh = mean + Math.abs(sd * k);
-             howMany = howManyGreater(data, thresh);
-         } 
+             howMany = howManyGreater(sorted, valid, thresh);
+         }
          if (((float) howMany / (float) data.length) <= amntAutoSens) {
              max = thresh;
-         } 
+         }
          k = 1;
          thresh = mean - Math.abs(sd * k);
-         howMany = howManyLess(data, thresh);
-        
+         howMany = howManyLess(sorted, valid, thresh);
+
          while (((float) howMany / (float) data.length) > amntAutoSens) {
              k += incr;
              thresh = mean - Math.abs(sd * k);
-             howMany = howManyLess(data, thresh);
-         } 
+             howMany = howManyLess(sorted, valid, thresh);
+         }
          if (((float) howMany / (float) data.length) <= amntAutoSens) {
            min = thresh;
          }
-         ret = new Float[]{max, min};
-         return ret; 
+         return new Float[]{max, min};
     }
-    
+
     // Uses the max/min as the base to find the static threshold.
     public static Float[] getAdaptiveMaxMinSigmaSensitivity(Float[] data, float amntAutoSens, float k) {
-    	Arrays.sort(data);
-    	Float mean = StatsUtils.getMean(data);
-        Float sd = StatsUtils.getSD(data, mean);
+        return getAdaptiveMaxMinSigmaSensitivity(unbox(data), amntAutoSens, k);
+    }
+
+    // Same as above, without boxing. Leaves 'data' unchanged.
+    public static Float[] getAdaptiveMaxMinSigmaSensitivity(float[] data, float amntAutoSens, float k) {
+        float[] sorted = sort(data);
+        int valid = numbers(sorted);
+        int n = sorted.length;
+        float mean = StatsUtils.getMean(sorted);
+        float sd = StatsUtils.getSD(sorted, mean);
         if (sd == (float) 0.0) {
             sd = (float) 1.0;
         }
-        Float[] ret = null;
-        
+
         Float max = null;
         Float min = null;
         int i = 0;
-        float thresh = data[i] + Math.abs(sd * k);
-        int howMany = howManyLess(data, thresh);
-        while (((float) howMany / (float) data.length) <= amntAutoSens) {
-        	min = thresh;
-        	i++;
-            thresh = data[i] + Math.abs(sd * k);
-            howMany = howManyLess(data, thresh);
-        } 
-        i = data.length - 1;
-        thresh = data[i] - Math.abs(sd * k);
-        howMany = howManyGreater(data, thresh);
-        while (((float) howMany / (float) data.length) <= amntAutoSens) {
-        	max = thresh;
-            i--;
-            thresh = data[i] - Math.abs(sd * k);
-            howMany = howManyGreater(data, thresh);
-        } 
-
-        ret = new Float[]{max, min};
-        return ret; 
+        float thresh = sorted[i] + Math.abs(sd * k);
+        int howMany = howManyLess(sorted, valid, thresh);
+        while (((float) howMany / (float) n) <= amntAutoSens) {
+            min = thresh;
+            if (++i == n) {
+                break;
+            }
+            thresh = sorted[i] + Math.abs(sd * k);
+            howMany = howManyLess(sorted, valid, thresh);
+        }
+        i = n - 1;
+        thresh = sorted[i] - Math.abs(sd * k);
+        howMany = howManyGreater(sorted, valid, thresh);
+        while (((float) howMany / (float) n) <= amntAutoSens) {
+            max = thresh;
+            if (--i < 0) {
+                break;
+            }
+            thresh = sorted[i] - Math.abs(sd * k);
+            howMany = howManyGreater(sorted, valid, thresh);
+        }
+
+        return new Float[]{max, min};
    }
 
-    private static int howManyGreater(Float[] data, Float value) {
-        int numgreater = 0;
-        for (Float f : data) {
-            if (value <= f) {
-                numgreater++;
+    private static float[] unbox(Float[] data) {
+        float[] values = new float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            values[i] = data[i];
+        }
+        return values;
+    }
+
+    // A sorted copy, in the order of Arrays.sort(Float[]): NaNs last.
+    private static float[] sort(float[] data) {
+        float[] sorted = Arrays.copyOf(data, data.length);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    // The number of sorted points before the NaNs, which no threshold counts.
+    private static int numbers(float[] sorted) {
+        int valid = sorted.length;
+        while (valid > 0 && Float.isNaN(sorted[valid - 1])) {
+            valid--;
+        }
+        return valid;
+    }
+
+    // The number of points >= value among sorted[0..valid-1].
+    private static int howManyGreater(float[] sorted, int valid, float value) {
+        int lo = 0;
+        int hi = valid;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value <= sorted[mid]) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
             }
         }
-        return numgreater;
+        return valid - lo;
     }
 
-    private static int howManyLess(Float[] data, Float value) {
-        int numless = 0;
-        for (Float f : data) {
-            if (value >= f) {
-                numless++;
+    // The number of points <= value among sorted[0..valid-1].
+    private static int howManyLess(float[] sorted, int valid, float value) {
+        int lo = 0;
+        int hi = valid;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value >= sorted[mid]) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
             }
         }
-        return numless;
+        return lo;
     }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+// Class that implements EGADS binary file input processing.
+
+import com.yahoo.egads.control.ProcessableObjectExecutor;
+import java.util.Properties;
+import com.yahoo.egads.data.TimeSeries;
+import java.util.ArrayList;
+
+public class BinaryFileInputProcessor implements InputProcessor {
+
+    private String file = null;
+
+    public BinaryFileInputProcessor(String file) {
+        this.file = file;
+    }
+
+    public void processInput(Properties p) throws Exception {
+        // Load the input timeseries.
+        ArrayList<TimeSeries> metrics = BinaryFileUtils.createTimeSeries(this.file, p);
+        ProcessableObjectExecutor executor = new ProcessableObjectExecutor(p);
+        try {
+            for (TimeSeries ts : metrics) {
+                executor.submit(ts);
+            }
+            executor.finish();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// A utility for storing timeseries objects in a compact binary file
+// and loading them back without any parsing.
+
+package com.yahoo.egads.utilities;
+
+import com.yahoo.egads.data.ColumnarDataSequence;
+import com.yahoo.egads.data.TimeSeries;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * File layout (big endian):
+ *
+ *      int     magic "EGTS"
+ *      int     format version
+ *      int     number of series
+ *      per series:
+ *          MetricMeta  id, name, fileName, source, smoothing as length prefixed
+ *                      UTF-8 strings (length -1 for null), detectAnomalies as a
+ *                      byte, seasons as a count (-1 for null) followed by longs
+ *          int     number of points
+ *          byte    timestamp encoding
+ *          long    first timestamp
+ *          ...     REGULAR: long period
+ *                  DELTA_INT: (n - 1) int deltas
+ *                  DELTA_LONG: (n - 1) long deltas
+ *          float[] values
+ *
+ * Regularly spaced series, the common case, cost four bytes per point.
+ * The file is memory mapped on load and every column is decoded with a
+ * single pass over the mapped bytes.
+ */
+public class BinaryFileUtils {
+
+    public static final int MAGIC = 0x45475453;
+    public static final int VERSION = 1;
+
+    private static final byte REGULAR = 0;
+    private static final byte DELTA_INT = 1;
+    private static final byte DELTA_LONG = 2;
+
+    // Converts a csv file (parsed with the given config) into a binary file.
+    // Usage: java com.yahoo.egads.utilities.BinaryFileUtils input.csv output.egads [config]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java BinaryFileUtils input.csv output.egads (config)");
+            System.exit(1);
+        }
+        Properties p = new Properties();
+        if (args.length > 2) {
+            if (new File(args[2]).exists()) {
+                InputStream is = new FileInputStream(args[2]);
+                p.load(is);
+                is.close();
+            } else {
+                FileUtils.initProperties(args[2], p);
+            }
+        }
+        writeTimeSeries(args[1], FileUtils.createTimeSeries(args[0], p));
+    }
+
+    // Creates time-series from a binary file.
+    public static ArrayList<TimeSeries> createTimeSeries(String file, Properties config) throws Exception {
+        Integer aggr = 1;
+        if (config.getProperty("AGGREGATION") != null) {
+            aggr = new Integer(config.getProperty("AGGREGATION"));
+        }
+        ArrayList<TimeSeries> output = readTimeSeries(file);
+
+        // Handle aggregation.
+        if (aggr > 1) {
+            for (TimeSeries t : output) {
+                t.data = t.aggregate(aggr);
+                t.meta.name += "_aggr_" + aggr;
+            }
+        }
+        return output;
+    }
+
+    // Reads all time-series stored in the file.
+    public static ArrayList<TimeSeries> readTimeSeries(String file) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readTimeSeries(buf, file);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static ArrayList<TimeSeries> readTimeSeries(MappedByteBuffer buf, String file) throws Exception {
+        if (buf.remaining() < 12 || buf.getInt() != MAGIC) {
+            throw new Exception(file + " is not an EGADS binary file.");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new Exception("Unsupported binary file version " + version + " in " + file);
+        }
+        int numSeries = buf.getInt();
+        ArrayList<TimeSeries> output = new ArrayList<TimeSeries>(numSeries);
+        for (int s = 0; s < numSeries; s++) {
+            TimeSeries ts = new TimeSeries();
+            ts.meta.id = readString(buf);
+            ts.meta.name = readString(buf);
+            ts.meta.fileName = readString(buf);
+            ts.meta.source = readString(buf);
+            ts.meta.smoothing = readString(buf);
+            ts.meta.detectAnomalies = buf.get() != 0;
+            int numSeasons = buf.getInt();
+            if (numSeasons >= 0) {
+                ts.meta.seasons = new long[numSeasons];
+                buf.asLongBuffer().get(ts.meta.seasons);
+                buf.position(buf.position() + 8 * numSeasons);
+            }
+
+            int n = buf.getInt();
+            byte encoding = buf.get();
+            long[] times = new long[n];
+            long time = buf.getLong();
+            if (encoding == REGULAR) {
+                long period = buf.getLong();
+                for (int i = 0; i < n; i++) {
+                    times[i] = time;
+                    time += period;
+                }
+            } else if (encoding == DELTA_INT || encoding == DELTA_LONG) {
+                if (n > 0) {
+                    times[0] = time;
+                }
+                for (int i = 1; i < n; i++) {
+                    time += (encoding == DELTA_INT) ? buf.getInt() : buf.getLong();
+                    times[i] = time;
+                }
+            } else {
+                throw new Exception("Unknown timestamp encoding " + encoding + " in " + file);
+            }
+            float[] values = new float[n];
+            buf.asFloatBuffer().get(values);
+            buf.position(buf.position() + 4 * n);
+
+            ts.data = new ColumnarDataSequence(times, values);
+            output.add(ts);
+        }
+        return output;
+    }
+
+    // Writes the time-series into a binary file, replacing any existing file.
+    public static void writeTimeSeries(String file, List<TimeSeries> series) throws Exception {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(series.size());
+            for (TimeSeries ts : series) {
+                writeString(out, ts.meta.id);
+                writeString(out, ts.meta.name);
+                writeString(out, ts.meta.fileName);
+                writeString(out, ts.meta.source);
+                writeString(out, ts.meta.smoothing);
+                out.writeByte(ts.meta.detectAnomalies ? 1 : 0);
+                if (ts.meta.seasons == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(ts.meta.seasons.length);
+                    for (long season : ts.meta.seasons) {
+                        out.writeLong(season);
+                    }
+                }
+
+                int n = ts.size();
+                out.writeInt(n);
+                byte encoding = timeEncoding(ts);
+                out.writeByte(encoding);
+                out.writeLong(n > 0 ? ts.time(0) : 0);
+                if (encoding == REGULAR) {
+                    out.writeLong(n > 1 ? ts.time(1) - ts.time(0) : 0);
+                } else {
+                    for (int i = 1; i < n; i++) {
+                        long delta = ts.time(i) - ts.time(i - 1);
+                        if (encoding == DELTA_INT) {
+                            out.writeInt((int) delta);
+                        } else {
+                            out.writeLong(delta);
+                        }
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    out.writeFloat(ts.value(i));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    // Picks the smallest encoding that represents the timestamps exactly.
+    private static byte timeEncoding(TimeSeries ts) {
+        int n = ts.size();
+        if (n < 3) {
+            return REGULAR;
+        }
+        long period = ts.time(1) - ts.time(0);
+        boolean regular = true;
+        boolean fitsInt = true;
+        for (int i = 1; i < n; i++) {
+            long delta = ts.time(i) - ts.time(i - 1);
+            regular &= (delta == period);
+            fitsInt &= (delta >= Integer.MIN_VALUE && delta <= Integer.MAX_VALUE);
+        }
+        if (regular) {
+            return REGULAR;
+        }
+        return fitsInt ? DELTA_INT : DELTA_LONG;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws Exception {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -18,17 +18,18 @@
 package com.yahoo.egads.utilities;
  
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
  
 import org.apache.commons.math3.exception.NotPositiveException;
 import org.apache.commons.math3.exception.NullArgumentException;
+import org.apache.commons.math3.ml.distance.ChebyshevDistance;
 import org.apache.commons.math3.ml.distance.DistanceMeasure;
 import org.apache.commons.math3.ml.distance.EuclideanDistance;
+import org.apache.commons.math3.ml.distance.ManhattanDistance;
 import org.apache.commons.math3.util.MathUtils;
 import org.apache.commons.math3.ml.clustering.Clusterable;
 import org.apache.commons.math3.ml.clustering.Cluster;
@@ -130,6 +131,11 @@ public class DBSCANClusterer<T extends Clusterable> extends Clusterer<T> {
  
     /**
      * Performs DBSCAN cluster analysis.
+     * <p>
+     * Neighbors are looked up in a k-d tree over the points when the distance
+     * measure is at least the difference of any single coordinate (euclidean,
+     * manhattan and chebyshev distances), and by comparing all points otherwise.
+     * Only the noise points are returned, as a single cluster.
      *
      * @param points the points to cluster
      * @return the list of clusters
@@ -140,23 +146,51 @@ public class DBSCANClusterer<T extends Clusterable> extends Clusterer<T> {
         // sanity checks
         MathUtils.checkNotNull(points);
  
-        final List<Cluster<T>> clusters = new ArrayList<Cluster<T>>();
+        final List<T> list = new ArrayList<T>(points);
+        final int n = list.size();
+        final double[][] coordinates = new double[n][];
+        for (int i = 0; i < n; i++) {
+            coordinates[i] = list.get(i).getPoint();
+        }
+        final DistanceMeasure measure = getDistanceMeasure();
+        final boolean prunable = measure instanceof EuclideanDistance
+                                 || measure instanceof ManhattanDistance
+                                 || measure instanceof ChebyshevDistance;
+        final NeighborIndex index = new NeighborIndex(coordinates, prunable ? LEAF_SIZE : n);
+
+        // Points with equal coordinates share the status of the first of them.
+        final int[] first = new int[n];
+        final Map<Clusterable, Integer> firstOf = new HashMap<Clusterable, Integer>();
+        for (int i = 0; i < n; i++) {
+            final Integer f = firstOf.get(list.get(i));
+            if (f == null) {
+                firstOf.put(list.get(i), i);
+                first[i] = i;
+            } else {
+                first[i] = f;
+            }
+        }
+        final PointStatus[] visited = new PointStatus[n];
+
         final List<Cluster<T>> anomalousClusters = new ArrayList<Cluster<T>>();
         final Cluster<T> anomalyCluster = new Cluster<T>();
-        final Map<Clusterable, PointStatus> visited = new HashMap<Clusterable, PointStatus>();
+        final IntList seeds = new IntList();
  
-        for (final T point : points) {
-            if (visited.get(point) != null) {
+        for (int i = 0; i < n; i++) {
+            if (visited[first[i]] != null) {
                 continue;
             }
-            final List<T> neighbors = getNeighbors(point, points);
-            if (neighbors.size() >= minPts) {
-                // DBSCAN does not care about center points
-                final Cluster<T> cluster = new Cluster<T>();
-                clusters.add(expandCluster(cluster, point, neighbors, points, visited));
+            index.remove(i);
+            if (index.hasNeighbors(i, eps, minPts, measure)) {
+                // DBSCAN does not care about center points, nor about the
+                // clusters other than noise, so only the visited points are kept.
+                visited[first[i]] = PointStatus.PART_OF_CLUSTER;
+                seeds.size = 0;
+                index.claimNeighbors(i, eps, measure, seeds);
+                expandCluster(seeds, index, first, visited);
             } else {
-                visited.put(point, PointStatus.NOISE);
-                anomalyCluster.addPoint(point);
+                visited[first[i]] = PointStatus.NOISE;
+                anomalyCluster.addPoint(list.get(i));
             }
         }
         anomalousClusters.add(anomalyCluster);
@@ -165,77 +199,228 @@ public class DBSCANClusterer<T extends Clusterable> extends Clusterer<T> {
     }
  
     /**
-     * Expands the cluster to include density-reachable items.
+     * Marks all the points density-reachable from the seeds as part of their
+     * cluster.
      *
-     * @param cluster Cluster to expand
-     * @param point Point to add to cluster
-     * @param neighbors List of neighbors
-     * @param points the data set
-     * @param visited the set of already visited points
-     * @return the expanded cluster
+     * @param seeds the unvisited neighbors of a core point, removed from the index
+     * @param index the index of the points not yet in a cluster
+     * @param first the first point with the same coordinates as each point
+     * @param visited the status of the already visited points
      */
-    private Cluster<T> expandCluster(final Cluster<T> cluster,
-                                     final T point,
-                                     final List<T> neighbors,
-                                     final Collection<T> points,
-                                     final Map<Clusterable, PointStatus> visited) {
-        cluster.addPoint(point);
-        visited.put(point, PointStatus.PART_OF_CLUSTER);
- 
-        List<T> seeds = new ArrayList<T>(neighbors);
-        int index = 0;
-        while (index < seeds.size()) {
-            final T current = seeds.get(index);
-            PointStatus pStatus = visited.get(current);
+    private void expandCluster(final IntList seeds,
+                               final NeighborIndex index,
+                               final int[] first,
+                               final PointStatus[] visited) {
+        final DistanceMeasure measure = getDistanceMeasure();
+        for (int k = 0; k < seeds.size; k++) {
+            final int current = seeds.values[k];
             // only check non-visited points
-            if (pStatus == null) {
-                final List<T> currentNeighbors = getNeighbors(current, points);
-                if (currentNeighbors.size() >= minPts) {
-                    seeds = merge(seeds, currentNeighbors);
-                }
+            if (visited[first[current]] == null && index.hasNeighbors(current, eps, minPts, measure)) {
+                index.claimNeighbors(current, eps, measure, seeds);
             }
- 
-            if (pStatus != PointStatus.PART_OF_CLUSTER) {
-                visited.put(current, PointStatus.PART_OF_CLUSTER);
-                cluster.addPoint(current);
-            }
- 
-            index++;
+            visited[first[current]] = PointStatus.PART_OF_CLUSTER;
         }
-        return cluster;
     }
  
-    /**
-     * Returns a list of density-reachable neighbors of a {@code point}.
-     *
-     * @param point the point to look for
-     * @param points possible neighbors
-     * @return the List of neighbors
-     */
-    private List<T> getNeighbors(final T point, final Collection<T> points) {
-        final List<T> neighbors = new ArrayList<T>();
-        for (final T neighbor : points) {
-            if (point != neighbor && distance(neighbor, point) <= eps) {
-                neighbors.add(neighbor);
+    /** A growable array of point indices. */
+    private static class IntList {
+        int[] values = new int[16];
+        int size = 0;
+
+        void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
             }
+            values[size++] = value;
         }
-        return neighbors;
     }
  
+    /** Largest number of points in a leaf of the k-d tree. */
+    private static final int LEAF_SIZE = 8;
+ 
     /**
-     * Merges two lists together.
-     *
-     * @param one first list
-     * @param two second list
-     * @return merged lists
+     * A k-d tree over the points, from which points can be removed.
+     * <p>
+     * The tree is implicit in the order of the point indices: the subtree of a
+     * range of at most {@code leafSize} positions is a leaf, otherwise its root
+     * is the median position, after which the range is ordered so that the
+     * points before it are not greater and the points after it not smaller in
+     * the split dimension. With a leaf size of at least the number of points
+     * every query compares all points.
      */
-    private List<T> merge(final List<T> one, final List<T> two) {
-        final Set<T> oneSet = new HashSet<T>(one);
-        for (T item : two) {
-            if (!oneSet.contains(item)) {
-                one.add(item);
+    private static class NeighborIndex {
+        private final double[][] coordinates;
+        private final int leafSize;
+        private final int[] order;
+        private final int[] position;
+        private final int[] splitDimension;
+        private final int[] live;
+        private final boolean[] removed;
+
+        NeighborIndex(final double[][] coordinates, final int leafSize) {
+            final int n = coordinates.length;
+            this.coordinates = coordinates;
+            this.leafSize = Math.max(leafSize, 1);
+            order = new int[n];
+            position = new int[n];
+            splitDimension = new int[n];
+            live = new int[n];
+            removed = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            build(0, n);
+            for (int k = 0; k < n; k++) {
+                position[order[k]] = k;
+            }
+        }
+
+        private void build(final int lo, final int hi) {
+            if (hi - lo <= leafSize) {
+                return;
+            }
+            final int mid = (lo + hi) >>> 1;
+            final int dimension = widestDimension(lo, hi);
+            select(lo, hi - 1, mid, dimension);
+            splitDimension[mid] = dimension;
+            live[mid] = hi - lo;
+            build(lo, mid);
+            build(mid + 1, hi);
+        }
+
+        private int widestDimension(final int lo, final int hi) {
+            int widest = 0;
+            double widestSpread = -1;
+            for (int d = 0; d < coordinates[order[lo]].length; d++) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = lo; k < hi; k++) {
+                    min = Math.min(min, coordinates[order[k]][d]);
+                    max = Math.max(max, coordinates[order[k]][d]);
+                }
+                if (max - min > widestSpread) {
+                    widestSpread = max - min;
+                    widest = d;
+                }
+            }
+            return widest;
+        }
+
+        // Moves the point of rank k in the given dimension among the positions
+        // [left, right] to position k.
+        private void select(int left, int right, final int k, final int dimension) {
+            while (left < right) {
+                final double pivot = coordinates[order[(left + right) >>> 1]][dimension];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (coordinates[order[i]][dimension] < pivot) {
+                        i++;
+                    }
+                    while (coordinates[order[j]][dimension] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        final int swap = order[i];
+                        order[i++] = order[j];
+                        order[j--] = swap;
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /** Removes a point, so that claimNeighbors() no longer returns it. */
+        void remove(final int point) {
+            if (removed[point]) {
+                return;
+            }
+            removed[point] = true;
+            final int target = position[point];
+            int lo = 0;
+            int hi = order.length;
+            while (hi - lo > leafSize) {
+                final int mid = (lo + hi) >>> 1;
+                live[mid]--;
+                if (target == mid) {
+                    return;
+                } else if (target < mid) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+        }
+
+        /** Whether at least minPts points other than the given one, removed or not, are within eps of it. */
+        boolean hasNeighbors(final int point, final double eps, final int minPts, final DistanceMeasure measure) {
+            return minPts <= 0 || count(point, eps, minPts, measure, 0, order.length, 0) >= minPts;
+        }
+
+        private int count(final int point, final double eps, final int minPts, final DistanceMeasure measure,
+                          final int lo, final int hi, int found) {
+            final double[] query = coordinates[point];
+            if (hi - lo <= leafSize) {
+                for (int k = lo; k < hi && found < minPts; k++) {
+                    if (order[k] != point && measure.compute(coordinates[order[k]], query) <= eps) {
+                        found++;
+                    }
+                }
+                return found;
+            }
+            final int mid = (lo + hi) >>> 1;
+            final double difference = query[splitDimension[mid]] - coordinates[order[mid]][splitDimension[mid]];
+            if (order[mid] != point && measure.compute(coordinates[order[mid]], query) <= eps) {
+                found++;
+            }
+            if (found < minPts && difference <= eps) {
+                found = count(point, eps, minPts, measure, lo, mid, found);
+            }
+            if (found < minPts && difference >= -eps) {
+                found = count(point, eps, minPts, measure, mid + 1, hi, found);
+            }
+            return found;
+        }
+
+        /** Removes the points within eps of the given one and adds them to 'out'. */
+        void claimNeighbors(final int point, final double eps, final DistanceMeasure measure, final IntList out) {
+            final int start = out.size;
+            claim(coordinates[point], eps, measure, 0, order.length, out);
+            for (int k = start; k < out.size; k++) {
+                remove(out.values[k]);
+            }
+        }
+
+        private void claim(final double[] query, final double eps, final DistanceMeasure measure,
+                           final int lo, final int hi, final IntList out) {
+            if (hi - lo <= leafSize) {
+                for (int k = lo; k < hi; k++) {
+                    if (!removed[order[k]] && measure.compute(coordinates[order[k]], query) <= eps) {
+                        out.add(order[k]);
+                    }
+                }
+                return;
+            }
+            final int mid = (lo + hi) >>> 1;
+            if (live[mid] == 0) {
+                return;
+            }
+            final double difference = query[splitDimension[mid]] - coordinates[order[mid]][splitDimension[mid]];
+            if (!removed[order[mid]] && measure.compute(coordinates[order[mid]], query) <= eps) {
+                out.add(order[mid]);
+            }
+            if (difference <= eps) {
+                claim(query, eps, measure, lo, mid, out);
+            }
+            if (difference >= -eps) {
+                claim(query, eps, measure, mid + 1, hi, out);
             }
         }
-        return one;
     }
 }
\ No newline at end of file
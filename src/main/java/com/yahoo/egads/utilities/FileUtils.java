@@ -12,11 +12,10 @@ package com.yahoo.egads.utilities;
 import com.yahoo.egads.data.TimeSeries;
 import java.util.StringTokenizer;
 import java.util.ArrayList;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Properties;
-import org.joda.time.DateTime;
 
 
 public class FileUtils {
@@ -25,13 +24,9 @@ public class FileUtils {
     public static ArrayList<TimeSeries> createTimeSeries(String csv_file, Properties config) {
         // Input file which needs to be parsed
         String fileToParse = csv_file;
-        BufferedReader fileReader = null;
+        InputStream fileStream = null;
         ArrayList<TimeSeries> output = new ArrayList<TimeSeries>();
 
-        // Delimiter used in CSV file
-        final String delimiter = ",";
-        Long interval = null;
-        Long prev = null;
         Integer aggr = 1;
         boolean fillMissing = false;
         if (config.getProperty("FILL_MISSING") != null && config.getProperty("FILL_MISSING").equals("1")) {
@@ -41,82 +36,16 @@ public class FileUtils {
             aggr = new Integer(config.getProperty("AGGREGATION"));
         }
         try {
-            String line = "";
-            // Create the file reader.
-            fileReader = new BufferedReader(new FileReader(fileToParse));
-
-            // Read the file line by line
-            boolean firstLine = true;
-            while ((line = fileReader.readLine()) != null) {
-                // Get all tokens available in line.
-                String[] tokens = line.split(delimiter);
-                Long curTimestamp = null;
-                
-                // Check for the case where there is more than one line preceding the data 
-                if (firstLine == true) {
-                    if (!isNumeric(tokens[0]) && tokens[0].equals("timestamp") == false) {
-                        continue;
-                    }
-                }
-                if (firstLine == false && tokens.length > 1) {
-
-                    if( isNumeric(tokens[0]) ) {
-                        curTimestamp = (new Double(tokens[0])).longValue();
-                    }
-                    else {
-                        DateTime inpuTime = new DateTime(tokens[0]);
-                        curTimestamp = inpuTime.getMillis()/1000;
-                    }
-                }
-                for (int i = 1; i < tokens.length; i++) {
-                    // Assume that the first line contains the column names.
-                    if (firstLine) {
-                        TimeSeries ts = new TimeSeries();
-                        ts.meta.fileName = csv_file;
-                        output.add(ts);
-                        if (isNumeric(tokens[i]) == false) { // Just in case there's a numeric column heading
-                            ts.meta.name = tokens[i];
-                        } else {
-                            ts.meta.name = "metric_" + i;
-                            output.get(i - 1).append((new Double(tokens[0])).longValue(),
-                                    new Float(tokens[i]));
-                        }
-                    } else {
-                        // A naive missing data handler.
-                        if (interval != null && prev != null && interval > 0 && fillMissing == true) {
-                            if ((curTimestamp - prev) != interval) {
-                                int missingValues = (int) ((curTimestamp - prev) / interval);
-                                
-                                Long curTimestampToFill = prev + interval;
-                                for (int j = (missingValues - 1); j > 0; j--) {
-                                    Float valToFill =  new Float(tokens[i]);
-                                    if (output.get(i - 1).size() >= missingValues) {
-                                        valToFill = output.get(i - 1).data.get(output.get(i - 1).size() - missingValues).value;
-                                    }
-                                    output.get(i - 1).append(curTimestampToFill, valToFill);
-                                    curTimestampToFill += interval;
-                                }
-                            }
-                        }
-                        // Infer interval.
-                        if (interval == null && prev != null) {
-                            interval = curTimestamp - new Long(prev);
-                        }
-                        
-                        output.get(i - 1).append(curTimestamp,
-                                new Float(tokens[i]));
-                    }
-                }
-                if (firstLine == false) {
-                    prev = curTimestamp;
-                }
-                firstLine = false;
-            }
+            // Stream the file in chunks straight into the series' columns.
+            fileStream = new FileInputStream(fileToParse);
+            new StreamingCsvReader(fileStream, csv_file, fillMissing).read(output);
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
             try {
-                fileReader.close();
+                if (fileStream != null) {
+                    fileStream.close();
+                }
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -187,7 +187,7 @@ public class GUIUtils extends ApplicationFrame {
         XYSeries observations = new XYSeries(label);
         int n = ds.size();
         for (int i = 0; i < n; i++) {
-            observations.add(i, ds.get(i).value);
+            observations.add(i, ds.value(i));
         }        
         XYSeriesCollection collection = new XYSeriesCollection();
         collection.addSeries(observations);
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+/**
+ * HankelSVD computes the leading singular values and vectors of the Hankel matrix of a time-series without forming
+ * the matrix.
+ *
+ * With the n x m data stored row after row in one array, row i of the Hankel matrix for a window of W rows is the
+ * W * m values starting at i * m, so its products with vectors are read straight off the data.
+ *
+ * The singular triplets come from a Golub-Kahan-Lanczos bidiagonalization with full reorthogonalization, extended a
+ * step at a time until the caller has all the leading singular values it needs. Its cost is a pair of products with
+ * the Hankel matrix per singular value, rather than a full SVD.
+ */
+class HankelSVD {
+
+    // Decides how many leading components to keep from the singular values
+    // found so far, of which the first 'converged' are accurate. Returns -1
+    // if it needs more of them. 'complete' means that all are known.
+    interface Cutoff {
+        int components(double[] singularValues, int converged, boolean complete);
+    }
+
+    // A singular triplet has converged once its residual is below this fraction of the largest singular value.
+    private static final double TOLERANCE = 1e-10;
+
+    private final double[] data;
+    private final int rows;
+    private final int columns;
+    private final int stride;
+
+    private double[] singularValues;
+    private double[][] left;
+    private double[][] right;
+
+    HankelSVD(double[] data, int m, int windowSize) {
+        this.data = data;
+        this.stride = m;
+        this.rows = data.length / m - windowSize + 1;
+        this.columns = windowSize * m;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    // The number of singular values of the Hankel matrix.
+    int rank() {
+        return Math.min(rows, columns);
+    }
+
+    // The sum of the squares of the entries of the Hankel matrix, i.e. of its
+    // singular values. Each row of the data appears in up to W rows of it.
+    double frobeniusNorm2() {
+        int n = data.length / stride;
+        int windowSize = columns / stride;
+        double sum = 0;
+        for (int t = 0; t < n; ++t) {
+            int copies = occurrences(t, rows, windowSize);
+            for (int h = 0; h < stride; ++h) {
+                double d = data[t * stride + h];
+                sum += copies * d * d;
+            }
+        }
+        return sum;
+    }
+
+    // The number of rows of a Hankel matrix with 'rows' rows and a window of
+    // 'windowSize' that hold row t of the data.
+    static int occurrences(int t, int rows, int windowSize) {
+        return Math.min(t, rows - 1) - Math.max(0, t - windowSize + 1) + 1;
+    }
+
+    double[] getSingularValues() {
+        return singularValues;
+    }
+
+    // The kept left singular vectors, one per array, of length getRows().
+    double[][] getLeft() {
+        return left;
+    }
+
+    // The kept right singular vectors, one per array, of length getColumns().
+    double[][] getRight() {
+        return right;
+    }
+
+    // Extends the bidiagonalization until 'cutoff' settles on a number of
+    // components, and keeps their singular vectors. Returns that number.
+    int compute(Cutoff cutoff) {
+        int maxRank = rank();
+        double tiny = Math.sqrt(frobeniusNorm2()) * 1e-14;
+        double[] alpha = new double[maxRank];
+        double[] beta = new double[maxRank];
+        List<double[]> us = new ArrayList<double[]>();
+        List<double[]> vs = new ArrayList<double[]>();
+        Random random = new Random(maxRank);
+
+        // The bidiagonalization starts on the smaller side, so that once it has
+        // taken maxRank steps it spans that side and its spectrum is exact.
+        boolean wide = columns > rows;
+        int vLength = wide ? rows : columns;
+        int uLength = wide ? columns : rows;
+
+        vs.add(randomOrthogonal(random, vs, vLength));
+        int steps = 0;
+        int nextCheck = 1;
+        while (true) {
+            double[] v = vs.get(steps);
+            double[] u = wide ? multiplyTransposed(v) : multiply(v);
+            if (steps > 0) {
+                axpy(-beta[steps - 1], us.get(steps - 1), u);
+            }
+            orthogonalize(u, us);
+            double a = norm(u);
+            if (a <= tiny) {
+                a = 0;
+                u = randomOrthogonal(random, us, uLength);
+            } else {
+                scale(u, 1 / a);
+            }
+            us.add(u);
+            alpha[steps] = a;
+            steps++;
+
+            boolean complete = steps == maxRank;
+            if (!complete) {
+                double[] w = wide ? multiply(u) : multiplyTransposed(u);
+                axpy(-a, v, w);
+                orthogonalize(w, vs);
+                double b = norm(w);
+                if (b <= tiny) {
+                    // The Krylov space is exhausted: restart in a new direction.
+                    b = 0;
+                    w = randomOrthogonal(random, vs, vLength);
+                } else {
+                    scale(w, 1 / b);
+                }
+                beta[steps - 1] = b;
+                vs.add(w);
+            }
+
+            if (complete || steps >= nextCheck) {
+                nextCheck = steps + 1 + steps / 10;
+                RealMatrix bidiagonal = MatrixUtils.createRealMatrix(steps, steps);
+                for (int i = 0; i < steps; ++i) {
+                    bidiagonal.setEntry(i, i, alpha[i]);
+                    if (i + 1 < steps) {
+                        bidiagonal.setEntry(i, i + 1, beta[i]);
+                    }
+                }
+                SingularValueDecomposition svd = new SingularValueDecomposition(bidiagonal);
+                double[] s = svd.getSingularValues();
+                RealMatrix p = svd.getU();
+                int converged = 0;
+                while (converged < steps
+                       && (complete || beta[steps - 1] * Math.abs(p.getEntry(steps - 1, converged)) <= TOLERANCE * s[0])) {
+                    converged++;
+                }
+
+                int components = cutoff.components(s, converged, complete);
+                if (components >= 0) {
+                    if (wide) {
+                        keep(svd.getV(), svd.getU(), svd.getSingularValues(), components, vs, us);
+                    } else {
+                        keep(svd.getU(), svd.getV(), svd.getSingularValues(), components, us, vs);
+                    }
+                    return components;
+                }
+            }
+        }
+    }
+
+    // The singular vectors of the Hankel matrix from those of the bidiagonal
+    // one, 'p' on the side of 'us' and 'q' on the side of 'vs'.
+    private void keep(RealMatrix p, RealMatrix q, double[] s, int components, List<double[]> us, List<double[]> vs) {
+        int steps = p.getRowDimension();
+        singularValues = s;
+        left = new double[components][rows];
+        right = new double[components][columns];
+        for (int i = 0; i < components; ++i) {
+            for (int t = 0; t < steps; ++t) {
+                axpy(p.getEntry(t, i), us.get(t), left[i]);
+                axpy(q.getEntry(t, i), vs.get(t), right[i]);
+            }
+        }
+    }
+
+    // The product of the Hankel matrix with 'v'.
+    private double[] multiply(double[] v) {
+        double[] u = new double[rows];
+        for (int i = 0; i < rows; ++i) {
+            int offset = i * stride;
+            double sum = 0;
+            for (int c = 0; c < columns; ++c) {
+                sum += data[offset + c] * v[c];
+            }
+            u[i] = sum;
+        }
+        return u;
+    }
+
+    // The product of the transposed Hankel matrix with 'u'.
+    private double[] multiplyTransposed(double[] u) {
+        double[] v = new double[columns];
+        for (int i = 0; i < rows; ++i) {
+            int offset = i * stride;
+            double ui = u[i];
+            for (int c = 0; c < columns; ++c) {
+                v[c] += data[offset + c] * ui;
+            }
+        }
+        return v;
+    }
+
+    // A random unit vector orthogonal to 'basis'.
+    private static double[] randomOrthogonal(Random random, List<double[]> basis, int length) {
+        double[] x = new double[length];
+        for (int i = 0; i < length; ++i) {
+            x[i] = random.nextGaussian();
+        }
+        orthogonalize(x, basis);
+        scale(x, 1 / norm(x));
+        return x;
+    }
+
+    // Removes the components along the orthonormal 'basis' from 'x'. Done
+    // twice, which is enough to keep the basis orthogonal to working precision.
+    private static void orthogonalize(double[] x, List<double[]> basis) {
+        for (int pass = 0; pass < 2; ++pass) {
+            for (double[] b : basis) {
+                axpy(-dot(b, x), b, x);
+            }
+        }
+    }
+
+    private static double dot(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; ++i) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    private static double norm(double[] x) {
+        return Math.sqrt(dot(x, x));
+    }
+
+    private static void scale(double[] x, double a) {
+        for (int i = 0; i < x.length; ++i) {
+            x[i] *= a;
+        }
+    }
+
+    // y += a * x
+    private static void axpy(double a, double[] x, double[] y) {
+        for (int i = 0; i < x.length; ++i) {
+            y[i] += a * x[i];
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Creates models by the class names used in the config, e.g. TS_MODEL and
+// AD_MODEL.
+//
+// Every model has a public constructor taking the config. The class and that
+// constructor are looked up the first time a name is used, and kept as a
+// method handle from which all later models of that name are created, so
+// that creating a model costs no more than calling its constructor.
+
+package com.yahoo.egads.utilities;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ModelRegistry {
+    public static final String TS_MODELS = "com.yahoo.egads.models.tsmm";
+    public static final String AD_MODELS = "com.yahoo.egads.models.adm";
+
+    private static final MethodType FACTORY = MethodType.methodType(Object.class, Properties.class);
+    private static final ConcurrentHashMap<String, MethodHandle> constructors =
+        new ConcurrentHashMap<String, MethodHandle>();
+
+    // A new 'packageName.name' built from 'config'. Throws whatever the
+    // constructor throws, and ClassCastException if it is not a 'type'.
+    public static <T> T newModel(String packageName, String name, Class<T> type, Properties config) throws Exception {
+        return newModel(packageName + "." + name, type, config);
+    }
+
+    // Same as above, for the fully qualified class name, e.g. that of a
+    // stored model.
+    public static <T> T newModel(String className, Class<T> type, Properties config) throws Exception {
+        Object model;
+        try {
+            model = (Object) constructor(className).invokeExact(config);
+        } catch (Exception e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new Exception(t);
+        }
+        return type.cast(model);
+    }
+
+    // The constructor of the class taking the config, looked up on first use.
+    // Names that fail to resolve are not kept.
+    private static MethodHandle constructor(String className) throws Exception {
+        MethodHandle constructor = constructors.get(className);
+        if (constructor == null) {
+            Class<?> modelClass = Class.forName(className);
+            constructor = MethodHandles.publicLookup()
+                .findConstructor(modelClass, MethodType.methodType(void.class, Properties.class))
+                .asType(FACTORY);
+            constructors.putIfAbsent(className, constructor);
+        }
+        return constructor;
+    }
+}
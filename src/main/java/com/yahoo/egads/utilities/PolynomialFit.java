@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Least squares fit of a polynomial in x, accumulated a point at a time.
+//
+// Keeps the sums of the normal equations, sum(x^k) and sum(y * x^k), so that
+// adding a point costs the number of terms and solving costs nothing that
+// depends on the number of points. The equations are solved by Gaussian
+// elimination without pivoting, as OpenForecast does: their matrix is
+// symmetric positive definite.
+
+package com.yahoo.egads.utilities;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class PolynomialFit implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // member data ////////////////////////////////////////////////
+
+    // The number of coefficients, e.g. 2 for a line.
+    private final int terms;
+    // sum(x^k) for k < 2 * terms - 1.
+    private final double[] powers;
+    // sum(y * x^k) for k < terms.
+    private final double[] moments;
+    private int count = 0;
+
+    // construction ////////////////////////////////////////////////
+
+    public PolynomialFit(int terms) {
+        if (terms < 1) {
+            throw new IllegalArgumentException("A polynomial needs at least one term");
+        }
+        this.terms = terms;
+        powers = new double[2 * terms - 1];
+        moments = new double[terms];
+    }
+
+    // methods ////////////////////////////////////////////////
+
+    public void reset() {
+        Arrays.fill(powers, 0);
+        Arrays.fill(moments, 0);
+        count = 0;
+    }
+
+    public void add(double x, double y) {
+        double p = 1;
+        for (int k = 0; k < powers.length; k++) {
+            powers[k] += p;
+            if (k < terms) {
+                moments[k] += y * p;
+            }
+            p *= x;
+        }
+        ++count;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // sum(x^k) over the points, for k < 2 * terms - 1.
+    public double sumX(int k) {
+        return powers[k];
+    }
+
+    // sum(y * x^k) over the points, for k < terms.
+    public double sumXY(int k) {
+        return moments[k];
+    }
+
+    // The coefficients of x^0, x^1, ... of the fitted polynomial.
+    public double[] solve() {
+        int n = terms;
+        double[][] a = new double[n][n + 1];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] = powers[i + j];
+            }
+            a[i][n] = moments[i];
+        }
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double factor = a[j][i] / a[i][i];
+                for (int k = i + 1; k < n + 1; k++) {
+                    a[j][k] = a[j][k] - factor * a[i][k];
+                }
+                a[j][i] = 0;
+            }
+        }
+        double[] coefficients = new double[n];
+        coefficients[n - 1] = a[n - 1][n] / a[n - 1][n - 1];
+        for (int i = n - 2; i >= 0; i--) {
+            double sum = 0;
+            for (int j = i + 1; j < n; j++) {
+                sum += a[i][j] * coefficients[j];
+            }
+            coefficients[i] = (a[i][n] - sum) / a[i][i];
+        }
+        return coefficients;
+    }
+
+    // The value at x of the polynomial with the given coefficients.
+    public static double value(double[] coefficients, double x) {
+        double sum = 0;
+        double p = 1;
+        for (int i = 0; i < coefficients.length; i++) {
+            sum += coefficients[i] * p;
+            p *= x;
+        }
+        return sum;
+    }
+
+    // display ////////////////////////////////////////////////
+
+    public String toString() {
+        return "PolynomialFit of " + terms + " terms over " + count + " points";
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// Finds order statistics, e.g. medians, of primitive arrays in place in
+// linear expected time rather than by sorting them.
+//
+// Each step partitions the range around a median of three into the values
+// below, equal to and above it, so repeated values cost no more than distinct
+// ones. As in introselect, a range whose partitions stop shrinking is sorted,
+// which bounds the worst case by that of a sort.
+//
+// Values are ordered as by Arrays.sort: -0.0 before 0.0, and NaN last.
+
+package com.yahoo.egads.utilities;
+
+import java.util.Arrays;
+
+public class QuickSelect {
+    // Ranges this small are sorted.
+    private static final int SMALL = 16;
+
+    // Reorders a[from..to) so that a[k] holds the value a sort would put
+    // there, with none larger before it and none smaller after it, and
+    // returns it.
+    public static float select(float[] a, int from, int to, int k) {
+        if (k < from || k >= to) {
+            throw new IllegalArgumentException("Index " + k + " is not in [" + from + ", " + to + ")");
+        }
+        int lo = from;
+        int hi = to - 1;
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (hi - lo >= SMALL) {
+            if (budget-- == 0) {
+                break;
+            }
+            float pivot = medianOf3(a[lo], a[(lo + hi) >>> 1], a[hi]);
+            // a[lo..lt) < pivot, a[lt..i) == pivot and a(gt..hi] > pivot.
+            int lt = lo;
+            int i = lo;
+            int gt = hi;
+            while (i <= gt) {
+                int c = Float.compare(a[i], pivot);
+                if (c < 0) {
+                    swap(a, lt++, i++);
+                } else if (c > 0) {
+                    swap(a, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return a[k];
+            }
+        }
+        Arrays.sort(a, lo, hi + 1);
+        return a[k];
+    }
+
+    // Same as above for doubles.
+    public static double select(double[] a, int from, int to, int k) {
+        if (k < from || k >= to) {
+            throw new IllegalArgumentException("Index " + k + " is not in [" + from + ", " + to + ")");
+        }
+        int lo = from;
+        int hi = to - 1;
+        int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (hi - lo >= SMALL) {
+            if (budget-- == 0) {
+                break;
+            }
+            double pivot = medianOf3(a[lo], a[(lo + hi) >>> 1], a[hi]);
+            int lt = lo;
+            int i = lo;
+            int gt = hi;
+            while (i <= gt) {
+                int c = Double.compare(a[i], pivot);
+                if (c < 0) {
+                    swap(a, lt++, i++);
+                } else if (c > 0) {
+                    swap(a, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt) {
+                lo = gt + 1;
+            } else {
+                return a[k];
+            }
+        }
+        Arrays.sort(a, lo, hi + 1);
+        return a[k];
+    }
+
+    // The median of a[from..to), the mean of the two middle values when
+    // there is an even number of them. Reorders the range.
+    public static float median(float[] a, int from, int to) {
+        int n = to - from;
+        int center = from + n / 2;
+        float upper = select(a, from, to, center);
+        if (n % 2 == 1) {
+            return upper;
+        }
+        // The largest of the values before the center is the one below it.
+        float lower = a[from];
+        for (int i = from + 1; i < center; i++) {
+            if (Float.compare(a[i], lower) > 0) {
+                lower = a[i];
+            }
+        }
+        return (float) ((lower + upper) / 2.0);
+    }
+
+    private static float medianOf3(float a, float b, float c) {
+        if (Float.compare(a, b) > 0) {
+            float t = a;
+            a = b;
+            b = t;
+        }
+        if (Float.compare(b, c) > 0) {
+            b = c;
+        }
+        return Float.compare(a, b) > 0 ? a : b;
+    }
+
+    private static double medianOf3(double a, double b, double c) {
+        if (Double.compare(a, b) > 0) {
+            double t = a;
+            a = b;
+            b = t;
+        }
+        if (Double.compare(b, c) > 0) {
+            b = c;
+        }
+        return Double.compare(a, b) > 0 ? a : b;
+    }
+
+    private static void swap(float[] a, int i, int j) {
+        float t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
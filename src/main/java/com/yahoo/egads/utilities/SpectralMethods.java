@@ -9,7 +9,7 @@ package com.yahoo.egads.utilities;
 import java.util.Arrays;
 import java.util.Comparator;
 
-import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
@@ -40,6 +40,10 @@ import com.yahoo.egads.data.TimeSeries;
  *         'methodParameter' and then filters out all the singular-values smaller than that singular-value. (Default 'methodParameter' = 0.1)
  *      6. 'GAP_RATIO' is similar to 'EIGEN_RATIO' except that the eigen gap to the largest (first) singular value ratio is used 
  *          instead of the direct ratio of each singular value to the largest (first) singular value. (Default 'methodParameter' = 0.01)
+ *
+ * 'VARIANCE', 'EXPLICIT' and 'EIGEN_RATIO' only look at the leading singular values, so for them mFilter() computes the
+ * spectrum from the top down with HankelSVD and stops as soon as the cut-off is known, without forming the Hankel matrix.
+ * The other methods need the whole spectrum and use a full SVD.
  *      
  *        
  * @author amizadeh
@@ -49,25 +53,30 @@ public class SpectralMethods {
 
     public static RealMatrix createHankelMatrix(RealMatrix data, int windowSize) {
 
-        int n = data.getRowDimension();
         int m = data.getColumnDimension();
-        int k = n - windowSize + 1;
+        int k = data.getRowDimension() - windowSize + 1;
 
-        RealMatrix res = MatrixUtils.createRealMatrix(k, m * windowSize);
-        double[] buffer = {};
+        // Row i is the data from row i on, read row by row.
+        double[] flat = flatten(data);
+        double[][] res = new double[k][];
+        for (int i = 0; i < k; ++i) {
+            res[i] = Arrays.copyOfRange(flat, i * m, (i + windowSize) * m);
+        }
 
-        for (int i = 0; i < n; ++i) {
-            double[] row = data.getRow(i);
-            buffer = ArrayUtils.addAll(buffer, row);
+        return new Array2DRowRealMatrix(res, false);
+    }
 
-            if (i >= windowSize - 1) {
-                RealMatrix mat = MatrixUtils.createRowRealMatrix(buffer);
-                res.setRowMatrix(i - windowSize + 1, mat);
-                buffer = ArrayUtils.subarray(buffer, m, buffer.length);
+    // The rows of 'data' one after the other.
+    private static double[] flatten(RealMatrix data) {
+        int n = data.getRowDimension();
+        int m = data.getColumnDimension();
+        double[] flat = new double[n * m];
+        for (int i = 0; i < n; ++i) {
+            for (int h = 0; h < m; ++h) {
+                flat[i * m + h] = data.getEntry(i, h);
             }
         }
-
-        return res;
+        return flat;
     }
 
     public static RealMatrix averageHankelMatrix(RealMatrix hankelMat, int windowSize) {
@@ -76,25 +85,52 @@ public class SpectralMethods {
         int m = hankelMat.getColumnDimension() / windowSize;
         int n = k + windowSize - 1;
 
-        RealMatrix result = MatrixUtils.createRealMatrix(n, m);
-
-        for (int t = 0; t < n; ++t) {
-            int i = (t < windowSize) ? 0 : (t - windowSize + 1);
-            int j = (t < windowSize) ? t : (windowSize - 1);
-            int counter = 0;
-
-            for (; i < k && j >= 0; ++i, --j, ++counter) {
-                for (int h = 0; h < m; ++h) {
-                    result.addToEntry(t, h, hankelMat.getEntry(i, j * m + h));
-                }
+        // Entry (i, j * m + h) lands on row i + j, column h of the series,
+        // i.e. at i * m + j * m + h in the flattened result.
+        double[] sum = new double[n * m];
+        for (int i = 0; i < k; ++i) {
+            double[] row = hankelMat.getRow(i);
+            int offset = i * m;
+            for (int c = 0; c < row.length; ++c) {
+                sum[offset + c] += row[c];
             }
+        }
 
+        return average(sum, k, windowSize, m);
+    }
+
+    // The n x m series from the flattened anti-diagonal sums of a k x (W * m)
+    // Hankel matrix, each divided by the number of entries it adds up.
+    private static RealMatrix average(double[] sum, int k, int windowSize, int m) {
+        int n = k + windowSize - 1;
+        double[][] result = new double[n][m];
+        for (int t = 0; t < n; ++t) {
+            int counter = HankelSVD.occurrences(t, k, windowSize);
             for (int h = 0; h < m; ++h) {
-                result.setEntry(t, h, result.getEntry(t, h) / counter);
+                result[t][h] = sum[t * m + h] / counter;
             }
         }
+        return new Array2DRowRealMatrix(result, false);
+    }
 
-        return result;
+    // The diagonal averaging of the k x (W * m) matrix sum of s_i * u_i * v_i^T
+    // over the given 'left' u_i and 'right' v_i, without forming the matrix.
+    // Component i adds s_i * u_i[a] * v_i to the W * m values from a * m on.
+    private static RealMatrix averageLowRank(double[] singularValues, double[][] left, double[][] right, int k,
+                    int windowSize, int m) {
+        double[] sum = new double[(k + windowSize - 1) * m];
+        for (int i = 0; i < left.length; ++i) {
+            double[] u = left[i];
+            double[] v = right[i];
+            for (int a = 0; a < k; ++a) {
+                double su = singularValues[i] * u[a];
+                int offset = a * m;
+                for (int c = 0; c < v.length; ++c) {
+                    sum[offset + c] += su * v[c];
+                }
+            }
+        }
+        return average(sum, k, windowSize, m);
     }
 
     public enum FilteringMethod {
@@ -118,6 +154,21 @@ public class SpectralMethods {
     }
 
     public static RealMatrix mFilter(RealMatrix data, int windowSize, FilteringMethod method, double methodParameter) {
+        return mFilter(data, windowSize, method, methodParameter, true);
+    }
+
+    // Unless 'truncated' is false, takes the leading singular values only for
+    // the methods that need no more.
+    protected static RealMatrix mFilter(RealMatrix data, int windowSize, FilteringMethod method,
+                    double methodParameter, boolean truncated) {
+
+        if (truncated && (method == FilteringMethod.VARIANCE || method == FilteringMethod.EXPLICIT
+                        || method == FilteringMethod.EIGEN_RATIO)) {
+            RealMatrix result = truncatedFilter(data, windowSize, method, methodParameter);
+            if (result != null) {
+                return result;
+            }
+        }
 
         int n = data.getRowDimension();
         int m = data.getColumnDimension();
@@ -273,17 +324,89 @@ public class SpectralMethods {
         }
 
         ind = Math.max(0, Math.min(ind, singularValues.length - 1));
-        RealMatrix truncatedHankelMatrix = MatrixUtils.createRealMatrix(k, m * windowSize);
         RealMatrix mU = svd.getU();
         RealMatrix mVT = svd.getVT();
-
+        double[][] left = new double[ind + 1][];
+        double[][] right = new double[ind + 1][];
         for (i = 0; i <= ind; ++i) {
-            truncatedHankelMatrix =
-                            truncatedHankelMatrix.add(mU.getColumnMatrix(i).multiply(mVT.getRowMatrix(i))
-                                            .scalarMultiply(singularValues[i]));
+            left[i] = mU.getColumn(i);
+            right[i] = mVT.getRow(i);
         }
 
-        return SpectralMethods.averageHankelMatrix(truncatedHankelMatrix, windowSize);
+        return averageLowRank(singularValues, left, right, k, windowSize, m);
+    }
+
+    // mFilter() for 'VARIANCE', 'EXPLICIT' and 'EIGEN_RATIO' from the leading
+    // singular values only, or null where HankelSVD does not apply.
+    private static RealMatrix truncatedFilter(RealMatrix data, int windowSize, final FilteringMethod method,
+                    final double methodParameter) {
+
+        int n = data.getRowDimension();
+        int m = data.getColumnDimension();
+        if (n - windowSize + 1 < 1 || windowSize < 1 || m < 1) {
+            return null;
+        }
+
+        HankelSVD hankel = new HankelSVD(flatten(data), m, windowSize);
+        final double norm2 = hankel.frobeniusNorm2();
+        if (Double.isNaN(norm2) || Double.isInfinite(norm2)) {
+            return null;
+        }
+        if (norm2 == 0) {
+            return MatrixUtils.createRealMatrix(n, m);
+        }
+
+        final int total = hankel.rank();
+        hankel.compute(new HankelSVD.Cutoff() {
+            @Override
+            public int components(double[] singularValues, int converged, boolean complete) {
+                return leadingComponents(method, methodParameter, singularValues, converged, complete, total, norm2);
+            }
+        });
+
+        return averageLowRank(hankel.getSingularValues(), hankel.getLeft(), hankel.getRight(), hankel.getRows(),
+                        windowSize, m);
+    }
+
+    // The number of components mFilter() keeps, given the first 'converged' of
+    // the 'total' singular values, or -1 if that takes more of them. The sum of
+    // all their squares is 'norm2'.
+    private static int leadingComponents(FilteringMethod method, double methodParameter, double[] singularValues,
+                    int converged, boolean complete, int total, double norm2) {
+
+        int i;
+        switch (method) {
+            case VARIANCE:
+                // Keeps the first i + 1 where the squares of the 2nd to (i + 1)th
+                // are within 'methodParameter' of all but the first.
+                if (total == 1) {
+                    return 1;
+                }
+                double rest = norm2 - singularValues[0] * singularValues[0];
+                double sum = 0;
+                for (i = 1; i < converged && i <= total - 2; ++i) {
+                    sum += singularValues[i] * singularValues[i];
+                    if (sum > methodParameter * rest) {
+                        return i;
+                    }
+                }
+                return (complete || i > total - 2) ? total - 1 : -1;
+
+            case EXPLICIT:
+                int explicit = (int) Math.max(Math.min(methodParameter - 1, total - 1), 0) + 1;
+                return (complete || converged >= explicit) ? explicit : -1;
+
+            case EIGEN_RATIO:
+                for (i = 0; i < converged; ++i) {
+                    if (singularValues[i] / singularValues[0] < methodParameter) {
+                        return Math.max(i, 1);
+                    }
+                }
+                return complete ? total : -1;
+
+            default:
+                return total;
+        }
     }
 
     public static TimeSeries.DataSequence mFilter(TimeSeries.DataSequence data, int windowSize, FilteringMethod method,
@@ -302,10 +425,8 @@ public class SpectralMethods {
 
         RealMatrix resultMat = SpectralMethods.mFilter(dataMat, windowSize, method, methodParameter);
 
-        i = 0;
-        for (TimeSeries.Entry e : result) {
-            e.value = (float) resultMat.getEntry(i, 0);
-            i++;
+        for (i = 0; i < result.size(); i++) {
+            result.setValue(i, (float) resultMat.getEntry(i, 0));
         }
 
         return result;
@@ -8,11 +8,11 @@ package com.yahoo.egads.utilities;
 
 // Class that implements EGADS STDIN input processor.
 
-import com.yahoo.egads.control.ProcessableObject;
-import com.yahoo.egads.control.ProcessableObjectFactory;
+import com.yahoo.egads.control.ProcessableObjectExecutor;
 import java.util.Properties;
 import java.io.*;
 import java.util.ArrayList;
+import com.yahoo.egads.data.ColumnarDataSequence;
 import com.yahoo.egads.data.TimeSeries;
 
 public class StdinProcessor implements InputProcessor {
@@ -24,20 +24,25 @@ public class StdinProcessor implements InputProcessor {
         if (p.getProperty("AGGREGATION") != null) {
           aggr = new Integer(p.getProperty("AGGREGATION"));
         }
-        while ((s = in.readLine()) != null && s.length() != 0) {
-            // Parse the time-series.
-            ArrayList<TimeSeries> metrics = createTimeSeries(s, aggr);
-            for (TimeSeries ts : metrics) {
-                ProcessableObject po = ProcessableObjectFactory.create(ts, p);
-                po.process();
+        ProcessableObjectExecutor executor = new ProcessableObjectExecutor(p);
+        try {
+            while ((s = in.readLine()) != null && s.length() != 0) {
+                // Parse the time-series.
+                ArrayList<TimeSeries> metrics = createTimeSeries(s, aggr);
+                for (TimeSeries ts : metrics) {
+                    executor.submit(ts);
+                }
             }
+            executor.finish();
+        } finally {
+            executor.shutdown();
         }
     }
     
     
     // Format of the time-series: meta1\tmeta\2{(2014120205,0),(2014122207,1)}\t{(2014120205,0),(2014122207,0)}...
-    // Creates a time-series from a file.
-    private static ArrayList<TimeSeries> createTimeSeries(String s, Integer aggr) throws Exception {
+    // Creates the time-series of one input line.
+    public static ArrayList<TimeSeries> createTimeSeries(String s, Integer aggr) throws Exception {
         ArrayList<TimeSeries> output = new ArrayList<TimeSeries>();
         String[] tokens = s.split("\t");
         String meta = "meta";
@@ -64,6 +69,7 @@ public class StdinProcessor implements InputProcessor {
     
     private static TimeSeries convertStringToTS(String s, String tokenNum) throws Exception {
          TimeSeries ts = new TimeSeries();
+         ts.data = new ColumnarDataSequence();
          ts.meta.fileName = tokenNum;
          ts.meta.name = tokenNum;
          String[] tuples = s.split("\\),");
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+// A streaming reader that turns a csv file into timeseries objects
+// without materializing the file, its lines or its cells as Strings.
+
+package com.yahoo.egads.utilities;
+
+import com.yahoo.egads.data.ColumnarDataSequence;
+import com.yahoo.egads.data.TimeSeries;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+/**
+ * Reads the csv format understood by FileUtils.createTimeSeries() from an
+ * InputStream in fixed size chunks and appends every cell straight into the
+ * primitive columns of a ColumnarDataSequence.
+ *
+ * Plain decimal numbers (e.g. "1412038800" or "-80273608.047961e-2") are
+ * parsed from the raw bytes. Anything else - column names, date strings,
+ * "NaN", numbers with more precision than a double can hold exactly - falls
+ * back to the String based parsing used before, so both the results and the
+ * errors are the same as the line based implementation.
+ */
+public class StreamingCsvReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // Powers of ten that are exactly representable as doubles.
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final InputStream in;
+    private final String fileName;
+    private final boolean fillMissing;
+    private final Charset charset = Charset.defaultCharset();
+
+    // The read buffer; [pos, limit) holds bytes not consumed yet.
+    private byte[] buf = new byte[CHUNK_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    private boolean skipLF = false;
+
+    // The current line and its fields as offsets into 'buf'.
+    private int lineStart;
+    private int lineEnd;
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+
+    // Result of the last successful parseDecimal() call.
+    private double parsed;
+
+    public StreamingCsvReader(InputStream in, String fileName, boolean fillMissing) {
+        this.in = in;
+        this.fileName = fileName;
+        this.fillMissing = fillMissing;
+    }
+
+    // Reads the whole stream, appending one timeseries per value column to
+    // 'output'. The series are added as soon as the header is read, so on an
+    // exception 'output' holds whatever was parsed up to that point.
+    public void read(List<TimeSeries> output) throws Exception {
+        long interval = 0;
+        boolean hasInterval = false;
+        long prev = 0;
+        boolean hasPrev = false;
+
+        boolean firstLine = true;
+        while (nextLine()) {
+            splitFields();
+            long curTimestamp = 0;
+            boolean hasTimestamp = false;
+
+            // Check for the case where there is more than one line preceding the data
+            if (firstLine == true) {
+                if (!isNumeric(0) && !fieldEquals(0, "timestamp")) {
+                    continue;
+                }
+            }
+            if (firstLine == false && fieldCount > 1) {
+                curTimestamp = parseTimestamp(0);
+                hasTimestamp = true;
+            }
+            for (int i = 1; i < fieldCount; i++) {
+                // Assume that the first line contains the column names.
+                if (firstLine) {
+                    TimeSeries ts = new TimeSeries();
+                    ts.data = new ColumnarDataSequence();
+                    ts.meta.fileName = fileName;
+                    output.add(ts);
+                    if (isNumeric(i) == false) { // Just in case there's a numeric column heading
+                        ts.meta.name = fieldString(i);
+                    } else {
+                        ts.meta.name = "metric_" + i;
+                        output.get(i - 1).append((long) parseDouble(0), parseFloat(i));
+                    }
+                } else {
+                    TimeSeries ts = output.get(i - 1);
+                    float value = parseFloat(i);
+                    // A naive missing data handler.
+                    if (hasInterval && hasPrev && interval > 0 && fillMissing == true) {
+                        if ((curTimestamp - prev) != interval) {
+                            int missingValues = (int) ((curTimestamp - prev) / interval);
+
+                            long curTimestampToFill = prev + interval;
+                            for (int j = (missingValues - 1); j > 0; j--) {
+                                float valToFill = value;
+                                if (ts.size() >= missingValues) {
+                                    valToFill = ts.value(ts.size() - missingValues);
+                                }
+                                ts.append(curTimestampToFill, valToFill);
+                                curTimestampToFill += interval;
+                            }
+                        }
+                    }
+                    // Infer interval.
+                    if (!hasInterval && hasPrev) {
+                        interval = curTimestamp - prev;
+                        hasInterval = true;
+                    }
+
+                    ts.append(curTimestamp, value);
+                }
+            }
+            if (firstLine == false) {
+                prev = curTimestamp;
+                hasPrev = hasTimestamp;
+            }
+            firstLine = false;
+        }
+    }
+
+    // line and field handling ////////////////////////////////////////////////
+
+    // Advances to the next line; the same line breaks as BufferedReader.readLine().
+    private boolean nextLine() throws IOException {
+        if (skipLF) {
+            if (pos == limit && !eof) {
+                fill();
+            }
+            if (pos < limit && buf[pos] == '\n') {
+                pos++;
+            }
+            skipLF = false;
+        }
+        int scan = pos;
+        while (true) {
+            for (; scan < limit; scan++) {
+                byte b = buf[scan];
+                if (b == '\n' || b == '\r') {
+                    lineStart = pos;
+                    lineEnd = scan;
+                    pos = scan + 1;
+                    skipLF = (b == '\r');
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos < limit) {
+                    lineStart = pos;
+                    lineEnd = limit;
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan -= pos;
+            fill();
+        }
+    }
+
+    // Moves the unread bytes to the front of the buffer and reads the next chunk.
+    private void fill() throws IOException {
+        int remaining = limit - pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+            pos = 0;
+            limit = remaining;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    // Splits the current line on ',' following String.split() semantics,
+    // i.e. trailing empty fields are dropped unless the line itself is empty.
+    private void splitFields() {
+        fieldCount = 0;
+        int start = lineStart;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buf[i] == ',') {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, lineEnd);
+        if (lineEnd > lineStart) {
+            while (fieldCount > 0 && fieldStart[fieldCount - 1] == fieldEnd[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private String fieldString(int field) {
+        checkField(field);
+        return new String(buf, fieldStart[field], fieldEnd[field] - fieldStart[field], charset);
+    }
+
+    private boolean fieldEquals(int field, String ascii) {
+        checkField(field);
+        int start = fieldStart[field];
+        if (fieldEnd[field] - start != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buf[start + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkField(int field) {
+        if (field >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(field);
+        }
+    }
+
+    // number parsing ////////////////////////////////////////////////
+
+    private boolean isNumeric(int field) {
+        checkField(field);
+        return parseDecimal(fieldStart[field], fieldEnd[field]) || FileUtils.isNumeric(fieldString(field));
+    }
+
+    private double parseDouble(int field) {
+        checkField(field);
+        if (parseDecimal(fieldStart[field], fieldEnd[field])) {
+            return parsed;
+        }
+        return Double.parseDouble(fieldString(field));
+    }
+
+    // Numeric timestamps are truncated to whole seconds, anything else is
+    // read as a date.
+    private long parseTimestamp(int field) {
+        checkField(field);
+        if (parseDecimal(fieldStart[field], fieldEnd[field])) {
+            return (long) parsed;
+        }
+        String s = fieldString(field);
+        if (FileUtils.isNumeric(s)) {
+            return (long) Double.parseDouble(s);
+        }
+        DateTime inpuTime = new DateTime(s);
+        return inpuTime.getMillis() / 1000;
+    }
+
+    private float parseFloat(int field) {
+        checkField(field);
+        if (parseDecimal(fieldStart[field], fieldEnd[field])) {
+            // 'parsed' is the correctly rounded double, so narrowing it gives
+            // the correctly rounded float unless it sits exactly half way
+            // between two floats, where the double rounding may have decided
+            // the tie.
+            double abs = Math.abs(parsed);
+            if (abs == 0 || (abs >= Float.MIN_NORMAL && abs <= Float.MAX_VALUE
+                    && (Double.doubleToRawLongBits(parsed) & 0x1FFFFFFFL) != 0x10000000L)) {
+                return (float) parsed;
+            }
+        }
+        return Float.parseFloat(fieldString(field));
+    }
+
+    // Parses [+-]digits[.digits][(e|E)[+-]digits] into 'parsed'. Returns false
+    // if the field has any other form or the result might not be exact, in
+    // which case the caller falls back to the JDK parsers.
+    private boolean parseDecimal(int start, int end) {
+        int i = start;
+        if (i == end) {
+            return false;
+        }
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = (buf[i] == '-');
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int exponent = 0;
+        for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+            digits++;
+            if (significant > 0 || buf[i] != '0') {
+                if (++significant > 18) {
+                    return false;
+                }
+                mantissa = mantissa * 10 + (buf[i] - '0');
+            }
+        }
+        if (i < end && buf[i] == '.') {
+            i++;
+            for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+                digits++;
+                if (significant > 0 || buf[i] != '0') {
+                    if (++significant > 18) {
+                        return false;
+                    }
+                    mantissa = mantissa * 10 + (buf[i] - '0');
+                }
+                exponent--;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                negativeExponent = (buf[i] == '-');
+                i++;
+            }
+            int e = 0;
+            int expDigits = 0;
+            for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+                if (++expDigits > 4) {
+                    return false;
+                }
+                e = e * 10 + (buf[i] - '0');
+            }
+            if (expDigits == 0) {
+                return false;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (i != end || mantissa > MAX_EXACT_MANTISSA) {
+            return false;
+        }
+
+        // Both operands are exact, so a single multiplication or division
+        // yields the correctly rounded result.
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent == 0) {
+            value = mantissa;
+        } else if (exponent > 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return false;
+        }
+        parsed = negative ? -value : value;
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+// Class that implements the EGADS streaming input processor. It stays up and
+// reads points, one per line as metric,timestamp,value, from STDIN or from
+// the connections to STREAM_PORT on the loopback interface, one connection
+// at a time. Each metric keeps its models in memory and the anomalies found
+// on a point are written as soon as it is read, to STDOUT or to the
+// connection it came from.
+
+import com.yahoo.egads.control.StreamingDetector;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+public class StreamingProcessor implements InputProcessor {
+
+    private Map<String, StreamingDetector> detectors = new HashMap<String, StreamingDetector>();
+
+    public void processInput(Properties p) throws Exception {
+        if (p.getProperty("STREAM_PORT") == null) {
+            processStream(System.in, System.out, p);
+            return;
+        }
+        ServerSocket server = new ServerSocket(new Integer(p.getProperty("STREAM_PORT")), 50,
+                                               InetAddress.getLoopbackAddress());
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                try {
+                    processStream(socket.getInputStream(), new PrintStream(socket.getOutputStream()), p);
+                } catch (IOException e) {
+                    System.err.println("Connection closed: " + e.getMessage());
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    // Processes the points of the stream until it ends.
+    public void processStream(InputStream in, PrintStream out, Properties p) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        String s;
+        while ((s = reader.readLine()) != null) {
+            if (s.length() == 0) {
+                continue;
+            }
+            try {
+                processLine(s, out, p);
+            } catch (Exception e) {
+                // A bad point or metric must not stop the other metrics.
+                System.err.println("Skipping \"" + s + "\": " + e);
+            }
+        }
+    }
+
+    private void processLine(String s, PrintStream out, Properties p) throws Exception {
+        int valueStart = s.lastIndexOf(',');
+        int timeStart = valueStart > 0 ? s.lastIndexOf(',', valueStart - 1) : -1;
+        if (timeStart <= 0) {
+            throw new IllegalArgumentException("Expected metric,timestamp,value");
+        }
+        String name = s.substring(0, timeStart);
+        long time = Long.parseLong(s.substring(timeStart + 1, valueStart).trim());
+        float value = Float.parseFloat(s.substring(valueStart + 1).trim());
+
+        StreamingDetector detector = detectors.get(name);
+        if (detector == null) {
+            detector = new StreamingDetector(name, p);
+            detectors.put(name, detector);
+        }
+        detector.add(time, value, out);
+    }
+}
@@ -49,6 +49,59 @@ public class TestAutoForecast {
        Assert.assertEquals(verifyResults(sequence, metrics.get(0).data), true);
     }
     
+    @Test
+    public void testPicksInOrderOfCandidates() throws Exception {
+        Properties p = new Properties();
+        p.load(new FileInputStream("src/test/resources/sample_config.ini"));
+        p.setProperty("AUTO_FORECAST_MODELS", "NaiveForecastingModel, MovingAverageModel,TripleExponentialSmoothingModel");
+        TimeSeries.DataSequence data = com.yahoo.egads.utilities.FileUtils
+                .createTimeSeries("src/test/resources/sample_input.csv", p).get(0).data;
+
+        // The same pick as training the candidates one after the other.
+        TimeSeriesAbstractModel best = null;
+        for (TimeSeriesAbstractModel m : new TimeSeriesAbstractModel[] {new NaiveForecastingModel(p),
+                new MovingAverageModel(p), new TripleExponentialSmoothingModel(p)}) {
+            m.train(data);
+            if (TimeSeriesAbstractModel.betterThan(m, best)) {
+                best = m;
+            }
+        }
+        AutoForecastModel model = new AutoForecastModel(p);
+        model.train(data);
+        Assert.assertEquals(model.getBestModel().getClass(), best.getClass());
+        Assert.assertEquals(model.getMSE(), best.getMSE());
+
+        // Only the best on the recent points is trained on all of them.
+        p.setProperty("AUTO_FORECAST_SAMPLE", "100");
+        p.setProperty("AUTO_FORECAST_PRUNE", "1");
+        model = new AutoForecastModel(p);
+        model.train(data);
+        TimeSeries.DataSequence recent = new TimeSeries.DataSequence();
+        for (int i = data.size() - 100; i < data.size(); i++) {
+            recent.add(new TimeSeries.Entry(data.time(i), data.value(i)));
+        }
+        TimeSeriesAbstractModel onSample = new TripleExponentialSmoothingModel(p);
+        onSample.train(recent);
+        for (TimeSeriesAbstractModel m : new TimeSeriesAbstractModel[] {new NaiveForecastingModel(p), new MovingAverageModel(p)}) {
+            m.train(recent);
+            if (m.getMSE() < onSample.getMSE()) {
+                onSample = m;
+            }
+        }
+        Assert.assertEquals(model.getBestModel().getClass(), onSample.getClass());
+    }
+
+    @Test(expectedExceptions = ClassNotFoundException.class)
+    public void testUnknownCandidate() throws Exception {
+        Properties p = new Properties();
+        p.setProperty("AUTO_FORECAST_MODELS", "NaiveForecastingModel,NoSuchModel");
+        TimeSeries.DataSequence data = new TimeSeries.DataSequence();
+        for (int i = 0; i < 10; i++) {
+            data.add(new TimeSeries.Entry(i * 3600L, i));
+        }
+        new AutoForecastModel(p).train(data);
+    }
+
     // Verifies that the two time-series are identical.
     private boolean verifyResults (TimeSeries.DataSequence computed, TimeSeries.DataSequence actual) {
          int n = computed.size();
@@ -7,6 +7,7 @@
 package com.yahoo.egads;
 
 import com.yahoo.egads.utilities.AutoSensitivity;
+import com.yahoo.egads.utilities.StatsUtils;
 import java.util.ArrayList;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -44,4 +45,51 @@ public class TestAutoSensitivity {
         threashold = AutoSensitivity.getLowDensitySensitivity(fArray, 1, 1);
         Assert.assertTrue(threashold > 5000000);
     }
+
+    @Test
+    public void testAdaptiveThresholds() throws Exception {
+        Random random = new Random(3);
+        float[] data = new float[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (float) random.nextGaussian() + (i % 100 == 0 ? 20 : 0);
+        }
+        float amnt = 0.05f;
+
+        // At most 'amnt' of the points reach each threshold, and one SD less
+        // for the k-sigma search would let more through.
+        Float[] kSigma = AutoSensitivity.getAdaptiveKSigmaSensitivity(data, amnt);
+        float mean = StatsUtils.getMean(data);
+        float sd = StatsUtils.getSD(data, mean);
+        Assert.assertTrue(count(data, kSigma[0], true) <= amnt * data.length);
+        Assert.assertTrue(count(data, kSigma[1], false) <= amnt * data.length);
+        if (kSigma[0] - sd > mean + sd) {
+            Assert.assertTrue(count(data, kSigma[0] - sd, true) > amnt * data.length);
+        }
+
+        Float[] maxMin = AutoSensitivity.getAdaptiveMaxMinSigmaSensitivity(data, amnt, 0.1f);
+        Assert.assertTrue(count(data, maxMin[0], true) <= amnt * data.length);
+        Assert.assertTrue(count(data, maxMin[1], false) <= amnt * data.length);
+
+        Float[] boxed = new Float[data.length];
+        for (int i = 0; i < data.length; i++) {
+            boxed[i] = data[i];
+        }
+        Assert.assertEquals(AutoSensitivity.getAdaptiveKSigmaSensitivity(boxed, amnt), kSigma);
+        Assert.assertEquals(AutoSensitivity.getAdaptiveMaxMinSigmaSensitivity(boxed, amnt, 0.1f), maxMin);
+        Assert.assertEquals(AutoSensitivity.getLowDensitySensitivity(boxed, 3, amnt),
+                            AutoSensitivity.getLowDensitySensitivity(data, 3, amnt));
+        // The smallest of the outliers, which are the low density points.
+        Assert.assertEquals(count(data, AutoSensitivity.getLowDensitySensitivity(data, 3, amnt), true), 10);
+        Assert.assertEquals(AutoSensitivity.getLowDensitySensitivity(new float[0], 3, amnt), Float.POSITIVE_INFINITY);
+    }
+
+    private static int count(float[] data, float thresh, boolean above) {
+        int n = 0;
+        for (float f : data) {
+            if (above ? f >= thresh : f <= thresh) {
+                n++;
+            }
+        }
+        return n;
+    }
 }
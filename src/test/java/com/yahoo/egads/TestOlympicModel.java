@@ -13,7 +13,9 @@ import com.yahoo.egads.models.tsmm.MovingAverageModel;
 import com.yahoo.egads.utilities.*;
 import com.yahoo.egads.data.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Random;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import com.yahoo.egads.control.ProcessableObject;
@@ -142,4 +144,91 @@ public class TestOlympicModel {
         Assert.assertEquals(TimeSeriesAbstractModel.betterThan(olympicModel, movingAverageModel), false);
         Assert.assertEquals(TimeSeriesAbstractModel.betterThan(olympicModel, olympicModel), false);
     }
+
+    // The trimmed mean of the points 'pl' apart before point i, computed
+    // directly: at most 'weeks' of them, while adding the next one does not
+    // move the mean away from point i when 'dynamic', sorted, then without
+    // the 'drop' lowest and highest if more than 2 * drop are left.
+    private static float trimmedMean(float[] values, int i, int pl, int weeks, int drop, boolean dynamic) {
+        if (i - pl < 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        ArrayList<Float> vals = new ArrayList<Float>();
+        float sum = 0;
+        for (int j = 1; j <= weeks && i - pl * j >= 0; j++) {
+            float v = values[i - pl * j];
+            if (dynamic && !vals.isEmpty()
+                && Math.abs((sum + v) / (vals.size() + 1) - values[i]) - Math.abs(sum / vals.size() - values[i]) > 0.000001f) {
+                break;
+            }
+            vals.add(v);
+            sum += v;
+        }
+        Collections.sort(vals);
+        int from = vals.size() > 2 * drop ? drop : 0;
+        float kept = 0;
+        for (int k = from; k < vals.size() - from; k++) {
+            kept += vals.get(k);
+        }
+        return kept / (vals.size() - 2 * from);
+    }
+
+    @Test
+    public void testTrimmedMeans() throws Exception {
+        Random random = new Random(3);
+        int n = 500;
+        float[] values = new float[n];
+        TimeSeries.DataSequence data = new TimeSeries.DataSequence();
+        for (int i = 0; i < n; i++) {
+            // Repeated values too, which the sliding window must drop once each.
+            values[i] = random.nextInt(3) == 0 ? random.nextInt(4) : (float) random.nextGaussian() * 10;
+            data.add(new TimeSeries.Entry(i * 3600, values[i]));
+        }
+        for (String dynamic : new String[] {"0", "1"}) {
+            for (int drop = 0; drop < 3; drop++) {
+                Properties p = new Properties();
+                p.setProperty("NUM_WEEKS", "6");
+                p.setProperty("NUM_TO_DROP", Integer.toString(drop));
+                p.setProperty("TIME_SHIFTS", "0");
+                p.setProperty("BASE_WINDOWS", "7");
+                p.setProperty("DYNAMIC_PARAMETERS", dynamic);
+                OlympicModel model = new OlympicModel(p);
+                model.train(data);
+                for (int i = 7; i < n; i++) {
+                    Assert.assertEquals(model.getModel().get(i),
+                                        (Float) trimmedMean(values, i, 7, 6, drop, dynamic.equals("1")));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPredictByTime() throws Exception {
+        Properties p = new Properties();
+        p.load(new FileInputStream("src/test/resources/sample_config.ini"));
+        TimeSeries ts = com.yahoo.egads.utilities.FileUtils
+                .createTimeSeries("src/test/resources/model_input.csv", p).get(0);
+        OlympicModel model = new OlympicModel(p);
+        model.train(ts.data);
+
+        // Part of the training times, a time between two of them and one after.
+        long start = ts.time(100);
+        long[] times = {start, start + 3600, start + 1800, ts.lastTime(), ts.lastTime() + 3600};
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence();
+        for (long time : times) {
+            sequence.add(new TimeSeries.Entry(time, Float.NaN));
+        }
+        model.predict(sequence);
+        float[] values = new float[times.length];
+        java.util.Arrays.fill(values, Float.NaN);
+        model.predict(times, values);
+
+        float[] expected = {model.getModel().get(100), model.getModel().get(101), Float.NaN,
+                            model.getModel().get(ts.size() - 1), Float.NaN};
+        for (int i = 0; i < times.length; i++) {
+            Assert.assertEquals(sequence.time(i), times[i]);
+            Assert.assertEquals(sequence.value(i), expected[i]);
+            Assert.assertEquals(values[i], expected[i]);
+        }
+    }
 }
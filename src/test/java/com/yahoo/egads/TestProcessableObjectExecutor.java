@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads;
+
+import com.yahoo.egads.control.ProcessableObjectExecutor;
+import com.yahoo.egads.data.TimeSeries;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Properties;
+
+// Tests that running metrics on several threads gives the same output as a serial run.
+public class TestProcessableObjectExecutor {
+
+    @Test
+    public void testDeterministicOutput() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/sample_config.ini");
+        Properties p = new Properties();
+        p.load(is);
+        p.setProperty("TS_MODEL", "OlympicModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("OP_TYPE", "DETECT_ANOMALY");
+        p.setProperty("OUTPUT", "STD_OUT");
+
+        ArrayList<TimeSeries> metrics = new ArrayList<TimeSeries>();
+        TimeSeries base = com.yahoo.egads.utilities.FileUtils
+                .createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        for (int m = 0; m < 12; m++) {
+            TimeSeries ts = new TimeSeries();
+            ts.meta.name = "metric_" + m;
+            ts.meta.fileName = base.meta.fileName;
+            for (int i = 0; i < base.size(); i++) {
+                ts.append(base.time(i), base.value(i) * (m + 1));
+            }
+            metrics.add(ts);
+        }
+
+        String serial = run(metrics, p, "1");
+        String parallel = run(metrics, p, "4");
+        Assert.assertTrue(serial.length() > 0);
+        Assert.assertEquals(parallel, serial);
+        Assert.assertTrue(serial.indexOf("metric_0,") < serial.indexOf("metric_11,"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreads() throws Exception {
+        Properties p = new Properties();
+        p.setProperty("THREADS", "0");
+        new ProcessableObjectExecutor(p);
+    }
+
+    private String run(ArrayList<TimeSeries> metrics, Properties p, String threads) throws Exception {
+        Properties config = (Properties) p.clone();
+        config.setProperty("THREADS", threads);
+        config.setProperty("QUEUE_SIZE", "3");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        ProcessableObjectExecutor executor = new ProcessableObjectExecutor(config, out);
+        try {
+            for (TimeSeries ts : metrics) {
+                executor.submit(ts);
+            }
+            executor.finish();
+        } finally {
+            executor.shutdown();
+        }
+        out.flush();
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads;
+
+import com.yahoo.egads.control.StreamingDetector;
+import com.yahoo.egads.utilities.StreamingProcessor;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+
+public class TestStreamingProcessor {
+
+    @Test
+    public void testForecastsOneStepAhead() throws Exception {
+        // Two days of hourly history, then a streamed day with a spike.
+        long start = 1477872000;
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "NaiveForecastingModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("THRESHOLD", "mae#50,mapee#1000,smape#1000,mape#1000,mase#1000000");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("STREAM_TRAIN_SIZE", "48");
+        p.setProperty("STREAM_RETUNE", "5");
+        StringBuilder input = new StringBuilder();
+        long spike = start + 2 * 86400 + 5 * 3600;
+        for (long t = start; t < start + 3 * 86400; t += 3600) {
+            input.append("m,").append(t).append(',').append(value(t, spike)).append('\n');
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamingProcessor().processStream(new ByteArrayInputStream(input.toString().getBytes()),
+                                               new PrintStream(out), p);
+
+        // The spike is compared with the point before it, and the point after
+        // the spike with the spike.
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 2, out.toString());
+        for (int i = 0; i < lines.length; i++) {
+            long t = spike + 3600 * i;
+            String[] fields = lines[i].split(",");
+            Assert.assertEquals(fields[0], Long.toString(t));
+            Assert.assertEquals(Float.parseFloat(fields[4]), value(t - 3600, spike));
+        }
+    }
+
+    @Test
+    public void testRetriesTraining() throws Exception {
+        // TripleExponentialSmoothingModel needs two days of hourly points, more
+        // than STREAM_TRAIN_SIZE, so it is trained again until it has them.
+        long start = 1477872000;
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "TripleExponentialSmoothingModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("THRESHOLD", "mae#50,mapee#1000,smape#1000,mape#1000,mase#1000000");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("STREAM_TRAIN_SIZE", "30");
+        long spike = start + 2 * 86400 + 5 * 3600;
+        StreamingDetector detector = new StreamingDetector("m", p);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long t = start; t < start + 3 * 86400; t += 3600) {
+            detector.add(t, value(t, spike), new PrintStream(out));
+        }
+        Assert.assertTrue(out.toString().startsWith(spike + ",m,m,"), out.toString());
+    }
+
+    @Test
+    public void testGapsInHistory() throws Exception {
+        // Every fifth hour is missing and PERIOD is two hours, so the points
+        // are not those of the PERIOD grid, and the window is trimmed along
+        // the stream.
+        long start = 1477872000;
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "NaiveForecastingModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("PERIOD", "7200");
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("THRESHOLD", "mae#100,mapee#1000,smape#1000,mape#1000,mase#1000000");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("STREAM_TRAIN_SIZE", "30");
+        p.setProperty("STREAM_WINDOW", "40");
+        p.setProperty("STREAM_RETUNE", "7");
+        long spike = start + 3 * 86400 + 5 * 3600;
+        StreamingDetector detector = new StreamingDetector("m", p);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long t = start; t < start + 4 * 86400; t += 3600) {
+            if ((t - start) / 3600 % 5 != 4) {
+                detector.add(t, value(t, spike), new PrintStream(out));
+            }
+        }
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 2, out.toString());
+        Assert.assertTrue(lines[0].startsWith(spike + ",m,m,"), out.toString());
+        Assert.assertEquals(Float.parseFloat(lines[0].split(",")[4]), value(spike - 3600, spike));
+    }
+
+    @Test
+    public void testBoundedModelHistory() throws Exception {
+        // The level doubles after 100 points. MeanModel forecasts the median
+        // of its history, which only follows the new level once the model
+        // holds no more than the last STREAM_WINDOW points.
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "MeanModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("THRESHOLD", "mae#100,mapee#1000,smape#1000,mape#1000,mase#1000000");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("STREAM_TRAIN_SIZE", "30");
+        p.setProperty("STREAM_WINDOW", "40");
+        StreamingDetector detector = new StreamingDetector("m", p);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 300; i++) {
+            detector.add(3600L * (i + 1), i < 100 ? 1000 : 2000, new PrintStream(out));
+        }
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines[0].split(",")[0], Long.toString(3600L * 101), out.toString());
+        Assert.assertTrue(Long.parseLong(lines[lines.length - 1].split(",")[0]) < 3600L * 200, out.toString());
+    }
+
+    private static float value(long t, long spike) {
+        return (float) (1000 + 100 * Math.sin(2 * Math.PI * t / 86400)) + (t == spike ? 500 : 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsModelsWithoutNextForecast() throws Exception {
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "OlympicModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        new StreamingDetector("m", p);
+    }
+
+    @Test
+    public void testIncrementalModel() throws Exception {
+        // Three days of hourly history, then two streamed days with a spike.
+        long start = 1477872000;
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "OlympicModel2");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("INTERVAL", "1");
+        p.setProperty("INTERVAL_UNITS", "HOURS");
+        p.setProperty("WINDOW_SIZE", "1");
+        p.setProperty("WINDOW_SIZE_UNITS", "DAYS");
+        p.setProperty("WINDOW_DISTANCE", "1");
+        p.setProperty("WINDOW_DISTANCE_UNITS", "DAYS");
+        p.setProperty("HISTORICAL_WINDOWS", "3");
+        p.setProperty("MODEL_START", Long.toString(start + 3 * 86400));
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("THRESHOLD", "mae#50,mapee#1000,smape#1000,mape#1000,mase#1000000");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("STREAM_TRAIN_SIZE", "72");
+        StringBuilder input = new StringBuilder();
+        long spike = start + 4 * 86400 + 5 * 3600;
+        for (long t = start; t < start + 5 * 86400; t += 3600) {
+            float value = (float) (1000 + 100 * Math.sin(2 * Math.PI * t / 86400)) + (t == spike ? 500 : 0);
+            input.append("m,").append(t).append(',').append(value).append('\n');
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamingProcessor().processStream(new ByteArrayInputStream(input.toString().getBytes()),
+                                               new PrintStream(out), p);
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 1, out.toString());
+        String[] fields = lines[0].split(",");
+        Assert.assertEquals(fields[0], Long.toString(spike));
+        Assert.assertEquals(Float.parseFloat(fields[4]), 1000 + 100 * Math.sin(2 * Math.PI * spike / 86400), 1e-3);
+    }
+
+    @Test
+    public void testSkipsBadPoints() throws Exception {
+        Properties p = new Properties();
+        p.setProperty("TS_MODEL", "NullModel");
+        p.setProperty("AD_MODEL", "SimpleThresholdModel");
+        p.setProperty("SIMPLE_THRESHOLD_TYPE", "AdaptiveMaxMinSigmaSensitivity");
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("THRESHOLD", "max#100,min#-100");
+        p.setProperty("STREAM_TRAIN_SIZE", "3");
+        String input = "a,1,1\nnot a point\na,2,2\nb,x,1\na,1,5\na,3,3\na,4,500\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new StreamingProcessor().processStream(new ByteArrayInputStream(input.getBytes()),
+                                               new PrintStream(out), p);
+        Assert.assertTrue(out.toString().startsWith("4,a,a,SimpleThresholdModel,"), out.toString());
+        Assert.assertEquals(out.toString().split("\n").length, 1);
+    }
+}
@@ -16,7 +16,9 @@ import org.testng.annotations.Test;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Random;
 
 // Tests the correct generation of the expected values for olympic
 // scoring.
@@ -44,6 +46,49 @@ public class TestTripleExponentialSmoothingModel {
 
   }
 
+  @Test
+  public void testFit() throws Exception {
+    // A daily cycle of hourly points with a trend and noise.
+    Random random = new Random(11);
+    TimeSeries.DataSequence data = new TimeSeries.DataSequence();
+    for (int i = 0; i < 24 * 30; i++) {
+      data.add(new TimeSeries.Entry(i * 3600L,
+          (float) (100 + 0.05 * i + 30 * Math.sin(2 * Math.PI * i / 24) + random.nextGaussian() * 5)));
+    }
+    TripleExponentialSmoothingModel model = new TripleExponentialSmoothingModel(new Properties());
+    model.train(data);
+    Assert.assertEquals(model.getPeriod(), 24);
+    // Close to the variance of the noise.
+    Assert.assertTrue(model.getMSE() < 40, "MSE " + model.getMSE());
+
+    // The forecasts of predict() are the ones of the model parameters.
+    TimeSeries.DataSequence sequence = new TimeSeries.DataSequence(data.time(0), data.time(data.size() - 1), 3600);
+    model.predict(sequence);
+    Map<String, Object> params = model.getModelParams();
+    TimeSeries.DataSequence expected = new TimeSeries.DataSequence(data.time(0), data.time(data.size() - 1), 3600);
+    model.predict(params, data, expected);
+    Assert.assertEquals(expected.getValues(), sequence.getValues());
+
+    // The seasonal indices may come back from JSON as a list.
+    ArrayList<Double> seasonal = new ArrayList<Double>();
+    for (double d : (double[]) params.get("startseasonal")) {
+      seasonal.add(d);
+    }
+    params.put("startseasonal", seasonal);
+    TimeSeries.DataSequence fromList = new TimeSeries.DataSequence(data.time(0), data.time(data.size() - 1), 3600);
+    model.predict(params, data, fromList);
+    Assert.assertEquals(fromList.getValues(), expected.getValues());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNeedsTwoPeriods() throws Exception {
+    TimeSeries.DataSequence data = new TimeSeries.DataSequence();
+    for (int i = 0; i < 30; i++) {
+      data.add(new TimeSeries.Entry(i * 3600L, i % 24));
+    }
+    new TripleExponentialSmoothingModel(new Properties()).train(data);
+  }
+
 //    @Test
 //    public void testOlympicModel() throws Exception {
 //        // Test cases: ref window: 10, 5
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.control;
+
+import com.yahoo.egads.data.Anomaly;
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.utilities.FileUtils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class TestBatch {
+
+    private Properties config(String tsModel, String adModel) throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/sample_config.ini");
+        Properties p = new Properties();
+        p.load(is);
+        p.setProperty("TS_MODEL", tsModel);
+        p.setProperty("AD_MODEL", adModel);
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        return p;
+    }
+
+    // Copies of the sample input at different scales and offsets, so that the
+    // tuned thresholds of one are of no use for the next.
+    private List<TimeSeries> metrics(Properties p) throws Exception {
+        TimeSeries sample = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        List<TimeSeries> metrics = new ArrayList<TimeSeries>();
+        for (int k = 0; k < 7; k++) {
+            TimeSeries ts = new TimeSeries();
+            ts.meta.name = "metric" + k;
+            for (int i = 0; i < sample.size(); i++) {
+                float value = sample.data.get(i).value * (k + 1) + 100 * k;
+                if (k % 3 == 1 && i % 97 == 0) {
+                    value *= 3;
+                }
+                ts.append(sample.data.get(i).time, value);
+            }
+            metrics.add(ts);
+        }
+        return metrics;
+    }
+
+    @Test
+    public void testBatchMatchesSingleMetrics() throws Exception {
+        String[][] models = {{"OlympicModel", "KSigmaModel"}, {"NaiveForecastingModel", "ExtremeLowDensityModel"},
+                             {"OlympicModel", "SimpleThresholdModel"}};
+        for (String[] m : models) {
+            Properties p = config(m[0], m[1]);
+            List<TimeSeries> metrics = metrics(p);
+
+            for (int threads : new int[] {1, 3}) {
+                List<ArrayList<TimeSeries.DataSequence>> forecasts = ModelAdapter.forecast(metrics, p, threads);
+                List<TimeSeries.DataSequence> expected = new ArrayList<TimeSeries.DataSequence>();
+                for (ArrayList<TimeSeries.DataSequence> f : forecasts) {
+                    expected.add(f.get(0));
+                }
+                List<ArrayList<Anomaly>> anomalies = AnomalyDetector.detect(metrics, expected, p, threads);
+                Assert.assertEquals(forecasts.size(), metrics.size());
+                Assert.assertEquals(anomalies.size(), metrics.size());
+
+                for (int i = 0; i < metrics.size(); i++) {
+                    TimeSeries ts = metrics.get(i);
+                    ModelAdapter ma = ProcessableObjectFactory.buildTSModel(ts, p);
+                    ma.train();
+                    TimeSeries.DataSequence forecast = ma.forecast(ts.startTime(), ts.lastTime()).get(0);
+                    Assert.assertEquals(expected.get(i).getValues(), forecast.getValues());
+
+                    AnomalyDetector ad = ProcessableObjectFactory.buildAnomalyModel(ts, p);
+                    ad.tune(forecast, null);
+                    Assert.assertEquals(toString(anomalies.get(i)), toString(ad.detect(ts, forecast)),
+                                        m[1] + " " + i);
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = ClassNotFoundException.class)
+    public void testFailsOnUnknownModel() throws Exception {
+        Properties p = config("NoSuchModel", "KSigmaModel");
+        ModelAdapter.forecast(metrics(p), p, 2);
+    }
+
+    // A failure is rethrown as soon as it happens, not once the slower
+    // metrics before it are done.
+    @Test(expectedExceptions = IllegalStateException.class, timeOut = 10000)
+    public void testFailsWithoutWaitingForEarlierMetrics() throws Exception {
+        new Batch<Object, Object>() {
+            @Override
+            Object newWorker() {
+                return new Object();
+            }
+
+            @Override
+            Object process(Object worker, int i) throws Exception {
+                if (i == 0) {
+                    Thread.sleep(60000);
+                }
+                throw new IllegalStateException("metric " + i);
+            }
+        }.run(2, 2);
+    }
+
+    private static String toString(List<Anomaly> anomalies) {
+        StringBuilder sb = new StringBuilder();
+        for (Anomaly a : anomalies) {
+            sb.append(a.toPerlString());
+        }
+        return sb.toString();
+    }
+}
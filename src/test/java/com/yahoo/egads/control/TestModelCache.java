@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.control;
+
+import com.yahoo.egads.data.Anomaly;
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.models.adm.KSigmaModel;
+import com.yahoo.egads.models.tsmm.OlympicModel;
+import com.yahoo.egads.utilities.FileUtils;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class TestModelCache {
+
+    // Temporary directories made by the tests, deleted after each test.
+    private final List<Path> dirs = new ArrayList<Path>();
+
+    private Path tempDirectory() throws Exception {
+        Path dir = Files.createTempDirectory("models");
+        dirs.add(dir);
+        return dir;
+    }
+
+    @AfterMethod
+    public void deleteTempDirectories() throws Exception {
+        for (Path dir : dirs) {
+            File[] files = dir.toFile().listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    Files.deleteIfExists(f.toPath());
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        dirs.clear();
+    }
+
+    private Properties config() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/sample_config.ini");
+        Properties p = new Properties();
+        p.load(is);
+        p.setProperty("TS_MODEL", "OlympicModel");
+        p.setProperty("AD_MODEL", "KSigmaModel");
+        p.setProperty("OP_TYPE", "DETECT_ANOMALY");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        return p;
+    }
+
+    private ModelAdapter adapter(TimeSeries ts, Properties p) throws Exception {
+        ModelAdapter ma = new ModelAdapter(ts, -1);
+        ma.addModel(new OlympicModel(p));
+        return ma;
+    }
+
+    private AnomalyDetector detector(TimeSeries ts, Properties p) throws Exception {
+        AnomalyDetector ad = new AnomalyDetector(ts, -1);
+        ad.addModel(new KSigmaModel(p));
+        return ad;
+    }
+
+    @Test
+    public void testRestoresTrainedModels() throws Exception {
+        Properties p = config();
+        p.setProperty("MODEL_STORE", tempDirectory().toString());
+        TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        ModelCache cache = new ModelCache(p);
+
+        ModelAdapter ma = adapter(series, p);
+        cache.restore(ma);
+        Assert.assertFalse(ma.isTrained.get(0));
+        ma.train();
+        cache.save(ma);
+        TimeSeries.DataSequence expected = ma.forecast(series.startTime(), series.lastTime()).get(0);
+        AnomalyDetector ad = detector(series, p);
+        cache.restore(ad, ma.models.get(0));
+        Assert.assertFalse(ad.isTuned.get(0));
+        ad.tune(expected, null);
+        cache.save(ad, ma.models.get(0));
+        ArrayList<Anomaly> anomalies = ad.detect(series, expected);
+
+        // From the LRU, then from the store by a new process.
+        for (ModelCache c : new ModelCache[] {cache, new ModelCache(p)}) {
+            ModelAdapter restored = adapter(series, p);
+            c.restore(restored);
+            Assert.assertTrue(restored.isTrained.get(0));
+            TimeSeries.DataSequence forecast = restored.forecast(series.startTime(), series.lastTime()).get(0);
+            Assert.assertEquals(forecast.getValues(), expected.getValues());
+            AnomalyDetector restoredAd = detector(series, p);
+            c.restore(restoredAd, restored.models.get(0));
+            Assert.assertTrue(restoredAd.isTuned.get(0));
+            Assert.assertEquals(restoredAd.detect(series, forecast).get(0).toPerlString(),
+                                anomalies.get(0).toPerlString());
+        }
+    }
+
+    @Test
+    public void testRetrainsChangedData() throws Exception {
+        Properties p = config();
+        p.setProperty("MODEL_CACHE_SIZE", "10");
+        p.setProperty("MODEL_STALENESS", "3600");
+        TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        ModelCache cache = new ModelCache(p);
+        ModelAdapter ma = adapter(series, p);
+        ma.train();
+        cache.save(ma);
+
+        TimeSeries changed = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        changed.data.setValue(10, changed.value(10) * 2);
+        ModelAdapter restored = adapter(changed, p);
+        cache.restore(restored);
+        Assert.assertFalse(restored.isTrained.get(0));
+
+        // A point within MODEL_STALENESS of the trained data is passed to update().
+        TimeSeries newer = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        newer.append(series.lastTime() + 3600, series.value(series.size() - 1));
+        restored = adapter(newer, p);
+        cache.restore(restored);
+        Assert.assertTrue(restored.isTrained.get(0));
+
+        newer.append(series.lastTime() + 7200, series.value(series.size() - 1));
+        restored = adapter(newer, p);
+        cache.restore(restored);
+        Assert.assertFalse(restored.isTrained.get(0));
+    }
+
+    // The time-series model is updated with the newer points, and the
+    // anomaly detection model tuned again on its forecast.
+    @Test
+    public void testRetunesOnNewerData() throws Exception {
+        Properties p = config();
+        p.setProperty("MODEL_STALENESS", "3600");
+        TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        ModelCache cache = new ModelCache(p);
+        ModelAdapter ma = adapter(series, p);
+        ma.train();
+        cache.save(ma);
+        AnomalyDetector ad = detector(series, p);
+        ad.tune(ma.forecast(series.startTime(), series.lastTime()).get(0), null);
+        cache.save(ad, ma.models.get(0));
+
+        TimeSeries newer = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        newer.append(series.lastTime() + 3600, series.value(series.size() - 1) * 10);
+        ma = adapter(newer, p);
+        cache.restore(ma);
+        Assert.assertTrue(ma.isTrained.get(0));
+        TimeSeries.DataSequence forecast = ma.forecast(newer.startTime(), newer.lastTime()).get(0);
+        ad = detector(newer, p);
+        cache.restore(ad, ma.models.get(0));
+        Assert.assertFalse(ad.isTuned.get(0));
+        ad.tune(forecast, null);
+        cache.save(ad, ma.models.get(0));
+
+        AnomalyDetector restored = detector(newer, p);
+        cache.restore(restored, ma.models.get(0));
+        Assert.assertTrue(restored.isTuned.get(0));
+        Assert.assertEquals(toString(restored.detect(newer, forecast)), toString(ad.detect(newer, forecast)));
+    }
+
+    private static String toString(List<Anomaly> anomalies) {
+        StringBuilder sb = new StringBuilder();
+        for (Anomaly a : anomalies) {
+            sb.append(a.toPerlString());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        Properties p = config();
+        p.setProperty("MODEL_CACHE_SIZE", "1");
+        TimeSeries a = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        TimeSeries b = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        b.meta.name = "other";
+        ModelCache cache = new ModelCache(p);
+        for (TimeSeries ts : new TimeSeries[] {a, b}) {
+            ModelAdapter ma = adapter(ts, p);
+            ma.train();
+            cache.save(ma);
+        }
+        ModelAdapter ma = adapter(b, p);
+        cache.restore(ma);
+        Assert.assertTrue(ma.isTrained.get(0));
+        ma = adapter(a, p);
+        cache.restore(ma);
+        Assert.assertFalse(ma.isTrained.get(0));
+    }
+
+    @Test
+    public void testDetectAnomalyProcessable() throws Exception {
+        Properties p = config();
+        p.setProperty("MODEL_CACHE_SIZE", "10");
+        String[] output = new String[2];
+        for (int i = 0; i < 2; i++) {
+            TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ProcessableObjectFactory.create(series, p, new PrintStream(out)).process();
+            output[i] = out.toString();
+        }
+        Assert.assertFalse(output[0].isEmpty());
+        Assert.assertEquals(output[1], output[0]);
+    }
+}
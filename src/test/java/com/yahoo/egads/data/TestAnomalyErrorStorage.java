@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.data.AnomalyErrorStorage.ErrorMetric;
+
+public class TestAnomalyErrorStorage {
+
+    private static TimeSeries.DataSequence sequence(float... values) {
+        TimeSeries.DataSequence ds = new ColumnarDataSequence();
+        for (int i = 0; i < values.length; i++) {
+            ds.add(new TimeSeries.Entry(i * 3600, values[i]));
+        }
+        return ds;
+    }
+
+    @Test
+    public void testErrorMatrix() {
+        TimeSeries.DataSequence observed = sequence(10, 12, 0, 15, 11, -3);
+        TimeSeries.DataSequence expected = sequence(10, 11, 1, 0, 14, 3);
+        AnomalyErrorStorage aes = new AnomalyErrorStorage();
+        float[][] matrix = aes.initErrorMatrix(observed, expected);
+        Assert.assertEquals(matrix.length, AnomalyErrorStorage.NUM_METRICS);
+
+        // Each column holds the errors of its point.
+        for (int i = 0; i < observed.size(); i++) {
+            Float[] errors = aes.computeErrorMetrics(expected.value(i), observed.value(i));
+            for (ErrorMetric metric : ErrorMetric.values()) {
+                Assert.assertEquals(matrix[metric.ordinal()][i], (float) errors[metric.ordinal()]);
+                Assert.assertEquals(aes.getErrorToIndex().get(metric.key()), (Integer) metric.ordinal());
+            }
+        }
+        Assert.assertEquals(matrix[ErrorMetric.MAE.ordinal()][3], 15f);
+        Assert.assertEquals(matrix[ErrorMetric.MAPE.ordinal()][2], 0f);
+
+        HashMap<String, ArrayList<Float>> lists = new AnomalyErrorStorage().initAnomalyErrors(observed, expected);
+        for (ErrorMetric metric : ErrorMetric.values()) {
+            for (int i = 0; i < observed.size(); i++) {
+                Assert.assertEquals((float) lists.get(metric.key()).get(i), matrix[metric.ordinal()][i]);
+            }
+        }
+    }
+
+    @Test
+    public void testThresholds() {
+        Map<String, Float> threshold = new HashMap<String, Float>();
+        threshold.put("mae", -5f);
+        threshold.put("mape", 20f);
+        float[] thresholds = AnomalyErrorStorage.thresholds(threshold);
+        Assert.assertEquals(thresholds[ErrorMetric.MAE.ordinal()], 5f);
+        Assert.assertTrue(Float.isNaN(thresholds[ErrorMetric.MASE.ordinal()]));
+
+        float[] errors = new float[AnomalyErrorStorage.NUM_METRICS];
+        errors[ErrorMetric.MASE.ordinal()] = 1000;
+        errors[ErrorMetric.MAE.ordinal()] = 4.9f;
+        Assert.assertFalse(AnomalyErrorStorage.exceeds(errors, thresholds));
+        errors[ErrorMetric.MAE.ordinal()] = 5;
+        Assert.assertTrue(AnomalyErrorStorage.exceeds(errors, thresholds));
+    }
+}
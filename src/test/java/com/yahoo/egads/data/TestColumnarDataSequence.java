@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.egads.data;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.data.TimeSeries.DataSequence;
+import com.yahoo.egads.data.TimeSeries.Entry;
+
+public class TestColumnarDataSequence {
+
+    @Test
+    public void matchesArrayListBackend() throws Exception {
+        DataSequence expected = new DataSequence();
+        ColumnarDataSequence actual = new ColumnarDataSequence(2);
+        for (int i = 0; i < 100; i++) {
+            expected.add(new Entry(1000 + i * 60, i * 1.5f));
+            actual.append(1000 + i * 60, i * 1.5f);
+        }
+        assertEquals(expected.size(), actual.size());
+        assertTrue(expected.equals(actual));
+        assertTrue(actual.equals(expected));
+
+        expected.setLogicalIndices(1000, 60);
+        actual.setLogicalIndices(1000, 60);
+        int i = 0;
+        for (Entry e : actual) {
+            assertEquals(expected.get(i), e);
+            assertEquals(i, e.logicalIndex);
+            i++;
+        }
+        assertEquals(100, i);
+        assertTrue(actual.equals(expected));
+    }
+
+    @Test
+    public void mutation() throws Exception {
+        ColumnarDataSequence seq = new ColumnarDataSequence(1000, 1300, 60);
+        assertEquals(6, seq.size());
+
+        // views are detached, writes go through set()/setValue().
+        seq.get(0).value = 42;
+        assertEquals(0f, seq.value(0));
+        seq.setValue(0, 42);
+        assertEquals(42f, seq.get(0).value);
+        seq.set(1, new Entry(1060, 7));
+        assertEquals(7f, seq.value(1));
+
+        Entry removed = seq.remove(0);
+        assertEquals(1000, removed.time);
+        assertEquals(5, seq.size());
+        assertEquals(1060, seq.time(0));
+
+        seq.add(0, new Entry(1000, 1));
+        assertEquals(1000, seq.time(0));
+        assertEquals(1060, seq.time(1));
+
+        seq.subList(0, 2).clear();
+        assertEquals(4, seq.size());
+        assertEquals(1120, seq.time(0));
+
+        seq.clear();
+        assertTrue(seq.isEmpty());
+    }
+
+    @Test
+    public void explicitLogicalIndices() throws Exception {
+        ColumnarDataSequence seq = new ColumnarDataSequence();
+        seq.setLogicalIndices(0, 10);
+        seq.append(0, 1);
+        seq.append(10, 2);
+        assertEquals(1, seq.get(1).logicalIndex);
+
+        Entry odd = new Entry(20, 3);
+        odd.logicalIndex = 7;
+        seq.add(odd);
+        assertEquals(0, seq.logicalIndex(0));
+        assertEquals(1, seq.logicalIndex(1));
+        assertEquals(7, seq.logicalIndex(2));
+
+        seq.setTimeStamps(100, 10);
+        assertEquals(100, seq.time(0));
+        assertEquals(110, seq.time(1));
+        assertEquals(170, seq.time(2));
+        assertEquals(7, seq.get(2).logicalIndex);
+    }
+
+    @Test
+    public void aggregateAndSerialize() throws Exception {
+        TimeSeries ts = new TimeSeries();
+        ts.data = new ColumnarDataSequence();
+        for (int i = 0; i < 10; i++) {
+            ts.append(i, i);
+        }
+        DataSequence aggr = ts.aggregate(5);
+        assertTrue(aggr instanceof ColumnarDataSequence);
+        assertEquals(2, aggr.size());
+        assertEquals(2f, aggr.value(0));
+        assertEquals(7f, aggr.value(1));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(ts.data);
+        out.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertTrue(copy instanceof ColumnarDataSequence);
+        assertTrue(ts.data.equals(copy));
+        assertFalse(aggr.equals(copy));
+    }
+}
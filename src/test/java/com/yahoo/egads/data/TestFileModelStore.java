@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.models.adm.KSigmaModel;
+import com.yahoo.egads.models.tsmm.OlympicModel;
+import com.yahoo.egads.models.tsmm.SeasonalMedianModel;
+import com.yahoo.egads.models.tsmm.TimeSeriesAbstractModel;
+import com.yahoo.egads.models.tsmm.TripleExponentialSmoothingModel;
+import com.yahoo.egads.utilities.FileUtils;
+
+public class TestFileModelStore {
+
+    // Temporary directories made by the tests, deleted after each test.
+    private final List<Path> dirs = new ArrayList<Path>();
+
+    private Path tempDirectory() throws Exception {
+        Path dir = Files.createTempDirectory("models");
+        dirs.add(dir);
+        return dir;
+    }
+
+    @AfterMethod
+    public void deleteTempDirectories() throws Exception {
+        for (Path dir : dirs) {
+            File[] files = dir.toFile().listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    Files.deleteIfExists(f.toPath());
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        dirs.clear();
+    }
+
+    private Properties config() throws Exception {
+        InputStream is = new FileInputStream("src/test/resources/sample_config.ini");
+        Properties p = new Properties();
+        p.load(is);
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "999999999");
+        return p;
+    }
+
+    private static TimeSeries.DataSequence forecast(TimeSeriesAbstractModel model, TimeSeries series) throws Exception {
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence(series.startTime(), series.lastTime(), 3600);
+        model.predict(sequence);
+        return sequence;
+    }
+
+    @Test
+    public void testStoresFittedState() throws Exception {
+        Properties p = config();
+        Path dir = tempDirectory();
+        TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        FileModelStore store = new FileModelStore(dir.toString(), p);
+
+        TimeSeriesAbstractModel[] models = {
+            new OlympicModel(p), new TripleExponentialSmoothingModel(p), new SeasonalMedianModel(p)};
+        for (TimeSeriesAbstractModel model : models) {
+            model.train(series.data);
+            TimeSeries.DataSequence expected = forecast(model, series);
+            store.storeModel("metric/" + model.getModelName(), model);
+
+            File file = dir.resolve("metric_" + model.getModelName()).toFile();
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            Assert.assertEquals(in.readInt(), ModelCodec.MAGIC);
+            in.close();
+            // Much smaller than the Java serialization of the model.
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream o = new ObjectOutputStream(bytes);
+            o.writeObject(model);
+            o.close();
+            Assert.assertTrue(file.length() * 2 < bytes.size());
+
+            TimeSeriesAbstractModel restored = (TimeSeriesAbstractModel) store.retrieveModel("metric/" + model.getModelName());
+            Assert.assertEquals(restored.getClass(), model.getClass());
+            Assert.assertEquals(forecast(restored, series).getValues(), expected.getValues());
+            Assert.assertEquals(restored.getMSE(), model.getMSE());
+            Assert.assertEquals(restored.getModelParams(), model.getModelParams());
+        }
+
+        TimeSeries.DataSequence expected = forecast(models[0], series);
+        KSigmaModel ad = new KSigmaModel(p);
+        ad.tune(series.data, expected, null);
+        store.storeModel("ad", ad);
+        KSigmaModel restored = (KSigmaModel) store.retrieveModel("ad");
+        Assert.assertEquals(restored.detect(series.data, expected).toString(),
+                            ad.detect(series.data, expected).toString());
+
+        // Only the models are left, with no temporary files.
+        Assert.assertEquals(dir.toFile().list().length, models.length + 1);
+    }
+
+    @Test
+    public void testReadsSerializedModels() throws Exception {
+        Properties p = config();
+        Path dir = tempDirectory();
+        TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        OlympicModel model = new OlympicModel(p);
+        model.train(series.data);
+
+        // Written without a config, or by an older store.
+        new FileModelStore(dir.toString()).storeModel("a", model);
+        ObjectOutputStream o = new ObjectOutputStream(new FileOutputStream(dir.resolve("b").toFile()));
+        o.writeObject(model);
+        o.close();
+        for (String tag : new String[] {"a", "b"}) {
+            OlympicModel restored = (OlympicModel) new FileModelStore(dir.toString(), p).retrieveModel(tag);
+            Assert.assertEquals(restored.getModel(), model.getModel());
+        }
+    }
+
+    @Test
+    public void testOverwritesAndIgnoresBadFiles() throws Exception {
+        Properties p = config();
+        Path dir = tempDirectory();
+        TimeSeries series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", p).get(0);
+        FileModelStore store = new FileModelStore(dir.toString(), p);
+        OlympicModel model = new OlympicModel(p);
+        model.train(series.data);
+        store.storeModel("a", new OlympicModel(p));
+        store.storeModel("a", model);
+        Assert.assertEquals(((OlympicModel) store.retrieveModel("a")).getModel(), model.getModel());
+        Assert.assertEquals(dir.toFile().list().length, 1);
+
+        Files.write(dir.resolve("a"), new byte[] {0x45, 0x47, 0x41, 0x44, 0, 0});
+        Assert.assertNull(store.retrieveModel("a"));
+        Assert.assertNull(store.retrieveModel("missing"));
+        // A model of a state format must be read with a config.
+        store.storeModel("a", model);
+        Assert.assertNull(new FileModelStore(dir.toString()).retrieveModel("a"));
+    }
+
+    // Stored models get the default permissions of a new file, as when they
+    // were written in place, so that a store can be shared.
+    @Test
+    public void testKeepsDefaultPermissions() throws Exception {
+        Path dir = tempDirectory();
+        if (!Files.getFileStore(dir).supportsFileAttributeView("posix")) {
+            return;
+        }
+        Properties p = config();
+        new FileModelStore(dir.toString(), p).storeModel("a", new OlympicModel(p));
+        Path plain = Files.createFile(dir.resolve("plain"));
+        Assert.assertEquals(Files.getPosixFilePermissions(dir.resolve("a")), Files.getPosixFilePermissions(plain));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.models.adm;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.utilities.ListUtils;
+
+public class TestAdaptiveKernelDensityChangePointDetector {
+
+    @Test
+    public void testMatchesListImplementation() throws Exception {
+        Properties p = new Properties();
+        p.setProperty("MAX_ANOMALY_TIME_AGO", "48");
+        p.setProperty("DETECTION_WINDOW_START_TIME", "0");
+        p.setProperty("OUTPUT", "STD_OUT");
+        p.setProperty("PRE_WINDOW_SIZE", "1");
+        p.setProperty("POST_WINDOW_SIZE", "1");
+        Random random = new Random(7);
+        int[][] windows = {{24, 24}, {48, 16}, {10, 30}, {5, 5}};
+        for (int[] w : windows) {
+            float[] residuals = new float[2000];
+            for (int i = 0; i < residuals.length; ++i) {
+                residuals[i] = (float) (random.nextGaussian() * (i < 1000 ? 1 : 3) + (i % 700 < 50 ? 10 : 0));
+            }
+            AdaptiveKernelDensityChangePointDetector cpd = new AdaptiveKernelDensityChangePointDetector(p);
+            ListChangePointDetector reference = new ListChangePointDetector(p);
+            ArrayList<Integer> changePoints = cpd.detectChangePoints(residuals, w[0], w[1], 0.8F);
+            Assert.assertEquals(changePoints, reference.detectChangePoints(residuals, w[0], w[1], 0.8F));
+            // keeps sliding over the same residuals with a different confidence.
+            for (int i = 0; i < residuals.length; ++i) {
+                float[] expected = reference.computeKLScore(residuals[i], w[0], w[1], 0.9F);
+                float[] actual = cpd.computeKLScore(residuals[i], w[0], w[1], 0.9F);
+                for (int j = 0; j < 2; ++j) {
+                    if (Float.compare(actual[j], expected[j]) != 0) {
+                        Assert.assertEquals(actual[j], expected[j], 1e-4 * Math.abs(expected[j]));
+                    }
+                }
+            }
+        }
+    }
+
+    // The detector as implemented on top of linked lists.
+    private static class ListChangePointDetector extends AdaptiveKernelDensityChangePointDetector {
+        private LinkedList<Float> buffer = new LinkedList<Float>();
+        private LinkedList<Float> sdBuffer = new LinkedList<Float>();
+        private LinkedList<Float> preKernelSum = new LinkedList<Float>();
+        private LinkedList<Float> postKernelSum = new LinkedList<Float>();
+        private float sumBuffer = 0;
+        private float sqrSumBuffer = 0;
+
+        ListChangePointDetector(Properties config) {
+            super(config);
+        }
+
+        protected float[] computeKLScore(float residual, int preWindowSize, int postWindowSize, float confidence) {
+            float dKL = 0;
+            float levelThreshold = 0;
+            int len = buffer.size();
+
+            // Filling the pre-window
+            if (len < preWindowSize) {
+                buffer.addLast(residual);
+                postKernelSum.addLast(0F);
+
+                if (len == (preWindowSize - 1)) {
+                    int n = preWindowSize;
+                    sumBuffer = ListUtils.sumQ(buffer);
+                    sqrSumBuffer = ListUtils.sum2Q(buffer);
+                    float temp =
+                                    (float) Math.max(
+                                                    1e-5,
+                                                    Math.sqrt(2 * (n * sqrSumBuffer - sumBuffer * sumBuffer)
+                                                                    / (n * (n - 1))));
+                    ListUtils.repQ(sdBuffer, temp, n);
+
+                    for (float x : buffer) {
+                        preKernelSum.addLast(ListUtils.kernelSum(x, buffer, sdBuffer));
+                    }
+                }
+            } else if (len < (preWindowSize + postWindowSize)) { // Filling the post-window
+                sumBuffer = sumBuffer + residual;
+                sqrSumBuffer = sqrSumBuffer + residual * residual;
+                int n = len + 1;
+                float temp =
+                                (float) Math.max(1e-5,
+                                                Math.sqrt(2 * (n * sqrSumBuffer - sumBuffer * sumBuffer) / (n * (n - 1))));
+                sdBuffer.addLast(temp);
+
+                LinkedList<Float> tempQ1 = new LinkedList<Float>();
+                tempQ1.add(residual);
+
+                LinkedList<Float> tempQ2 = new LinkedList<Float>();
+                tempQ2.add(temp);
+
+                ListUtils.addQ(postKernelSum, ListUtils.kernelQ(buffer, tempQ1, tempQ2));
+                buffer.addLast(residual);
+                preKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, 0, preWindowSize - 1));
+                postKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, preWindowSize, buffer.size() - 1));
+            } else {
+                // updating the pre-stats
+                LinkedList<Float> preRemovedValues =
+                                ListUtils.kernelQ(buffer, buffer.subList(0, 1), sdBuffer.subList(0, 1));
+                ListUtils.subtractQ(preKernelSum, preRemovedValues);
+                LinkedList<Float> midExchangedValues =
+                                ListUtils.kernelQ(buffer, buffer.subList(preWindowSize, preWindowSize + 1),
+                                                sdBuffer.subList(preWindowSize, preWindowSize + 1));
+                ListUtils.addQ(preKernelSum, midExchangedValues);
+
+                // Computing the new sd
+                int n = len;
+                sumBuffer += (residual - buffer.getFirst());
+                sqrSumBuffer += (residual * residual - Math.pow(buffer.getFirst(), 2));
+                float temp =
+                                (float) Math.max(1e-5,
+                                                Math.sqrt(2 * (n * sqrSumBuffer - sumBuffer * sumBuffer) / (n * (n - 1))));
+
+                // updating the post-stats
+                LinkedList<Float> tempQ1 = new LinkedList<Float>();
+                tempQ1.add(residual);
+                LinkedList<Float> tempQ2 = new LinkedList<Float>();
+                tempQ2.add(temp);
+                ListUtils.subtractQ(postKernelSum, midExchangedValues);
+                LinkedList<Float> postAddedValues = ListUtils.kernelQ(buffer, tempQ1, tempQ2);
+                ListUtils.addQ(postKernelSum, postAddedValues);
+
+                // updating the window
+                buffer.addLast(residual);
+                buffer.removeFirst();
+
+                sdBuffer.addLast(temp);
+                sdBuffer.removeFirst();
+
+                preKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, 0, preWindowSize - 1));
+                postKernelSum.addLast(ListUtils.kernelSubSum(residual, buffer, sdBuffer, preWindowSize, preWindowSize
+                                + postWindowSize - 1));
+
+                preKernelSum.removeFirst();
+                postKernelSum.removeFirst();
+
+                float eps = 1e-10F;
+                LinkedList<Float> preDensity =
+                                ListUtils.maxQ(preKernelSum.subList(preWindowSize, preWindowSize + postWindowSize), eps);
+                LinkedList<Float> postDensity =
+                                ListUtils.maxQ(postKernelSum.subList(preWindowSize, preWindowSize + postWindowSize), eps);
+
+                tempQ1.clear();
+                tempQ1.addAll(preKernelSum.subList(0, preWindowSize));
+                tempQ2.clear();
+                tempQ2.add(1.0F / preWindowSize);
+                ListUtils.multiplyQ(tempQ1, tempQ2);
+                float levelSet = ListUtils.quantile(tempQ1, 1 - confidence);
+                levelThreshold =
+                                (float) (-Math.log(levelSet) - Math.log(2 * Math.PI) / 2 - ListUtils.sumLog(sdBuffer
+                                                .subList(preWindowSize, preWindowSize + postWindowSize)) / postWindowSize);
+
+                // computing the KL-divergence
+                dKL =
+                                (float) ((ListUtils.sumLog(postDensity) - ListUtils.sumLog(preDensity) + Math
+                                                .log(preWindowSize / postWindowSize))
+                                                / postWindowSize
+                                                + Math.log(levelSet * Math.sqrt(2 * Math.PI)) + ListUtils.sumLog(sdBuffer
+                                                .subList(preWindowSize, preWindowSize + postWindowSize)) / postWindowSize);
+            }
+
+            return new float[] {dKL, levelThreshold};
+        }
+    }
+}
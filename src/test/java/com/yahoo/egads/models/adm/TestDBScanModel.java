@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.models.adm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.ml.distance.EuclideanDistance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.utilities.IdentifiedDoublePoint;
+
+public class TestDBScanModel {
+
+    private static List<IdentifiedDoublePoint> points(int n) {
+        Random random = new Random(7);
+        List<IdentifiedDoublePoint> points = new ArrayList<IdentifiedDoublePoint>();
+        for (int i = 0; i < n; i++) {
+            double[] d = new double[5];
+            for (int k = 0; k < d.length; k++) {
+                d[k] = random.nextGaussian() * (k + 1) + (i % 50 == 0 ? 100 : 0);
+            }
+            points.add(new IdentifiedDoublePoint(d, i));
+        }
+        return points;
+    }
+
+    @Test
+    public void testMeanDistance() {
+        EuclideanDistance ed = new EuclideanDistance();
+        for (int n : new int[] {1, 2, 100, 1024, 1025, 5000}) {
+            List<IdentifiedDoublePoint> points = points(n);
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    sum += ed.compute(points.get(i).getPoint(), points.get(j).getPoint());
+                }
+            }
+            double exact = sum / ((double) n * n);
+            // Exact up to rounding for small series, sampled beyond.
+            double tolerance = n <= 1024 ? 1e-9 : 0.01;
+            Assert.assertEquals(DBScanModel.meanDistance(points), exact, exact * tolerance + 1e-12, "n " + n);
+        }
+        Assert.assertEquals(DBScanModel.meanDistance(new ArrayList<IdentifiedDoublePoint>()), 0.0);
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.models.tsmm;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.utilities.ModelRegistry;
+
+import net.sourceforge.openforecast.DataPoint;
+import net.sourceforge.openforecast.DataSet;
+import net.sourceforge.openforecast.ForecastingModel;
+import net.sourceforge.openforecast.Observation;
+
+public class TestModelUpdate {
+
+    // The models whose update() gives the model train() would.
+    private static final String[] MODELS = {
+        "RegressionModel", "MultipleLinearRegressionModel", "PolynomialRegressionModel",
+        "NaiveForecastingModel", "MovingAverageModel", "WeightedMovingAverageModel",
+        "MeanModel", "OlympicModel", "SeasonalMedianModel"};
+
+    private static final int TRAINED = 200;
+    private static final int TOTAL = 500;
+
+    private static Properties config() {
+        Properties p = new Properties();
+        p.setProperty("NUM_WEEKS", "3");
+        p.setProperty("NUM_TO_DROP", "1");
+        p.setProperty("TIME_SHIFTS", "0,1");
+        p.setProperty("BASE_WINDOWS", "24,168");
+        return p;
+    }
+
+    private static float[] values(long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[TOTAL];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float) (1000 + i + 200 * Math.sin(2 * Math.PI * i / 24) + random.nextGaussian() * 30);
+        }
+        return values;
+    }
+
+    private static TimeSeries.DataSequence hourly(float[] values, int from, int to) throws Exception {
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence();
+        for (int i = from; i < to; i++) {
+            sequence.add(new TimeSeries.Entry(1400000000L + 3600L * i, values[i]));
+        }
+        return sequence;
+    }
+
+    private static TimeSeriesAbstractModel model(String name, Properties p) throws Exception {
+        return ModelRegistry.newModel(ModelRegistry.TS_MODELS, name, TimeSeriesAbstractModel.class, p);
+    }
+
+    // Trains on the first TRAINED values and updates with the rest, a few
+    // points at a time.
+    private static TimeSeriesAbstractModel trainAndUpdate(String name, Properties p, float[] values)
+            throws Exception {
+        TimeSeriesAbstractModel model = model(name, p);
+        TimeSeries.DataSequence trained = hourly(values, 0, TRAINED);
+        model.train(trained);
+        for (int i = TRAINED; i < TOTAL; i += 7) {
+            model.update(hourly(values, i, Math.min(i + 7, TOTAL)));
+        }
+        // The sequence the model was trained on is left alone.
+        Assert.assertEquals(trained.size(), TRAINED);
+        return model;
+    }
+
+    private static float[] predict(TimeSeriesAbstractModel model) throws Exception {
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence(1400000000L,
+                                                                       1400000000L + 3600L * (TOTAL - 1), 3600);
+        model.predict(sequence);
+        float[] values = new float[sequence.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = sequence.value(i);
+        }
+        return values;
+    }
+
+    private static void assertClose(double actual, double expected) {
+        Assert.assertEquals(actual, expected, Math.abs(expected) * 1e-6 + 1e-6);
+    }
+
+    private static void assertErrors(TimeSeriesAbstractModel model, ForecastingModel expected) {
+        assertClose(model.getBias(), expected.getBias());
+        assertClose(model.getMAD(), expected.getMAD());
+        assertClose(model.getMAPE(), expected.getMAPE());
+        assertClose(model.getMSE(), expected.getMSE());
+        assertClose(model.getSAE(), expected.getSAE());
+    }
+
+    private static void assertSameModel(TimeSeriesAbstractModel model, TimeSeriesAbstractModel expected)
+            throws Exception {
+        float[] values = predict(model);
+        float[] expectedValues = predict(expected);
+        for (int i = 0; i < TOTAL; i++) {
+            assertClose(values[i], expectedValues[i]);
+        }
+        assertClose(model.getBias(), expected.getBias());
+        assertClose(model.getMAD(), expected.getMAD());
+        assertClose(model.getMAPE(), expected.getMAPE());
+        assertClose(model.getMSE(), expected.getMSE());
+        assertClose(model.getSAE(), expected.getSAE());
+    }
+
+    @Test
+    public void testUpdateMatchesTrain() throws Exception {
+        Properties p = config();
+        float[] values = values(1);
+        for (String name : MODELS) {
+            TimeSeriesAbstractModel expected = model(name, p);
+            expected.train(hourly(values, 0, TOTAL));
+            assertSameModel(trainAndUpdate(name, p, values), expected);
+        }
+    }
+
+    @Test
+    public void testSmoothingUpdateKeepsConstants() throws Exception {
+        Properties p = config();
+        float[] values = values(2);
+        TimeSeries.DataSequence all = hourly(values, 0, TOTAL);
+
+        // The forecasts of smoothing the whole history with the constants and
+        // starting values fitted to the first values.
+        TimeSeriesAbstractModel tes = model("TripleExponentialSmoothingModel", p);
+        tes.train(hourly(values, 0, TRAINED));
+        Map<String, Object> params = tes.getModelParams();
+        tes = trainAndUpdate("TripleExponentialSmoothingModel", p, values);
+        TimeSeries.DataSequence expected = hourly(values, 0, TOTAL);
+        tes.predict(params, all, expected);
+        float[] forecast = predict(tes);
+        for (int i = 0; i < TOTAL; i++) {
+            Assert.assertEquals(forecast[i], expected.value(i));
+        }
+
+        // Those of OpenForecast with the constants it fitted to them.
+        DataSet observed = new DataSet();
+        for (int i = 0; i < TOTAL; i++) {
+            DataPoint dp = new Observation(values[i]);
+            dp.setIndependentValue("x", i);
+            observed.add(dp);
+        }
+        observed.setTimeVariable("x");
+        for (String name : new String[] {"SimpleExponentialSmoothingModel", "DoubleExponentialSmoothingModel"}) {
+            TimeSeriesAbstractModel model = trainAndUpdate(name, p, values);
+            Map<String, Object> constants = model.getModelParams();
+            double alpha = (Double) constants.get("alpha");
+            ForecastingModel forecaster = name.startsWith("Simple")
+                ? new net.sourceforge.openforecast.models.SimpleExponentialSmoothingModel(alpha)
+                : new net.sourceforge.openforecast.models.DoubleExponentialSmoothingModel(alpha, (Double) constants.get("gamma"));
+            forecaster.init(observed);
+            DataSet required = new DataSet();
+            for (int i = 0; i < TOTAL; i++) {
+                DataPoint dp = new Observation(0.0);
+                dp.setIndependentValue("x", i);
+                required.add(dp);
+            }
+            forecaster.forecast(required);
+            forecast = predict(model);
+            int i = 0;
+            for (Object point : required) {
+                assertClose(forecast[i++], (float) ((DataPoint) point).getDependentValue());
+            }
+            assertErrors(model, forecaster);
+        }
+    }
+
+    @Test
+    public void testRefit() throws Exception {
+        // Retrained on the whole history once all the newer values are added.
+        Properties p = config();
+        p.setProperty("UPDATE_REFIT", String.valueOf(TOTAL - TRAINED));
+        p.setProperty("AUTO_FORECAST_MODELS", "RegressionModel,TripleExponentialSmoothingModel");
+        float[] values = values(3);
+        for (String name : new String[] {"TripleExponentialSmoothingModel", "AutoForecastModel"}) {
+            TimeSeriesAbstractModel expected = model(name, p);
+            expected.train(hourly(values, 0, TOTAL));
+            TimeSeriesAbstractModel model = trainAndUpdate(name, p, values);
+            Assert.assertEquals(model.getModelName(), expected.getModelName());
+            assertSameModel(model, expected);
+        }
+    }
+
+    @Test
+    public void testUpdateAfterRefit() throws Exception {
+        // Refitted several times along the updates, AutoForecastModel follows
+        // its only candidate updated alone.
+        Properties p = config();
+        p.setProperty("UPDATE_REFIT", "100");
+        p.setProperty("AUTO_FORECAST_MODELS", "TripleExponentialSmoothingModel");
+        float[] values = values(7);
+        TimeSeriesAbstractModel expected = trainAndUpdate("TripleExponentialSmoothingModel", p, values);
+        assertSameModel(trainAndUpdate("AutoForecastModel", p, values), expected);
+    }
+
+    @Test
+    public void testEmptyUpdate() throws Exception {
+        Properties p = config();
+        float[] values = values(5);
+        String[] smoothing = {"SimpleExponentialSmoothingModel", "DoubleExponentialSmoothingModel",
+                              "TripleExponentialSmoothingModel"};
+        String[] names = Arrays.copyOf(MODELS, MODELS.length + smoothing.length);
+        System.arraycopy(smoothing, 0, names, MODELS.length, smoothing.length);
+        for (String name : names) {
+            TimeSeriesAbstractModel expected = model(name, p);
+            expected.train(hourly(values, 0, TRAINED));
+            TimeSeriesAbstractModel model = model(name, p);
+            model.train(hourly(values, 0, TRAINED));
+            model.update(hourly(values, TRAINED, TRAINED));
+            assertSameModel(model, expected);
+        }
+
+        // With no point whose error is counted, before and after some are.
+        TimeSeriesAbstractModel model = model("MeanModel", p);
+        TimeSeries.DataSequence data = hourly(values, 0, 10);
+        double[] forecast = new double[10];
+        model.addForecastErrors(new double[0], data, 0, 0);
+        assertNoErrors(model);
+        model.addForecastErrors(forecast, data, 0, 0);
+        Assert.assertTrue(model.getMSE() > 0);
+        model.removeForecastErrors(forecast, data, 0, 10);
+        assertNoErrors(model);
+    }
+
+    private static void assertNoErrors(TimeSeriesAbstractModel model) {
+        Assert.assertEquals(model.getBias(), 0.0);
+        Assert.assertEquals(model.getMAD(), 0.0);
+        Assert.assertEquals(model.getMAPE(), 0.0);
+        Assert.assertEquals(model.getMSE(), 0.0);
+        Assert.assertEquals(model.getSAE(), 0.0);
+    }
+
+    @Test
+    public void testForecastNext() throws Exception {
+        Properties p = config();
+        float[] values = values(6);
+
+        // These forecast a value from the values before it only, so the
+        // forecast of the next point is the one update() counts the error of.
+        for (String name : new String[] {"NaiveForecastingModel", "MovingAverageModel",
+                                         "WeightedMovingAverageModel", "SimpleExponentialSmoothingModel",
+                                         "DoubleExponentialSmoothingModel", "TripleExponentialSmoothingModel"}) {
+            TimeSeriesAbstractModel model = model(name, p);
+            Assert.assertTrue(model.canForecastNext(), name);
+            model.train(hourly(values, 0, TRAINED));
+            for (int i = TRAINED; i < TRAINED + 50; i++) {
+                TimeSeries.DataSequence point = hourly(values, i, i + 1);
+                float next = model.forecastNext(point.time(0));
+                double sae = model.getSAE();
+                model.update(point);
+                Assert.assertEquals(model.getSAE() - sae, Math.abs(values[i] - next), 1e-2, name + " at " + i);
+            }
+        }
+
+        // These fit all the values, so the forecast of the next point lies on
+        // the fit of the values before it.
+        TimeSeries.DataSequence trained = hourly(values, 0, TRAINED);
+        long time = 1400000000L + 3600L * TRAINED;
+        String[] fits = {"MeanModel", "RegressionModel", "MultipleLinearRegressionModel",
+                         "PolynomialRegressionModel", "SeasonalMedianModel"};
+        for (String name : fits) {
+            TimeSeriesAbstractModel model = model(name, p);
+            Assert.assertTrue(model.canForecastNext(), name);
+            model.train(trained);
+            float[] fitted = predict(model);
+            int n = TRAINED;
+            double expected;
+            if (name.equals("MeanModel")) {
+                expected = fitted[n - 1];
+            } else if (name.equals("SeasonalMedianModel")) {
+                expected = fitted[n - 24];
+            } else if (name.equals("PolynomialRegressionModel")) {
+                expected = 3 * fitted[n - 1] - 3 * fitted[n - 2] + fitted[n - 3];
+            } else {
+                expected = 2 * fitted[n - 1] - fitted[n - 2];
+            }
+            Assert.assertEquals(model.forecastNext(time), expected, Math.abs(expected) * 1e-4, name);
+        }
+
+        p.setProperty("FILTERING_METHOD", "VARIANCE");
+        p.setProperty("WINDOW_SIZE", "24");
+        for (String name : new String[] {"OlympicModel", "SpectralSmoother"}) {
+            Assert.assertFalse(model(name, p).canForecastNext(), name);
+        }
+    }
+
+    @Test
+    public void testUpdateChecksItsInput() throws Exception {
+        Properties p = config();
+        float[] values = values(4);
+        for (String name : MODELS) {
+            try {
+                model(name, p).update(hourly(values, 0, 10));
+                Assert.fail(name + " updated before train()");
+            } catch (IllegalStateException e) {
+                // Expected.
+            }
+            TimeSeriesAbstractModel model = model(name, p);
+            model.train(hourly(values, 0, TRAINED));
+            float[] before = predict(model);
+            try {
+                model.update(hourly(values, 10, 20));
+                Assert.fail(name + " updated with older values");
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+            Assert.assertEquals(predict(model), before);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.models.tsmm;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.data.TimeSeries;
+import com.yahoo.egads.utilities.ModelRegistry;
+
+public class TestNativeForecastModels {
+
+    private static final String[] MODELS = {
+        "RegressionModel", "MultipleLinearRegressionModel", "PolynomialRegressionModel",
+        "NaiveForecastingModel", "MovingAverageModel", "WeightedMovingAverageModel"};
+
+    private static TimeSeries.DataSequence series(int n, long seed) throws Exception {
+        Random random = new Random(seed);
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence();
+        for (int i = 0; i < n; i++) {
+            float value = (float) (1000 + 3 * i + 200 * Math.sin(i / 10.0) + random.nextGaussian() * 50);
+            sequence.add(new TimeSeries.Entry(1400000000L + 3600L * i, value));
+        }
+        return sequence;
+    }
+
+    private static TimeSeriesAbstractModel train(String name, Properties p, TimeSeries.DataSequence data)
+            throws Exception {
+        TimeSeriesAbstractModel model = ModelRegistry.newModel(ModelRegistry.TS_MODELS, name,
+                                                               TimeSeriesAbstractModel.class, p);
+        model.train(data);
+        return model;
+    }
+
+    private static float[] predict(TimeSeriesAbstractModel model, TimeSeries.DataSequence data) throws Exception {
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence(data.get(0).time,
+                                                                       data.get(data.size() - 1).time, 3600);
+        model.predict(sequence);
+        float[] values = new float[sequence.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = sequence.value(i);
+        }
+        return values;
+    }
+
+    private static void assertClose(double actual, double expected) {
+        if (Double.isNaN(expected)) {
+            Assert.assertTrue(Double.isNaN(actual));
+            return;
+        }
+        Assert.assertEquals(actual, expected, Math.abs(expected) * 1e-9 + 1e-9);
+    }
+
+    @Test
+    public void testMatchesOpenForecast() throws Exception {
+        Properties p = new Properties();
+        Properties legacy = new Properties();
+        legacy.setProperty("OPENFORECAST_MODELS", String.join(", ", MODELS));
+        for (int n : new int[] {2, 3, 50, 500}) {
+            TimeSeries.DataSequence data = series(n, n);
+            for (String name : MODELS) {
+                TimeSeriesAbstractModel model = train(name, p, data);
+                TimeSeriesAbstractModel expected = train(name, legacy, data);
+                float[] values = predict(model, data);
+                float[] expectedValues = predict(expected, data);
+                for (int i = 0; i < n; i++) {
+                    assertClose(values[i], expectedValues[i]);
+                }
+                assertClose(model.getBias(), expected.getBias());
+                assertClose(model.getMAD(), expected.getMAD());
+                assertClose(model.getMAPE(), expected.getMAPE());
+                assertClose(model.getMSE(), expected.getMSE());
+                assertClose(model.getSAE(), expected.getSAE());
+            }
+        }
+        Assert.assertEquals(train("RegressionModel", p, series(50, 1)).getModelParams(),
+                            train("RegressionModel", legacy, series(50, 1)).getModelParams());
+    }
+}
@@ -14,7 +14,6 @@ import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.Properties;
 
-import org.apache.commons.lang.NotImplementedException;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -1454,13 +1453,89 @@ public class TestOlympicModel2 {
         assertTrue(Double.isNaN(model.model.get(53).getValue()));
     }
     
-    @Test (expectedExceptions = NotImplementedException.class)
-    public void update() throws Exception {
+    @Test (expectedExceptions = IllegalStateException.class)
+    public void updateNotTrained() throws Exception {
         final OlympicModel2 model = new OlympicModel2(config);
         final TimeSeries ts = new TimeSeries();
         model.update(ts.data);
     }
     
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void updateOutOfOrder() throws Exception {
+        final OlympicModel2 model = new OlympicModel2(config);
+        final TimeSeries ts = new TimeSeries();
+        ts.append(start - 300, 1);
+        model.train(ts.data);
+        ts.data.clear();
+        ts.append(start - 600, 1);
+        model.update(ts.data);
+    }
+    
+    @Test
+    public void update() throws Exception {
+        // week over week, the new data only lands in the rolled tail.
+        updateMatchesTrain();
+        
+        // hour over hour over a day, the new data changes existing points.
+        config.setProperty("WINDOW_SIZE", "1");
+        config.setProperty("WINDOW_SIZE_UNITS", "DAYS");
+        config.setProperty("WINDOW_DISTANCE", "1");
+        config.setProperty("WINDOW_DISTANCE_UNITS", "HOURS");
+        config.setProperty("NUM_TO_DROP_HIGHEST", "1");
+        updateMatchesTrain();
+        
+        config.setProperty("FUTURE_WINDOWS", "2");
+        updateMatchesTrain();
+    }
+    
+    /**
+     * Trains on the first part of five weeks of data, feeds the rest through
+     * update() in chunks and checks the model against one trained from 
+     * scratch at the rolled start time after each chunk.
+     */
+    private void updateMatchesTrain() throws Exception {
+        final long first = start - 86400 * 35;
+        final TimeSeries ts = new TimeSeries();
+        for (long t = first; t < start + 86400; t += 300) {
+            ts.append(t, (float) Math.sin(t / 3600.0) * 100 + (t % 7));
+        }
+        
+        int trained = ts.size() - 300;
+        config.setProperty("MODEL_START", 
+                Long.toString(ts.time(trained - 1) + 300));
+        final OlympicModel2 model = new OlympicModel2(config);
+        final TimeSeries.DataSequence initial = new TimeSeries.DataSequence();
+        initial.addAll(ts.data.subList(0, trained));
+        model.train(initial);
+        
+        while (trained < ts.size()) {
+            final int next = Math.min(ts.size(), trained + 37);
+            final TimeSeries.DataSequence chunk = new TimeSeries.DataSequence();
+            chunk.addAll(ts.data.subList(trained, next));
+            model.update(chunk);
+            trained = next;
+            
+            config.setProperty("MODEL_START", 
+                    Long.toString(ts.time(trained - 1) + 300));
+            final OlympicModel2 expected = new OlympicModel2(config);
+            final TimeSeries.DataSequence all = new TimeSeries.DataSequence();
+            all.addAll(ts.data.subList(0, trained));
+            expected.train(all);
+            
+            assertEquals(expected.model.size(), model.model.size());
+            for (int i = 0; i < expected.model.size(); i++) {
+                assertEquals(expected.model.get(i).getKey(), 
+                        model.model.get(i).getKey());
+                final double value = expected.model.get(i).getValue();
+                if (Double.isNaN(value)) {
+                    assertTrue(Double.isNaN(model.model.get(i).getValue()));
+                } else {
+                    assertEquals(value, model.model.get(i).getValue(), 0.00001);
+                }
+            }
+        }
+    }
+    
     @Test
     public void predict() throws Exception {
         OlympicModel2 model = new OlympicModel2(config);
@@ -1552,6 +1627,46 @@ public class TestOlympicModel2 {
         assertEquals(7, ts.data.size());
         
     }
+    
+    @Test
+    public void predictValues() throws Exception {
+        OlympicModel2 model = new OlympicModel2(config);
+        TimeSeries ts = new TimeSeries();
+        ts.append(1475452800, 10);
+        ts.append(1475453100, 25);
+        ts.append(1476057600, 20);
+        ts.append(1476057900, 45);
+        ts.append(1476662400, 30);
+        ts.append(1476662700, 55);
+        ts.append(1477267200, 40);
+        ts.append(1477267500, 65);
+        model.train(ts.data);
+        
+        final long[] times = new long[] { 1477871700, 1477872000, 1477872060, 
+                1477872300, 1477875600, 1477875900 };
+        final float[] values = new float[times.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.NaN;
+        }
+        model.predict(times, values);
+        
+        assertTrue(Float.isNaN(values[0]));
+        assertEquals(25, values[1], 0.0001);
+        assertTrue(Float.isNaN(values[2]));
+        assertEquals(47.5, values[3], 0.0001);
+        assertTrue(Float.isNaN(values[5]));
+        
+        // the same values as a sequence gets.
+        final TimeSeries sequence = new TimeSeries();
+        for (final long time : times) {
+            sequence.append(time, Float.NaN);
+        }
+        model.predict(sequence.data);
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(Float.floatToIntBits(values[i]), 
+                    Float.floatToIntBits(sequence.data.value(i)));
+        }
+    }
 
     /** Helper that sets some defaults in the config for testing. */
     private void setConfig() {
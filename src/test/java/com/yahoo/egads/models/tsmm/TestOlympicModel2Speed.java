@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.egads.models.tsmm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.data.ColumnarDataSequence;
+import com.yahoo.egads.data.TimeSeries;
+
+// Reports the training throughput and allocation of OlympicModel2 on five
+// weeks of minutely data with a week long model over 4 weekly windows.
+public class TestOlympicModel2Speed {
+
+    @Test
+    public void testTrainSpeed() throws Exception {
+        for (String zone : new String[] {"UTC", "America/Los_Angeles"}) {
+            final long start = 1477872000;
+            final TimeSeries ts = new TimeSeries();
+            ts.data = new ColumnarDataSequence();
+            final Random random = new Random(1);
+            for (long t = start - 35L * 86400; t < start; t += 60) {
+                ts.append(t, (float) (Math.sin(t / 3600.0) * 100 + random.nextGaussian()));
+            }
+            final Properties config = new Properties();
+            config.put("INTERVAL", "1");
+            config.put("INTERVAL_UNITS", "MINUTES");
+            config.put("WINDOW_SIZE", "7");
+            config.put("WINDOW_SIZE_UNITS", "DAYS");
+            config.put("WINDOW_DISTANCE", "1");
+            config.put("WINDOW_DISTANCE_UNITS", "WEEKS");
+            config.put("HISTORICAL_WINDOWS", "4");
+            config.put("MODEL_START", Long.toString(start));
+            config.put("TIMEZONE", zone);
+
+            // warm up, then measure.
+            train(ts, config, 20);
+            final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+            final long bytes = allocatedBytes(mx);
+            final long begin = System.nanoTime();
+            final int iterations = 50;
+            train(ts, config, iterations);
+            final double ms = (System.nanoTime() - begin) / 1e6 / iterations;
+            final double mb = (allocatedBytes(mx) - bytes) / 1e6 / iterations;
+            System.out.print(String.format("%n OlympicModel2 train (%s): %.2fms, %.2fMB allocated",
+                    zone, ms, mb));
+        }
+    }
+
+    private static void train(TimeSeries ts, Properties config, int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            new OlympicModel2(config).train(ts.data);
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean mx) {
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
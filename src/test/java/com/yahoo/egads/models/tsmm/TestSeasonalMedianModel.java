@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.models.tsmm;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.data.TimeSeries;
+
+public class TestSeasonalMedianModel {
+
+    private static TimeSeries.DataSequence hourly(float[] values, int from, int to) throws Exception {
+        TimeSeries.DataSequence sequence = new TimeSeries.DataSequence();
+        for (int i = from; i < to; i++) {
+            sequence.add(new TimeSeries.Entry(3600L * i, values[i]));
+        }
+        return sequence;
+    }
+
+    @Test
+    public void testUpdateMatchesTrain() throws Exception {
+        Random random = new Random(3);
+        float[] values = new float[300];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 24) * 10 + random.nextInt(20);
+        }
+        // Three days, then the rest a few hours at a time, in one period
+        // of a day throughout.
+        SeasonalMedianModel updated = new SeasonalMedianModel(new Properties());
+        updated.train(hourly(values, 0, 72));
+        for (int i = 72; i < values.length; i += 7) {
+            updated.update(hourly(values, i, Math.min(i + 7, values.length)));
+        }
+        SeasonalMedianModel trained = new SeasonalMedianModel(new Properties());
+        trained.train(hourly(values, 0, values.length));
+        Assert.assertEquals(updated.getModelParams().get("period"), 24);
+        Assert.assertEquals((float[]) updated.getModelParams().get("seasonal"),
+                            (float[]) trained.getModelParams().get("seasonal"));
+        Assert.assertEquals(updated.getModelParams().get("range"), trained.getModelParams().get("range"));
+        Assert.assertEquals(updated.getMSE(), trained.getMSE(), 1e-9);
+        Assert.assertEquals(updated.getSAE(), trained.getSAE(), 1e-6);
+    }
+
+    @Test
+    public void testUpdateChangesPeriod() throws Exception {
+        Random random = new Random(5);
+        float[] values = new float[400];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 168) + random.nextInt(20) + 1;
+        }
+        // Past two weeks, train() picks a period of a week rather than a day.
+        SeasonalMedianModel updated = new SeasonalMedianModel(new Properties());
+        updated.train(hourly(values, 0, 200));
+        Assert.assertEquals(updated.getModelParams().get("period"), 24);
+        for (int i = 200; i < values.length; i += 5) {
+            updated.update(hourly(values, i, Math.min(i + 5, values.length)));
+        }
+        SeasonalMedianModel trained = new SeasonalMedianModel(new Properties());
+        trained.train(hourly(values, 0, values.length));
+        Assert.assertEquals(updated.getModelParams().get("period"), 168);
+        Assert.assertEquals((float[]) updated.getModelParams().get("seasonal"),
+                            (float[]) trained.getModelParams().get("seasonal"));
+        Assert.assertEquals(updated.getBias(), trained.getBias(), 1e-9);
+        Assert.assertEquals(updated.getMAD(), trained.getMAD(), 1e-9);
+        Assert.assertEquals(updated.getMAPE(), trained.getMAPE(), 1e-9);
+        Assert.assertEquals(updated.getMSE(), trained.getMSE(), 1e-9);
+        Assert.assertEquals(updated.getSAE(), trained.getSAE(), 1e-6);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUpdateOutOfOrder() throws Exception {
+        float[] values = new float[100];
+        SeasonalMedianModel model = new SeasonalMedianModel(new Properties());
+        model.train(hourly(values, 50, 100));
+        model.update(hourly(values, 0, 10));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+import com.yahoo.egads.data.TimeSeries;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Properties;
+
+public class TestBinaryFileUtils {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ArrayList<TimeSeries> series = FileUtils.createTimeSeries("src/test/resources/sample_input.csv", new Properties());
+
+        // An irregular series, one with large gaps and an empty one.
+        TimeSeries irregular = new TimeSeries();
+        irregular.meta.name = "irregular";
+        irregular.meta.detectAnomalies = true;
+        irregular.meta.seasons = new long[] {24, 168};
+        TimeSeries sparse = new TimeSeries();
+        sparse.meta.name = "sparse";
+        for (int i = 0; i < 50; i++) {
+            irregular.append(1000 + i * i, i * 0.5f);
+            sparse.append(i * 5000000000L, -i);
+        }
+        series.add(irregular);
+        series.add(sparse);
+        series.add(new TimeSeries());
+
+        File file = File.createTempFile("egads", ".bin");
+        file.deleteOnExit();
+        BinaryFileUtils.writeTimeSeries(file.getPath(), series);
+        ArrayList<TimeSeries> loaded = BinaryFileUtils.readTimeSeries(file.getPath());
+
+        Assert.assertEquals(loaded.size(), series.size());
+        for (int s = 0; s < series.size(); s++) {
+            TimeSeries expected = series.get(s);
+            TimeSeries actual = loaded.get(s);
+            Assert.assertEquals(actual.meta, expected.meta);
+            Assert.assertEquals(actual.meta.fileName, expected.meta.fileName);
+            Assert.assertEquals(actual.size(), expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(actual.time(i), expected.time(i));
+                Assert.assertEquals(actual.value(i), expected.value(i));
+            }
+        }
+        Assert.assertEquals(loaded.get(1).meta.seasons, new long[] {24, 168});
+        Assert.assertNull(loaded.get(0).meta.seasons);
+
+        Properties p = new Properties();
+        p.setProperty("AGGREGATION", "2");
+        TimeSeries aggregated = BinaryFileUtils.createTimeSeries(file.getPath(), p).get(0);
+        Assert.assertEquals(aggregated.meta.name, series.get(0).meta.name + "_aggr_2");
+        Assert.assertEquals(aggregated.size(), (series.get(0).size() + 1) / 2);
+    }
+
+    @Test(expectedExceptions = Exception.class)
+    public void testNotBinary() throws Exception {
+        BinaryFileUtils.readTimeSeries("src/test/resources/sample_input.csv");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.math3.ml.clustering.Cluster;
+import org.apache.commons.math3.ml.distance.CanberraDistance;
+import org.apache.commons.math3.ml.distance.DistanceMeasure;
+import org.apache.commons.math3.ml.distance.EuclideanDistance;
+import org.apache.commons.math3.ml.distance.ManhattanDistance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestDBSCANClusterer {
+
+    // Dense groups of 5 dimensional points, sparse noise and repeated points.
+    private static List<IdentifiedDoublePoint> points(int n, long seed) {
+        Random random = new Random(seed);
+        List<IdentifiedDoublePoint> points = new ArrayList<IdentifiedDoublePoint>();
+        for (int i = 0; i < n; i++) {
+            double[] d = new double[5];
+            if (i % 10 == 9 && i > 0) {
+                d = points.get(random.nextInt(i)).getPoint().clone();
+            } else {
+                double center = random.nextInt(3) * 10;
+                double spread = random.nextInt(20) == 0 ? 20 : 1;
+                for (int k = 0; k < d.length; k++) {
+                    d[k] = center + random.nextGaussian() * spread * (k + 1);
+                }
+            }
+            points.add(new IdentifiedDoublePoint(d, i));
+        }
+        return points;
+    }
+
+    // The noise points found by comparing every pair of points.
+    private static List<Integer> reference(List<IdentifiedDoublePoint> points, double eps, int minPts,
+                                           DistanceMeasure measure) {
+        Map<IdentifiedDoublePoint, Boolean> visited = new HashMap<IdentifiedDoublePoint, Boolean>();
+        List<Integer> noise = new ArrayList<Integer>();
+        for (IdentifiedDoublePoint point : points) {
+            if (visited.get(point) != null) {
+                continue;
+            }
+            List<IdentifiedDoublePoint> seeds = neighbors(point, points, eps, measure);
+            if (seeds.size() >= minPts) {
+                visited.put(point, true);
+                for (int k = 0; k < seeds.size(); k++) {
+                    IdentifiedDoublePoint current = seeds.get(k);
+                    if (visited.get(current) == null) {
+                        List<IdentifiedDoublePoint> more = neighbors(current, points, eps, measure);
+                        if (more.size() >= minPts) {
+                            seeds.addAll(more);
+                        }
+                    }
+                    visited.put(current, true);
+                }
+            } else {
+                visited.put(point, false);
+                noise.add(point.getId());
+            }
+        }
+        return noise;
+    }
+
+    private static List<IdentifiedDoublePoint> neighbors(IdentifiedDoublePoint point,
+                                                         List<IdentifiedDoublePoint> points,
+                                                         double eps, DistanceMeasure measure) {
+        List<IdentifiedDoublePoint> neighbors = new ArrayList<IdentifiedDoublePoint>();
+        for (IdentifiedDoublePoint neighbor : points) {
+            if (point != neighbor && measure.compute(neighbor.getPoint(), point.getPoint()) <= eps) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors;
+    }
+
+    @Test
+    public void testMatchesAllPairs() {
+        DistanceMeasure[] measures = {new EuclideanDistance(), new ManhattanDistance(), new CanberraDistance()};
+        double[] epsilons = {0.5, 2, 8, 40};
+        int[] minPts = {0, 1, 4, 30};
+        for (DistanceMeasure measure : measures) {
+            for (double eps : epsilons) {
+                for (int m : minPts) {
+                    List<IdentifiedDoublePoint> points = points(600, (long) eps * 100 + m);
+                    double scaled = measure instanceof CanberraDistance ? eps / 10 : eps;
+                    List<Cluster<IdentifiedDoublePoint>> clusters =
+                        new DBSCANClusterer<IdentifiedDoublePoint>(scaled, m, measure).cluster(points);
+                    List<Integer> noise = new ArrayList<Integer>();
+                    for (IdentifiedDoublePoint p : clusters.get(0).getPoints()) {
+                        noise.add(p.getId());
+                    }
+                    Assert.assertEquals(clusters.size(), 1);
+                    Assert.assertEquals(noise, reference(points, scaled, m, measure),
+                                        measure.getClass().getSimpleName() + " eps " + scaled + " minPts " + m);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        List<Cluster<IdentifiedDoublePoint>> clusters =
+            new DBSCANClusterer<IdentifiedDoublePoint>(1, 2).cluster(new ArrayList<IdentifiedDoublePoint>());
+        Assert.assertEquals(clusters.size(), 1);
+        Assert.assertTrue(clusters.get(0).getPoints().isEmpty());
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+import java.io.FileInputStream;
+import java.util.Properties;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.egads.models.adm.AnomalyDetectionModel;
+import com.yahoo.egads.models.adm.KSigmaModel;
+import com.yahoo.egads.models.tsmm.OlympicModel;
+import com.yahoo.egads.models.tsmm.TimeSeriesModel;
+
+public class TestModelRegistry {
+
+    private static Properties config() throws Exception {
+        Properties p = new Properties();
+        p.load(new FileInputStream("src/test/resources/sample_config.ini"));
+        return p;
+    }
+
+    @Test
+    public void testNewModel() throws Exception {
+        Properties p = config();
+        TimeSeriesModel first = ModelRegistry.newModel(ModelRegistry.TS_MODELS, "OlympicModel", TimeSeriesModel.class, p);
+        TimeSeriesModel second = ModelRegistry.newModel(ModelRegistry.TS_MODELS, "OlympicModel", TimeSeriesModel.class, p);
+        Assert.assertTrue(first instanceof OlympicModel);
+        Assert.assertNotSame(first, second);
+        AnomalyDetectionModel ad = ModelRegistry.newModel(ModelRegistry.AD_MODELS, "KSigmaModel",
+                                                          AnomalyDetectionModel.class, p);
+        Assert.assertTrue(ad instanceof KSigmaModel);
+    }
+
+    @Test(expectedExceptions = ClassNotFoundException.class)
+    public void testUnknownModel() throws Exception {
+        ModelRegistry.newModel(ModelRegistry.TS_MODELS, "NoSuchModel", TimeSeriesModel.class, config());
+    }
+
+    @Test(expectedExceptions = ClassCastException.class)
+    public void testWrongType() throws Exception {
+        ModelRegistry.newModel(ModelRegistry.TS_MODELS, "OlympicModel", AnomalyDetectionModel.class, config());
+    }
+
+    // The constructor's own exceptions come through as they are.
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testConstructorFails() throws Exception {
+        Properties p = config();
+        p.remove("MAX_ANOMALY_TIME_AGO");
+        ModelRegistry.newModel(ModelRegistry.AD_MODELS, "KSigmaModel", AnomalyDetectionModel.class, p);
+    }
+}
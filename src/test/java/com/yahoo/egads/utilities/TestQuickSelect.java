@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestQuickSelect {
+
+    @Test
+    public void testSelectMatchesSort() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 500; trial++) {
+            int n = 1 + random.nextInt(trial < 250 ? 40 : 2000);
+            float[] floats = new float[n];
+            double[] doubles = new double[n];
+            for (int i = 0; i < n; i++) {
+                // Few distinct values, with NaN and both zeros among them.
+                switch (random.nextInt(12)) {
+                case 0: floats[i] = Float.NaN; break;
+                case 1: floats[i] = -0.0f; break;
+                case 2: floats[i] = 0.0f; break;
+                default: floats[i] = random.nextInt(trial % 2 == 0 ? 5 : 100000) - 50;
+                }
+                doubles[i] = floats[i];
+            }
+            float[] sortedFloats = floats.clone();
+            double[] sortedDoubles = doubles.clone();
+            Arrays.sort(sortedFloats);
+            Arrays.sort(sortedDoubles);
+            int k = random.nextInt(n);
+            Assert.assertEquals(Float.floatToIntBits(QuickSelect.select(floats, 0, n, k)),
+                                Float.floatToIntBits(sortedFloats[k]));
+            Assert.assertEquals(Double.doubleToLongBits(QuickSelect.select(doubles, 0, n, k)),
+                                Double.doubleToLongBits(sortedDoubles[k]));
+            for (int i = 0; i < n; i++) {
+                Assert.assertTrue(Float.compare(floats[i], floats[k]) * Integer.signum(i - k) >= 0);
+            }
+            Arrays.sort(floats);
+            Assert.assertEquals(floats, sortedFloats);
+        }
+    }
+
+    @Test
+    public void testMedian() {
+        Assert.assertEquals(QuickSelect.median(new float[] {3, 1, 2}, 0, 3), 2f);
+        Assert.assertEquals(QuickSelect.median(new float[] {4, 1, 3, 2}, 0, 4), 2.5f);
+        Assert.assertEquals(QuickSelect.median(new float[] {9, 4, 1, 3, 2}, 1, 5), 2.5f);
+        Random random = new Random(11);
+        for (int n = 1; n < 300; n++) {
+            float[] values = new float[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = random.nextInt(50);
+            }
+            float[] sorted = values.clone();
+            Arrays.sort(sorted);
+            float expected = n % 2 == 1 ? sorted[n / 2] : (float) ((sorted[n / 2 - 1] + sorted[n / 2]) / 2.0);
+            Assert.assertEquals(QuickSelect.median(values, 0, n), expected);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmpty() {
+        QuickSelect.median(new float[0], 0, 0);
+    }
+}
@@ -7,11 +7,16 @@
 package com.yahoo.egads.utilities;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.yahoo.egads.utilities.SpectralMethods.FilteringMethod;
+
 public class TestSpectralMethods {
     @Test
     public void f() {
@@ -22,10 +27,79 @@ public class TestSpectralMethods {
         for (int i = 0; i < res.getRowDimension(); ++i) {
             System.out.println(Arrays.toString(res.getRow(i)));
         }
+        Assert.assertEquals(res.getRowDimension(), 5);
+        Assert.assertEquals(res.getRow(0), new double[] {1, 2, 3, 2, 2, 5});
+        Assert.assertEquals(res.getRow(4), new double[] {3, 4, 8, 9, 3, 3});
 
         RealMatrix data2 = SpectralMethods.averageHankelMatrix(res, 3);
         for (int i = 0; i < data2.getRowDimension(); ++i) {
             System.out.println(Arrays.toString(data2.getRow(i)));
         }
+        Assert.assertEquals(data2.getData(), mat);
+    }
+
+    // A daily and a weekly cycle in hourly data, plus noise.
+    private static RealMatrix series(int n, int m, long seed) {
+        Random random = new Random(seed);
+        RealMatrix data = MatrixUtils.createRealMatrix(n, m);
+        for (int i = 0; i < n; ++i) {
+            for (int h = 0; h < m; ++h) {
+                data.setEntry(i, h, 100 + 0.05 * i + 20 * Math.sin(2 * Math.PI * i / 24 + h)
+                                + 5 * Math.cos(2 * Math.PI * i / 168) + random.nextGaussian());
+            }
+        }
+        return data;
+    }
+
+    @Test
+    public void testTruncatedFilter() {
+        Object[][] cases = {
+            {FilteringMethod.EXPLICIT, 10.0}, {FilteringMethod.EXPLICIT, 1000.0}, {FilteringMethod.EXPLICIT, 0.0},
+            {FilteringMethod.EIGEN_RATIO, 0.1}, {FilteringMethod.EIGEN_RATIO, 0.01}, {FilteringMethod.EIGEN_RATIO, 0.0},
+            {FilteringMethod.VARIANCE, 0.5}, {FilteringMethod.VARIANCE, 0.99}, {FilteringMethod.VARIANCE, 1.0}};
+        int[][] shapes = {{400, 1, 48}, {200, 2, 30}, {60, 1, 50}, {5, 1, 5}};
+        for (int[] shape : shapes) {
+            RealMatrix data = series(shape[0], shape[1], shape[0]);
+            for (Object[] c : cases) {
+                FilteringMethod method = (FilteringMethod) c[0];
+                double parameter = (Double) c[1];
+                RealMatrix full = SpectralMethods.mFilter(data, shape[2], method, parameter, false);
+                RealMatrix truncated = SpectralMethods.mFilter(data, shape[2], method, parameter);
+                String what = method + " " + parameter + " " + Arrays.toString(shape);
+                for (int i = 0; i < shape[0]; ++i) {
+                    for (int h = 0; h < shape[1]; ++h) {
+                        Assert.assertEquals(truncated.getEntry(i, h), full.getEntry(i, h), 1e-6, what);
+                    }
+                }
+            }
+        }
+
+        RealMatrix zero = MatrixUtils.createRealMatrix(50, 1);
+        Assert.assertEquals(SpectralMethods.mFilter(zero, 10, FilteringMethod.EIGEN_RATIO, 0.1), zero);
+    }
+
+    @Test
+    public void testLowRankAveraging() {
+        RealMatrix data = series(150, 2, 3);
+        int windowSize = 20;
+        RealMatrix hankel = SpectralMethods.createHankelMatrix(data, windowSize);
+        SingularValueDecomposition svd = new SingularValueDecomposition(hankel);
+
+        // The first 5 components, averaged from the rank-reduced Hankel matrix.
+        RealMatrix truncated = MatrixUtils.createRealMatrix(hankel.getRowDimension(), hankel.getColumnDimension());
+        for (int i = 0; i < 5; ++i) {
+            truncated = truncated.add(svd.getU().getColumnMatrix(i).multiply(svd.getVT().getRowMatrix(i))
+                            .scalarMultiply(svd.getSingularValues()[i]));
+        }
+        RealMatrix expected = SpectralMethods.averageHankelMatrix(truncated, windowSize);
+
+        for (boolean full : new boolean[] {false, true}) {
+            RealMatrix result = SpectralMethods.mFilter(data, windowSize, FilteringMethod.EXPLICIT, 5, !full);
+            for (int i = 0; i < data.getRowDimension(); ++i) {
+                for (int h = 0; h < data.getColumnDimension(); ++h) {
+                    Assert.assertEquals(result.getEntry(i, h), expected.getEntry(i, h), 1e-8);
+                }
+            }
+        }
     }
 }
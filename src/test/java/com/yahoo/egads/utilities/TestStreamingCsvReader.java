@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the GPL License.
+ * See the accompanying LICENSE file for terms.
+ */
+
+package com.yahoo.egads.utilities;
+
+import com.yahoo.egads.data.TimeSeries;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+
+public class TestStreamingCsvReader {
+
+    @Test
+    public void testParse() throws Exception {
+        String csv = "some preamble\r\n"
+                   + "timestamp,a,b,,\r\n"
+                   + "100,1.5,NaN\r\n"
+                   + "160,-2e3,0.1\n"
+                   + "220,.5,16777217\n"
+                   + "400,3.0000001,5.\n";
+        ArrayList<TimeSeries> output = read(csv, false);
+        Assert.assertEquals(output.size(), 2);
+        Assert.assertEquals(output.get(0).meta.name, "a");
+        Assert.assertEquals(output.get(1).meta.name, "b");
+        Assert.assertEquals(output.get(0).meta.fileName, "test.csv");
+        Assert.assertEquals(output.get(0).size(), 4);
+        Assert.assertEquals(output.get(0).time(3), 400);
+        Assert.assertEquals(output.get(0).value(0), 1.5f);
+        Assert.assertEquals(output.get(0).value(1), -2e3f);
+        Assert.assertEquals(output.get(0).value(2), 0.5f);
+        Assert.assertEquals(output.get(0).value(3), Float.parseFloat("3.0000001"));
+        Assert.assertTrue(Float.isNaN(output.get(1).value(0)));
+        Assert.assertEquals(output.get(1).value(1), 0.1f);
+        Assert.assertEquals(output.get(1).value(2), Float.parseFloat("16777217"));
+
+        // 220 -> 400 is missing two points, filled with the values of the points three periods back.
+        output = read(csv, true);
+        Assert.assertEquals(output.get(0).size(), 6);
+        Assert.assertEquals(output.get(0).time(3), 280);
+        Assert.assertEquals(output.get(0).time(4), 340);
+        Assert.assertEquals(output.get(0).value(3), 1.5f);
+        Assert.assertEquals(output.get(0).value(4), -2e3f);
+    }
+
+    @Test
+    public void testLongLines() throws Exception {
+        // Lines and files larger than a read chunk.
+        int columns = 20000;
+        StringBuilder csv = new StringBuilder("timestamp");
+        for (int c = 0; c < columns; c++) {
+            csv.append(",m").append(c);
+        }
+        csv.append('\n');
+        for (int t = 0; t < 5; t++) {
+            csv.append(t * 60);
+            for (int c = 0; c < columns; c++) {
+                csv.append(',').append(c + t * 0.25);
+            }
+            csv.append('\n');
+        }
+        ArrayList<TimeSeries> output = read(csv.toString(), false);
+        Assert.assertEquals(output.size(), columns);
+        Assert.assertEquals(output.get(columns - 1).meta.name, "m" + (columns - 1));
+        Assert.assertEquals(output.get(columns - 1).size(), 5);
+        Assert.assertEquals(output.get(columns - 1).time(4), 240);
+        Assert.assertEquals(output.get(columns - 1).value(4), columns - 1 + 1.0f);
+    }
+
+    private ArrayList<TimeSeries> read(String csv, boolean fillMissing) throws Exception {
+        ArrayList<TimeSeries> output = new ArrayList<TimeSeries>();
+        new StreamingCsvReader(new ByteArrayInputStream(csv.getBytes("UTF-8")), "test.csv", fillMissing)
+                .read(output);
+        return output;
+    }
+}